@@ -12,16 +12,23 @@
 package games.stendhal.client;
 
 import java.awt.Composite;
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
 import java.util.ArrayList;
 import java.util.List;
 
+import games.stendhal.client.gui.TransparencyMode;
 import games.stendhal.client.sprite.CompositeSprite;
+import games.stendhal.client.sprite.EmptySprite;
 import games.stendhal.client.sprite.Sprite;
 import games.stendhal.client.sprite.SpriteCache;
 
 /**
  * A LayerRenderer that merges several tile layers in to one using
- * CompositeSprites.
+ * CompositeSprites. The static tiles are drawn from chunks pre-rendered in
+ * {@link TileChunkCache}, and only the animated tiles are drawn one by one.
  */
 class CompositeLayerRenderer extends TileRenderer {
 	/**
@@ -85,4 +92,87 @@ class CompositeLayerRenderer extends TileRenderer {
 			r.tileset = null;
 		}
 	}
+
+	@Override
+	public void draw(Graphics g, int x, int y, int w, int h) {
+		TileChunkCache cache = TileChunkCache.get();
+		if (!cache.isEnabled()) {
+			super.draw(g, x, y, w, h);
+			return;
+		}
+
+		int endX = Math.min(x + w, getWidth());
+		int endY = Math.min(y + h, getHeight());
+		if ((endX <= x) || (endY <= y)) {
+			return;
+		}
+		int chunkPixels = TileChunkCache.CHUNK_SIZE * IGameScreen.SIZE_UNIT_PIXELS;
+		int endColumn = (endX - 1) / TileChunkCache.CHUNK_SIZE;
+		int endRow = (endY - 1) / TileChunkCache.CHUNK_SIZE;
+
+		for (int row = y / TileChunkCache.CHUNK_SIZE; row <= endRow; row++) {
+			for (int column = x / TileChunkCache.CHUNK_SIZE; column <= endColumn; column++) {
+				TileChunkCache.Chunk chunk = cache.get(this, column, row);
+				if (chunk == null) {
+					chunk = createChunk(column, row);
+					cache.put(this, column, row, chunk);
+				}
+				if (chunk.image != null) {
+					g.drawImage(chunk.image, column * chunkPixels, row * chunkPixels, null);
+				}
+				for (int index : chunk.animated) {
+					spriteMap[index].draw(g, (index % width) * IGameScreen.SIZE_UNIT_PIXELS,
+							(index / width) * IGameScreen.SIZE_UNIT_PIXELS);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Pre-render the static tiles of a chunk.
+	 *
+	 * @param column chunk column
+	 * @param row chunk row
+	 * @return chunk
+	 */
+	private TileChunkCache.Chunk createChunk(int column, int row) {
+		int startX = column * TileChunkCache.CHUNK_SIZE;
+		int startY = row * TileChunkCache.CHUNK_SIZE;
+		int endX = Math.min(startX + TileChunkCache.CHUNK_SIZE, width);
+		int endY = Math.min(startY + TileChunkCache.CHUNK_SIZE, height);
+
+		Image image = null;
+		Graphics g = null;
+		List<Integer> animated = new ArrayList<Integer>();
+		for (int j = startY; j < endY; j++) {
+			for (int i = startX; i < endX; i++) {
+				int index = j * width + i;
+				Sprite sprite = spriteMap[index];
+				if (!TileChunkCache.isStatic(sprite)) {
+					animated.add(index);
+				} else if ((sprite != null) && !(sprite instanceof EmptySprite)) {
+					// Chunks with nothing to draw, such as most of the roof
+					// layers, do not need an image at all
+					if (image == null) {
+						GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+						image = gc.createCompatibleImage((endX - startX) * IGameScreen.SIZE_UNIT_PIXELS,
+								(endY - startY) * IGameScreen.SIZE_UNIT_PIXELS,
+								TransparencyMode.TRANSPARENCY);
+						g = image.getGraphics();
+					}
+					sprite.draw(g, (i - startX) * IGameScreen.SIZE_UNIT_PIXELS,
+							(j - startY) * IGameScreen.SIZE_UNIT_PIXELS);
+				}
+			}
+		}
+		if (g != null) {
+			g.dispose();
+		}
+
+		int[] animatedIndices = new int[animated.size()];
+		for (int i = 0; i < animatedIndices.length; i++) {
+			animatedIndices[i] = animated.get(i);
+		}
+		return new TileChunkCache.Chunk(image, animatedIndices);
+	}
 }
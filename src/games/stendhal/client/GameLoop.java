@@ -18,6 +18,8 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.log4j.Logger;
 
+import games.stendhal.client.sprite.SpriteCache;
+
 /**
  * Game loop thread.
  */
@@ -183,7 +185,8 @@ public class GameLoop {
 	}
 
 	/**
-	 * Write debugging data about the client memory usage and running speed.
+	 * Write debugging data about the client memory usage, sprite cache and
+	 * running speed.
 	 *
 	 * @param refreshTime
 	 * @param lastFpsTime
@@ -197,6 +200,7 @@ public class GameLoop {
 
 			logger.debug("Total/Used memory: " + totalMemory + "/"
 					+ (totalMemory - freeMemory));
+			logger.debug("Sprite cache: " + SpriteCache.get().getStatistics());
 		}
 	}
 
@@ -424,11 +424,11 @@ public class OutfitStore {
 	private Sprite getOutfit(final int code, final OutfitColor color,
 			final String reference) {
 		final SpriteCache cache = SpriteCache.get();
-		Sprite sprite = cache.get(reference);
+		Sprite sprite = cache.get(SpriteCache.Region.OUTFITS, reference);
 
 		if (sprite == null) {
 			sprite = buildOutfit(code, color);
-			cache.add(reference, sprite);
+			cache.add(SpriteCache.Region.OUTFITS, reference, sprite);
 		}
 
 		return sprite;
@@ -450,11 +450,11 @@ public class OutfitStore {
 	private Sprite getOutfit(final long code,
 			final OutfitColor color, final String reference) {
 		final SpriteCache cache = SpriteCache.get();
-		Sprite sprite = cache.get(reference);
+		Sprite sprite = cache.get(SpriteCache.Region.OUTFITS, reference);
 
 		if (sprite == null) {
 			sprite = buildOutfit(code, color);
-			cache.add(reference, sprite);
+			cache.add(SpriteCache.Region.OUTFITS, reference, sprite);
 		}
 
 		return sprite;
@@ -478,11 +478,12 @@ public class OutfitStore {
 			// Use the normalized string for the reference
 			final String reference = buildReference(code, color.toString());
 			String fullRef = reference + ":" + adjColor.getRGB() + blend.toString();
-			Sprite sprite = cache.get(fullRef);
+			Sprite sprite = cache.get(SpriteCache.Region.OUTFITS, fullRef);
 			if (sprite == null) {
 				Sprite plain = getOutfit(code, color);
 				SpriteStore store = SpriteStore.get();
-				sprite = store.modifySprite(plain, adjColor, blend, fullRef);
+				sprite = store.modifySprite(plain, adjColor, blend, fullRef,
+						SpriteCache.Region.OUTFITS);
 
 			}
 			return sprite;
@@ -514,11 +515,12 @@ public class OutfitStore {
 			final String reference = buildReference(code,
 					color.toString());
 			String fullRef = reference + ":" + adjColor.getRGB() + blend.toString();
-			Sprite sprite = cache.get(fullRef);
+			Sprite sprite = cache.get(SpriteCache.Region.OUTFITS, fullRef);
 			if (sprite == null) {
 				Sprite plain = getOutfit(code, color);
 				SpriteStore store = SpriteStore.get();
-				sprite = store.modifySprite(plain, adjColor, blend, fullRef);
+				sprite = store.modifySprite(plain, adjColor, blend, fullRef,
+						SpriteCache.Region.OUTFITS);
 
 			}
 			return sprite;
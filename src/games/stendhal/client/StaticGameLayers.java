@@ -67,6 +67,10 @@ public class StaticGameLayers {
 	 * @param zone
 	 */
 	public void setZone(Zone zone) {
+		if (zone != currentZone) {
+			// The pre-rendered tiles of the old zone are not needed anymore
+			TileChunkCache.get().clear();
+		}
 		currentZone = zone;
 		if (!zone.getName().equals(area)) {
 			setAreaName(zone.getName());
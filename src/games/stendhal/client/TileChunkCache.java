@@ -0,0 +1,223 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import java.awt.Image;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import games.stendhal.client.gui.wt.core.WtWindowManager;
+import games.stendhal.client.sprite.CompositeSprite;
+import games.stendhal.client.sprite.EmptySprite;
+import games.stendhal.client.sprite.ImageSprite;
+import games.stendhal.client.sprite.Sprite;
+
+/**
+ * A cache of pre-rendered square regions (chunks) of the static tile layers.
+ * Drawing a chunk is a single image blit instead of one sprite draw per tile
+ * and layer. Chunks are dropped in least recently used order when their total
+ * size exceeds the memory limit. The limit is set in megabytes by the client
+ * setting <code>ui.tile_chunk_cache</code>; 0 disables the chunks.
+ */
+final class TileChunkCache {
+	/** Width and height of the chunks in tiles. */
+	static final int CHUNK_SIZE = 16;
+	/** Default memory limit in megabytes. */
+	private static final int DEFAULT_LIMIT = 48;
+	/** The shared instance. */
+	private static final TileChunkCache instance = new TileChunkCache(1024L * 1024L
+			* WtWindowManager.getInstance().getPropertyInt("ui.tile_chunk_cache", DEFAULT_LIMIT));
+
+	/** Cached chunks in access order. */
+	private final Map<Key, Chunk> chunks = new LinkedHashMap<Key, Chunk>(64, 0.75f, true);
+	/** Memory limit in bytes. */
+	private final long limit;
+	/** Estimated memory used by the cached chunks, in bytes. */
+	private long size;
+
+	/**
+	 * Create a new TileChunkCache.
+	 *
+	 * @param limit memory limit in bytes
+	 */
+	TileChunkCache(final long limit) {
+		this.limit = limit;
+	}
+
+	/**
+	 * Get the shared instance.
+	 *
+	 * @return cache
+	 */
+	static TileChunkCache get() {
+		return instance;
+	}
+
+	/**
+	 * Check if pre-rendering chunks is enabled.
+	 *
+	 * @return <code>true</code> if chunks should be used
+	 */
+	boolean isEnabled() {
+		return limit > 0;
+	}
+
+	/**
+	 * Get a cached chunk.
+	 *
+	 * @param layer layer renderer owning the chunk
+	 * @param column chunk column
+	 * @param row chunk row
+	 * @return chunk, or <code>null</code> if it is not in the cache
+	 */
+	synchronized Chunk get(final LayerRenderer layer, final int column, final int row) {
+		return chunks.get(new Key(layer, column, row));
+	}
+
+	/**
+	 * Store a chunk, dropping the least recently used chunks if the memory
+	 * limit is exceeded.
+	 *
+	 * @param layer layer renderer owning the chunk
+	 * @param column chunk column
+	 * @param row chunk row
+	 * @param chunk chunk
+	 */
+	synchronized void put(final LayerRenderer layer, final int column, final int row, final Chunk chunk) {
+		final Chunk old = chunks.put(new Key(layer, column, row), chunk);
+		if (old != null) {
+			size -= old.bytes;
+		}
+		size += chunk.bytes;
+
+		final Iterator<Chunk> it = chunks.values().iterator();
+		// Always keep the newest, even if it alone is over the limit
+		while ((size > limit) && (chunks.size() > 1)) {
+			final Chunk eldest = it.next();
+			size -= eldest.bytes;
+			it.remove();
+			eldest.flush();
+		}
+	}
+
+	/**
+	 * Drop all chunks. Called on zone change, when the old layers are no
+	 * longer drawn.
+	 */
+	synchronized void clear() {
+		for (final Chunk chunk : chunks.values()) {
+			chunk.flush();
+		}
+		chunks.clear();
+		size = 0;
+	}
+
+	/**
+	 * Get the number of cached chunks.
+	 *
+	 * @return chunk count
+	 */
+	synchronized int size() {
+		return chunks.size();
+	}
+
+	/**
+	 * Get the estimated memory used by the cached chunks.
+	 *
+	 * @return memory in bytes
+	 */
+	synchronized long getMemoryUsage() {
+		return size;
+	}
+
+	/**
+	 * Check if a tile sprite always looks the same, so that it can be
+	 * pre-rendered to a chunk.
+	 *
+	 * @param sprite tile sprite
+	 * @return <code>true</code> if the sprite is not animated
+	 */
+	static boolean isStatic(final Sprite sprite) {
+		return (sprite == null) || (sprite instanceof ImageSprite) || (sprite instanceof EmptySprite)
+				|| ((sprite instanceof CompositeSprite) && ((CompositeSprite) sprite).isStatic());
+	}
+
+	/**
+	 * A pre-rendered chunk.
+	 */
+	static final class Chunk {
+		/** Pre-rendered static tiles, or <code>null</code> if they are all empty. */
+		final Image image;
+		/**
+		 * Map indices of the animated tiles of the chunk. These are drawn
+		 * separately on top of the image.
+		 */
+		final int[] animated;
+		/** Estimated memory use of the image. */
+		final long bytes;
+
+		/**
+		 * Create a new Chunk.
+		 *
+		 * @param image pre-rendered static tiles, or <code>null</code>
+		 * @param animated map indices of the animated tiles
+		 */
+		Chunk(final Image image, final int[] animated) {
+			this.image = image;
+			this.animated = animated;
+			if (image != null) {
+				bytes = 4L * image.getWidth(null) * image.getHeight(null);
+			} else {
+				bytes = 0;
+			}
+		}
+
+		/**
+		 * Release the resources of the image.
+		 */
+		void flush() {
+			if (image != null) {
+				image.flush();
+			}
+		}
+	}
+
+	/**
+	 * Cache key of a chunk.
+	 */
+	private static final class Key {
+		private final LayerRenderer layer;
+		private final int column;
+		private final int row;
+
+		Key(final LayerRenderer layer, final int column, final int row) {
+			this.layer = layer;
+			this.column = column;
+			this.row = row;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (obj instanceof Key) {
+				final Key other = (Key) obj;
+				return (layer == other.layer) && (column == other.column) && (row == other.row);
+			}
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(layer) ^ (column * 31 + row) * 17;
+		}
+	}
+}
@@ -66,6 +66,7 @@ class GMHelpAction implements SlashAction {
 				"- /summonat <player> <slot> [amount] <item> Summon the specified item into the specified slot of <player>; <amount> defaults to 1 if not specified",
 				"- /invisible \t\t\tToggles whether or not you are invisible to creatures",
 				"- /inspect <player> \t\t\tShow complete details of <player>",
+				"- /turnprofile [on|off|reset] \t\tShow the turn phase times and the slowest zones, NPCs and turn listeners",
 				"- /destroy <entity> \t\t\tDestroy an entity completely");
 		} else if ((params.length == 1) && (params[0] != null)) {
 			if ("alter".equals(params[0])) {
@@ -47,7 +47,7 @@ class Gate2DView extends Entity2DView<IEntity> {
 		SpriteStore store = SpriteStore.get();
 		String ref = store.createModifiedRef(base.getReference().toString(),
 				info.getZoneColor(), info.getColorMethod());
-		Sprite rval = SpriteCache.get().get(ref);
+		Sprite rval = SpriteCache.get().get(SpriteCache.Region.EFFECTS, ref);
 		if (rval == null) {
 			rval = store.modifySprite(base, info.getZoneColor(),
 					info.getColorMethod(), ref);
@@ -41,6 +41,13 @@ public class CompositeSprite implements Sprite {
 	private Sprite adjSprite;
 	/** Reference object made up from the meaningful slave references */
 	private final CompositeRef reference;
+	/**
+	 * Cache holding the composite, or <code>null</code>. The size of the
+	 * cache entry is updated when the composite creates its own images.
+	 */
+	private final SpriteCache cache;
+	/** Memory used by the images created for the composite, in bytes. */
+	private long imageSize;
 
 	/**
 	 * Get a composite of at least one {@link Sprite}. Note that the result
@@ -101,10 +108,10 @@ public class CompositeSprite implements Sprite {
 			// A proper composite. Return either a previously generated one,
 			// or create a new and cache that
 			CompositeRef ref = new CompositeRef(slaves, blend, adj);
-			Sprite composite = cache.get(ref);
+			Sprite composite = cache.get(SpriteCache.Region.TILES, ref);
 			if (composite == null) {
-				composite = new CompositeSprite(slaves, blend, adj, ref);
-				cache.add(composite);
+				composite = new CompositeSprite(slaves, blend, adj, ref, cache);
+				cache.add(SpriteCache.Region.TILES, ref, composite);
 			}
 			return composite;
 		}
@@ -120,12 +127,15 @@ public class CompositeSprite implements Sprite {
 	 * @param blend blending mode for the blend layer
 	 * @param adj sprite for the blend layer
 	 * @param reference Identifier for cache lookups
+	 * @param cache cache where the composite is stored with the reference,
+	 * 	or <code>null</code>
 	 */
 	private CompositeSprite(List<Sprite> slaves, Composite blend, Sprite adj,
-			CompositeRef reference) {
+			CompositeRef reference, SpriteCache cache) {
 		// Get a copy. The caller can modify the list
 		this.slaves = new ArrayList<Sprite>(slaves);
 		this.reference = reference;
+		this.cache = cache;
 		if (blend != null) {
 			this.adjSprite = adj;
 			this.blend = blend;
@@ -165,6 +175,25 @@ public class CompositeSprite implements Sprite {
 		return slaves.get(0).getHeight();
 	}
 
+	/**
+	 * Check if the composite always looks the same, so that it can be
+	 * pre-rendered. Composites containing animations are not static.
+	 *
+	 * @return <code>true</code> if all the layers could be merged to a plain
+	 * 	image, otherwise <code>false</code>
+	 */
+	public boolean isStatic() {
+		if (!composited) {
+			composite();
+		}
+		for (int i = 0; i < slaves.size(); i++) {
+			if (!(slaves.get(i) instanceof ImageSprite)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	@Override
 	public Object getReference() {
 		return reference;
@@ -175,10 +204,22 @@ public class CompositeSprite implements Sprite {
 		return slaves.get(0).getWidth();
 	}
 
+	/**
+	 * Get the memory used by the images the composite has created of its
+	 * own. The images of the layers are not counted. Nothing is created
+	 * before the composite is first drawn.
+	 *
+	 * @return size in bytes
+	 */
+	long getImageSize() {
+		return imageSize;
+	}
+
 	/**
 	 * Merge all ImageSprite layers.
 	 */
 	private void composite() {
+		List<Sprite> original = slaves;
 		ArrayList<Sprite> newSlaves = new ArrayList<Sprite>(slaves.size());
 		ImageSprite floor = null;
 		ListIterator<Sprite> iter = slaves.listIterator();
@@ -234,6 +275,51 @@ public class CompositeSprite implements Sprite {
 			adjSprite = null;
 		}
 		composited = true;
+
+		// Charge the new images to the cache entry
+		for (Sprite sprite : newSlaves) {
+			if (!containsSame(original, sprite)) {
+				imageSize += getCreatedSize(sprite);
+			}
+		}
+		if ((cache != null) && (imageSize > 0)) {
+			cache.updateSize(SpriteCache.Region.TILES, reference, this);
+		}
+	}
+
+	/**
+	 * Get the memory used by a layer created when compositing.
+	 *
+	 * @param sprite merged image, or an animation of blended frames
+	 * @return size in bytes
+	 */
+	private static long getCreatedSize(Sprite sprite) {
+		if (sprite instanceof AnimatedSprite) {
+			long size = 0;
+			for (Sprite frame : ((AnimatedSprite) sprite).frames) {
+				if (frame instanceof CompositeSprite) {
+					size += ((CompositeSprite) frame).getImageSize();
+				}
+			}
+			return size;
+		}
+		return SpriteCache.estimateSize(sprite);
+	}
+
+	/**
+	 * Check if a list contains a sprite. Sprites are compared by identity.
+	 *
+	 * @param list list to search
+	 * @param sprite sprite to look for
+	 * @return <code>true</code> if the sprite is in the list
+	 */
+	private static boolean containsSame(List<Sprite> list, Sprite sprite) {
+		for (Sprite candidate : list) {
+			if (candidate == sprite) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -288,7 +374,10 @@ public class CompositeSprite implements Sprite {
 					 * be nice to render once the partial stacks that appear in
 					 * more than one composite.
 					 */
-					newFrames[i] = new CompositeSprite(tmp, blend, adjSprite, null);
+					CompositeSprite frame = new CompositeSprite(tmp, blend, adjSprite, null, null);
+					// Create the frame images now, so that they are charged to this composite
+					frame.composite();
+					newFrames[i] = frame;
 					tmp.clear();
 				}
 				iter.set(new AnimatedSprite(newFrames, parent.delays, true, null));
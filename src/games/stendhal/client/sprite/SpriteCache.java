@@ -12,13 +12,22 @@
  ***************************************************************************/
 package games.stendhal.client.sprite;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 
-import games.stendhal.client.MemoryCache;
+import games.stendhal.client.gui.wt.core.WtWindowManager;
 
 /**
- * A cache of keyed sprites.
+ * A cache of keyed sprites. The sprites are stored in separate regions, each
+ * having a memory budget. When the estimated pixel memory of the sprites of
+ * a region exceeds its budget, the least recently used sprites of the region
+ * are dropped. The budgets are set in megabytes with the client settings
+ * <code>ui.sprite_cache.images</code>, <code>ui.sprite_cache.tiles</code>,
+ * <code>ui.sprite_cache.outfits</code> and <code>ui.sprite_cache.effects</code>.
  */
 public class SpriteCache {
 	/**
@@ -26,22 +35,77 @@ public class SpriteCache {
 	 */
 	private static final Logger LOGGER = Logger.getLogger(SpriteCache.class);
 
+	/**
+	 * Estimated memory used by a sprite besides its pixels.
+	 */
+	private static final int SPRITE_OVERHEAD = 64;
+
 	/**
 	 * The singleton.
 	 */
 	private static final SpriteCache sharedInstance = new SpriteCache();
 
 	/**
-	 * The sprite map.
+	 * Cache regions. Each region has its own memory budget, so that for
+	 * example a crowd of players with differing outfits can not push the map
+	 * tiles out of the cache.
 	 */
-	private MemoryCache<Object, Sprite> sprites;
+	public enum Region {
+		/** Images loaded from files, and anything not in the other regions. */
+		IMAGES(64),
+		/** Map tiles, tile composites and other parts of split images. */
+		TILES(64),
+		/** Player and NPC outfits. */
+		OUTFITS(32),
+		/** Color adjusted sprites. */
+		EFFECTS(16);
+
+		/** Default budget in megabytes. */
+		private final int defaultBudget;
+
+		/**
+		 * Create a Region.
+		 *
+		 * @param defaultBudget default budget in megabytes
+		 */
+		private Region(int defaultBudget) {
+			this.defaultBudget = defaultBudget;
+		}
+
+		/**
+		 * Get the configured budget of the region.
+		 *
+		 * @return budget in bytes
+		 */
+		private long getBudget() {
+			String key = "ui.sprite_cache." + name().toLowerCase(Locale.ENGLISH);
+			return 1024L * 1024L * WtWindowManager.getInstance().getPropertyInt(key, defaultBudget);
+		}
+	}
 
+	/**
+	 * The sprites of each region.
+	 */
+	private final Segment[] segments = new Segment[Region.values().length];
 
 	/**
-	 * Create a sprite cache.
+	 * Create a sprite cache using the configured budgets.
 	 */
 	public SpriteCache() {
-		sprites = new MemoryCache<Object, Sprite>();
+		for (Region region : Region.values()) {
+			segments[region.ordinal()] = new Segment(region.getBudget());
+		}
+	}
+
+	/**
+	 * Create a sprite cache using the same budget for all the regions.
+	 *
+	 * @param budget budget of each region in bytes
+	 */
+	SpriteCache(long budget) {
+		for (Region region : Region.values()) {
+			segments[region.ordinal()] = new Segment(budget);
+		}
 	}
 
 	//
@@ -49,29 +113,30 @@ public class SpriteCache {
 	//
 
 	/**
-	 * Add a sprite to the cache. This will use a sprite's getReference() value
-	 * as the cache key.
+	 * Add a sprite to the image region of the cache.
 	 *
+	 * @param key
+	 *            The cache key.
 	 * @param sprite
 	 *            The sprite to add.
-	 *
-	 * @see Sprite#getReference()
 	 */
-	void add(final Sprite sprite) {
-		add(sprite.getReference(), sprite);
+	public void add(final Object key, final Sprite sprite) {
+		add(Region.IMAGES, key, sprite);
 	}
 
 	/**
 	 * Add a sprite to the cache.
 	 *
+	 * @param region
+	 *            The cache region.
 	 * @param key
 	 *            The cache key.
 	 * @param sprite
 	 *            The sprite to add.
 	 */
-	public void add(final Object key, final Sprite sprite) {
-		if (key != null) {
-			sprites.put(key, sprite);
+	public void add(final Region region, final Object key, final Sprite sprite) {
+		if ((key != null) && (sprite != null)) {
+			segments[region.ordinal()].put(key, sprite);
 			LOGGER.debug("SpriteCache - add: " + key);
 		}
 	}
@@ -86,7 +151,7 @@ public class SpriteCache {
 	}
 
 	/**
-	 * Get a cached sprite.
+	 * Get a cached sprite from the image region.
 	 *
 	 * @param key
 	 *            The cache key.
@@ -94,6 +159,221 @@ public class SpriteCache {
 	 * @return A sprite, or <code>null</code> if not found.
 	 */
 	public Sprite get(final Object key) {
-		return sprites.get(key);
+		return get(Region.IMAGES, key);
+	}
+
+	/**
+	 * Get a cached sprite.
+	 *
+	 * @param region
+	 *            The cache region.
+	 * @param key
+	 *            The cache key.
+	 *
+	 * @return A sprite, or <code>null</code> if not found.
+	 */
+	public Sprite get(final Region region, final Object key) {
+		if (key == null) {
+			return null;
+		}
+		return segments[region.ordinal()].get(key);
+	}
+
+	/**
+	 * Get the number of cache hits of a region.
+	 *
+	 * @param region cache region
+	 * @return hit count
+	 */
+	public long getHits(Region region) {
+		return segments[region.ordinal()].getHits();
+	}
+
+	/**
+	 * Get the number of cache misses of a region.
+	 *
+	 * @param region cache region
+	 * @return miss count
+	 */
+	public long getMisses(Region region) {
+		return segments[region.ordinal()].getMisses();
+	}
+
+	/**
+	 * Get the number of sprites dropped from a region due to its budget.
+	 *
+	 * @param region cache region
+	 * @return eviction count
+	 */
+	public long getEvictions(Region region) {
+		return segments[region.ordinal()].getEvictions();
+	}
+
+	/**
+	 * Get the estimated memory used by the sprites of a region.
+	 *
+	 * @param region cache region
+	 * @return memory in bytes
+	 */
+	public long getMemoryUsage(Region region) {
+		return segments[region.ordinal()].getMemoryUsage();
+	}
+
+	/**
+	 * Get a summary of the cache state for debugging.
+	 *
+	 * @return human readable statistics of all the regions
+	 */
+	public String getStatistics() {
+		StringBuilder sb = new StringBuilder();
+		for (Region region : Region.values()) {
+			Segment segment = segments[region.ordinal()];
+			if (sb.length() > 0) {
+				sb.append("; ");
+			}
+			sb.append(region.name().toLowerCase(Locale.ENGLISH));
+			sb.append(": ");
+			sb.append(segment.toString());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Update the estimated size of a cached sprite, after it has created
+	 * images of its own. Nothing is done if the key does not map to the
+	 * sprite anymore.
+	 *
+	 * @param region cache region
+	 * @param key cache key
+	 * @param sprite sprite whose size changed
+	 */
+	void updateSize(Region region, Object key, Sprite sprite) {
+		if (key != null) {
+			segments[region.ordinal()].updateSize(key, sprite);
+		}
+	}
+
+	/**
+	 * Estimate the memory used by a sprite. The pixels of image sprites are
+	 * counted in full. A tile region is charged for its area of the image it
+	 * refers to, as the image is kept in memory as long as any of its
+	 * regions are. A composite is charged for the images it has created when
+	 * it was first drawn. Animations refer to images of other sprites.
+	 *
+	 * @param sprite sprite
+	 * @return estimated size in bytes
+	 */
+	static long estimateSize(Sprite sprite) {
+		if ((sprite instanceof ImageSprite) || (sprite instanceof TileSprite)) {
+			return 4L * sprite.getWidth() * sprite.getHeight() + SPRITE_OVERHEAD;
+		} else if (sprite instanceof CompositeSprite) {
+			return ((CompositeSprite) sprite).getImageSize() + SPRITE_OVERHEAD;
+		}
+		return SPRITE_OVERHEAD;
+	}
+
+	/**
+	 * The sprites of one cache region, in least recently used order.
+	 */
+	private static final class Segment {
+		/** Sprites in access order. */
+		private final Map<Object, Entry> sprites = new LinkedHashMap<Object, Entry>(256, 0.75f, true);
+		/** Memory budget in bytes. */
+		private final long budget;
+		/** Estimated memory in use. */
+		private long size;
+		private long hits;
+		private long misses;
+		private long evictions;
+
+		/**
+		 * Create a new Segment.
+		 *
+		 * @param budget memory budget in bytes
+		 */
+		Segment(long budget) {
+			this.budget = budget;
+		}
+
+		synchronized Sprite get(Object key) {
+			Entry entry = sprites.get(key);
+			if (entry != null) {
+				hits++;
+				return entry.sprite;
+			}
+			misses++;
+			return null;
+		}
+
+		synchronized void put(Object key, Sprite sprite) {
+			Entry entry = new Entry(sprite);
+			Entry old = sprites.put(key, entry);
+			if (old != null) {
+				size -= old.size;
+			}
+			size += entry.size;
+			evict();
+		}
+
+		synchronized void updateSize(Object key, Sprite sprite) {
+			Entry old = sprites.get(key);
+			if ((old != null) && (old.sprite == sprite)) {
+				Entry entry = new Entry(sprite);
+				sprites.put(key, entry);
+				size += entry.size - old.size;
+				evict();
+			}
+		}
+
+		/**
+		 * Drop the least recently used sprites until the region is within
+		 * its budget.
+		 */
+		private void evict() {
+			Iterator<Entry> it = sprites.values().iterator();
+			// Keep the newest sprite even if it alone is over the budget
+			while ((size > budget) && (sprites.size() > 1)) {
+				size -= it.next().size;
+				it.remove();
+				evictions++;
+			}
+		}
+
+		synchronized long getHits() {
+			return hits;
+		}
+
+		synchronized long getMisses() {
+			return misses;
+		}
+
+		synchronized long getEvictions() {
+			return evictions;
+		}
+
+		synchronized long getMemoryUsage() {
+			return size;
+		}
+
+		@Override
+		public synchronized String toString() {
+			long lookups = hits + misses;
+			double hitRate = (lookups > 0) ? 100.0 * hits / lookups : 0.0;
+			return String.format(Locale.ENGLISH, "%d sprites, %.1f/%.1f MB, hit rate %.1f%%, %d evictions",
+					sprites.size(), size / 1048576.0, budget / 1048576.0, hitRate, evictions);
+		}
+	}
+
+	/**
+	 * A cached sprite and its estimated size.
+	 */
+	private static final class Entry {
+		private final Sprite sprite;
+		private final long size;
+
+		Entry(Sprite sprite) {
+			this.sprite = sprite;
+			size = estimateSize(sprite);
+		}
 	}
 }
@@ -265,7 +265,7 @@ public class SpriteStore {
 		final SpriteCache cache = SpriteCache.get();
 
 		String realRef = createModifiedRef(baseRef, color, blend);
-		Sprite sprite = cache.get(realRef);
+		Sprite sprite = cache.get(SpriteCache.Region.EFFECTS, realRef);
 		if (sprite == null) {
 			sprite = modifySprite(getSprite(baseRef), color, blend, realRef);
 		}
@@ -298,6 +298,24 @@ public class SpriteStore {
 	 * @return modified sprite
 	 */
 	public Sprite modifySprite(Sprite base, Color color, Composite blend, Object ref) {
+		return modifySprite(base, color, blend, ref, SpriteCache.Region.EFFECTS);
+	}
+
+	/**
+	 * Get a modified variant of a sprite, and store it in a specific sprite
+	 * cache region. The existence of a previous instance is <b>not</b>
+	 * checked, so this should not be called unless retrieving an existing
+	 * modified sprite has failed.
+	 *
+	 * @param base original sprite
+	 * @param color adjustment color
+	 * @param blend blend mode for applying the adjustment color
+	 * @param ref reference for the new sprite
+	 * @param region cache region for the new sprite
+	 * @return modified sprite
+	 */
+	public Sprite modifySprite(Sprite base, Color color, Composite blend, Object ref,
+			SpriteCache.Region region) {
 		int width = base.getWidth();
 		int height = base.getHeight();
 		BufferedImage image = gc.createCompatibleImage(width, height,
@@ -311,7 +329,7 @@ public class SpriteStore {
 
 		Sprite sprite = new ImageSprite(image, ref);
 		SpriteCache cache = SpriteCache.get();
-		cache.add(ref, sprite);
+		cache.add(region, ref, sprite);
 
 		return sprite;
 	}
@@ -440,14 +458,14 @@ public class SpriteStore {
 		final TSRef reference = TileSprite.createReference(sprite, x, y, width,
 				height);
 
-		Sprite tile = cache.get(reference);
+		Sprite tile = cache.get(SpriteCache.Region.TILES, reference);
 
 		if (tile == null) {
 			tile = sprite.createRegion(x, y, width, height, reference);
 			// tile = new TileSprite(sprite, x, y, width, height, reference);
 
 			if (reference != null) {
-				cache.add(reference, tile);
+				cache.add(SpriteCache.Region.TILES, reference, tile);
 			}
 		}
 
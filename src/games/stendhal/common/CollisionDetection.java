@@ -28,10 +28,14 @@ public class CollisionDetection {
 
 	private int height;
 
+	/** Number of changes done to the map. */
+	private int modificationCount;
+
 	/**
 	 * Clear the collision map.
 	 */
 	public void clear() {
+		modificationCount++;
 		if (map == null) {
 			map = new CollisionMap(width, height);
 		}
@@ -66,6 +70,7 @@ public class CollisionDetection {
 		if ((x < 0) || (x >= width) || (y < 0) || (y >= height)) {
 			return;
 		}
+		modificationCount++;
 		map.set(x, y);
 	}
 
@@ -91,6 +96,7 @@ public class CollisionDetection {
 				}
 			}
 		}
+		modificationCount++;
 	}
 
 	/**
@@ -195,6 +201,16 @@ public class CollisionDetection {
 		return map.get(x, y);
 	}
 
+	/**
+	 * Get the number of changes done to the map. Data derived from the map
+	 * can use this to check if it is still up to date.
+	 *
+	 * @return modification count
+	 */
+	public int getModificationCount() {
+		return modificationCount;
+	}
+
 	/**
 	 * Get the width of the collision map.
 	 *
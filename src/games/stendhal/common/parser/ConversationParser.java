@@ -36,6 +36,9 @@ public final class ConversationParser extends ErrorBuffer {
     /** A cache to hold pre-parsed matching Sentences. */
     private static Map<String, Sentence> matchingSentenceCache = new HashMap<String, Sentence>();
 
+    /** The text and result of the last parseCached() call. */
+    private static volatile ParsedText lastParsed;
+
     /** Tokenizer to split a sentence into words */
     private final transient StringTokenizer tokenizer;
 
@@ -135,6 +138,32 @@ public final class ConversationParser extends ErrorBuffer {
         return parse(text, new ConversationContext());
     }
 
+    /**
+     * Parse function without conversation context, reusing the result of the
+     * previous call if it was for the same text. Several NPCs usually hear
+     * the same text said by a player, so they can share the parsed sentence.
+     * The result is parsed again if the word list has changed in between.
+     * The returned sentence is shared, and must not be modified.
+     *
+     * @param text
+     * @return the parsed text
+     */
+    public static Sentence parseCached(final String text) {
+        final ParsedText last = lastParsed;
+        final WordList words = WordList.getInstance();
+
+        if ((last != null) && (text != null) && text.equals(last.text)
+                && (last.modificationCount == words.getModificationCount())) {
+            return last.sentence;
+        }
+
+        final Sentence sentence = parse(text);
+        // parsing may add unknown words, so take the count afterwards
+        lastParsed = new ParsedText(text, sentence, words.getModificationCount());
+
+        return sentence;
+    }
+
     /**
      * Parse the given text sentence to be used as matching source.
      *
@@ -318,4 +347,20 @@ public final class ConversationParser extends ErrorBuffer {
         return newText;
     }
 
+
+    /**
+     * A parsed text, and the resulting sentence.
+     */
+    private static final class ParsedText {
+        private final String text;
+        private final Sentence sentence;
+        /** Word list modification count when the text was parsed. */
+        private final int modificationCount;
+
+        ParsedText(final String text, final Sentence sentence, final int modificationCount) {
+            this.text = text;
+            this.sentence = sentence;
+            this.modificationCount = modificationCount;
+        }
+    }
 }
@@ -59,6 +59,9 @@ final public class WordList {
 	// We keep house holding the usage of registered subject names (see registerSubjectName).
 	private Map<String, Integer> subjectRefCount = new HashMap<String, Integer>();
 
+	/** Number of changes to the word list, used to check the validity of parse results. */
+	private volatile int modificationCount;
+
 	/** instance variable with package protection because of FindBugs hint */
 	static private WordList instance;
 
@@ -582,6 +585,8 @@ final public class WordList {
 
 			nameSet.add(new CompoundName(parsed, typeString));
 		}
+
+		modificationCount++;
 	}
 
 	/**
@@ -645,6 +650,8 @@ final public class WordList {
 				words.remove(expr.getNormalized());
 			}
 		}
+
+		modificationCount++;
 	}
 
 	/**
@@ -714,6 +721,7 @@ final public class WordList {
 			newEntry.setType(new ExpressionType(VERB_DYNAMIC));
 
 			words.put(key, newEntry);
+			modificationCount++;
 //		} else if (!checkNameCompatibleLastType(entry, ExpressionType.VERB)) {
 //	 		logger.warn("verb name already registered with incompatible expression type: " +
 //			entry.getNormalizedWithTypeString());
@@ -737,6 +745,7 @@ final public class WordList {
 			// add the new entry
 			entry.setNormalized(key);
 			words.put(key, entry);
+			modificationCount++;
 		} else {
 			logger.warn("word already known: " + str + " -> "
 					+ entry.getNormalized());
@@ -745,6 +754,16 @@ final public class WordList {
 		return entry;
 	}
 
+	/**
+	 * Get the number of changes to the word list. Parse results are valid as
+	 * long as the count stays the same.
+	 *
+	 * @return modification count
+	 */
+	public int getModificationCount() {
+		return modificationCount;
+	}
+
 	/**
 	 * Return number of word entries.
 	 * @return number of entries
@@ -52,6 +52,15 @@ public class TileSetDefinition implements Serializable {
 		this.gid = firstGid;
 	}
 
+	/**
+	 * Returns the name of the tileset.
+	 *
+	 * @return name, or <code>null</code> if the tileset has none
+	 */
+	public String getName() {
+		return name;
+	}
+
 	/**
 	 * Returns the id where this tileset begins to number tiles.
 	 *
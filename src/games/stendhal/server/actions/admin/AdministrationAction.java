@@ -57,6 +57,7 @@ public abstract class AdministrationAction implements ActionListener {
 		TeleportAction.register();
 		TeleportToAction.register();
 		TellAllAction.register();
+		TurnProfileAction.register();
 		WrapAction.register();
 		StoreMessageOnBehalfOfPlayerAction.register();
 		REQUIRED_ADMIN_LEVELS.put("super", 5000);
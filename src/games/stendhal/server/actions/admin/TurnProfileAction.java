@@ -0,0 +1,53 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.actions.admin;
+
+import static games.stendhal.common.constants.Actions.TARGET;
+
+import games.stendhal.server.actions.CommandCenter;
+import games.stendhal.server.core.engine.profiling.TurnProfiler;
+import games.stendhal.server.entity.player.Player;
+import marauroa.common.game.RPAction;
+
+/**
+ * Shows the turn profiling data, and turns the profiling on and off.
+ * <p>
+ * Usage: <code>/turnprofile [on|off|reset]</code>
+ */
+public class TurnProfileAction extends AdministrationAction {
+	private static final String TURNPROFILE = "turnprofile";
+
+	public static void register() {
+		CommandCenter.register(TURNPROFILE, new TurnProfileAction(), 600);
+	}
+
+	@Override
+	protected void perform(final Player player, final RPAction action) {
+		final TurnProfiler profiler = TurnProfiler.get();
+		final String command = action.get(TARGET);
+
+		if (command == null) {
+			player.sendPrivateText(profiler.getReport());
+		} else if ("on".equals(command)) {
+			profiler.setEnabled(true);
+			player.sendPrivateText("Turn profiling enabled.");
+		} else if ("off".equals(command)) {
+			profiler.setEnabled(false);
+			player.sendPrivateText("Turn profiling disabled.");
+		} else if ("reset".equals(command)) {
+			profiler.reset();
+			player.sendPrivateText("Turn profiling data cleared.");
+		} else {
+			player.sendPrivateText("Usage: /turnprofile [on|off|reset]");
+		}
+	}
+}
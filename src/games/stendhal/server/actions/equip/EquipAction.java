@@ -92,7 +92,7 @@ public class EquipAction extends EquipmentAction {
 					((Item) entity).setFromCorpse(false);
 				}
 				player.incLootForItem(entity.getTitle(), amount);
-				SingletonRepository.getAchievementNotifier().onItemLoot(player);
+				SingletonRepository.getAchievementNotifier().onItemLoot(player, entity.getTitle());
 			}
 			if (entity instanceof Item) {
 				((Item) entity).autobind(player.getName());
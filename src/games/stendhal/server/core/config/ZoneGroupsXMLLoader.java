@@ -8,6 +8,7 @@ package games.stendhal.server.core.config;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.log4j.Logger;
@@ -47,19 +48,33 @@ public class ZoneGroupsXMLLoader extends DefaultHandler {
 		final GroupsXMLLoader groupsLoader = new GroupsXMLLoader(uri);
 		final List<URI> zoneGroups = groupsLoader.load();
 
-		// Load each group
-		for (final URI tempUri : zoneGroups) {
-			LOGGER.debug("Loading zone group [" + tempUri + "]");
+		/*
+		 * Read all the groups first, so that the maps of all zones are
+		 * prepared in parallel while the zones are set up in order.
+		 */
+		final ZoneMapLoader mapLoader = new ZoneMapLoader();
+		try {
+			final List<ZonesXMLLoader> loaders = new ArrayList<ZonesXMLLoader>();
+			for (final URI tempUri : zoneGroups) {
+				LOGGER.debug("Loading zone group [" + tempUri + "]");
 
-			final ZonesXMLLoader loader = new ZonesXMLLoader(tempUri);
+				final ZonesXMLLoader loader = new ZonesXMLLoader(tempUri);
 
-			try {
-				loader.load();
-			} catch (final SAXException ex) {
-				LOGGER.error("Error loading zone group: " + tempUri, ex);
-			} catch (final IOException ex) {
-				LOGGER.error("Error loading zone group: " + tempUri, ex);
+				try {
+					loader.prepare(mapLoader);
+					loaders.add(loader);
+				} catch (final SAXException ex) {
+					LOGGER.error("Error loading zone group: " + tempUri, ex);
+				} catch (final IOException ex) {
+					LOGGER.error("Error loading zone group: " + tempUri, ex);
+				}
 			}
+
+			for (final ZonesXMLLoader loader : loaders) {
+				loader.complete();
+			}
+		} finally {
+			mapLoader.shutdown();
 		}
 	}
 }
@@ -0,0 +1,110 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import games.stendhal.server.core.config.zone.TMXLoader;
+import games.stendhal.server.core.config.zone.ZoneMapCache;
+import games.stendhal.server.core.config.zone.ZoneMapData;
+import marauroa.common.Configuration;
+
+/**
+ * Prepares zone maps on a pool of worker threads. Reading the TMX files,
+ * encoding the layers for the clients and building the collision maps are
+ * independent of the world, so they can be done in parallel while the zones
+ * are created and configured in order on the loading thread.
+ * <p>
+ * The number of threads can be set with <code>zone_loader_threads</code>
+ * in server.ini, and defaults to the number of processors. If
+ * <code>zone_cache_directory</code> is set, the prepared maps are cached in
+ * that directory.
+ */
+public class ZoneMapLoader {
+	private static final Logger logger = Logger.getLogger(ZoneMapLoader.class);
+
+	private final ExecutorService executor;
+	/** Cache of prepared maps, or <code>null</code> if not caching. */
+	private final ZoneMapCache cache;
+
+	/**
+	 * Create a ZoneMapLoader configured in server.ini.
+	 */
+	public ZoneMapLoader() {
+		int threads = Runtime.getRuntime().availableProcessors();
+		String cacheDirectory = null;
+		try {
+			final Configuration configuration = Configuration.getConfiguration();
+			threads = configuration.getInt("zone_loader_threads", threads);
+			cacheDirectory = configuration.get("zone_cache_directory", null);
+		} catch (final IOException e) {
+			logger.error(e, e);
+		}
+		executor = createExecutor(threads);
+		if (cacheDirectory != null) {
+			cache = new ZoneMapCache(new File(cacheDirectory));
+		} else {
+			cache = null;
+		}
+	}
+
+	/**
+	 * Create a new ZoneMapLoader.
+	 *
+	 * @param threads number of worker threads
+	 * @param cache cache of prepared maps, or <code>null</code>
+	 */
+	ZoneMapLoader(final int threads, final ZoneMapCache cache) {
+		executor = createExecutor(threads);
+		this.cache = cache;
+	}
+
+	private static ExecutorService createExecutor(final int threads) {
+		return Executors.newFixedThreadPool(Math.max(1, threads),
+				new ThreadFactoryBuilder().setNameFormat("zone-loader-%d").setDaemon(true).build());
+	}
+
+	/**
+	 * Start preparing a map.
+	 *
+	 * @param filename name of the TMX file
+	 * @return the prepared map, when it is ready. Getting it throws an
+	 * 	ExecutionException if the map could not be prepared
+	 */
+	public Future<ZoneMapData> prepare(final String filename) {
+		return executor.submit(new Callable<ZoneMapData>() {
+			@Override
+			public ZoneMapData call() throws Exception {
+				if (cache != null) {
+					return cache.load(filename);
+				}
+				return ZoneMapData.create(TMXLoader.load(filename));
+			}
+		});
+	}
+
+	/**
+	 * Stop the worker threads after the maps already requested are ready.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+}
@@ -14,7 +14,11 @@ import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 import org.w3c.dom.Document;
@@ -24,8 +28,6 @@ import org.xml.sax.SAXException;
 //
 //
 
-import games.stendhal.common.tiled.LayerDefinition;
-import games.stendhal.common.tiled.StendhalMapStructure;
 import games.stendhal.server.core.config.zone.AttributesXMLReader;
 import games.stendhal.server.core.config.zone.ConfiguratorXMLReader;
 import games.stendhal.server.core.config.zone.EntitySetupXMLReader;
@@ -33,7 +35,7 @@ import games.stendhal.server.core.config.zone.PortalSetupXMLReader;
 import games.stendhal.server.core.config.zone.RegionNameSubstitutionHelper;
 import games.stendhal.server.core.config.zone.SetupDescriptor;
 import games.stendhal.server.core.config.zone.SetupXMLReader;
-import games.stendhal.server.core.config.zone.TMXLoader;
+import games.stendhal.server.core.config.zone.ZoneMapData;
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.StendhalRPWorld;
 import games.stendhal.server.core.engine.StendhalRPZone;
@@ -70,6 +72,11 @@ public final class ZonesXMLLoader {
 	 */
 	private final URI uri;
 
+	/**
+	 * Zones read from the group file, with their maps being prepared.
+	 */
+	private final Map<ZoneDesc, Future<ZoneMapData>> pending = new LinkedHashMap<ZoneDesc, Future<ZoneMapData>>();
+
 	/**
 	 * Create an XML based loader of zones.
 	 * @param uri the zone group file
@@ -93,6 +100,29 @@ public final class ZonesXMLLoader {
 	 *             If the resource was not found.
 	 */
 	public void load() throws SAXException, IOException {
+		final ZoneMapLoader mapLoader = new ZoneMapLoader();
+		try {
+			prepare(mapLoader);
+			complete();
+		} finally {
+			mapLoader.shutdown();
+		}
+	}
+
+	/**
+	 * Read the zone group file, and start preparing the maps of its zones.
+	 * The zones are added to the world by {@link #complete()}.
+	 *
+	 * @param mapLoader loader used for preparing the maps
+	 *
+	 * @throws SAXException
+	 *             If a SAX error occurred.
+	 * @throws IOException
+	 *             If an I/O error occurred.
+	 * @throws FileNotFoundException
+	 *             If the resource was not found.
+	 */
+	public void prepare(final ZoneMapLoader mapLoader) throws SAXException, IOException {
 		final InputStream in = ZonesXMLLoader.class.getResourceAsStream(uri.getPath());
 
 		if (in == null) {
@@ -100,24 +130,27 @@ public final class ZonesXMLLoader {
 		}
 
 		try {
-			load(in);
+			prepare(in, mapLoader);
 		} finally {
 			in.close();
 		}
 	}
 
 	/**
-	 * Loads a group of zones into a world using a config file.
+	 * Reads a group of zones using a config file, and starts preparing their
+	 * maps.
 	 *
 	 * @param in
 	 *            The config file stream.
+	 * @param mapLoader
+	 *            loader used for preparing the maps
 	 *
 	 * @throws SAXException
 	 *             If a SAX error occurred.
 	 * @throws IOException
 	 *             If an I/O error occurred.
 	 */
-	protected void load(final InputStream in) throws SAXException, IOException {
+	protected void prepare(final InputStream in, final ZoneMapLoader mapLoader) throws SAXException, IOException {
 		final Document doc = XMLUtil.parse(in);
 
 		// just to speed up starting of the server in while developing
@@ -127,9 +160,6 @@ public final class ZonesXMLLoader {
 		// if there is a problem with the zone
 		final String regex = System.getProperty("stendhal.zone.regex", ".*");
 
-		/*
-		 * Load each zone
-		 */
 		for (final Element element : XMLUtil.getElements(doc.getDocumentElement(), "zone")) {
 			final ZoneDesc zdesc = readZone(element);
 
@@ -142,60 +172,52 @@ public final class ZonesXMLLoader {
 				continue;
 			}
 
+			pending.put(zdesc, mapLoader.prepare(StendhalRPWorld.MAPS_FOLDER + zdesc.getFile()));
+		}
+	}
+
+	/**
+	 * Create and configure the zones read by {@link #prepare(ZoneMapLoader)},
+	 * in the order of the group file. Waits for the map of each zone to be
+	 * ready.
+	 */
+	public void complete() {
+		for (final Map.Entry<ZoneDesc, Future<ZoneMapData>> entry : pending.entrySet()) {
+			final ZoneDesc zdesc = entry.getKey();
+			final String name = zdesc.getName();
 			logger.info("Loading zone: " + name);
 
 			try {
-				final StendhalMapStructure zonedata = TMXLoader.load(StendhalRPWorld.MAPS_FOLDER
-						+ zdesc.getFile());
-
-				if (verifyMap(zdesc, zonedata)) {
-					final StendhalRPZone zone = load(zdesc, zonedata);
-
-					/*
-					 * Setup Descriptors
-					 */
-					final Iterator<SetupDescriptor> diter = zdesc.getDescriptors();
-
-					while (diter.hasNext()) {
-						diter.next().setup(zone);
-					}
-					// Zone configurators can add creatures, so this should be
-					// done after them
-					zone.calculateDangerLevel();
+				final StendhalRPZone zone = load(zdesc, entry.getValue().get());
+
+				/*
+				 * Setup Descriptors
+				 */
+				final Iterator<SetupDescriptor> diter = zdesc.getDescriptors();
+
+				while (diter.hasNext()) {
+					diter.next().setup(zone);
 				}
+				// Zone configurators can add creatures, so this should be
+				// done after them
+				zone.calculateDangerLevel();
+			} catch (final ExecutionException ex) {
+				logger.error("Error loading zone: " + name + " from " + zdesc.getFile(), ex.getCause());
 			} catch (final Exception ex) {
 				logger.error("Error loading zone: " + name, ex);
 			}
 		}
-	}
-
-	private static final String[] REQUIRED_LAYERS = { "0_floor", "1_terrain",
-			"2_object", "objects", "collision", "protection" };
-
-	private boolean verifyMap(final ZoneDesc zdesc, final StendhalMapStructure zonedata) {
-		for (final String layer : REQUIRED_LAYERS) {
-			if (!zonedata.hasLayer(layer)) {
-				logger.error("Required layer " + layer + " missing in zone "
-						+ zdesc.getFile());
-				return false;
-			}
-		}
-		return true;
+		pending.clear();
 	}
 
 	/**
-	 * Load zone data and create a new zone from it. Most of this should be moved
+	 * Create a new zone from prepared map data. Most of this should be moved
 	 * directly into ZoneXMLLoader.
 	 * @param desc the zone's descriptor
-	 * @param zonedata to be loaded
+	 * @param data the prepared map of the zone
 	 * @return the created zone
-	 * @throws SAXException if any xml parsing error happened
-	 * @throws IOException if any IO error happened
-	 *
-	 *
 	 */
-	protected StendhalRPZone load(final ZoneDesc desc, final StendhalMapStructure zonedata)
-			throws SAXException, IOException {
+	protected StendhalRPZone load(final ZoneDesc desc, final ZoneMapData data) {
 		final String name = desc.getName();
 
 		final StendhalRPZone zone;
@@ -205,22 +227,12 @@ public final class ZonesXMLLoader {
 			zone = createZone(desc, name);
 		}
 
-		zone.addTilesets(name + ".tilesets", zonedata.getTilesets());
-		zone.addLayer(name + ".0_floor", zonedata.getLayer("0_floor"));
-		zone.addLayer(name + ".1_terrain", zonedata.getLayer("1_terrain"));
-		zone.addLayer(name + ".2_object", zonedata.getLayer("2_object"));
-
-		// Roof layers are optional
-		loadOptionalLayer(zone, zonedata, "3_roof");
-		loadOptionalLayer(zone, zonedata, "4_roof_add");
-		// Effect layers are optional too
-		loadOptionalLayer(zone, zonedata, "blend_ground");
-		loadOptionalLayer(zone, zonedata, "blend_roof");
-
-		zone.addCollisionLayer(name + ".collision",
-				zonedata.getLayer("collision"));
-		zone.addProtectionLayer(name + ".protection",
-				zonedata.getLayer("protection"));
+		// tilesets, the layers including the optional roof and effect
+		// layers, collision and protection
+		for (final Map.Entry<String, byte[]> content : data.getContents().entrySet()) {
+			zone.addContent(name + "." + content.getKey(), content.getValue());
+		}
+		zone.setCollisionMaps(data.getCollision(), data.getNavigationGrid(), data.getProtection());
 
 		if (desc.isInterior()) {
 			zone.setPosition();
@@ -238,27 +250,11 @@ public final class ZonesXMLLoader {
 			logger.error(e, e);
 		}
 
-		zone.populate(zonedata.getLayer("objects"));
+		zone.populate(data.getObjectsLayer());
 
 		return zone;
 	}
 
-	/**
-	 * Load an optional layer, if present, to a zone.
-	 *
-	 * @param zone
-	 * @param zonedata
-	 * @param layerName
-	 * @throws IOException
-	 */
-	private void loadOptionalLayer(StendhalRPZone zone,
-			StendhalMapStructure zonedata, String layerName) throws IOException {
-		LayerDefinition layer = zonedata.getLayer(layerName);
-		if (layer != null) {
-			zone.addLayer(zone.getName() + "." + layerName, layer);
-		}
-	}
-
 	@SuppressWarnings("unchecked")
 	private StendhalRPZone createZone(final ZoneDesc desc, final String name)  {
 		try {
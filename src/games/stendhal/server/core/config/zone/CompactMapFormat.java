@@ -0,0 +1,93 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.config.zone;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import games.stendhal.common.tiled.LayerDefinition;
+import games.stendhal.common.tiled.StendhalMapStructure;
+import games.stendhal.common.tiled.TileSetDefinition;
+
+/**
+ * A compact binary form of a zone map for the web client. It holds the same
+ * data the client reads from a TMX file, but needs neither XML parsing nor
+ * base64 decoding of the layers. The whole map is gzip compressed, and
+ * uncompressed it has the layout
+ * <pre>
+ * "SMAP" version width height
+ * tileset count, for each tileset: image firstgid
+ * layer count, for each layer: name width*height tile ids
+ * </pre>
+ * Numbers are 32 bit little endian integers. Strings are stored as the
+ * length of the UTF-8 encoded string followed by its bytes.
+ */
+public final class CompactMapFormat {
+	/** Version of the format. Increase when the layout changes. */
+	public static final int VERSION = 1;
+	private static final byte[] MAGIC = { 'S', 'M', 'A', 'P' };
+
+	private CompactMapFormat() {
+		// static methods only
+	}
+
+	/**
+	 * Encode a map.
+	 *
+	 * @param map map to be encoded
+	 * @return compressed map data
+	 * @throws IOException if the map can not be encoded
+	 */
+	public static byte[] encode(final StendhalMapStructure map) throws IOException {
+		final ByteArrayOutputStream array = new ByteArrayOutputStream();
+		final OutputStream out = new GZIPOutputStream(array);
+		try {
+			out.write(MAGIC);
+			writeInt(out, VERSION);
+			writeInt(out, map.getWidth());
+			writeInt(out, map.getHeight());
+
+			writeInt(out, map.getTilesets().size());
+			for (final TileSetDefinition set : map.getTilesets()) {
+				// The same image the web client would pick from the TMX file
+				final String image = (set.getSource() != null) ? set.getSource() : set.getName();
+				writeString(out, image);
+				writeInt(out, set.getFirstGid());
+			}
+
+			writeInt(out, map.getLayers().size());
+			for (final LayerDefinition layer : map.getLayers()) {
+				writeString(out, layer.getName());
+				// The raw data is already in little endian order
+				out.write(layer.exposeRaw());
+			}
+		} finally {
+			out.close();
+		}
+		return array.toByteArray();
+	}
+
+	private static void writeInt(final OutputStream out, final int value) throws IOException {
+		out.write(value & 0xFF);
+		out.write((value >>> 8) & 0xFF);
+		out.write((value >>> 16) & 0xFF);
+		out.write((value >>> 24) & 0xFF);
+	}
+
+	private static void writeString(final OutputStream out, final String value) throws IOException {
+		final byte[] bytes = value.getBytes("UTF-8");
+		writeInt(out, bytes.length);
+		out.write(bytes);
+	}
+}
@@ -13,7 +13,9 @@
 package games.stendhal.server.core.config.zone;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -250,10 +252,45 @@ public class TMXLoader {
 	}
 
 	public StendhalMapStructure readMap(final String filename) throws Exception {
+		final InputStream is = open(filename);
+		try {
+			return readMap(filename, is);
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * Read a map from a stream.
+	 *
+	 * @param filename name of the map file
+	 * @param stream contents of the map file
+	 * @return map
+	 * @throws Exception if the map can not be read
+	 */
+	public StendhalMapStructure readMap(final String filename, final InputStream stream) throws Exception {
 		xmlPath = filename.substring(0,
 				filename.lastIndexOf(File.separatorChar) + 1);
 
-		InputStream is = getClass().getClassLoader().getResourceAsStream(
+		InputStream is = stream;
+
+		// Wrap with GZIP decoder for .tmx.gz files
+		if (filename.endsWith(".gz")) {
+			is = new GZIPInputStream(is);
+		}
+
+		return unmarshal(is);
+	}
+
+	/**
+	 * Open a map file.
+	 *
+	 * @param filename name of the map file
+	 * @return stream for reading the file as it is stored
+	 * @throws IOException if the file can not be opened
+	 */
+	private static InputStream open(final String filename) throws IOException {
+		InputStream is = TMXLoader.class.getClassLoader().getResourceAsStream(
 				filename);
 
 		if (is == null) {
@@ -263,13 +300,30 @@ public class TMXLoader {
 			final URL url = new URL(xmlFile);
 			is = url.openStream();
 		}
+		return is;
+	}
 
-		// Wrap with GZIP decoder for .tmx.gz files
-		if (filename.endsWith(".gz")) {
-			is = new GZIPInputStream(is);
+	/**
+	 * Read the contents of a map file without parsing it.
+	 *
+	 * @param filename name of the map file
+	 * @return the file contents as they are stored
+	 * @throws IOException if the file can not be read
+	 */
+	public static byte[] readFile(final String filename) throws IOException {
+		final InputStream is = open(filename);
+		try {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			int count = is.read(buffer);
+			while (count >= 0) {
+				out.write(buffer, 0, count);
+				count = is.read(buffer);
+			}
+			return out.toByteArray();
+		} finally {
+			is.close();
 		}
-
-		return unmarshal(is);
 	}
 
 	public static void main(final String[] args) throws Exception {
@@ -321,4 +375,16 @@ public class TMXLoader {
 	public static StendhalMapStructure load(final String filename) throws Exception {
 		return new TMXLoader().readMap(filename);
 	}
+
+	/**
+	 * Parse a map file that has already been read.
+	 *
+	 * @param filename name of the map file
+	 * @param data contents of the file
+	 * @return map
+	 * @throws Exception if the map can not be parsed
+	 */
+	public static StendhalMapStructure load(final String filename, final byte[] data) throws Exception {
+		return new TMXLoader().readMap(filename, new ByteArrayInputStream(data));
+	}
 }
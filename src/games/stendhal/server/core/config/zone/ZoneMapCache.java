@@ -0,0 +1,135 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.config.zone;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * An on-disk cache of prepared zone maps. The entries are keyed by a hash of
+ * the TMX file, so that changed maps are parsed again, and a cached map can
+ * be used without parsing the XML and encoding its layers.
+ * <p>
+ * Entries of maps that are not used anymore are not removed. The cache
+ * directory can be deleted at any time when the server is not running.
+ */
+public class ZoneMapCache {
+	private static final Logger logger = Logger.getLogger(ZoneMapCache.class);
+
+	/** Version of the entry format. Increase when ZoneMapData changes. */
+	private static final int VERSION = 1;
+
+	/** Cache directory. */
+	private final File directory;
+
+	/**
+	 * Create a new ZoneMapCache.
+	 *
+	 * @param directory cache directory. It is created if needed
+	 */
+	public ZoneMapCache(final File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Get a prepared map, using the cached version if the map file has not
+	 * changed.
+	 *
+	 * @param filename name of the TMX file
+	 * @return prepared map
+	 * @throws Exception if the map can not be read
+	 */
+	public ZoneMapData load(final String filename) throws Exception {
+		final byte[] tmx = TMXLoader.readFile(filename);
+		final File file = new File(directory, Hashing.sha1().hashBytes(tmx).toString() + ".bin");
+
+		if (file.isFile()) {
+			try {
+				final ZoneMapData data = read(file);
+				if (data != null) {
+					return data;
+				}
+			} catch (final IOException e) {
+				logger.warn("Ignoring damaged zone cache entry " + file + " of " + filename, e);
+			}
+		}
+
+		final ZoneMapData data = ZoneMapData.create(TMXLoader.load(filename, tmx));
+		try {
+			write(file, data);
+		} catch (final IOException e) {
+			logger.warn("Cannot write zone cache entry " + file + " of " + filename, e);
+		}
+		return data;
+	}
+
+	/**
+	 * Read a cache entry.
+	 *
+	 * @param file entry file
+	 * @return prepared map, or <code>null</code> if the entry is of an other
+	 * 	version
+	 * @throws IOException in case of a read error
+	 */
+	private ZoneMapData read(final File file) throws IOException {
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != VERSION) {
+				return null;
+			}
+			return ZoneMapData.read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Write a cache entry. The entry is written to a temporary file first,
+	 * so that other servers sharing the directory never see partial entries.
+	 *
+	 * @param file entry file
+	 * @param data prepared map
+	 * @throws IOException in case of a write error
+	 */
+	private void write(final File file, final ZoneMapData data) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+			throw new IOException("Cannot create directory " + directory);
+		}
+		final File temp = File.createTempFile("zone", ".tmp", directory);
+		try {
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				out.writeInt(VERSION);
+				data.write(out);
+			} finally {
+				out.close();
+			}
+			if (!temp.renameTo(file) && !file.isFile()) {
+				throw new IOException("Cannot rename " + temp + " to " + file);
+			}
+		} finally {
+			if (temp.exists()) {
+				temp.delete();
+			}
+		}
+	}
+}
@@ -0,0 +1,238 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.config.zone;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import games.stendhal.common.CollisionDetection;
+import games.stendhal.common.tiled.LayerDefinition;
+import games.stendhal.common.tiled.StendhalMapStructure;
+import games.stendhal.common.tiled.TileSetDefinition;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.pathfinder.NavigationGrid;
+
+/**
+ * The map of a zone, prepared for adding it to a zone: the data sent to the
+ * clients is already encoded, and the collision maps are built. Preparing
+ * the map does not depend on the world, so it can be done for several zones
+ * in parallel.
+ */
+public final class ZoneMapData {
+	/** Layers every zone map must have. */
+	private static final String[] REQUIRED_LAYERS = { "0_floor", "1_terrain",
+			"2_object", "objects", "collision", "protection" };
+
+	/**
+	 * Layers sent to the client, in the order they are added to the zone.
+	 * The roof and effect layers are optional.
+	 */
+	private static final String[] CLIENT_LAYERS = { "0_floor", "1_terrain",
+			"2_object", "3_roof", "4_roof_add", "blend_ground", "blend_roof",
+			"collision", "protection" };
+
+	/** Client data by content name suffix. */
+	private final Map<String, byte[]> contents;
+	/** Tilesets of the map. */
+	private final List<TileSetDefinition> tilesets;
+	/** The objects layer. Its data is built. */
+	private final LayerDefinition objects;
+	private final CollisionDetection collision;
+	private final NavigationGrid navigation;
+	private final CollisionDetection protection;
+
+	/**
+	 * Create a new ZoneMapData.
+	 *
+	 * @param contents client data by content name suffix
+	 * @param map map containing at least the objects, collision and
+	 * 	protection layers, and the tilesets
+	 */
+	private ZoneMapData(final Map<String, byte[]> contents, final StendhalMapStructure map) {
+		this.contents = Collections.unmodifiableMap(contents);
+		tilesets = map.getTilesets();
+		objects = map.getLayer("objects");
+		objects.build();
+		collision = new CollisionDetection();
+		collision.setCollisionData(map.getLayer("collision"));
+		navigation = new NavigationGrid(collision);
+		protection = new CollisionDetection();
+		protection.setCollisionData(map.getLayer("protection"));
+	}
+
+	/**
+	 * Prepare a map read from a TMX file.
+	 *
+	 * @param map map
+	 * @return prepared map
+	 * @throws IOException if the map lacks a required layer, or its layers
+	 * 	can not be encoded
+	 */
+	public static ZoneMapData create(final StendhalMapStructure map) throws IOException {
+		for (final String layer : REQUIRED_LAYERS) {
+			if (!map.hasLayer(layer)) {
+				throw new IOException("Required layer " + layer + " missing");
+			}
+		}
+
+		final Map<String, byte[]> contents = new LinkedHashMap<String, byte[]>();
+		contents.put("tilesets", StendhalRPZone.encodeTilesets(map.getTilesets()));
+		for (final String name : CLIENT_LAYERS) {
+			final LayerDefinition layer = map.getLayer(name);
+			if (layer != null) {
+				contents.put(name, layer.encode());
+			}
+		}
+		return new ZoneMapData(contents, map);
+	}
+
+	/**
+	 * Get the data to be sent to the clients, in the order it should be added
+	 * to the zone.
+	 *
+	 * @return encoded data by content name suffix. The content name is the
+	 * 	zone name followed by a dot and the suffix
+	 */
+	public Map<String, byte[]> getContents() {
+		return contents;
+	}
+
+	/**
+	 * Get the objects layer, for populating the zone.
+	 *
+	 * @return objects layer
+	 */
+	public LayerDefinition getObjectsLayer() {
+		return objects;
+	}
+
+	/**
+	 * Get the collision map.
+	 *
+	 * @return collision map
+	 */
+	public CollisionDetection getCollision() {
+		return collision;
+	}
+
+	/**
+	 * Get the navigation grid of the collision map.
+	 *
+	 * @return navigation grid
+	 */
+	public NavigationGrid getNavigationGrid() {
+		return navigation;
+	}
+
+	/**
+	 * Get the protection map.
+	 *
+	 * @return protection map
+	 */
+	public CollisionDetection getProtection() {
+		return protection;
+	}
+
+	/**
+	 * Write the data in a form that can be read back with
+	 * {@link #read(DataInputStream)}. Only the encoded data is written; the
+	 * collision maps are built again when reading it.
+	 *
+	 * @param out output stream
+	 * @throws IOException in case of a write error
+	 */
+	public void write(final DataOutputStream out) throws IOException {
+		out.writeInt(objects.getWidth());
+		out.writeInt(objects.getHeight());
+		out.writeInt(tilesets.size());
+		for (final TileSetDefinition tileset : tilesets) {
+			writeString(out, tileset.getName());
+			writeString(out, tileset.getSource());
+			out.writeInt(tileset.getFirstGid());
+		}
+		writeBytes(out, objects.encode());
+		out.writeInt(contents.size());
+		for (final Map.Entry<String, byte[]> entry : contents.entrySet()) {
+			out.writeUTF(entry.getKey());
+			writeBytes(out, entry.getValue());
+		}
+	}
+
+	/**
+	 * Read data written with {@link #write(DataOutputStream)}.
+	 *
+	 * @param in input stream
+	 * @return prepared map
+	 * @throws IOException in case of a read error
+	 */
+	public static ZoneMapData read(final DataInputStream in) throws IOException {
+		final StendhalMapStructure map = new StendhalMapStructure(in.readInt(), in.readInt());
+		final int tilesetCount = in.readInt();
+		for (int i = 0; i < tilesetCount; i++) {
+			final String name = readString(in);
+			final String source = readString(in);
+			map.addTileset(new TileSetDefinition(name, source, in.readInt()));
+		}
+		map.addLayer(decode(readBytes(in)));
+
+		final Map<String, byte[]> contents = new LinkedHashMap<String, byte[]>();
+		final int contentCount = in.readInt();
+		for (int i = 0; i < contentCount; i++) {
+			contents.put(in.readUTF(), readBytes(in));
+		}
+		map.addLayer(decode(contents.get("collision")));
+		map.addLayer(decode(contents.get("protection")));
+		return new ZoneMapData(contents, map);
+	}
+
+	private static void writeString(final DataOutputStream out, final String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readString(final DataInputStream in) throws IOException {
+		if (in.readBoolean()) {
+			return in.readUTF();
+		}
+		return null;
+	}
+
+	private static void writeBytes(final DataOutputStream out, final byte[] data) throws IOException {
+		out.writeInt(data.length);
+		out.write(data);
+	}
+
+	private static byte[] readBytes(final DataInputStream in) throws IOException {
+		final byte[] data = new byte[in.readInt()];
+		in.readFully(data);
+		return data;
+	}
+
+	private static LayerDefinition decode(final byte[] data) throws IOException {
+		if (data == null) {
+			throw new IOException("Missing layer data");
+		}
+		try {
+			return LayerDefinition.decode(new ByteArrayInputStream(data));
+		} catch (final ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+	}
+}
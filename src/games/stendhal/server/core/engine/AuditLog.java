@@ -0,0 +1,323 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.server.core.engine.dbcommand.AuditLogEntry;
+import games.stendhal.server.core.engine.dbcommand.WriteAuditLogCommand;
+import games.stendhal.server.core.events.TurnListener;
+import games.stendhal.server.core.events.TurnNotifier;
+import marauroa.common.Configuration;
+import marauroa.server.db.command.DBCommandQueue;
+
+/**
+ * Collects the game events, item log entries and kills, and writes them to
+ * the database in batches. A batch is written when it is full, or at the
+ * latest a few seconds after its first entry.
+ * <p>
+ * The number of entries that have not been written yet is limited. If the
+ * database falls that far behind, further entries are written to the spill
+ * log (<code>auditlog_overflow=spill</code>, the default) or dropped
+ * (<code>auditlog_overflow=drop</code>) until it catches up.
+ */
+public final class AuditLog implements TurnListener {
+	private static final Logger logger = Logger.getLogger(AuditLog.class);
+	/** Logger for the entries that could not be written to the database. */
+	private static final Logger spillLogger = Logger.getLogger(AuditLog.class.getName() + ".spill");
+
+	private static AuditLog instance;
+
+	/**
+	 * Receiver of the batches that are ready for writing.
+	 */
+	interface CommandSink {
+		/**
+		 * Queue a batch for writing.
+		 *
+		 * @param command command writing the batch
+		 */
+		void enqueue(WriteAuditLogCommand command);
+	}
+
+	/** Number of entries that are written together. */
+	private final int batchSize;
+	/** Maximum number of entries that may wait for the database. */
+	private final int capacity;
+	/** Seconds until a partial batch is written. */
+	private final int flushSeconds;
+	/** <code>true</code> if overflowing entries are spilled, <code>false</code> if they are dropped. */
+	private final boolean spill;
+	/** Receiver of the full batches. */
+	private final CommandSink sink;
+
+	/** Entries of the next batch. */
+	private final ArrayDeque<AuditLogEntry> buffer;
+	/** Entries that are queued for writing, but have not been written yet. */
+	private final AtomicInteger inFlight = new AtomicInteger();
+	/** <code>true</code> if a flush is scheduled. */
+	private boolean scheduled;
+	/** <code>true</code> while the capacity is exceeded. */
+	private boolean overflowing;
+
+	private long logged;
+	private long dropped;
+	private long spilled;
+	private int maxPending;
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong batches = new AtomicLong();
+	private final AtomicLong writeNanos = new AtomicLong();
+
+	/**
+	 * Get the audit log.
+	 *
+	 * @return audit log instance
+	 */
+	public static synchronized AuditLog get() {
+		if (instance == null) {
+			int batchSize = 500;
+			int capacity = 50000;
+			int flushSeconds = 2;
+			boolean spill = true;
+			try {
+				final Configuration configuration = Configuration.getConfiguration();
+				batchSize = configuration.getInt("auditlog_batch_size", batchSize);
+				capacity = configuration.getInt("auditlog_capacity", capacity);
+				flushSeconds = configuration.getInt("auditlog_flush_seconds", flushSeconds);
+				spill = !"drop".equals(configuration.get("auditlog_overflow", "spill"));
+			} catch (final IOException e) {
+				logger.error(e, e);
+			}
+			instance = new AuditLog(batchSize, capacity, flushSeconds, spill, new CommandSink() {
+				@Override
+				public void enqueue(final WriteAuditLogCommand command) {
+					DBCommandQueue.get().enqueue(command);
+				}
+			});
+		}
+		return instance;
+	}
+
+	/**
+	 * Create a new AuditLog.
+	 *
+	 * @param batchSize number of entries that are written together
+	 * @param capacity maximum number of entries that may wait for the database
+	 * @param flushSeconds seconds until a partial batch is written
+	 * @param spill <code>true</code> if overflowing entries should be
+	 * 	spilled, <code>false</code> if they should be dropped
+	 * @param sink receiver of the batches that are ready for writing
+	 */
+	AuditLog(final int batchSize, final int capacity, final int flushSeconds, final boolean spill,
+			final CommandSink sink) {
+		this.batchSize = Math.max(1, batchSize);
+		this.capacity = Math.max(this.batchSize, capacity);
+		this.flushSeconds = flushSeconds;
+		this.spill = spill;
+		this.sink = sink;
+		buffer = new ArrayDeque<AuditLogEntry>(this.batchSize);
+	}
+
+	/**
+	 * Add an entry to the log.
+	 *
+	 * @param entry logged entry
+	 */
+	public synchronized void log(final AuditLogEntry entry) {
+		logged++;
+		final int pending = getPending();
+		if (pending >= capacity) {
+			if (!overflowing) {
+				overflowing = true;
+				logger.warn("The database is " + pending + " audit log entries behind, "
+						+ (spill ? "spilling" : "dropping") + " new entries. " + this);
+			}
+			if (spill) {
+				spill(entry);
+				spilled++;
+			} else {
+				dropped++;
+			}
+			return;
+		}
+		if (overflowing && (pending < capacity / 2)) {
+			overflowing = false;
+			logger.info("The database caught up with the audit log. " + this);
+		}
+
+		buffer.add(entry);
+		maxPending = Math.max(maxPending, pending + 1);
+		if (buffer.size() >= batchSize) {
+			flush();
+		} else if (!scheduled) {
+			scheduled = true;
+			TurnNotifier.get().notifyInSeconds(flushSeconds, this);
+		}
+	}
+
+	/**
+	 * Queue the collected entries for writing.
+	 */
+	public synchronized void flush() {
+		if (buffer.isEmpty()) {
+			return;
+		}
+		final List<AuditLogEntry> entries = new ArrayList<AuditLogEntry>(buffer);
+		buffer.clear();
+		inFlight.addAndGet(entries.size());
+		sink.enqueue(new WriteAuditLogCommand(this, entries));
+	}
+
+	@Override
+	public synchronized void onTurnReached(final int currentTurn) {
+		scheduled = false;
+		flush();
+	}
+
+	/**
+	 * Called by the database thread after the transaction of a batch has
+	 * been committed.
+	 *
+	 * @param count number of written entries
+	 * @param nanos time used for writing
+	 */
+	public void onWritten(final int count, final long nanos) {
+		inFlight.addAndGet(-count);
+		written.addAndGet(count);
+		batches.incrementAndGet();
+		writeNanos.addAndGet(nanos);
+	}
+
+	/**
+	 * Called by the database thread when writing a batch failed and its
+	 * transaction was rolled back. The entries are handled like overflowing
+	 * entries.
+	 *
+	 * @param entries entries of the failed batch
+	 */
+	public void onFailed(final List<AuditLogEntry> entries) {
+		inFlight.addAndGet(-entries.size());
+		failed.addAndGet(entries.size());
+		if (spill) {
+			for (final AuditLogEntry entry : entries) {
+				spill(entry);
+			}
+		}
+	}
+
+	private void spill(final AuditLogEntry entry) {
+		spillLogger.info(entry);
+	}
+
+	/**
+	 * Get the number of entries that have not been written yet.
+	 *
+	 * @return number of buffered and queued entries
+	 */
+	public synchronized int getPending() {
+		return buffer.size() + inFlight.get();
+	}
+
+	/**
+	 * Get the highest number of entries that were waiting at the same time.
+	 *
+	 * @return maximum backlog
+	 */
+	public synchronized int getMaxPending() {
+		return maxPending;
+	}
+
+	/**
+	 * Get the number of logged entries.
+	 *
+	 * @return logged entries
+	 */
+	public synchronized long getLogged() {
+		return logged;
+	}
+
+	/**
+	 * Get the number of entries that were dropped because the database was
+	 * too far behind.
+	 *
+	 * @return dropped entries
+	 */
+	public synchronized long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * Get the number of entries that were spilled because the database was
+	 * too far behind.
+	 *
+	 * @return spilled entries
+	 */
+	public synchronized long getSpilled() {
+		return spilled;
+	}
+
+	/**
+	 * Get the number of entries written to the database.
+	 *
+	 * @return written entries
+	 */
+	public long getWritten() {
+		return written.get();
+	}
+
+	/**
+	 * Get the number of entries whose batch failed to write.
+	 *
+	 * @return failed entries
+	 */
+	public long getFailed() {
+		return failed.get();
+	}
+
+	/**
+	 * Get the number of batches written to the database.
+	 *
+	 * @return written batches
+	 */
+	public long getBatches() {
+		return batches.get();
+	}
+
+	/**
+	 * Get the average time used for writing a batch.
+	 *
+	 * @return milliseconds per batch
+	 */
+	public double getAverageBatchMillis() {
+		final long count = batches.get();
+		if (count == 0) {
+			return 0;
+		}
+		return writeNanos.get() / 1e6 / count;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "AuditLog [pending=" + getPending() + ", maxPending=" + maxPending
+				+ ", logged=" + logged + ", written=" + written + ", failed=" + failed
+				+ ", spilled=" + spilled + ", dropped=" + dropped + ", batches=" + batches
+				+ ", msPerBatch=" + String.format("%.2f", getAverageBatchMillis()) + "]";
+	}
+}
@@ -0,0 +1,355 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import games.stendhal.server.entity.Entity;
+
+/**
+ * A uniform grid of tile buckets used to look up the entities of a zone by
+ * position. Every entity is stored in all the buckets its area overlaps, so
+ * that area queries only need to look at the buckets covering the queried
+ * area instead of all the objects of the zone.
+ * <p>
+ * Coordinates outside the grid are clamped to the border buckets, so entities
+ * standing (or queries reaching) outside the zone are still found.
+ */
+public final class EntityGrid {
+	/** Width and height of a bucket in tiles. */
+	static final int BUCKET_SIZE = 8;
+
+	/** Width of the indexed area in tiles. */
+	private final int width;
+	/** Height of the indexed area in tiles. */
+	private final int height;
+	/** Number of bucket columns. */
+	private final int columns;
+	/** Number of bucket rows. */
+	private final int rows;
+	/** Buckets in row major order. Created on demand. */
+	private final List<List<Entity>> buckets;
+	/**
+	 * Bucket ranges of the indexed entities, as
+	 * <code>{minColumn, minRow, maxColumn, maxRow}</code>.
+	 */
+	private final Map<Entity, int[]> ranges = new IdentityHashMap<Entity, int[]>();
+
+	/**
+	 * Create a new EntityGrid.
+	 *
+	 * @param width width of the indexed area in tiles
+	 * @param height height of the indexed area in tiles
+	 */
+	public EntityGrid(final int width, final int height) {
+		this.width = width;
+		this.height = height;
+		columns = Math.max(1, (width + BUCKET_SIZE - 1) / BUCKET_SIZE);
+		rows = Math.max(1, (height + BUCKET_SIZE - 1) / BUCKET_SIZE);
+		final int size = columns * rows;
+		buckets = new ArrayList<List<Entity>>(size);
+		for (int i = 0; i < size; i++) {
+			buckets.add(null);
+		}
+	}
+
+	/**
+	 * Get the width of the indexed area.
+	 *
+	 * @return width in tiles
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Get the height of the indexed area.
+	 *
+	 * @return height in tiles
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Get the number of indexed entities.
+	 *
+	 * @return entity count
+	 */
+	public int size() {
+		return ranges.size();
+	}
+
+	/**
+	 * Add an entity to the index.
+	 *
+	 * @param entity added entity
+	 */
+	public void add(final Entity entity) {
+		if (ranges.containsKey(entity)) {
+			update(entity);
+			return;
+		}
+		final int[] range = new int[4];
+		calculateRange(entity, range);
+		ranges.put(entity, range);
+		addToBuckets(entity, range);
+	}
+
+	/**
+	 * Remove an entity from the index.
+	 *
+	 * @param entity removed entity
+	 */
+	public void remove(final Entity entity) {
+		final int[] range = ranges.remove(entity);
+		if (range != null) {
+			removeFromBuckets(entity, range);
+		}
+	}
+
+	/**
+	 * Update the buckets of an entity after it has moved or changed its size.
+	 * Entities that are not in the index are ignored.
+	 *
+	 * @param entity changed entity
+	 */
+	public void update(final Entity entity) {
+		final int[] range = ranges.get(entity);
+		if (range == null) {
+			return;
+		}
+		final int minColumn = column(entity.getX());
+		final int minRow = row(entity.getY());
+		final int maxColumn = column(entity.getX() + Math.max(1, (int) entity.getWidth()) - 1);
+		final int maxRow = row(entity.getY() + Math.max(1, (int) entity.getHeight()) - 1);
+		if ((range[0] == minColumn) && (range[1] == minRow)
+				&& (range[2] == maxColumn) && (range[3] == maxRow)) {
+			// Still in the same buckets
+			return;
+		}
+		removeFromBuckets(entity, range);
+		range[0] = minColumn;
+		range[1] = minRow;
+		range[2] = maxColumn;
+		range[3] = maxRow;
+		addToBuckets(entity, range);
+	}
+
+	/**
+	 * Find an entity whose area intersects an area, and that is an obstacle
+	 * for another entity.
+	 *
+	 * @param entity the entity that is checked for collisions. It is never
+	 * 	considered an obstacle to itself
+	 * @param x x coordinate of the area
+	 * @param y y coordinate of the area
+	 * @param w width of the area
+	 * @param h height of the area
+	 * @return a blocking entity, or <code>null</code> if there is none
+	 */
+	public Entity getObstacle(final Entity entity, final double x, final double y,
+			final double w, final double h) {
+		final int minColumn = column(floor(x));
+		final int minRow = row(floor(y));
+		final int maxColumn = column(floor(x + w));
+		final int maxRow = row(floor(y + h));
+
+		for (int row = minRow; row <= maxRow; row++) {
+			for (int column = minColumn; column <= maxColumn; column++) {
+				final List<Entity> bucket = buckets.get(row * columns + column);
+				if (bucket == null) {
+					continue;
+				}
+				for (final Entity other : bucket) {
+					if ((other != entity)
+							&& intersects(other, x, y, w, h)
+							&& other.isObstacle(entity)) {
+						return other;
+					}
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Get the entities whose area intersects an area.
+	 *
+	 * @param x x coordinate of the area
+	 * @param y y coordinate of the area
+	 * @param w width of the area
+	 * @param h height of the area
+	 * @param result list where the found entities are added
+	 */
+	public void getEntities(final double x, final double y, final double w,
+			final double h, final List<? super Entity> result) {
+		final int minColumn = column(floor(x));
+		final int minRow = row(floor(y));
+		final int maxColumn = column(floor(x + w));
+		final int maxRow = row(floor(y + h));
+
+		for (int row = minRow; row <= maxRow; row++) {
+			for (int column = minColumn; column <= maxColumn; column++) {
+				final List<Entity> bucket = buckets.get(row * columns + column);
+				if (bucket == null) {
+					continue;
+				}
+				for (final Entity other : bucket) {
+					/*
+					 * Entities spanning several buckets are reported only in
+					 * the first bucket that both the entity and the query
+					 * cover.
+					 */
+					if ((Math.max(column(other.getX()), minColumn) == column)
+							&& (Math.max(row(other.getY()), minRow) == row)
+							&& intersects(other, x, y, w, h)) {
+						result.add(other);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the entities whose area contains a point.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param result list where the found entities are added
+	 */
+	public void getEntitiesAt(final double x, final double y, final List<? super Entity> result) {
+		final List<Entity> bucket = buckets.get(row(floor(y)) * columns + column(floor(x)));
+		if (bucket == null) {
+			return;
+		}
+		for (final Entity other : bucket) {
+			if (other.getArea().contains(x, y)) {
+				result.add(other);
+			}
+		}
+	}
+
+	/**
+	 * Get the first entity whose area contains a point.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @return entity at the point, or <code>null</code> if there is none
+	 */
+	public Entity getEntityAt(final double x, final double y) {
+		final List<Entity> bucket = buckets.get(row(floor(y)) * columns + column(floor(x)));
+		if (bucket != null) {
+			for (final Entity other : bucket) {
+				if (other.getArea().contains(x, y)) {
+					return other;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Check if the area of an entity intersects a rectangle. Same as
+	 * <code>Rectangle2D.intersects()</code> but without creating objects.
+	 *
+	 * @param entity checked entity
+	 * @param x x coordinate of the rectangle
+	 * @param y y coordinate of the rectangle
+	 * @param w width of the rectangle
+	 * @param h height of the rectangle
+	 * @return <code>true</code> if the areas overlap
+	 */
+	private static boolean intersects(final Entity entity, final double x,
+			final double y, final double w, final double h) {
+		final double ew = entity.getWidth();
+		final double eh = entity.getHeight();
+		if ((w <= 0) || (h <= 0) || (ew <= 0) || (eh <= 0)) {
+			return false;
+		}
+		final double ex = entity.getX();
+		final double ey = entity.getY();
+		return (x + w > ex) && (y + h > ey) && (x < ex + ew) && (y < ey + eh);
+	}
+
+	/**
+	 * Calculate the bucket range covered by an entity.
+	 *
+	 * @param entity entity
+	 * @param range array where the range is stored
+	 */
+	private void calculateRange(final Entity entity, final int[] range) {
+		range[0] = column(entity.getX());
+		range[1] = row(entity.getY());
+		range[2] = column(entity.getX() + Math.max(1, (int) entity.getWidth()) - 1);
+		range[3] = row(entity.getY() + Math.max(1, (int) entity.getHeight()) - 1);
+	}
+
+	private void addToBuckets(final Entity entity, final int[] range) {
+		for (int row = range[1]; row <= range[3]; row++) {
+			for (int column = range[0]; column <= range[2]; column++) {
+				final int index = row * columns + column;
+				List<Entity> bucket = buckets.get(index);
+				if (bucket == null) {
+					bucket = new ArrayList<Entity>(4);
+					buckets.set(index, bucket);
+				}
+				bucket.add(entity);
+			}
+		}
+	}
+
+	private void removeFromBuckets(final Entity entity, final int[] range) {
+		for (int row = range[1]; row <= range[3]; row++) {
+			for (int column = range[0]; column <= range[2]; column++) {
+				final List<Entity> bucket = buckets.get(row * columns + column);
+				if (bucket != null) {
+					// Identity based removal; entities may compare equal by content
+					for (int i = bucket.size() - 1; i >= 0; i--) {
+						if (bucket.get(i) == entity) {
+							bucket.remove(i);
+							break;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the bucket column of a tile x coordinate.
+	 *
+	 * @param x x coordinate
+	 * @return column, clamped to the grid
+	 */
+	private int column(final int x) {
+		return Math.min(columns - 1, Math.max(0, x / BUCKET_SIZE));
+	}
+
+	/**
+	 * Get the bucket row of a tile y coordinate.
+	 *
+	 * @param y y coordinate
+	 * @return row, clamped to the grid
+	 */
+	private int row(final int y) {
+		return Math.min(rows - 1, Math.max(0, y / BUCKET_SIZE));
+	}
+
+	private static int floor(final double value) {
+		return (int) Math.floor(value);
+	}
+}
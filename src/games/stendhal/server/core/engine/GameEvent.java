@@ -12,17 +12,19 @@
  ***************************************************************************/
 package games.stendhal.server.core.engine;
 
+import java.sql.Timestamp;
+import java.util.Arrays;
 import java.util.List;
 
-import marauroa.server.db.command.DBCommand;
-import marauroa.server.db.command.DBCommandQueue;
-import marauroa.server.game.dbcommand.LogGameEventCommand;
+import games.stendhal.server.core.engine.dbcommand.AuditLogBatch;
+import games.stendhal.server.core.engine.dbcommand.AuditLogEntry;
 
 
 /**
  * a game event for logging
  */
-public class GameEvent {
+public class GameEvent implements AuditLogEntry {
+	private final Timestamp timedate = new Timestamp(System.currentTimeMillis());
 	private final String source;
 	private final String event;
 	private final String[] params;
@@ -57,7 +59,61 @@ public class GameEvent {
 	 * writes the event to the database
 	 */
 	public void raise() {
-		DBCommand command = new LogGameEventCommand(source, event, params);
-		DBCommandQueue.get().enqueue(command);
+		if (ZoneLogicExecutor.isParallelPhase()) {
+			ZoneLogicExecutor.defer(new Runnable() {
+				@Override
+				public void run() {
+					raise();
+				}
+			});
+			return;
+		}
+		AuditLog.get().log(this);
+	}
+
+	@Override
+	public void addTo(AuditLogBatch batch) {
+		batch.addGameEvent(this);
+	}
+
+	/**
+	 * gets the time the event was created
+	 *
+	 * @return time of the event
+	 */
+	public Timestamp getTimedate() {
+		return timedate;
+	}
+
+	/**
+	 * gets the source of the event
+	 *
+	 * @return source, usually a character
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * gets the name of the event
+	 *
+	 * @return name of event
+	 */
+	public String getEvent() {
+		return event;
+	}
+
+	/**
+	 * gets the parameters
+	 *
+	 * @return parameters
+	 */
+	public String[] getParams() {
+		return params;
+	}
+
+	@Override
+	public String toString() {
+		return "gameEvent " + timedate + " " + source + " " + event + " " + Arrays.toString(params);
 	}
 }
@@ -269,6 +269,30 @@ public class GenerateINI {
 		out.println();
 		out.println("turn_length=" + turnLength);
 		out.println();
+		out.println("# Number of threads for running the zone logic in parallel. 0 runs the");
+		out.println("# zones one after another.");
+		out.println("#zone_logic_threads=4");
+		out.println("# Number of threads for searching NPC paths in the background. 0 searches");
+		out.println("# the paths on the turn thread. At most pathfinding_budget searches are");
+		out.println("# started per turn.");
+		out.println("#pathfinding_threads=2");
+		out.println("#pathfinding_budget=100");
+		out.println("# Turn phase profiling, shown by /turnprofile and through JMX. With");
+		out.println("# turn_profiling the slowest zones, NPCs and turn listeners are collected");
+		out.println("# over turn_profile_window turns too, at some cost for every turn.");
+		out.println("#turn_profiling=false");
+		out.println("#turn_profile_window=200");
+		out.println("#turn_profile_top=10");
+		out.println("# Unused instance zones, such as bank vaults, kept for reuse per template");
+		out.println("# zone, and the number of spares prepared in advance.");
+		out.println("#zone_instance_pool_size=32");
+		out.println("#zone_instance_spare=4");
+		out.println("# Interval in seconds for reloading admins.txt and the server_welcome URL.");
+		out.println("#login_data_refresh=600");
+		out.println("# Memory in megabytes for caching the map and tileset files served to the");
+		out.println("# web client.");
+		out.println("#resource_cache_size=32");
+		out.println();
 		out.println("server_typeGame=" + gameName);
 		out.println("server_name=" + gameName + " Marauroa server");
 		out.println("server_version=1.26.5");
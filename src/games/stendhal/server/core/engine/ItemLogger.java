@@ -24,7 +24,6 @@ import games.stendhal.server.entity.item.Item;
 import games.stendhal.server.entity.player.Player;
 import marauroa.common.game.RPObject;
 import marauroa.common.game.RPSlot;
-import marauroa.server.db.command.DBCommandQueue;
 
 /**
  * Item Logger.
@@ -35,7 +34,16 @@ public class ItemLogger {
 
 
 	public void addLogItemEventCommand(final AbstractLogItemEventCommand command) {
-		DBCommandQueue.get().enqueue(command);
+		if (ZoneLogicExecutor.isParallelPhase()) {
+			ZoneLogicExecutor.defer(new Runnable() {
+				@Override
+				public void run() {
+					addLogItemEventCommand(command);
+				}
+			});
+			return;
+		}
+		AuditLog.get().log(command);
 	}
 
 
@@ -0,0 +1,267 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import games.stendhal.server.actions.admin.AdministrationAction;
+import marauroa.common.Configuration;
+import marauroa.common.io.UnicodeSupportingInputStreamReader;
+
+/**
+ * Login data that is slow to get: the super admin list from admins.txt, and
+ * the welcome message that can be read from a web server. Once started, the
+ * data is refreshed on a background thread, so that logging in players never
+ * wait for file or network access.
+ */
+public final class LoginDataCache {
+	private static final Logger logger = Logger.getLogger(LoginDataCache.class);
+
+	/** Default refresh interval in seconds. */
+	private static final int DEFAULT_REFRESH_INTERVAL = 600;
+	/** The super admin list. */
+	private static final String ADMIN_FILE = "data/conf/admins.txt";
+
+	/** The singleton instance. */
+	private static LoginDataCache instance;
+
+	/** Admin levels by player name, or <code>null</code> if not loaded yet. */
+	private volatile Map<String, Integer> adminLevels;
+	/**
+	 * Configured welcome message or welcome URL, or <code>null</code> if it
+	 * has not been configured.
+	 */
+	private volatile String welcomeSource;
+	/**
+	 * Current welcome message, or <code>null</code> if the server should use
+	 * the default.
+	 */
+	private volatile String welcomeMessage;
+	/** Only log the first exception while reading welcome URL. */
+	private boolean firstWelcomeException = true;
+	/** Refresh thread, or <code>null</code> if the cache has not been started. */
+	private ScheduledExecutorService executor;
+
+	/**
+	 * Create a new LoginDataCache. The server uses the instance from
+	 * {@link #get()}.
+	 */
+	LoginDataCache() {
+	}
+
+	/**
+	 * Get the LoginDataCache instance.
+	 *
+	 * @return instance
+	 */
+	public static synchronized LoginDataCache get() {
+		if (instance == null) {
+			instance = new LoginDataCache();
+		}
+		return instance;
+	}
+
+	/**
+	 * Start refreshing the data in the background.
+	 *
+	 * @param config server configuration
+	 */
+	public synchronized void start(final Configuration config) {
+		if (executor != null) {
+			return;
+		}
+		if (config.has("server_welcome")) {
+			setWelcomeSource(config.get("server_welcome"));
+		}
+		final int interval = Math.max(1, config.getInt("login_data_refresh", DEFAULT_REFRESH_INTERVAL));
+		executor = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setNameFormat("login-data").setDaemon(true).build());
+		executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					refresh();
+				} catch (final RuntimeException e) {
+					logger.error("Error refreshing login data", e);
+				}
+			}
+		}, 0, interval, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Get the admin level a player gets from the super admin list.
+	 *
+	 * @param name player name
+	 * @return admin level, or <code>null</code> if the player is not listed
+	 */
+	public Integer getAdminLevel(final String name) {
+		Map<String, Integer> levels = adminLevels;
+		if (levels == null) {
+			// Not started, or the first refresh is still running
+			levels = loadAdmins();
+		}
+		return levels.get(name);
+	}
+
+	/**
+	 * Get the welcome message. If the message is read from a web server,
+	 * the latest successfully read message is used.
+	 *
+	 * @return welcome message, or <code>null</code> if the server should use
+	 * 	the default message
+	 */
+	public String getWelcomeMessage() {
+		return welcomeMessage;
+	}
+
+	/**
+	 * Set the configured welcome message, or the URL where to read it.
+	 *
+	 * @param source message or URL
+	 */
+	void setWelcomeSource(final String source) {
+		welcomeSource = source;
+		if (!isURL(source)) {
+			welcomeMessage = source;
+		}
+	}
+
+	/**
+	 * Reload the admin list and the welcome message.
+	 */
+	void refresh() {
+		adminLevels = readAdmins();
+		final String source = welcomeSource;
+		if (isURL(source)) {
+			try {
+				welcomeMessage = fetch(source);
+			} catch (final IOException e) {
+				if (firstWelcomeException) {
+					logger.warn("Can't read server_welcome from " + source, e);
+					firstWelcomeException = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Load the admin list, unless it has been loaded already.
+	 *
+	 * @return admin levels
+	 */
+	private synchronized Map<String, Integer> loadAdmins() {
+		if (adminLevels == null) {
+			adminLevels = readAdmins();
+		}
+		return adminLevels;
+	}
+
+	/**
+	 * Read the super admin list.
+	 *
+	 * @return admin levels by player name
+	 */
+	private static Map<String, Integer> readAdmins() {
+		final InputStream is = LoginDataCache.class.getClassLoader().getResourceAsStream(ADMIN_FILE);
+		if (is == null) {
+			logger.info(ADMIN_FILE + " does not exist.");
+			return Collections.emptyMap();
+		}
+		try {
+			final BufferedReader in = new BufferedReader(new UnicodeSupportingInputStreamReader(is));
+			try {
+				return parseAdmins(in);
+			} finally {
+				in.close();
+			}
+		} catch (final IOException e) {
+			logger.error("Error loading admin names from: " + ADMIN_FILE, e);
+			return Collections.emptyMap();
+		}
+	}
+
+	/**
+	 * Parse a super admin list. Each line has a player name, and optionally
+	 * the admin level separated by "=".
+	 *
+	 * @param in list reader
+	 * @return admin levels by player name
+	 * @throws IOException on read errors
+	 */
+	static Map<String, Integer> parseAdmins(final BufferedReader in) throws IOException {
+		final Map<String, Integer> levels = new HashMap<String, Integer>();
+		String line;
+		while ((line = in.readLine()) != null) {
+			final String[] tokens = line.split("=");
+			final String name = tokens[0].trim();
+			if (tokens.length >= 2) {
+				try {
+					levels.put(name, Integer.valueOf(tokens[1].trim()));
+				} catch (final NumberFormatException e) {
+					logger.error("Invalid admin level for " + name + " in " + ADMIN_FILE + ": " + tokens[1]);
+				}
+			} else {
+				levels.put(name, AdministrationAction.REQUIRED_ADMIN_LEVEL_FOR_SUPER);
+			}
+		}
+		return levels;
+	}
+
+	/**
+	 * Check if a welcome message source is an URL.
+	 *
+	 * @param source message source
+	 * @return <code>true</code> if the message should be read from the web
+	 */
+	private static boolean isURL(final String source) {
+		return (source != null) && (source.startsWith("http://") || source.startsWith("https://"));
+	}
+
+	/**
+	 * Read the first line of a web resource.
+	 *
+	 * @param address URL of the resource
+	 * @return first line
+	 * @throws IOException on errors
+	 */
+	private static String fetch(final String address) throws IOException {
+		final URL url = new URL(address);
+		HttpURLConnection.setFollowRedirects(false);
+		final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		try {
+			final BufferedReader br = new BufferedReader(
+					new InputStreamReader(connection.getInputStream(), "UTF-8"));
+			try {
+				return br.readLine();
+			} finally {
+				br.close();
+			}
+		} finally {
+			connection.disconnect();
+		}
+	}
+}
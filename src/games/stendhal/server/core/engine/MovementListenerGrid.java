@@ -0,0 +1,322 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import games.stendhal.server.core.events.MovementListener;
+
+/**
+ * A uniform grid of tile buckets used to look up the movement listeners of a
+ * zone by position, so that a step only needs to look at the listeners whose
+ * areas are near the moving entity. Like in {@link EntityGrid}, every
+ * listener is stored in all the buckets its area overlaps, and coordinates
+ * outside the grid are clamped to the border buckets.
+ * <p>
+ * The listener areas are read when the listeners are added or updated.
+ * Listeners that are entities get updated by the zone when they move. Other
+ * listeners need to be removed and added again if their area changes.
+ */
+final class MovementListenerGrid {
+	/** Width and height of a bucket in tiles. */
+	private static final int BUCKET_SIZE = 8;
+
+	/** Width of the indexed area in tiles. */
+	private final int width;
+	/** Height of the indexed area in tiles. */
+	private final int height;
+	/** Number of bucket columns. */
+	private final int columns;
+	/** Number of bucket rows. */
+	private final int rows;
+	/** Buckets in row major order. Created on demand. */
+	private final List<List<Entry>> buckets;
+	/** Entries of the indexed listeners. */
+	private final Map<MovementListener, Entry> entries = new IdentityHashMap<MovementListener, Entry>();
+	/** Registration order of the next added listener. */
+	private int nextSequence;
+
+	/**
+	 * Create a new MovementListenerGrid.
+	 *
+	 * @param width width of the indexed area in tiles
+	 * @param height height of the indexed area in tiles
+	 */
+	MovementListenerGrid(final int width, final int height) {
+		this.width = width;
+		this.height = height;
+		columns = Math.max(1, (width + BUCKET_SIZE - 1) / BUCKET_SIZE);
+		rows = Math.max(1, (height + BUCKET_SIZE - 1) / BUCKET_SIZE);
+		final int size = columns * rows;
+		buckets = new ArrayList<List<Entry>>(size);
+		for (int i = 0; i < size; i++) {
+			buckets.add(null);
+		}
+	}
+
+	/**
+	 * Get the width of the indexed area.
+	 *
+	 * @return width in tiles
+	 */
+	int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Get the height of the indexed area.
+	 *
+	 * @return height in tiles
+	 */
+	int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Add a listener to the index. A listener added several times needs to
+	 * be removed as many times before it is dropped from the index.
+	 *
+	 * @param listener added listener
+	 */
+	void add(final MovementListener listener) {
+		Entry entry = entries.get(listener);
+		if (entry != null) {
+			entry.count++;
+			return;
+		}
+		entry = new Entry(listener, nextSequence++);
+		calculateRange(listener.getArea(), entry.range);
+		entries.put(listener, entry);
+		addToBuckets(entry);
+	}
+
+	/**
+	 * Remove a listener from the index.
+	 *
+	 * @param listener removed listener
+	 */
+	void remove(final MovementListener listener) {
+		final Entry entry = entries.get(listener);
+		if (entry == null) {
+			return;
+		}
+		entry.count--;
+		if (entry.count <= 0) {
+			entries.remove(listener);
+			removeFromBuckets(entry);
+		}
+	}
+
+	/**
+	 * Update the buckets of a listener after its area has changed. Listeners
+	 * that are not in the index are ignored.
+	 *
+	 * @param listener changed listener
+	 */
+	void update(final MovementListener listener) {
+		final Entry entry = entries.get(listener);
+		if (entry == null) {
+			return;
+		}
+		final Rectangle2D area = listener.getArea();
+		final int minColumn = column(floor(area.getMinX()));
+		final int minRow = row(floor(area.getMinY()));
+		final int maxColumn = column(floor(area.getMaxX()));
+		final int maxRow = row(floor(area.getMaxY()));
+		final int[] range = entry.range;
+		if ((range[0] == minColumn) && (range[1] == minRow)
+				&& (range[2] == maxColumn) && (range[3] == maxRow)) {
+			// Still in the same buckets
+			return;
+		}
+		removeFromBuckets(entry);
+		range[0] = minColumn;
+		range[1] = minRow;
+		range[2] = maxColumn;
+		range[3] = maxRow;
+		addToBuckets(entry);
+	}
+
+	/**
+	 * Get the listeners whose area intersects an area.
+	 *
+	 * @param x x coordinate of the area
+	 * @param y y coordinate of the area
+	 * @param w width of the area
+	 * @param h height of the area
+	 * @return the found listeners in the order they were added to the index
+	 */
+	List<MovementListener> getListeners(final double x, final double y,
+			final double w, final double h) {
+		final int minColumn = column(floor(x));
+		final int minRow = row(floor(y));
+		final int maxColumn = column(floor(x + w));
+		final int maxRow = row(floor(y + h));
+
+		List<Entry> found = null;
+		for (int row = minRow; row <= maxRow; row++) {
+			for (int column = minColumn; column <= maxColumn; column++) {
+				final List<Entry> bucket = buckets.get(row * columns + column);
+				if (bucket == null) {
+					continue;
+				}
+				for (final Entry entry : bucket) {
+					/*
+					 * Listeners spanning several buckets are reported only in
+					 * the first bucket that both the listener and the query
+					 * cover.
+					 */
+					if ((Math.max(entry.range[0], minColumn) == column)
+							&& (Math.max(entry.range[1], minRow) == row)
+							&& intersects(entry.listener.getArea(), x, y, w, h)) {
+						if (found == null) {
+							found = new ArrayList<Entry>(4);
+						}
+						found.add(entry);
+					}
+				}
+			}
+		}
+
+		if (found == null) {
+			return Collections.emptyList();
+		}
+		if (found.size() > 1) {
+			// Keep the notification order the same as it was before the index
+			Collections.sort(found);
+		}
+		final List<MovementListener> result = new ArrayList<MovementListener>(found.size());
+		for (final Entry entry : found) {
+			result.add(entry.listener);
+		}
+		return result;
+	}
+
+	/**
+	 * Check if a rectangle intersects an area. Same as
+	 * <code>Rectangle2D.intersects()</code>, but without needing a rectangle
+	 * object for the area.
+	 *
+	 * @param rect rectangle
+	 * @param x x coordinate of the area
+	 * @param y y coordinate of the area
+	 * @param w width of the area
+	 * @param h height of the area
+	 * @return <code>true</code> if the areas overlap
+	 */
+	static boolean intersects(final Rectangle2D rect, final double x,
+			final double y, final double w, final double h) {
+		if ((w <= 0) || (h <= 0) || rect.isEmpty()) {
+			return false;
+		}
+		final double rx = rect.getX();
+		final double ry = rect.getY();
+		return (x + w > rx) && (y + h > ry) && (x < rx + rect.getWidth())
+				&& (y < ry + rect.getHeight());
+	}
+
+	/**
+	 * Calculate the bucket range covered by an area.
+	 *
+	 * @param area area
+	 * @param range array where the range is stored
+	 */
+	private void calculateRange(final Rectangle2D area, final int[] range) {
+		range[0] = column(floor(area.getMinX()));
+		range[1] = row(floor(area.getMinY()));
+		range[2] = column(floor(area.getMaxX()));
+		range[3] = row(floor(area.getMaxY()));
+	}
+
+	private void addToBuckets(final Entry entry) {
+		final int[] range = entry.range;
+		for (int row = range[1]; row <= range[3]; row++) {
+			for (int column = range[0]; column <= range[2]; column++) {
+				final int index = row * columns + column;
+				List<Entry> bucket = buckets.get(index);
+				if (bucket == null) {
+					bucket = new ArrayList<Entry>(4);
+					buckets.set(index, bucket);
+				}
+				bucket.add(entry);
+			}
+		}
+	}
+
+	private void removeFromBuckets(final Entry entry) {
+		final int[] range = entry.range;
+		for (int row = range[1]; row <= range[3]; row++) {
+			for (int column = range[0]; column <= range[2]; column++) {
+				final List<Entry> bucket = buckets.get(row * columns + column);
+				if (bucket != null) {
+					bucket.remove(entry);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the bucket column of a tile x coordinate.
+	 *
+	 * @param x x coordinate
+	 * @return column, clamped to the grid
+	 */
+	private int column(final int x) {
+		return Math.min(columns - 1, Math.max(0, x / BUCKET_SIZE));
+	}
+
+	/**
+	 * Get the bucket row of a tile y coordinate.
+	 *
+	 * @param y y coordinate
+	 * @return row, clamped to the grid
+	 */
+	private int row(final int y) {
+		return Math.min(rows - 1, Math.max(0, y / BUCKET_SIZE));
+	}
+
+	private static int floor(final double value) {
+		return (int) Math.floor(value);
+	}
+
+	/**
+	 * Index entry of a listener.
+	 */
+	private static final class Entry implements Comparable<Entry> {
+		/** The indexed listener. */
+		private final MovementListener listener;
+		/** Registration order. */
+		private final int sequence;
+		/** Number of times the listener has been added. */
+		private int count = 1;
+		/**
+		 * Bucket range of the listener area, as
+		 * <code>{minColumn, minRow, maxColumn, maxRow}</code>.
+		 */
+		private final int[] range = new int[4];
+
+		Entry(final MovementListener listener, final int sequence) {
+			this.listener = listener;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(final Entry other) {
+			return (sequence < other.sequence) ? -1 : ((sequence == other.sequence) ? 0 : 1);
+		}
+	}
+}
@@ -0,0 +1,239 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.io.ByteStreams;
+
+import games.stendhal.server.core.config.zone.CompactMapFormat;
+import games.stendhal.server.core.config.zone.TMXLoader;
+import marauroa.common.Configuration;
+
+/**
+ * Static resources served to the web client: map files, tilesets and other
+ * data files. The contents are kept in memory, so that popular resources are
+ * not looked up and read from the class path for each request. The least
+ * recently used resources are dropped when the cache grows over its size
+ * limit. Resources larger than an eighth of the limit are read each time.
+ * <p>
+ * Besides the plain files, the cache serves maps in the compact format of
+ * {@link CompactMapFormat} as <code>/map/<em>path</em>.bin</code>, where
+ * <em>path</em> is the path of the TMX file below <code>tiled/</code>
+ * without the <code>.tmx</code> extension. The maps are compressed once
+ * when they are first requested.
+ */
+public final class ResourceCache {
+	private static final Logger logger = Logger.getLogger(ResourceCache.class);
+
+	/** Default size limit in megabytes. */
+	private static final int DEFAULT_SIZE = 32;
+	private static final String MAP_PREFIX = "/map/";
+	private static final String MAP_SUFFIX = ".bin";
+
+	/** The singleton instance. */
+	private static ResourceCache instance;
+
+	/** Resource contents by resource name, in least recently used order. */
+	private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<String, byte[]>(64, 0.75f, true);
+	/** Size limit in bytes. */
+	private long maxSize;
+	/** Total size of the cached resources in bytes. */
+	private long size;
+
+	/**
+	 * Create a new ResourceCache. The server uses the instance from
+	 * {@link #get()}.
+	 *
+	 * @param maxSize size limit in bytes
+	 */
+	ResourceCache(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Get the ResourceCache instance.
+	 *
+	 * @return instance
+	 */
+	public static synchronized ResourceCache get() {
+		if (instance == null) {
+			instance = new ResourceCache(DEFAULT_SIZE * 1024L * 1024L);
+		}
+		return instance;
+	}
+
+	/**
+	 * Configure the cache size.
+	 *
+	 * @param config server configuration
+	 */
+	public void init(Configuration config) {
+		int limit = DEFAULT_SIZE;
+		if (config.has("resource_cache_size")) {
+			try {
+				limit = Integer.parseInt(config.get("resource_cache_size").trim());
+			} catch (NumberFormatException e) {
+				logger.warn("Invalid resource_cache_size: " + config.get("resource_cache_size"));
+			}
+		}
+		synchronized (this) {
+			maxSize = Math.max(0, limit) * 1024L * 1024L;
+			evict();
+		}
+	}
+
+	/**
+	 * Get a resource for the web client.
+	 *
+	 * @param resource name of the resource
+	 * @return stream for reading the resource, or <code>null</code> if there
+	 * 	is no such resource
+	 */
+	public InputStream getResource(String resource) {
+		byte[] data = getData(resource);
+		if (data == null) {
+			return null;
+		}
+		return new ByteArrayInputStream(data);
+	}
+
+	/**
+	 * Get the contents of a resource, reading it if it is not in the cache.
+	 *
+	 * @param resource name of the resource
+	 * @return contents, or <code>null</code> if there is no such resource.
+	 * 	The array must not be modified
+	 */
+	byte[] getData(String resource) {
+		synchronized (this) {
+			byte[] data = entries.get(resource);
+			if (data != null) {
+				return data;
+			}
+		}
+
+		/*
+		 * Read without holding the lock, so that the other requests are not
+		 * blocked. Two requests of the same resource may both read it, which
+		 * does no harm.
+		 */
+		byte[] data;
+		try {
+			data = load(resource);
+		} catch (Exception e) {
+			logger.warn("Failed to read resource " + resource, e);
+			return null;
+		}
+		if (data != null) {
+			store(resource, data);
+		}
+		return data;
+	}
+
+	/**
+	 * Get the total size of the cached resources.
+	 *
+	 * @return size in bytes
+	 */
+	synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * Add a resource to the cache.
+	 *
+	 * @param resource name of the resource
+	 * @param data contents
+	 */
+	private synchronized void store(String resource, byte[] data) {
+		// Big files, such as music, would push out many small ones
+		if (data.length > maxSize / 8) {
+			return;
+		}
+		byte[] old = entries.put(resource, data);
+		if (old != null) {
+			size -= old.length;
+		}
+		size += data.length;
+		evict();
+	}
+
+	/**
+	 * Drop the least recently used resources until the cache is within its
+	 * size limit.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<String, byte[]>> it = entries.entrySet().iterator();
+		while ((size > maxSize) && it.hasNext()) {
+			size -= it.next().getValue().length;
+			it.remove();
+		}
+	}
+
+	/**
+	 * Read a resource.
+	 *
+	 * @param resource name of the resource
+	 * @return contents, or <code>null</code> if there is no such resource
+	 * @throws Exception if the resource exists, but can not be read
+	 */
+	private byte[] load(String resource) throws Exception {
+		ClassLoader loader = ResourceCache.class.getClassLoader();
+		if (resource.startsWith(MAP_PREFIX) && resource.endsWith(MAP_SUFFIX)) {
+			String tmx = "tiled/" + resource.substring(MAP_PREFIX.length(),
+					resource.length() - MAP_SUFFIX.length()) + ".tmx";
+			if (loader.getResource(tmx) == null) {
+				return null;
+			}
+			return CompactMapFormat.encode(TMXLoader.load(tmx));
+		}
+
+		String path = getClassPath(resource);
+		if (path == null) {
+			return null;
+		}
+		InputStream in = loader.getResourceAsStream(path);
+		if (in == null) {
+			return null;
+		}
+		try {
+			return ByteStreams.toByteArray(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Get the class path location of a plain resource.
+	 *
+	 * @param resource name of the resource
+	 * @return location in the class path, or <code>null</code> if the
+	 * 	resource is not served
+	 */
+	static String getClassPath(String resource) {
+		if (resource.startsWith("/tiled") || resource.startsWith("/data")) {
+			return resource.substring(1);
+		}
+		if (resource.startsWith("/tileset")) {
+			return "tiled" + resource;
+		}
+		return null;
+	}
+}
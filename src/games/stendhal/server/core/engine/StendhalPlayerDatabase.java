@@ -21,10 +21,13 @@ import games.stendhal.server.core.engine.db.PendingAchievementDAO;
 import games.stendhal.server.core.engine.db.PostmanDAO;
 import games.stendhal.server.core.engine.db.StendhalBuddyDAO;
 import games.stendhal.server.core.engine.db.StendhalCharacterDAO;
+import games.stendhal.server.core.engine.db.StendhalGameEventDAO;
 import games.stendhal.server.core.engine.db.StendhalHallOfFameDAO;
 import games.stendhal.server.core.engine.db.StendhalItemDAO;
 import games.stendhal.server.core.engine.db.StendhalKillLogDAO;
+import games.stendhal.server.core.engine.db.StendhalMarketDAO;
 import games.stendhal.server.core.engine.db.StendhalNPCDAO;
+import games.stendhal.server.core.engine.db.StendhalRPObjectDAO;
 import games.stendhal.server.core.engine.db.StendhalRPZoneDAO;
 import games.stendhal.server.core.engine.db.StendhalSearchIndexDAO;
 import games.stendhal.server.core.engine.db.StendhalWebsiteDAO;
@@ -33,6 +36,7 @@ import marauroa.server.db.JDBCSQLHelper;
 import marauroa.server.db.TransactionPool;
 import marauroa.server.game.db.CharacterDAO;
 import marauroa.server.game.db.DAORegister;
+import marauroa.server.game.db.RPObjectDAO;
 
 /**
  * initializes the database by setting up or updating the database structure and defining
@@ -195,14 +199,17 @@ public class StendhalPlayerDatabase {
 	 */
 	private void registerStendhalDAOs() {
 
-		// define own version in replacement of marauroa's CharacterDAO
+		// define own versions in replacement of marauroa's CharacterDAO and RPObjectDAO
 		DAORegister.get().register(CharacterDAO.class, new StendhalCharacterDAO());
+		DAORegister.get().register(RPObjectDAO.class, new StendhalRPObjectDAO(DAORegister.get().getRPObjectFactory()));
 
 		// define additional DAOs
 		DAORegister.get().register(PostmanDAO.class, new PostmanDAO());
 		DAORegister.get().register(StendhalBuddyDAO.class, new StendhalBuddyDAO());
+		DAORegister.get().register(StendhalGameEventDAO.class, new StendhalGameEventDAO());
 		DAORegister.get().register(StendhalHallOfFameDAO.class, new StendhalHallOfFameDAO());
 		DAORegister.get().register(StendhalKillLogDAO.class, new StendhalKillLogDAO ());
+		DAORegister.get().register(StendhalMarketDAO.class, new StendhalMarketDAO());
 		DAORegister.get().register(StendhalNPCDAO.class, new StendhalNPCDAO());
 		DAORegister.get().register(StendhalWebsiteDAO.class, new StendhalWebsiteDAO());
 		DAORegister.get().register(AchievementDAO.class, new AchievementDAO());
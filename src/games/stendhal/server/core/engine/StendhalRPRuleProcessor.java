@@ -12,14 +12,11 @@
  ***************************************************************************/
 package games.stendhal.server.core.engine;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -37,13 +34,18 @@ import games.stendhal.server.core.account.AccountCreator;
 import games.stendhal.server.core.account.CharacterCreator;
 import games.stendhal.server.core.engine.db.StendhalWebsiteDAO;
 import games.stendhal.server.core.engine.dbcommand.SetOnlineStatusCommand;
+import games.stendhal.server.core.engine.profiling.TurnPhase;
+import games.stendhal.server.core.engine.profiling.TurnProfiler;
 import games.stendhal.server.core.engine.transformer.PlayerTransformer;
+import games.stendhal.server.core.events.TurnNotifier;
 import games.stendhal.server.core.events.TutorialNotifier;
+import games.stendhal.server.core.pathfinder.AsyncPathfinder;
 import games.stendhal.server.core.rp.StendhalRPAction;
 import games.stendhal.server.core.scripting.ScriptRunner;
 import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.RPEntity;
 import games.stendhal.server.entity.npc.NPCList;
+import games.stendhal.server.entity.npc.SpeakerNPC;
 import games.stendhal.server.entity.npc.behaviour.impl.OutfitChangerBehaviour.ExpireOutfit;
 import games.stendhal.server.entity.player.AfkTimeouter;
 import games.stendhal.server.entity.player.Player;
@@ -57,7 +59,6 @@ import marauroa.common.game.CharacterResult;
 import marauroa.common.game.IRPZone;
 import marauroa.common.game.RPAction;
 import marauroa.common.game.RPObject;
-import marauroa.common.io.UnicodeSupportingInputStreamReader;
 import marauroa.server.db.command.DBCommand;
 import marauroa.server.db.command.DBCommandQueue;
 import marauroa.server.game.Statistics;
@@ -71,12 +72,8 @@ import marauroa.server.game.rp.RPServerManager;
  */
 public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 
-	/** only log the first exception while reading welcome URL. */
-	private static boolean firstWelcomeException = true;
 	/** the logger instance. */
 	private static final Logger logger = Logger.getLogger(StendhalRPRuleProcessor.class);
-	/** list of super admins read from admins.list. */
-	private static Map<String, String> adminNames;
 	/** welcome message unless overwritten by an URL */
 	private static String welcomeMessage = "Welcome to Stendhal. Need help? #https://stendhalgame.org/player-guide/ask-for-help.html - please report problems, suggestions and bugs. Remember to keep your password completely secret, never tell to another friend, player, or admin.";
 
@@ -98,6 +95,12 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 	/** a list of zone that should be removed (like vaults) */
 	private final List<StendhalRPZone> zonesToRemove = new LinkedList<StendhalRPZone>();
 
+	/**
+	 * Executor for running the zone logic in parallel, or <code>null</code> if
+	 * the zones are processed one after another.
+	 */
+	private ZoneLogicExecutor zoneLogicExecutor;
+
 	/**
 	 * creates a new StendhalRPRuleProcessor
 	 */
@@ -160,6 +163,22 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 			new ScriptRunner();
 
 			final Configuration config = Configuration.getConfiguration();
+			TurnProfiler.get().init(config);
+			ZoneInstancePool.init(config);
+			LoginDataCache.get().start(config);
+			ResourceCache.get().init(config);
+			final int zoneLogicThreads = config.getInt("zone_logic_threads", 0);
+			if (zoneLogicThreads > 0) {
+				logger.info("Running zone logic on " + zoneLogicThreads + " threads");
+				zoneLogicExecutor = new ZoneLogicExecutor(zoneLogicThreads);
+			}
+			final int pathfindingThreads = config.getInt("pathfinding_threads", 0);
+			if (pathfindingThreads > 0) {
+				logger.info("Searching paths on " + pathfindingThreads + " threads");
+				AsyncPathfinder.setInstance(new AsyncPathfinder(pathfindingThreads,
+						config.getInt("pathfinding_budget", 100)));
+			}
+
 			try {
 				final String[] extensionsToLoad = config.get("server_extension").split(",");
 				for (final String element : extensionsToLoad) {
@@ -211,6 +230,15 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 	 * @param killer
 	 */
 	public void killRPEntity(final RPEntity entity, final Entity killer) {
+		if (ZoneLogicExecutor.isParallelPhase()) {
+			ZoneLogicExecutor.defer(new Runnable() {
+				@Override
+				public void run() {
+					killRPEntity(entity, killer);
+				}
+			});
+			return;
+		}
 		entityToKill.add(new Pair<RPEntity, Entity>(entity, killer));
 	}
 
@@ -269,7 +297,9 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 	/** Notify it when a new turn happens. */
 	@Override
 	public synchronized void beginTurn() {
+		final TurnProfiler profiler = TurnProfiler.get();
 		final long start = System.nanoTime();
+		long phaseStart;
 
 		try {
 			destroyObsoleteZones();
@@ -283,30 +313,38 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 			logger.error("error in beginTurn", e);
 		}
 
+		phaseStart = System.nanoTime();
 		try {
 			handleKilledEntities();
 		} catch (final Exception e) {
 			logger.error("error in beginTurn", e);
 		}
+		profiler.record(TurnPhase.KILLED_ENTITIES, System.nanoTime() - phaseStart);
 
+		phaseStart = System.nanoTime();
 		try {
 			executePlayerLogic();
 		} catch (final Exception e) {
 			logger.error("error in beginTurn", e);
 		}
+		profiler.record(TurnPhase.PLAYER_LOGIC, System.nanoTime() - phaseStart);
 
+		phaseStart = System.nanoTime();
 		try {
 			executeNPCsPreLogic();
 		} catch (final Exception e) {
 			logger.error("error in beginTurn", e);
 		}
+		profiler.record(TurnPhase.NPC_PRE_LOGIC, System.nanoTime() - phaseStart);
 
 		try {
 			handlePlayersRmTexts();
 		} catch (final Exception e) {
 			logger.error("error in beginTurn", e);
 		}
-		logger.debug("Begin turn: " + (System.nanoTime() - start) / 1000000.0);
+		final long duration = System.nanoTime() - start;
+		profiler.record(TurnPhase.BEGIN_TURN, duration);
+		logger.debug("Begin turn: " + duration / 1000000.0);
 	}
 
 	private void destroyObsoleteZones() {
@@ -338,8 +376,52 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 		// SpeakerNPC logic
 		final NPCList npcList = SingletonRepository.getNPCList();
 		final Set<String> npcs = npcList.getNPCs();
-		for (final String npc : npcs) {
-			npcList.get(npc).preLogic();
+		if (zoneLogicExecutor == null) {
+			for (final String npc : npcs) {
+				preLogic(npcList.get(npc));
+			}
+			return;
+		}
+
+		// group the NPCs by zone for running them in parallel
+		final Map<StendhalRPZone, List<SpeakerNPC>> npcsByZone = new LinkedHashMap<StendhalRPZone, List<SpeakerNPC>>();
+		for (final String name : npcs) {
+			final SpeakerNPC npc = npcList.get(name);
+			final StendhalRPZone zone = npc.getZone();
+			if (zone == null) {
+				preLogic(npc);
+				continue;
+			}
+			List<SpeakerNPC> list = npcsByZone.get(zone);
+			if (list == null) {
+				list = new ArrayList<SpeakerNPC>();
+				npcsByZone.put(zone, list);
+			}
+			list.add(npc);
+		}
+		zoneLogicExecutor.execute(npcsByZone.keySet(), new Task<StendhalRPZone>() {
+			@Override
+			public void execute(final StendhalRPZone zone) {
+				for (final SpeakerNPC npc : npcsByZone.get(zone)) {
+					preLogic(npc);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Run the pre logic of an NPC, recording the time it takes.
+	 *
+	 * @param npc the NPC
+	 */
+	private void preLogic(final SpeakerNPC npc) {
+		final TurnProfiler profiler = TurnProfiler.get();
+		if (profiler.isEnabled()) {
+			final long start = System.nanoTime();
+			npc.preLogic();
+			profiler.recordNPC(npc, System.nanoTime() - start);
+		} else {
+			npc.preLogic();
 		}
 	}
 
@@ -377,71 +459,78 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 	@Override
 	public synchronized void endTurn() {
 		final int currentTurn = getTurn();
+		final TurnProfiler profiler = TurnProfiler.get();
+		final long start = System.nanoTime();
 		try {
 
-			SingletonRepository.getTurnNotifier().logic(currentTurn);
+			final TurnNotifier turnNotifier = SingletonRepository.getTurnNotifier();
+			turnNotifier.logic(currentTurn);
+			profiler.record(TurnPhase.TURN_NOTIFIER, System.nanoTime() - start);
+			Statistics.getStatistics().add("Turn events", turnNotifier.getEventsFiredLastTurn());
+			final AsyncPathfinder pathfinder = AsyncPathfinder.get();
+			if (pathfinder != null) {
+				pathfinder.logic();
+				Statistics.getStatistics().add("Path searches", pathfinder.getSearchesStartedLastTurn());
+			}
 
-			for (final IRPZone zoneI : SingletonRepository.getRPWorld()) {
-				final StendhalRPZone zone = (StendhalRPZone) zoneI;
-				zone.logic();
+			final long zoneStart = System.nanoTime();
+			if (zoneLogicExecutor == null) {
+				for (final IRPZone zoneI : SingletonRepository.getRPWorld()) {
+					final StendhalRPZone zone = (StendhalRPZone) zoneI;
+					zoneLogic(zone);
+				}
+			} else {
+				final List<StendhalRPZone> zones = new ArrayList<StendhalRPZone>();
+				for (final IRPZone zoneI : SingletonRepository.getRPWorld()) {
+					final StendhalRPZone zone = (StendhalRPZone) zoneI;
+					if (!zone.isDormant()) {
+						zones.add(zone);
+					}
+				}
+				zoneLogicExecutor.execute(zones, new Task<StendhalRPZone>() {
+					@Override
+					public void execute(final StendhalRPZone zone) {
+						zoneLogic(zone);
+					}
+				});
 			}
+			profiler.record(TurnPhase.ZONE_LOGIC, System.nanoTime() - zoneStart);
 
 			// run registered object's logic method for this turn
 
 		} catch (final Exception e) {
 			logger.error("error in endTurn", e);
 		}
+		profiler.record(TurnPhase.END_TURN, System.nanoTime() - start);
+		profiler.turnCompleted();
 	}
 
 	/**
-	 * reads the admins from admins.list.
+	 * Run the logic of a zone, recording the time it takes.
 	 *
-	 * @param player
-	 *            Player to check for super admin status.
+	 * @param zone the zone
 	 */
-	private static void readAdminsFromFile(final Player player) {
-		synchronized(StendhalRPRuleProcessor.class) {
-			if (adminNames == null) {
-				Map<String, String> tempAdminNames = new HashMap<String, String>();
-
-				String adminFilename = "data/conf/admins.txt";
-
-				try {
-					InputStream is = player.getClass().getClassLoader().getResourceAsStream(
-							adminFilename);
-
-					if (is == null) {
-						logger.info(adminFilename + " does not exist.");
-						return;
-					}
-
-					final BufferedReader in = new BufferedReader(
-							new UnicodeSupportingInputStreamReader(is));
-					try {
-						String line;
-						while ((line = in.readLine()) != null) {
-							String[] tokens = line.split("=");
-							if (tokens.length >= 2) {
-								tempAdminNames.put(tokens[0].trim(), tokens[1].trim());
-							} else {
-								tempAdminNames.put(tokens[0].trim(), Integer.toString(AdministrationAction.REQUIRED_ADMIN_LEVEL_FOR_SUPER));
-							}
-						}
-					} catch (final Exception e) {
-						logger.error("Error loading admin names from: "+ adminFilename, e);
-					} finally {
-						in.close();
-					}
-
-					adminNames = tempAdminNames;
-				} catch (final IOException e) {
-					logger.error("Error loading admin names from: " + adminFilename, e);
-				}
-			}
+	private void zoneLogic(final StendhalRPZone zone) {
+		final TurnProfiler profiler = TurnProfiler.get();
+		if (profiler.isEnabled() && !zone.isDormant()) {
+			final long start = System.nanoTime();
+			zone.logic();
+			profiler.recordZone(zone, System.nanoTime() - start);
+		} else {
+			zone.logic();
 		}
+	}
 
-		if (adminNames.get(player.getName()) != null) {
-			player.setAdminLevel(Integer.parseInt(adminNames.get(player.getName())));
+	/**
+	 * Set the admin level of players listed in admins.txt.
+	 *
+	 * @param player
+	 *            Player to check for super admin status.
+	 */
+	private static void applySuperAdminLevel(final Player player) {
+		final Integer level = LoginDataCache.get().getAdminLevel(player.getName());
+		if (level != null) {
+			player.setAdminLevel(level.intValue());
 		}
 	}
 
@@ -478,7 +567,7 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 				SingletonRepository.getLoginNotifier().onPlayerLoggedIn(player);
 				TutorialNotifier.login(player);
 
-				readAdminsFromFile(player);
+				applySuperAdminLevel(player);
 				welcome(player);
 
 				// expire outfits
@@ -507,48 +596,23 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 	/**
 	 * send a welcome message to the player which can be configured in
 	 * marauroa.ini file as "server_welcome". If the value is an http:// address,
-	 * the first line of that address is read and used as the message
+	 * the first line of that address is read and used as the message. The
+	 * address is read in the background, see {@link LoginDataCache}.
 	 *
 	 * @param player
 	 *            Player
 	 */
 	static void welcome(final Player player) {
-		String msg = welcomeMessage;
-		try {
-			final Configuration config = Configuration.getConfiguration();
-			if (config.has("server_welcome")) {
-				msg = config.get("server_welcome");
-				if (msg.startsWith("http://") || msg.startsWith("https://")) {
-					final URL url = new URL(msg);
-					HttpURLConnection.setFollowRedirects(false);
-					final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                    try {
-                        final BufferedReader br = new BufferedReader(
-							new InputStreamReader(connection.getInputStream(), "UTF-8"));
-                        try {
-                            msg = br.readLine();
-                        } finally {
-                            br.close();
-                        }
-                    } finally {
-				        connection.disconnect();
-                    }
-				}
-			}
-		} catch (final IOException e) {
-			if (firstWelcomeException) {
-				logger.warn("Can't read server_welcome from marauroa.ini", e);
-				firstWelcomeException = false;
-			}
-		}
-		if (msg != null) {
-			/*
-			 * Avoid spamming all client channels. Very old clients do not
-			 * recognize SERVER type, but they just log an error. Client version
-			 * information has not been received yet.
-			 */
-			player.sendPrivateText(NotificationType.SERVER, msg);
+		String msg = LoginDataCache.get().getWelcomeMessage();
+		if (msg == null) {
+			msg = welcomeMessage;
 		}
+		/*
+		 * Avoid spamming all client channels. Very old clients do not
+		 * recognize SERVER type, but they just log an error. Client version
+		 * information has not been received yet.
+		 */
+		player.sendPrivateText(NotificationType.SERVER, msg);
 	}
 
 	@Override
@@ -770,10 +834,12 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 	public String getMimeTypeForResource(String resource) {
 		if (resource.endsWith(".tmx")) {
 			return "text/xml";
-		} else if (resource.endsWith(".tmx")) {
+		} else if (resource.endsWith(".ogg")) {
 			return "audio/ogg";
 		} else if (resource.endsWith(".png")) {
 			return "image/png";
+		} else if (resource.endsWith(".bin")) {
+			return "application/octet-stream";
 		}
 		return null;
 	}
@@ -786,12 +852,6 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 	 */
 	@Override
 	public InputStream getResource(String resource) {
-		if (resource.startsWith("/tiled") || resource.startsWith("/data")) {
-			return StendhalRPRuleProcessor.class.getClassLoader().getResourceAsStream(resource.substring(1));
-		}
-		if (resource.startsWith("/tileset")) {
-			return StendhalRPRuleProcessor.class.getClassLoader().getResourceAsStream("tiled" + resource);
-		}
-		return null;
+		return ResourceCache.get().getResource(resource);
 	}
 }
@@ -16,6 +16,8 @@ import java.net.URI;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -26,8 +28,10 @@ import games.stendhal.server.core.config.ZoneGroupsXMLLoader;
 import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.mapstuff.portal.OneWayPortalDestination;
 import games.stendhal.server.entity.mapstuff.portal.Portal;
+import games.stendhal.server.entity.trade.Market;
 import marauroa.common.game.IRPZone;
 import marauroa.common.game.IRPZone.ID;
+import marauroa.common.game.RPObject;
 import marauroa.server.game.rp.RPWorld;
 
 public class StendhalRPWorld extends RPWorld {
@@ -79,7 +83,10 @@ public class StendhalRPWorld extends RPWorld {
 
 	public void removeZone(final StendhalRPZone toBeRemoved) {
 		try {
-			removeRPZone(toBeRemoved.getID());
+			if ((removeRPZone(toBeRemoved.getID()) == toBeRemoved)
+					&& (toBeRemoved.instancePool != null)) {
+				toBeRemoved.instancePool.release(toBeRemoved);
+			}
 		} catch (final Exception e) {
 			logger.error(e, e);
 		}
@@ -152,6 +159,7 @@ public class StendhalRPWorld extends RPWorld {
 			loader.load();
 
 			validatePortals();
+			loadMarkets();
 			SingletonRepository.getAchievementNotifier().initialize();
 			SingletonRepository.getGagManager();
 			SingletonRepository.getJail();
@@ -171,10 +179,29 @@ public class StendhalRPWorld extends RPWorld {
 		}
 	}
 
+	/**
+	 * Loads the market entries. The markets keep their offers and earnings in
+	 * a table of their own, so they are loaded only after the zone contents.
+	 */
+	private void loadMarkets() {
+		final List<Market> markets = new LinkedList<Market>();
+		for (final IRPZone zone : this) {
+			for (final RPObject object : (StendhalRPZone) zone) {
+				if (object instanceof Market) {
+					markets.add((Market) object);
+				}
+			}
+		}
+		for (final Market market : markets) {
+			market.loadFromDatabase();
+		}
+	}
+
 	@Override
 	public void onFinish() {
 		super.onFinish();
 		new GameEvent("server system", "shutdown").raise();
+		AuditLog.get().flush();
 		try {
 			//TODO: find a more appropriate way to do this
 			// give gameevents a chance to be processed;
@@ -17,9 +17,11 @@ import java.awt.Rectangle;
 import java.awt.geom.Rectangle2D;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -39,8 +41,12 @@ import games.stendhal.common.grammar.Grammar;
 import games.stendhal.common.tiled.LayerDefinition;
 import games.stendhal.common.tiled.TileSetDefinition;
 import games.stendhal.server.core.config.zone.TeleportationRules;
+import games.stendhal.server.core.engine.profiling.TurnProfiler;
 import games.stendhal.server.core.events.MovementListener;
+import games.stendhal.server.core.events.TurnListener;
+import games.stendhal.server.core.events.TurnNotifier;
 import games.stendhal.server.core.events.ZoneEnterExitListener;
+import games.stendhal.server.core.pathfinder.NavigationGrid;
 import games.stendhal.server.core.rp.StendhalRPAction;
 import games.stendhal.server.core.rule.EntityManager;
 import games.stendhal.server.entity.ActiveEntity;
@@ -79,6 +85,18 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 */
 	private static final double DANGER_WEIGHT_CREATURE_DENSITY = 1.0;
 
+	/**
+	 * Number of turns the zone logic keeps running after the last player has
+	 * left, before the zone goes dormant. About one minute.
+	 */
+	private static final int COOLING_TURNS = 200;
+
+	/**
+	 * Maximum number of postponed turn events a single listener may catch up
+	 * when the zone wakes up.
+	 */
+	private static final int MAX_CATCH_UP_EVENTS = 100;
+
 	TeleportationRules teleRules = new TeleportationRules();
 
 	/** the logger instance. */
@@ -138,6 +156,43 @@ public class StendhalRPZone extends MarauroaRPZone {
 	/** Contains data to verify is someone is in a PK-free area. */
 	public CollisionDetection protectionMap;
 
+	/**
+	 * Position index of the entities in the zone. Use getEntityGrid() to
+	 * access it, so that it follows the size of the collision map.
+	 */
+	private EntityGrid entityGrid;
+
+	/**
+	 * Position index of the players and their friends, used for the
+	 * proximity queries of NPCs and creatures. Use getFriendGrid() to access
+	 * it.
+	 */
+	private EntityGrid friendGrid;
+
+	/**
+	 * Position index of the movement listener areas. Use getListenerGrid() to
+	 * access it.
+	 */
+	private MovementListenerGrid listenerGrid;
+
+	/**
+	 * Static navigation data for path finding. Use getNavigationGrid() to
+	 * access it, so that it follows the changes of the collision map.
+	 */
+	private volatile NavigationGrid navigationGrid;
+
+	/** Current activity state of the zone. */
+	private ZoneActivity activity = ZoneActivity.COOLING;
+
+	/** The turn when the activity state last changed. */
+	private int activityChangeTurn;
+
+	/**
+	 * Turn events of spawners in the zone that were due while the zone was
+	 * dormant, and the turns they were due.
+	 */
+	private final Map<TurnListener, Integer> postponedTurnEvents = new LinkedHashMap<TurnListener, Integer>();
+
 	/** Position of this zone in the world map. */
 	private boolean interior = true;
 
@@ -148,7 +203,25 @@ public class StendhalRPZone extends MarauroaRPZone {
 	private int y;
 
 	/** User representable name of the zone. */
-	private final String readableName;
+	private String readableName;
+
+	/**
+	 * The pool where this zone is returned when it is removed from the world,
+	 * or <code>null</code> if the zone is not a pooled instance.
+	 */
+	ZoneInstancePool<?> instancePool;
+
+	/**
+	 * <code>true</code> if the collision map is shared with the template
+	 * zone, and must be copied before changing it.
+	 */
+	private boolean sharedCollisionMap;
+
+	/**
+	 * <code>true</code> if the protection map is shared with the template
+	 * zone, and must be copied before changing it.
+	 */
+	private boolean sharedProtectionMap;
 
 	public StendhalRPZone(final String name) {
 		super(name);
@@ -170,6 +243,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 		collisionMap = new CollisionDetection();
 		protectionMap = new CollisionDetection();
+		activityChangeTurn = SingletonRepository.getTurnNotifier().getCurrentTurn();
 		String readable = createReadableName(name);
 		if (!name.equals(readable)) {
 			readableName = readable;
@@ -195,7 +269,10 @@ public class StendhalRPZone extends MarauroaRPZone {
 		}
 		contents.addAll(zone.contents);
 		collisionMap = zone.collisionMap;
+		navigationGrid = zone.getNavigationGrid();
 		protectionMap  = zone.protectionMap;
+		sharedCollisionMap = true;
+		sharedProtectionMap = true;
 
 		this.zoneid = new ID(name);
 	}
@@ -327,9 +404,18 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 	public void addTilesets(final String name, final List<TileSetDefinition> tilesets)
 			throws IOException {
-		/*
-		 * Serialize the tileset data to send it to client.
-		 */
+		addToContent(name, encodeTilesets(tilesets));
+	}
+
+	/**
+	 * Serialize the tileset data to send it to client.
+	 *
+	 * @param tilesets tilesets of a zone map
+	 * @return encoded tileset data
+	 * @throws IOException in case of a serialization error
+	 */
+	public static byte[] encodeTilesets(final List<TileSetDefinition> tilesets)
+			throws IOException {
 		final ByteArrayOutputStream array = new ByteArrayOutputStream();
 		final OutputSerializer out = new OutputSerializer(array);
 
@@ -349,7 +435,18 @@ public class StendhalRPZone extends MarauroaRPZone {
 			}
 		}
 
-		addToContent(name, array.toByteArray());
+		return array.toByteArray();
+	}
+
+	/**
+	 * Add data for the client that has already been encoded, such as the
+	 * layers of a prepared zone map.
+	 *
+	 * @param name name of the content
+	 * @param data encoded data
+	 */
+	public void addContent(final String name, final byte[] data) {
+		addToContent(name, data);
 	}
 
 	/**
@@ -411,15 +508,40 @@ public class StendhalRPZone extends MarauroaRPZone {
 	public void addCollisionLayer(final String name, final LayerDefinition collisionLayer)
 			throws IOException {
 		addToContent(name, collisionLayer.encode());
+		if (sharedCollisionMap) {
+			collisionMap = new CollisionDetection();
+			sharedCollisionMap = false;
+		}
 		collisionMap.setCollisionData(collisionLayer);
+		navigationGrid = new NavigationGrid(collisionMap);
 	}
 
 	public void addProtectionLayer(final String name, final LayerDefinition protectionLayer)
 			throws IOException {
 		addToContent(name, protectionLayer.encode());
+		if (sharedProtectionMap) {
+			protectionMap = new CollisionDetection();
+			sharedProtectionMap = false;
+		}
 		protectionMap.setCollisionData(protectionLayer);
 	}
 
+	/**
+	 * Set collision and protection maps that were built from the layers of
+	 * the zone map in advance. The layers themselves should be added with
+	 * {@link #addContent(String, byte[])}.
+	 *
+	 * @param collision collision map
+	 * @param navigation navigation grid built from the collision map
+	 * @param protection protection map
+	 */
+	public void setCollisionMaps(final CollisionDetection collision,
+			final NavigationGrid navigation, final CollisionDetection protection) {
+		collisionMap = collision;
+		navigationGrid = navigation;
+		protectionMap = protection;
+	}
+
 	public void setPosition(final int level, final int x, final int y) {
 		this.interior = false;
 		this.level = level;
@@ -733,6 +855,20 @@ public class StendhalRPZone extends MarauroaRPZone {
 		return collisionMap.getWidth();
 	}
 
+	/**
+	 * Get the static navigation data of the zone.
+	 *
+	 * @return navigation grid matching the current collision map
+	 */
+	public NavigationGrid getNavigationGrid() {
+		NavigationGrid grid = navigationGrid;
+		if ((grid == null) || !grid.isCurrent(collisionMap)) {
+			grid = new NavigationGrid(collisionMap);
+			navigationGrid = grid;
+		}
+		return grid;
+	}
+
 	public int getHeight() {
 		return collisionMap.getHeight();
 	}
@@ -804,6 +940,9 @@ public class StendhalRPZone extends MarauroaRPZone {
 		 */
 		assignRPObjectID(object);
 		super.add(object);
+		if (object instanceof Entity) {
+			getEntityGrid().add((Entity) object);
+		}
 
 		notifyAdded(object);
 
@@ -867,6 +1006,14 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 		// TODO: Move up to MarauroaRPZone?
 		SingletonRepository.getRPWorld().requestSync(object);
+
+		final boolean friend = playersAndFriends.contains(object);
+		if (friend) {
+			getFriendGrid().add((Entity) object);
+		}
+		if (friend || ((object instanceof SpeakerNPC) && ((SpeakerNPC) object).isAllowedToActAlone())) {
+			wakeUp();
+		}
 	}
 
 	/**
@@ -877,6 +1024,8 @@ public class StendhalRPZone extends MarauroaRPZone {
 	public void addToPlayersAndFriends(RPEntity object) {
 		if (!playersAndFriends.contains(object)) {
 			playersAndFriends.add(object);
+			getFriendGrid().add(object);
+			wakeUp();
 		}
 	}
 
@@ -939,6 +1088,10 @@ public class StendhalRPZone extends MarauroaRPZone {
 		}
 
 		super.remove(id);
+		if (object instanceof Entity) {
+			getEntityGrid().remove((Entity) object);
+			getFriendGrid().remove((Entity) object);
+		}
 
 		if (object instanceof Item) {
 			final Item item = (Item) object;
@@ -946,6 +1099,10 @@ public class StendhalRPZone extends MarauroaRPZone {
 			item.onRemoveFromGround();
 		}
 
+		if (playersAndFriends.isEmpty() && (activity == ZoneActivity.ACTIVE)) {
+			setActivity(ZoneActivity.COOLING);
+		}
+
 		return object;
 	}
 
@@ -979,7 +1136,88 @@ public class StendhalRPZone extends MarauroaRPZone {
 	@Override
 	public synchronized void modify(final RPObject object) {
 		// We modify the base container if the object changes.
-		super.modify(object.getBaseContainer());
+		final RPObject base = object.getBaseContainer();
+		super.modify(base);
+		if (base instanceof Entity) {
+			getEntityGrid().update((Entity) base);
+			getFriendGrid().update((Entity) base);
+			if (base instanceof MovementListener) {
+				getListenerGrid().update((MovementListener) base);
+			}
+		}
+	}
+
+	/**
+	 * Update the position index after an entity in the zone has moved or
+	 * changed its size.
+	 *
+	 * @param entity the changed entity
+	 */
+	public synchronized void updateEntityIndex(final Entity entity) {
+		getEntityGrid().update(entity);
+		getFriendGrid().update(entity);
+		if (entity instanceof MovementListener) {
+			getListenerGrid().update((MovementListener) entity);
+		}
+	}
+
+	/**
+	 * Get the position index of the entities, rebuilding it if the zone
+	 * size has changed since it was created.
+	 *
+	 * @return entity index
+	 */
+	private EntityGrid getEntityGrid() {
+		final int width = getWidth();
+		final int height = getHeight();
+		if ((entityGrid == null) || (entityGrid.getWidth() != width)
+				|| (entityGrid.getHeight() != height)) {
+			entityGrid = new EntityGrid(width, height);
+			for (final RPObject object : objects.values()) {
+				if (object instanceof Entity) {
+					entityGrid.add((Entity) object);
+				}
+			}
+		}
+		return entityGrid;
+	}
+
+	/**
+	 * Get the position index of the players and their friends, rebuilding it
+	 * if the zone size has changed since it was created.
+	 *
+	 * @return player and friend index
+	 */
+	private EntityGrid getFriendGrid() {
+		final int width = getWidth();
+		final int height = getHeight();
+		if ((friendGrid == null) || (friendGrid.getWidth() != width)
+				|| (friendGrid.getHeight() != height)) {
+			friendGrid = new EntityGrid(width, height);
+			for (final RPEntity entity : playersAndFriends) {
+				friendGrid.add(entity);
+			}
+		}
+		return friendGrid;
+	}
+
+	/**
+	 * Get the position index of the movement listeners, rebuilding it if the
+	 * zone size has changed since it was created.
+	 *
+	 * @return movement listener index
+	 */
+	private synchronized MovementListenerGrid getListenerGrid() {
+		final int width = getWidth();
+		final int height = getHeight();
+		if ((listenerGrid == null) || (listenerGrid.getWidth() != width)
+				|| (listenerGrid.getHeight() != height)) {
+			listenerGrid = new MovementListenerGrid(width, height);
+			for (final MovementListener listener : movementListeners) {
+				listenerGrid.add(listener);
+			}
+		}
+		return listenerGrid;
 	}
 
 	/**
@@ -1057,8 +1295,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 		}
 
 		if (checkObjects) {
-			Rectangle2D area = entity.getArea(x, y);
-			return collidesObjects(entity, area);
+			return getEntityGrid().getObstacle(entity, x, y, entity.getWidth(), entity.getHeight()) != null;
 		}
 
 		return false;
@@ -1070,23 +1307,10 @@ public class StendhalRPZone extends MarauroaRPZone {
 		return getCollidingObject(entity, area) != null;
 	}
 
-	private Entity getCollidingObject(final Entity entity, final Rectangle2D area) {
-		for (final RPObject other : objects.values()) {
-			// Ignore same object
-			if (entity != other) {
-				final Entity otherEntity = (Entity) other;
-
-				// Check if the objects overlap
-				if (area.intersects(otherEntity.getX(), otherEntity.getY(), otherEntity.getWidth(), otherEntity.getHeight())) {
-					// Check if it's blocking
-					if (otherEntity.isObstacle(entity)) {
-						return otherEntity;
-					}
-				}
-			}
-		}
-
-		return null;
+	private synchronized Entity getCollidingObject(final Entity entity, final Rectangle2D area) {
+		// Only the entities in the buckets covering the area are checked
+		return getEntityGrid().getObstacle(entity, area.getX(), area.getY(),
+				area.getWidth(), area.getHeight());
 	}
 
 	/**
@@ -1097,15 +1321,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 * @return the first entity found if there are more than one or null if there are none
 	 */
 	public synchronized Entity getEntityAt(final double x, final double y) {
-		for (final RPObject other : objects.values()) {
-			final Entity otherEntity = (Entity) other;
-
-			final Rectangle2D rect = otherEntity.getArea();
-			if (rect.contains(x, y)) {
-				return otherEntity;
-			}
-		}
-		return null;
+		return getEntityGrid().getEntityAt(x, y);
 	}
 
 	/**
@@ -1116,15 +1332,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 */
 	public synchronized List<Entity> getEntitiesAt(final double x, final double y) {
 		List<Entity> entities = new LinkedList<Entity>();
-
-		for (final RPObject other : objects.values()) {
-			final Entity entity = (Entity) other;
-
-			final Rectangle2D rect = entity.getArea();
-			if (rect.contains(x, y)) {
-				entities.add(entity);
-			}
-		}
+		getEntityGrid().getEntitiesAt(x, y, entities);
 
 		return entities;
 	}
@@ -1139,14 +1347,8 @@ public class StendhalRPZone extends MarauroaRPZone {
 	public synchronized <T extends Entity> List<T> getEntitiesAt(final double x, final double y, Class<T> clazz) {
 		List<T> entities = new LinkedList<T>();
 
-		for (final RPObject other : objects.values()) {
-			final Entity entity = (Entity) other;
-			if (!clazz.isInstance(entity)) {
-				continue;
-			}
-
-			final Rectangle2D rect = entity.getArea();
-			if (rect.contains(x, y)) {
+		for (final Entity entity : getEntitiesAt(x, y)) {
+			if (clazz.isInstance(entity)) {
 				entities.add(clazz.cast(entity));
 			}
 		}
@@ -1154,6 +1356,20 @@ public class StendhalRPZone extends MarauroaRPZone {
 		return entities;
 	}
 
+	/**
+	 * Finds all entities whose area intersects an area.
+	 *
+	 * @param area searched area
+	 * @return list of entities overlapping the area
+	 */
+	public synchronized List<Entity> getEntitiesInArea(final Rectangle2D area) {
+		List<Entity> entities = new ArrayList<Entity>();
+		getEntityGrid().getEntities(area.getX(), area.getY(), area.getWidth(),
+				area.getHeight(), entities);
+
+		return entities;
+	}
+
 	/**
 	 * Get the zone name. This is the same as <code>getID().getID()</code>,
 	 * only cleaner to use.
@@ -1175,15 +1391,11 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 *            The new Y coordinate.
 	 */
 	public void notifyEntered(final ActiveEntity entity, final int newX, final int newY) {
-		Rectangle2D eArea;
-
-		eArea = entity.getArea(newX, newY);
+		final double w = entity.getWidth();
+		final double h = entity.getHeight();
 
-		for (final MovementListener l : movementListeners) {
-			Rectangle2D area = l.getArea();
-			if (area.intersects(eArea)) {
-				l.onEntered(entity, this, newX, newY);
-			}
+		for (final MovementListener l : getListenerGrid().getListeners(newX, newY, w, h)) {
+			l.onEntered(entity, this, newX, newY);
 		}
 	}
 
@@ -1198,15 +1410,11 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 *            The old Y coordinate.
 	 */
 	public void notifyExited(final ActiveEntity entity, final int oldX, final int oldY) {
-		Rectangle2D eArea;
-
-		eArea = entity.getArea(oldX, oldY);
+		final double w = entity.getWidth();
+		final double h = entity.getHeight();
 
-		for (final MovementListener l : movementListeners) {
-			Rectangle2D area = l.getArea();
-			if (area.intersects(eArea)) {
-				l.onExited(entity, this, oldX, oldY);
-			}
+		for (final MovementListener l : getListenerGrid().getListeners(oldX, oldY, w, h)) {
+			l.onExited(entity, this, oldX, oldY);
 		}
 	}
 
@@ -1226,19 +1434,22 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 */
 	public void notifyMovement(final ActiveEntity entity, final int oldX, final int oldY,
 			final int newX, final int newY) {
-		Rectangle2D oeArea;
-		Rectangle2D neArea;
+		final double w = entity.getWidth();
+		final double h = entity.getHeight();
 		boolean oldIn;
 		boolean newIn;
 
-		oeArea = entity.getArea(oldX, oldY);
-		neArea = entity.getArea(newX, newY);
+		// Only the listeners near the old or the new position can be affected
+		final int minX = Math.min(oldX, newX);
+		final int minY = Math.min(oldY, newY);
+		final List<MovementListener> candidates = getListenerGrid().getListeners(minX, minY,
+				Math.max(oldX, newX) - minX + w, Math.max(oldY, newY) - minY + h);
 
-		for (final MovementListener l : movementListeners) {
+		for (final MovementListener l : candidates) {
 			Rectangle2D area = l.getArea();
 
-			oldIn = area.intersects(oeArea);
-			newIn = area.intersects(neArea);
+			oldIn = MovementListenerGrid.intersects(area, oldX, oldY, w, h);
+			newIn = MovementListenerGrid.intersects(area, newX, newY, w, h);
 
 			if (!oldIn && newIn) {
 				l.onEntered(entity, this, newX, newY);
@@ -1256,20 +1467,11 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 	public void notifyBeforeMovement(final ActiveEntity entity, final int oldX, final int oldY,
 			final int newX, final int newY) {
-		Rectangle2D neArea;
-		boolean newIn;
-
-		neArea = entity.getArea(newX, newY);
-
-		for (final MovementListener l : movementListeners) {
-			Rectangle2D area = l.getArea();
-
-			newIn = area.intersects(neArea);
-
-			if (newIn) {
-				l.beforeMove(entity, this, oldX, oldY, newX, newY);
-			}
+		final double w = entity.getWidth();
+		final double h = entity.getHeight();
 
+		for (final MovementListener l : getListenerGrid().getListeners(newX, newY, w, h)) {
+			l.beforeMove(entity, this, oldX, oldY, newX, newY);
 		}
 	}
 
@@ -1284,14 +1486,18 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 
 	/**
-	 * Register a movement listener for notification. Eventually create a
-	 * macro-block hash to cut down on listeners to check.
+	 * Register a movement listener for notification. The area of the listener
+	 * is indexed when it is added, so listeners that are not entities in the
+	 * zone need to be removed and added again if their area changes.
 	 *
 	 * @param listener
 	 *            A movement listener to register.
 	 */
 	public void addMovementListener(final MovementListener listener) {
+		// Get the index first, so that a rebuild does not add the listener twice
+		final MovementListenerGrid grid = getListenerGrid();
 		movementListeners.add(listener);
+		grid.add(listener);
 	}
 
 	/**
@@ -1301,7 +1507,9 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 *            A movement listener to unregister.
 	 */
 	public void removeMovementListener(final MovementListener listener) {
-		movementListeners.remove(listener);
+		if (movementListeners.remove(listener)) {
+			getListenerGrid().remove(listener);
+		}
 	}
 
 	@Override
@@ -1335,6 +1543,47 @@ public class StendhalRPZone extends MarauroaRPZone {
 		return playersAndFriends;
 	}
 
+	/**
+	 * Finds the players and friendly entities whose area intersects an area.
+	 * The cost depends on the number of players and friends near the area,
+	 * not on their number in the whole zone.
+	 *
+	 * @param area searched area
+	 * @return list of players and friends overlapping the area
+	 */
+	public synchronized List<RPEntity> getPlayerAndFriendsInArea(final Rectangle2D area) {
+		final List<Entity> entities = new ArrayList<Entity>();
+		getFriendGrid().getEntities(area.getX(), area.getY(), area.getWidth(),
+				area.getHeight(), entities);
+
+		final List<RPEntity> result = new ArrayList<RPEntity>(entities.size());
+		for (final Entity entity : entities) {
+			result.add((RPEntity) entity);
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the players standing near a position. Near means that they are
+	 * standing less than <i>range</i> squares away horizontally and less than
+	 * <i>range</i> squares away vertically.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param range search range
+	 * @return list of nearby players
+	 */
+	public List<Player> getPlayersNear(final int x, final int y, final double range) {
+		final List<Player> result = new ArrayList<Player>();
+		for (final RPEntity entity : getPlayerAndFriendsInArea(new Rectangle2D.Double(x - range, y - range, 2 * range, 2 * range))) {
+			if ((entity instanceof Player) && (Math.abs(entity.getX() - x) < range)
+					&& (Math.abs(entity.getY() - y) < range)) {
+				result.add((Player) entity);
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Can moveto (mouse movement using pathfinding) be done on this map?
 	 *
@@ -1389,12 +1638,27 @@ public class StendhalRPZone extends MarauroaRPZone {
 	}
 
 	public void logic() {
+		if (activity == ZoneActivity.DORMANT) {
+			return;
+		}
+		if ((activity == ZoneActivity.COOLING) && mayHibernate()
+				&& (getCurrentTurn() - activityChangeTurn >= COOLING_TURNS)) {
+			setActivity(ZoneActivity.DORMANT);
+			return;
+		}
+
+		final TurnProfiler profiler = TurnProfiler.get();
+		final boolean profile = profiler.isEnabled();
 		for (final NPC npc : npcs) {
+			final long start = profile ? System.nanoTime() : 0;
 			try {
 				npc.logic();
 			} catch (final Exception e) {
 				logger.error("Error in npc logic for zone " + getID().getID(), e);
 			}
+			if (profile) {
+				profiler.recordNPC(npc, System.nanoTime() - start);
+			}
 		}
 		for (final Portal portal : portals) {
 		    try {
@@ -1405,6 +1669,138 @@ public class StendhalRPZone extends MarauroaRPZone {
 		}
 	}
 
+	/**
+	 * Get the activity state of the zone.
+	 *
+	 * @return activity state
+	 */
+	public ZoneActivity getActivity() {
+		return activity;
+	}
+
+	/**
+	 * Check if the zone is dormant, so that it does not need per turn logic.
+	 *
+	 * @return <code>true</code> if the zone is dormant
+	 */
+	public boolean isDormant() {
+		return activity == ZoneActivity.DORMANT;
+	}
+
+	/**
+	 * Postpone a turn event of a spawner in the zone, if the zone is dormant.
+	 * The postponed events are caught up when a player enters the zone.
+	 * Listeners that reschedule themselves in <code>onTurnReached()</code>
+	 * get notified once for each event that would have happened in the
+	 * meantime.
+	 *
+	 * @param listener the listener that was notified
+	 * @param turn the turn of the notification
+	 * @return <code>true</code> if the event was postponed and should be
+	 * 	ignored by the listener for now, <code>false</code> if the zone is
+	 * 	awake and the event should be handled normally
+	 */
+	public synchronized boolean postponeTurnEvent(final TurnListener listener, final int turn) {
+		if (activity != ZoneActivity.DORMANT) {
+			return false;
+		}
+		if (!postponedTurnEvents.containsKey(listener)) {
+			postponedTurnEvents.put(listener, Integer.valueOf(turn));
+		}
+		return true;
+	}
+
+	/**
+	 * Check if the zone may go dormant.
+	 *
+	 * @return <code>true</code> if there is nothing in the zone that needs
+	 * 	per turn logic
+	 */
+	private boolean mayHibernate() {
+		if (!playersAndFriends.isEmpty()) {
+			return false;
+		}
+		for (final NPC npc : npcs) {
+			if ((npc instanceof SpeakerNPC) && ((SpeakerNPC) npc).isAllowedToActAlone()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Make the zone active, and catch up with what would have happened while
+	 * it was dormant.
+	 */
+	private void wakeUp() {
+		final ZoneActivity old = activity;
+		final int dormantSince = activityChangeTurn;
+		setActivity(ZoneActivity.ACTIVE);
+		if (old == ZoneActivity.DORMANT) {
+			final int elapsed = activityChangeTurn - dormantSince;
+			logger.debug("Zone " + getName() + " woke up after " + elapsed + " turns");
+			for (final NPC npc : new ArrayList<NPC>(npcs)) {
+				if (npc instanceof Creature) {
+					((Creature) npc).catchUp(elapsed);
+				}
+			}
+			catchUpPostponedTurnEvents();
+		}
+	}
+
+	/**
+	 * Replay the turn events that were postponed while the zone was dormant.
+	 */
+	private void catchUpPostponedTurnEvents() {
+		if (postponedTurnEvents.isEmpty()) {
+			return;
+		}
+		final TurnNotifier notifier = SingletonRepository.getTurnNotifier();
+		final int turn = getCurrentTurn();
+		final Map<TurnListener, Integer> events = new LinkedHashMap<TurnListener, Integer>(postponedTurnEvents);
+		postponedTurnEvents.clear();
+
+		for (final Map.Entry<TurnListener, Integer> entry : events.entrySet()) {
+			final TurnListener listener = entry.getKey();
+			int elapsed = turn - entry.getValue().intValue();
+			try {
+				listener.onTurnReached(turn);
+				/*
+				 * Fire the events that would have happened after the
+				 * postponed one, and shift the next pending event by the time
+				 * spent dormant.
+				 */
+				for (int i = 0; i < MAX_CATCH_UP_EVENTS; i++) {
+					final int remaining = notifier.getRemainingTurns(listener);
+					if ((remaining < 0) || (remaining > elapsed)) {
+						break;
+					}
+					elapsed -= remaining;
+					notifier.dontNotify(listener);
+					listener.onTurnReached(turn);
+				}
+				final int remaining = notifier.getRemainingTurns(listener);
+				if ((remaining > 0) && (elapsed > 0)) {
+					notifier.dontNotify(listener);
+					notifier.notifyInTurns(Math.max(0, remaining - elapsed - 1), listener);
+				}
+			} catch (final RuntimeException e) {
+				logger.error("Error catching up turn events of " + listener + " in zone " + getName(), e);
+			}
+		}
+	}
+
+	private void setActivity(final ZoneActivity activity) {
+		if (this.activity != activity) {
+			this.activity = activity;
+			activityChangeTurn = getCurrentTurn();
+		}
+	}
+
+	private static int getCurrentTurn() {
+		return SingletonRepository.getTurnNotifier().getCurrentTurn();
+	}
+
 	/**
 	 * Return whether the zone is completely empty.
 	 * @return true if there are no objects in zone
@@ -1556,6 +1952,47 @@ public class StendhalRPZone extends MarauroaRPZone {
 		teleRules.disallowOut(x, y, width, height);
 	}
 
+	/**
+	 * Rename a pooled instance zone before it is taken in use again.
+	 *
+	 * @param name new zone name
+	 */
+	void setInstanceName(final String name) {
+		zoneid = new ID(name);
+		String readable = createReadableName(name);
+		if (!name.equals(readable)) {
+			readableName = readable;
+		} else {
+			readableName = null;
+		}
+		if (attributes != null) {
+			if (readableName != null) {
+				attributes.put("readable_name", readableName);
+			} else {
+				attributes.remove("readable_name");
+			}
+		}
+	}
+
+	/**
+	 * Clear a pooled instance zone for reuse. All entities and listeners are
+	 * removed, so the cost is linear to the number of entities in the zone.
+	 * The shared map data is kept.
+	 */
+	synchronized void resetInstance() {
+		movementListeners.clear();
+		zoneListeners.clear();
+		listenerGrid = null;
+		final List<RPObject> objectList = new ArrayList<RPObject>(objects.values());
+		for (final RPObject object : objectList) {
+			remove(object);
+		}
+		postponedTurnEvents.clear();
+		teleRules = new TeleportationRules();
+		// Forget the removals, no one is there to see them
+		super.nextTurn();
+	}
+
 	public void onRemoved() {
 		for (RPObject inspected : this) {
 			if (inspected instanceof ActiveEntity) {
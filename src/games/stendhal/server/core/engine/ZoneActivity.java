@@ -0,0 +1,31 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+/**
+ * Activity states of a zone.
+ */
+public enum ZoneActivity {
+	/** There are players or their friends in the zone. */
+	ACTIVE,
+	/**
+	 * The zone has become empty recently. The zone logic is still run, so
+	 * that creatures and NPCs can settle down.
+	 */
+	COOLING,
+	/**
+	 * The zone has been empty for a while. No per turn logic is run, and the
+	 * turn events of the spawners in the zone are postponed until a player
+	 * enters again.
+	 */
+	DORMANT;
+}
@@ -0,0 +1,169 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.server.core.events.TurnListener;
+import games.stendhal.server.core.events.TurnNotifier;
+import marauroa.common.Configuration;
+
+/**
+ * A pool of reusable instance zones, such as the personal bank vaults, made
+ * from the same template zone. The instances share the immutable map data of
+ * the template. An instance removed from the world with
+ * {@link StendhalRPWorld#removeZone(StendhalRPZone)} is cleared of its
+ * entities and listeners and returned to the pool. Idle instances are not in
+ * the world, so they take no part in the turn logic.
+ * <p>
+ * When the pool runs low, spare instances are created in advance, one per
+ * turn, so that a rush of requests is served from the pool.
+ *
+ * @param <T> zone type
+ */
+public final class ZoneInstancePool<T extends StendhalRPZone> {
+	private static final Logger logger = Logger.getLogger(ZoneInstancePool.class);
+
+	/** Default maximum number of idle instances kept in a pool. */
+	private static final int DEFAULT_MAX_IDLE = 32;
+	/** Default number of spare instances prepared in advance. */
+	private static final int DEFAULT_SPARE = 4;
+	/** Name of the idle instances. They are renamed when taken in use. */
+	private static final String IDLE_NAME = "_idle_instance";
+
+	/** Maximum number of idle instances kept in a pool. */
+	private static int maxIdle = DEFAULT_MAX_IDLE;
+	/** Number of spare instances prepared in advance. */
+	private static int spare = DEFAULT_SPARE;
+
+	/** Instance creator. */
+	private final Factory<T> factory;
+	/** Idle instances. */
+	private final Deque<T> idle = new ArrayDeque<T>();
+	/** <code>true</code> if creating spare instances has been scheduled. */
+	private boolean refillScheduled;
+
+	/**
+	 * Create a new ZoneInstancePool.
+	 *
+	 * @param factory factory for creating new instances
+	 */
+	public ZoneInstancePool(final Factory<T> factory) {
+		this.factory = factory;
+	}
+
+	/**
+	 * Read the pool sizes from the server configuration.
+	 *
+	 * @param config server configuration
+	 */
+	public static void init(final Configuration config) {
+		maxIdle = Math.max(0, config.getInt("zone_instance_pool_size", DEFAULT_MAX_IDLE));
+		spare = Math.max(0, Math.min(config.getInt("zone_instance_spare", DEFAULT_SPARE), maxIdle));
+	}
+
+	/**
+	 * Get an instance zone. The instance has no entities or listeners, and
+	 * it is not yet added to the world.
+	 *
+	 * @param name name of the instance zone
+	 * @return zone instance
+	 */
+	public synchronized T acquire(final String name) {
+		T zone = idle.pollFirst();
+		if (zone == null) {
+			zone = factory.create(name);
+		} else {
+			zone.setInstanceName(name);
+		}
+		zone.instancePool = this;
+		scheduleRefill();
+
+		return zone;
+	}
+
+	/**
+	 * Return an instance removed from the world to the pool.
+	 *
+	 * @param zone removed instance
+	 */
+	synchronized void release(final StendhalRPZone zone) {
+		zone.instancePool = null;
+		if (!zone.getPlayers().isEmpty()) {
+			logger.warn("Not reusing zone " + zone.getName() + " that still has players");
+			return;
+		}
+		zone.resetInstance();
+		if (idle.size() < maxIdle) {
+			// The zone came from this pool, so it has the right type
+			@SuppressWarnings("unchecked")
+			T instance = (T) zone;
+			idle.addFirst(instance);
+		}
+	}
+
+	/**
+	 * Get the number of idle instances.
+	 *
+	 * @return idle instance count
+	 */
+	public synchronized int getIdleCount() {
+		return idle.size();
+	}
+
+	/**
+	 * Schedule creating spare instances, if the pool has less than needed.
+	 */
+	private void scheduleRefill() {
+		if (!refillScheduled && (idle.size() < spare)) {
+			refillScheduled = true;
+			TurnNotifier.get().notifyInTurns(0, new Refill());
+		}
+	}
+
+	/**
+	 * Creates the spare instances one per turn, to avoid bumps in the turn
+	 * times.
+	 */
+	private class Refill implements TurnListener {
+		@Override
+		public void onTurnReached(final int currentTurn) {
+			synchronized (ZoneInstancePool.this) {
+				refillScheduled = false;
+				if (idle.size() < spare) {
+					idle.addLast(factory.create(IDLE_NAME));
+					scheduleRefill();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creator for new instance zones.
+	 *
+	 * @param <T> zone type
+	 */
+	public interface Factory<T extends StendhalRPZone> {
+		/**
+		 * Create a new instance zone. Entities and listeners should be added
+		 * only after the instance has been acquired, as they are removed when
+		 * the instance is returned to the pool.
+		 *
+		 * @param name name of the instance zone
+		 * @return new zone
+		 */
+		T create(String name);
+	}
+}
@@ -0,0 +1,140 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Runs zone local turn logic of several zones in parallel on a fork-join pool.
+ * <p>
+ * The logic of one zone is always run by a single thread. Effects reaching
+ * outside a zone, such as zone changes, kills, turn notifications and database
+ * commands, must not be applied while the zones run in parallel. Code causing
+ * them checks {@link #defer(Runnable)}, which queues the effect for the merge
+ * phase when called from the parallel phase. In the merge phase the deferred
+ * effects are applied on the calling thread, zone after zone in the order the
+ * zones were given, so the result does not depend on thread scheduling.
+ */
+public final class ZoneLogicExecutor {
+	private static final Logger logger = Logger.getLogger(ZoneLogicExecutor.class);
+
+	/**
+	 * Deferred effects of the zone the current thread is working on, or
+	 * <code>null</code> outside the parallel phase.
+	 */
+	private static final ThreadLocal<List<Runnable>> DEFERRED = new ThreadLocal<List<Runnable>>();
+
+	private final ForkJoinPool pool;
+
+	/**
+	 * Create a new ZoneLogicExecutor.
+	 *
+	 * @param threads number of worker threads
+	 */
+	public ZoneLogicExecutor(final int threads) {
+		pool = new ForkJoinPool(threads);
+	}
+
+	/**
+	 * Defer an effect to the merge phase, if the current thread is running
+	 * zone logic in parallel.
+	 *
+	 * @param effect effect to apply
+	 * @return <code>true</code> if the effect was deferred, <code>false</code>
+	 * 	if the caller is not in the parallel phase and should apply the effect
+	 * 	directly
+	 */
+	public static boolean defer(final Runnable effect) {
+		final List<Runnable> deferred = DEFERRED.get();
+		if (deferred == null) {
+			return false;
+		}
+		deferred.add(effect);
+		return true;
+	}
+
+	/**
+	 * Check if the current thread is running zone logic in parallel.
+	 *
+	 * @return <code>true</code> in the parallel phase
+	 */
+	public static boolean isParallelPhase() {
+		return DEFERRED.get() != null;
+	}
+
+	/**
+	 * Run a task for each of the zones in parallel, and then apply the
+	 * deferred effects.
+	 *
+	 * @param zones zones
+	 * @param task zone local logic
+	 */
+	public void execute(final Collection<StendhalRPZone> zones, final Task<StendhalRPZone> task) {
+		final List<ZoneAction> actions = new ArrayList<ZoneAction>(zones.size());
+		for (final StendhalRPZone zone : zones) {
+			actions.add(new ZoneAction(zone, task));
+		}
+
+		pool.invoke(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				invokeAll(actions);
+			}
+		});
+
+		// merge phase
+		for (final ZoneAction action : actions) {
+			for (final Runnable effect : action.deferred) {
+				try {
+					effect.run();
+				} catch (final RuntimeException e) {
+					logger.error("Error applying deferred effect of zone " + action.zone.getName(), e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Zone logic of a single zone.
+	 */
+	private static final class ZoneAction extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final StendhalRPZone zone;
+		private final Task<StendhalRPZone> task;
+		private final List<Runnable> deferred = new ArrayList<Runnable>();
+
+		ZoneAction(final StendhalRPZone zone, final Task<StendhalRPZone> task) {
+			this.zone = zone;
+			this.task = task;
+		}
+
+		@Override
+		protected void compute() {
+			final List<Runnable> previous = DEFERRED.get();
+			DEFERRED.set(deferred);
+			try {
+				task.execute(zone);
+			} catch (final RuntimeException e) {
+				logger.error("Error in logic of zone " + zone.getName(), e);
+			} finally {
+				DEFERRED.set(previous);
+			}
+		}
+	}
+}
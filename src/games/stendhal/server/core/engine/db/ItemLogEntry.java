@@ -0,0 +1,90 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.db;
+
+import java.sql.Timestamp;
+
+/**
+ * a row of the itemlog table
+ */
+public final class ItemLogEntry {
+	private final Timestamp timedate;
+	private final int itemid;
+	private final String source;
+	private final String event;
+	private final String param1;
+	private final String param2;
+	private final String param3;
+	private final String param4;
+
+	/**
+	 * creates a new ItemLogEntry
+	 *
+	 * @param timedate time of the event
+	 * @param itemid   logid of the item
+	 * @param source   name of the player, may be <code>null</code>
+	 * @param event    name of event
+	 * @param param1   param 1
+	 * @param param2   param 2
+	 * @param param3   param 3
+	 * @param param4   param 4
+	 */
+	public ItemLogEntry(final Timestamp timedate, final int itemid, final String source, final String event,
+			final String param1, final String param2, final String param3, final String param4) {
+		this.timedate = timedate;
+		this.itemid = itemid;
+		this.source = source;
+		this.event = event;
+		this.param1 = param1;
+		this.param2 = param2;
+		this.param3 = param3;
+		this.param4 = param4;
+	}
+
+	public Timestamp getTimedate() {
+		return timedate;
+	}
+
+	public int getItemId() {
+		return itemid;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public String getEvent() {
+		return event;
+	}
+
+	public String getParam1() {
+		return param1;
+	}
+
+	public String getParam2() {
+		return param2;
+	}
+
+	public String getParam3() {
+		return param3;
+	}
+
+	public String getParam4() {
+		return param4;
+	}
+
+	@Override
+	public String toString() {
+		return "itemlog " + timedate + " " + itemid + " " + source + " " + event
+				+ " " + param1 + " " + param2 + " " + param3 + " " + param4;
+	}
+}
@@ -0,0 +1,89 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.db;
+
+import com.google.common.base.Objects;
+
+/**
+ * a kill for the kills table. Kills of the same combination on the same day
+ * are counted in one row.
+ */
+public final class KillLogEntry {
+	private final String killed;
+	private final String killedType;
+	private final String killer;
+	private final String killerType;
+	private final String day;
+
+	/**
+	 * creates a new KillLogEntry
+	 *
+	 * @param killed     name of the killed entity
+	 * @param killedType type of the killed entity
+	 * @param killer     name of the killer
+	 * @param killerType type of the killer
+	 * @param day        day of the kill as yyyy-MM-dd
+	 */
+	public KillLogEntry(final String killed, final String killedType, final String killer,
+			final String killerType, final String day) {
+		this.killed = killed;
+		this.killedType = killedType;
+		this.killer = killer;
+		this.killerType = killerType;
+		this.day = day;
+	}
+
+	public String getKilled() {
+		return killed;
+	}
+
+	public String getKilledType() {
+		return killedType;
+	}
+
+	public String getKiller() {
+		return killer;
+	}
+
+	public String getKillerType() {
+		return killerType;
+	}
+
+	public String getDay() {
+		return day;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(killed, killedType, killer, killerType, day);
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof KillLogEntry)) {
+			return false;
+		}
+		final KillLogEntry other = (KillLogEntry) obj;
+		return Objects.equal(killed, other.killed) && Objects.equal(killedType, other.killedType)
+				&& Objects.equal(killer, other.killer) && Objects.equal(killerType, other.killerType)
+				&& Objects.equal(day, other.day);
+	}
+
+	@Override
+	public String toString() {
+		return "kill " + day + " " + killer + " (" + killerType + ") killed "
+				+ killed + " (" + killedType + ")";
+	}
+}
@@ -19,6 +19,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 
@@ -29,6 +31,15 @@ import marauroa.server.db.DBTransaction;
  * database access for the redundant buddy table used on the website
  */
 public class StendhalBuddyDAO {
+	/** Maximum number of characters whose last saved relations are kept. */
+	private static final int SAVED_RELATIONS_CACHE_SIZE = 5000;
+
+	/**
+	 * The relations last saved for each character. Used to skip saving
+	 * relations that have not changed.
+	 */
+	private final Cache<String, Multimap<String, String>> savedRelations = CacheBuilder.newBuilder()
+			.maximumSize(SAVED_RELATIONS_CACHE_SIZE).build();
 
 	/**
 	 * loads the relationship lists for the specified charname
@@ -71,7 +82,8 @@ public class StendhalBuddyDAO {
 
 
 	/**
-	 * saves the buddy list for the specified charname
+	 * saves the buddy list for the specified charname. Nothing is written if
+	 * the lists are the same as on the previous save of the character.
 	 *
 	 * @param transaction transaction
 	 * @param charname name of char
@@ -79,12 +91,30 @@ public class StendhalBuddyDAO {
 	 * @throws SQLException in case of an database error
 	 */
 	public void saveRelations(DBTransaction transaction, String charname, Player player) throws SQLException {
+		Multimap<String, String> newList = HashMultimap.create();
+		newList.putAll("buddy", player.getBuddies());
+		newList.put("buddy", charname);
+		newList.putAll("ignore", player.getIgnores());
+		if (newList.equals(savedRelations.getIfPresent(charname))) {
+			return;
+		}
+
 		Multimap<String, String> oldList = loadRelations(transaction, charname);
+		syncBuddyListToDB(transaction, charname, "buddy", oldList.get("buddy"), newList.get("buddy"));
+		syncBuddyListToDB(transaction, charname, "ignore", oldList.get("ignore"), newList.get("ignore"));
+		savedRelations.put(charname, newList);
+	}
 
-		Set<String> buddies = player.getBuddies();
-		buddies.add(charname);
-		syncBuddyListToDB(transaction, charname, "buddy", oldList.get("buddy"), buddies);
-		syncBuddyListToDB(transaction, charname, "ignore", oldList.get("ignore"), player.getIgnores());
+
+	/**
+	 * Forget the relations saved for a character, so that the next call to
+	 * saveRelations compares the lists with the database in any case. Should
+	 * be called when storing a character failed.
+	 *
+	 * @param charname name of char
+	 */
+	public void forgetRelations(String charname) {
+		savedRelations.invalidate(charname);
 	}
 
 
@@ -13,6 +13,7 @@ package games.stendhal.server.core.engine.db;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 
@@ -21,10 +22,12 @@ import marauroa.common.game.RPObject;
 import marauroa.server.db.DBTransaction;
 import marauroa.server.game.db.CharacterDAO;
 import marauroa.server.game.db.DAORegister;
+import marauroa.server.game.db.RPObjectDAO;
 
 /**
  * Stendhal specific extensions to the normal CharacterDAO which will update
- * the redundant tables for the web application.
+ * the redundant tables for the web application. The redundant tables are
+ * only written when the data shown there has changed.
  */
 public class StendhalCharacterDAO extends CharacterDAO {
 	private static Logger logger = Logger.getLogger(StendhalCharacterDAO.class);
@@ -55,24 +58,83 @@ public class StendhalCharacterDAO extends CharacterDAO {
 	public void storeCharacter(final DBTransaction transaction, final String username,
 			final String character, final RPObject player) throws SQLException, IOException {
 
-		super.storeCharacter(transaction, username, character, player);
-
-		// Here goes the Stendhal specific code.
-		if (player instanceof Player) {
-			try {
+		boolean stored = false;
+		try {
+			// Here goes the Stendhal specific code.
+			if (player instanceof Player) {
 				final Player instance = (Player) player;
-				final int count = DAORegister.get().get(StendhalWebsiteDAO.class).updateCharStats(transaction, instance);
-				if (count == 0) {
-					DAORegister.get().get(StendhalWebsiteDAO.class).insertIntoCharStats(transaction, instance);
+				final StendhalBuddyDAO buddyDAO = DAORegister.get().get(StendhalBuddyDAO.class);
+				if (!DAORegister.get().get(StendhalWebsiteDAO.class).storeCharStats(transaction, instance)) {
+					// The previous save may have been rolled back, so compare the relations and sections again
+					buddyDAO.forgetRelations(character);
+					forgetSections(player);
+				}
+				super.storeCharacter(transaction, username, character, player);
+				buddyDAO.saveRelations(transaction, character, instance);
+			} else {
+				super.storeCharacter(transaction, username, character, player);
+				logger.error("player no instance of Player but: " + player, new Throwable());
+			}
+			stored = true;
+		} catch (final SQLException sqle) {
+			logger.warn("error storing character", sqle);
+			throw sqle;
+		} finally {
+			if (!stored) {
+				// the transaction is rolled back, so the redundant tables need to be compared again
+				DAORegister.get().get(StendhalWebsiteDAO.class).forgetCharStats(character);
+				DAORegister.get().get(StendhalBuddyDAO.class).forgetRelations(character);
+				forgetSections(player);
+			}
+		}
+	}
+
+	/**
+	 * Make the next save of a character compare all its sections with the
+	 * stored ones.
+	 *
+	 * @param player character object
+	 */
+	private void forgetSections(final RPObject player) {
+		final RPObjectDAO rpObjectDAO = DAORegister.get().get(RPObjectDAO.class);
+		if ((rpObjectDAO instanceof StendhalRPObjectDAO) && player.has("#db_id")) {
+			((StendhalRPObjectDAO) rpObjectDAO).forgetSections(player.getInt("#db_id"));
+		}
+	}
+
+	@Override
+	public Map<String, RPObject> loadAllCharacters(final DBTransaction transaction,
+			final String username) throws SQLException, IOException {
+		return loadSections(transaction, super.loadAllCharacters(transaction, username));
+	}
+
+	@Override
+	public Map<String, RPObject> loadAllActiveCharacters(final DBTransaction transaction,
+			final String username) throws SQLException, IOException {
+		return loadSections(transaction, super.loadAllActiveCharacters(transaction, username));
+	}
+
+	/**
+	 * Add the sections stored separately to characters that were read
+	 * directly from the rpobject table.
+	 *
+	 * @param transaction DBTransaction
+	 * @param characters characters by name
+	 * @return characters
+	 * @throws SQLException in case of an database error
+	 * @throws IOException in case of a deserialization error
+	 */
+	private Map<String, RPObject> loadSections(final DBTransaction transaction,
+			final Map<String, RPObject> characters) throws SQLException, IOException {
+		final RPObjectDAO rpObjectDAO = DAORegister.get().get(RPObjectDAO.class);
+		if (rpObjectDAO instanceof StendhalRPObjectDAO) {
+			for (final RPObject object : characters.values()) {
+				if ((object != null) && object.has("#db_id")) {
+					((StendhalRPObjectDAO) rpObjectDAO).loadSections(transaction, object.getInt("#db_id"), object);
 				}
-				DAORegister.get().get(StendhalBuddyDAO.class).saveRelations(transaction, character, instance);
-			} catch (final SQLException sqle) {
-				logger.warn("error storing character", sqle);
-				throw sqle;
 			}
-		} else {
-			logger.error("player no instance of Player but: " + player, new Throwable());
 		}
+		return characters;
 	}
 
 }
@@ -0,0 +1,75 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.db;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import games.stendhal.server.core.engine.GameEvent;
+import marauroa.server.db.DBTransaction;
+
+/**
+ * database access to the gameEvents table for batches of events
+ */
+public class StendhalGameEventDAO {
+
+	/**
+	 * writes game events as one batch. The parameters are stored like
+	 * marauroa's GameEventDAO does: the first one as param1, and the others
+	 * separated by spaces as param2.
+	 *
+	 * @param transaction DBTransaction
+	 * @param events game events
+	 * @throws SQLException in case of an database error
+	 */
+	public void addGameEvents(final DBTransaction transaction, final List<GameEvent> events) throws SQLException {
+		if (events.isEmpty()) {
+			return;
+		}
+		final PreparedStatement stmt = transaction.prepareStatement("INSERT INTO gameEvents"
+				+ " (timedate, source, event, param1, param2) VALUES (?, ?, ?, ?, ?)", null);
+		for (final GameEvent event : events) {
+			final String[] params = event.getParams();
+			String param1 = "";
+			if (params.length > 0) {
+				param1 = params[0];
+			}
+			final StringBuilder param2 = new StringBuilder();
+			for (int i = 1; i < params.length; i++) {
+				param2.append(params[i]);
+				param2.append(" ");
+			}
+			stmt.setTimestamp(1, event.getTimedate());
+			stmt.setString(2, trim(event.getSource(), 64));
+			stmt.setString(3, trim(event.getEvent(), 64));
+			stmt.setString(4, trim(param1, 127));
+			stmt.setString(5, trim(param2.toString(), 255));
+			stmt.addBatch();
+		}
+		stmt.executeBatch();
+	}
+
+	/**
+	 * trims a value to a column size
+	 *
+	 * @param value value, may be <code>null</code>
+	 * @param length column size
+	 * @return trimmed value
+	 */
+	private static String trim(final String value, final int length) {
+		if ((value == null) || (value.length() <= length)) {
+			return value;
+		}
+		return value.substring(0, length);
+	}
+}
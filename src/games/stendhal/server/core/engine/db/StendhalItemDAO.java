@@ -11,8 +11,10 @@
  ***************************************************************************/
 package games.stendhal.server.core.engine.db;
 
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import games.stendhal.server.entity.RPEntity;
@@ -29,6 +31,26 @@ public class StendhalItemDAO {
 	/** attribute name of itemid */
 	public static final String ATTR_ITEM_LOGID = "logid";
 
+	/** the last logid handed out, <code>-1</code> if it has not been read yet */
+	private int lastLogId = -1;
+
+	/**
+	 * Gets the next free logid. The highest logid is read from the database
+	 * only once; afterwards the ids are handed out from memory, so that
+	 * registering an item does not need to wait for an insert id.
+	 *
+	 * @param transaction database transaction
+	 * @return logid
+	 * @throws SQLException in case of a database error
+	 */
+	public synchronized int nextLogId(final DBTransaction transaction) throws SQLException {
+		if (lastLogId < 0) {
+			lastLogId = transaction.querySingleCellInt("SELECT COALESCE(MAX(id), 0) FROM item", null);
+		}
+		lastLogId++;
+		return lastLogId;
+	}
+
 	/**
 	 * Assigns the next logid to the specified item in case it does not already have one.
 	 *
@@ -42,13 +64,14 @@ public class StendhalItemDAO {
 		}
 
 		// insert row into
-		String sql = "INSERT INTO item (name) VALUES ('[name]')";
+		final int logid = nextLogId(transaction);
+		String sql = "INSERT INTO item (id, name) VALUES (" + logid + ", '[name]')";
 		Map<String, Object> params = new HashMap<String, Object>();
 		params.put("name", item.get("name"));
 		transaction.execute(sql, params);
 
-		// get the insert id and store it into the item
-		item.put(ATTR_ITEM_LOGID, transaction.getLastInsertId("item", "id"));
+		// store the id into the item
+		item.put(ATTR_ITEM_LOGID, logid);
 		itemLogInsertName(transaction, item);
 	}
 
@@ -112,6 +135,70 @@ public class StendhalItemDAO {
 		transaction.execute(query, null);
 	}
 
+	/**
+	 * inserts the rows of newly registered items
+	 *
+	 * @param transaction DBTransaction
+	 * @param registrations "register" entries of the items. The first parameter is the item name
+	 * @throws SQLException in case of an database error
+	 */
+	public void itemLogInsertItems(final DBTransaction transaction, final List<ItemLogEntry> registrations) throws SQLException {
+		if (registrations.isEmpty()) {
+			return;
+		}
+		final PreparedStatement stmt = transaction.prepareStatement(
+				"INSERT INTO item (id, name, timedate) VALUES (?, ?, ?)", null);
+		for (final ItemLogEntry entry : registrations) {
+			stmt.setInt(1, entry.getItemId());
+			stmt.setString(2, trim(entry.getParam1()));
+			stmt.setTimestamp(3, entry.getTimedate());
+			stmt.addBatch();
+		}
+		stmt.executeBatch();
+	}
+
+	/**
+	 * writes log entries as one batch
+	 *
+	 * @param transaction DBTransaction
+	 * @param entries log entries
+	 * @throws SQLException in case of an database error
+	 */
+	public void itemLogWriteEntries(final DBTransaction transaction, final List<ItemLogEntry> entries) throws SQLException {
+		if (entries.isEmpty()) {
+			return;
+		}
+		final PreparedStatement stmt = transaction.prepareStatement("INSERT INTO itemlog (timedate, itemid, source, event, "
+				+ "param1, param2, param3, param4) VALUES (?, ?, ?, ?, ?, ?, ?, ?)", null);
+		for (final ItemLogEntry entry : entries) {
+			stmt.setTimestamp(1, entry.getTimedate());
+			stmt.setInt(2, entry.getItemId());
+			stmt.setString(3, trim(entry.getSource()));
+			stmt.setString(4, trim(entry.getEvent()));
+			stmt.setString(5, trim(entry.getParam1()));
+			stmt.setString(6, trim(entry.getParam2()));
+			stmt.setString(7, trim(entry.getParam3()));
+			stmt.setString(8, trim(entry.getParam4()));
+			stmt.addBatch();
+		}
+		stmt.executeBatch();
+	}
+
+	/**
+	 * trims a value to the column size of the itemlog table. Like in the
+	 * single row inserts, <code>null</code> is stored as "null".
+	 *
+	 * @param value value, may be <code>null</code>
+	 * @return trimmed value
+	 */
+	private static String trim(final String value) {
+		final String res = String.valueOf(value);
+		if (res.length() <= 64) {
+			return res;
+		}
+		return res.substring(0, 64);
+	}
+
 	/**
 	 * gets an optional attribute .
 	 *
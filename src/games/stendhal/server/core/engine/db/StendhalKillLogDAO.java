@@ -11,10 +11,14 @@
  ***************************************************************************/
 package games.stendhal.server.core.engine.db;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
@@ -68,6 +72,106 @@ public class StendhalKillLogDAO {
 
 	}
 
+	/**
+	 * Logs kills as batches: first the counters of the existing rows are
+	 * increased, and rows are inserted only for the combinations that did
+	 * not have one yet.
+	 *
+	 * @param transaction transaction
+	 * @param kills number of kills by combination
+	 * @throws SQLException in case of an database error
+	 */
+	public void logKills(final DBTransaction transaction, final Map<KillLogEntry, Integer> kills) throws SQLException {
+		if (kills.isEmpty()) {
+			return;
+		}
+		final List<KillLogEntry> entries = new ArrayList<KillLogEntry>(kills.keySet());
+		final PreparedStatement update = transaction.prepareStatement("UPDATE kills SET cnt = cnt + ?"
+				+ " WHERE killed = ? AND killed_type = ? AND killer = ? AND killer_type = ? AND day = ?", null);
+		for (final KillLogEntry entry : entries) {
+			update.setInt(1, kills.get(entry).intValue());
+			setKey(update, 2, entry);
+			update.addBatch();
+		}
+		final int[] rowCounts = update.executeBatch();
+
+		// in case we did not have a combination yet, make an insert
+		PreparedStatement insert = null;
+		PreparedStatement exists = null;
+		for (int i = 0; i < entries.size(); i++) {
+			if (rowCounts[i] > 0) {
+				continue;
+			}
+			if (rowCounts[i] != 0) {
+				// The driver did not tell if a row was updated, so look for it
+				if (exists == null) {
+					exists = transaction.prepareStatement("SELECT count(*) FROM kills"
+							+ " WHERE killed = ? AND killed_type = ? AND killer = ? AND killer_type = ? AND day = ?", null);
+				}
+				if (hasRow(exists, entries.get(i))) {
+					continue;
+				}
+			}
+			if (insert == null) {
+				insert = transaction.prepareStatement("INSERT INTO kills (killed, killed_type, killer, killer_type, day, cnt)"
+						+ " VALUES (?, ?, ?, ?, ?, ?)", null);
+			}
+			final KillLogEntry entry = entries.get(i);
+			setKey(insert, 1, entry);
+			insert.setInt(6, kills.get(entry).intValue());
+			insert.addBatch();
+		}
+		if (insert != null) {
+			insert.executeBatch();
+		}
+	}
+
+	/**
+	 * Checks if there is a kills row for a combination.
+	 *
+	 * @param stmt query counting the rows of a combination
+	 * @param entry kill
+	 * @return <code>true</code> if the row exists
+	 * @throws SQLException in case of an database error
+	 */
+	private boolean hasRow(final PreparedStatement stmt, final KillLogEntry entry) throws SQLException {
+		setKey(stmt, 1, entry);
+		final ResultSet resultSet = stmt.executeQuery();
+		try {
+			return resultSet.next() && (resultSet.getInt(1) > 0);
+		} finally {
+			resultSet.close();
+		}
+	}
+
+	/**
+	 * Sets the columns identifying a kills row.
+	 *
+	 * @param stmt statement
+	 * @param index index of the first column
+	 * @param entry kill
+	 * @throws SQLException in case of an database error
+	 */
+	private void setKey(final PreparedStatement stmt, final int index, final KillLogEntry entry) throws SQLException {
+		stmt.setString(index, entry.getKilled());
+		stmt.setString(index + 1, entry.getKilledType());
+		stmt.setString(index + 2, entry.getKiller());
+		stmt.setString(index + 3, entry.getKillerType());
+		stmt.setString(index + 4, entry.getDay());
+	}
+
+	/**
+	 * Creates the kills table entry for a kill that happens now.
+	 *
+	 * @param killed killed entity
+	 * @param killer killer
+	 * @return kill entry
+	 */
+	public KillLogEntry createEntry(final Entity killed, final Killer killer) {
+		return new KillLogEntry(killed.getName(), entityToType(killed), killer.getName(),
+				entityToType(killer), new SimpleDateFormat("yyyy-MM-dd").format(new Date()));
+	}
+
 	/**
 	 * Logs a kill.
 	 *
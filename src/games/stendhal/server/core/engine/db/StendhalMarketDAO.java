@@ -0,0 +1,151 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.db;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.log4j.Logger;
+
+import marauroa.common.game.DetailLevel;
+import marauroa.common.game.RPObject;
+import marauroa.common.net.NetConst;
+import marauroa.common.net.OutputSerializer;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.game.db.DAORegister;
+import marauroa.server.game.db.RPObjectDAO;
+
+/**
+ * Database access for the offers and earnings of the market. Every offer and
+ * earning is a row of its own, so that a trade only writes the entries it
+ * changed. The entry objects are stored in the same compressed format that
+ * marauroa uses for the rpobject table.
+ */
+public class StendhalMarketDAO {
+	private static final Logger logger = Logger.getLogger(StendhalMarketDAO.class);
+
+	/**
+	 * Serialize an entry object.
+	 *
+	 * @param object offer or earning
+	 * @return compressed data
+	 * @throws IOException in case of a serialization error
+	 */
+	public static byte[] serialize(final RPObject object) throws IOException {
+		final ByteArrayOutputStream array = new ByteArrayOutputStream();
+		final DeflaterOutputStream out = new DeflaterOutputStream(array);
+		final OutputSerializer serializer = new OutputSerializer(out);
+		serializer.setProtocolVersion(NetConst.NETWORK_PROTOCOL_VERSION);
+		object.writeObject(serializer, DetailLevel.FULL);
+		out.close();
+		return array.toByteArray();
+	}
+
+	/**
+	 * Check if there are any market entries stored.
+	 *
+	 * @param transaction DBTransaction
+	 * @return <code>true</code> if there is at least one entry
+	 * @throws SQLException in case of an database error
+	 */
+	public boolean hasEntries(final DBTransaction transaction) throws SQLException {
+		return transaction.querySingleCellInt("SELECT count(*) FROM market_entry", null) > 0;
+	}
+
+	/**
+	 * Get the highest entry id in use.
+	 *
+	 * @param transaction DBTransaction
+	 * @return highest id, or 0 if there are no entries
+	 * @throws SQLException in case of an database error
+	 */
+	public int getHighestEntryId(final DBTransaction transaction) throws SQLException {
+		return transaction.querySingleCellInt("SELECT COALESCE(MAX(id), 0) FROM market_entry", null);
+	}
+
+	/**
+	 * Load the entries of one type.
+	 *
+	 * @param transaction DBTransaction
+	 * @param entryType type of the entries
+	 * @return the stored objects by entry id, in id order
+	 * @throws SQLException in case of an database error
+	 * @throws IOException in case of a deserialization error
+	 */
+	public Map<Integer, RPObject> loadEntries(final DBTransaction transaction,
+			final String entryType) throws SQLException, IOException {
+		final Map<String, Object> params = new HashMap<String, Object>();
+		params.put("entrytype", entryType);
+		final ResultSet resultSet = transaction.query("SELECT id, data, protocol_version"
+				+ " FROM market_entry WHERE entrytype='[entrytype]' ORDER BY id", params);
+
+		final RPObjectDAO rpObjectDAO = DAORegister.get().get(RPObjectDAO.class);
+		final Map<Integer, RPObject> entries = new LinkedHashMap<Integer, RPObject>();
+		while (resultSet.next()) {
+			final int id = resultSet.getInt("id");
+			final RPObject object = rpObjectDAO.readRPObject(id,
+					resultSet.getBytes("data"), resultSet.getInt("protocol_version"), false);
+			if (object == null) {
+				logger.warn("Cannot read market entry " + id);
+				continue;
+			}
+			entries.put(Integer.valueOf(id), object);
+		}
+		resultSet.close();
+		return entries;
+	}
+
+	/**
+	 * Store an entry, replacing an earlier version with the same id.
+	 *
+	 * @param transaction DBTransaction
+	 * @param id entry id
+	 * @param entryType type of the entry
+	 * @param charname name of the character owning the entry
+	 * @param data serialized entry object
+	 * @throws SQLException in case of an database error
+	 * @throws IOException in case of an error reading the data
+	 */
+	public void storeEntry(final DBTransaction transaction, final int id,
+			final String entryType, final String charname, final byte[] data)
+			throws SQLException, IOException {
+		deleteEntry(transaction, id);
+		final Map<String, Object> params = new HashMap<String, Object>();
+		params.put("id", Integer.valueOf(id));
+		params.put("entrytype", entryType);
+		params.put("charname", charname);
+		params.put("protocol_version", Integer.valueOf(NetConst.NETWORK_PROTOCOL_VERSION));
+		transaction.execute("INSERT INTO market_entry (id, entrytype, charname, data, protocol_version)"
+				+ " VALUES ([id], '[entrytype]', '[charname]', ?, [protocol_version])",
+				params, new ByteArrayInputStream(data));
+	}
+
+	/**
+	 * Delete an entry.
+	 *
+	 * @param transaction DBTransaction
+	 * @param id entry id
+	 * @throws SQLException in case of an database error
+	 */
+	public void deleteEntry(final DBTransaction transaction, final int id) throws SQLException {
+		final Map<String, Object> params = new HashMap<String, Object>();
+		params.put("id", Integer.valueOf(id));
+		transaction.execute("DELETE FROM market_entry WHERE id=[id]", params);
+	}
+}
@@ -0,0 +1,362 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.db;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+
+import games.stendhal.server.entity.player.Player;
+import marauroa.common.game.DetailLevel;
+import marauroa.common.game.RPObject;
+import marauroa.common.game.RPSlot;
+import marauroa.common.net.InputSerializer;
+import marauroa.common.net.NetConst;
+import marauroa.common.net.OutputSerializer;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.game.db.RPObjectDAO;
+import marauroa.server.game.rp.RPObjectFactory;
+
+/**
+ * Stendhal specific extension to the normal RPObjectDAO which stores the
+ * bulky slots of players (banks, quests, kills and visited zones) as sections
+ * in rows of their own, instead of writing the whole object with all its
+ * banks on every save.
+ * <p>
+ * The DAO remembers the slot versions of the sections it has written for each
+ * player (see {@link Player#getSlotVersion(String)}), and does not touch
+ * sections whose slot has not changed since. The sections that have changed,
+ * or whose written version is not known, for example on the first save after
+ * a login, are compared with the digests of the stored rows, so that only
+ * sections with different content get written.
+ * <p>
+ * The rpobject row holds the rest of the object. A slot that is present in
+ * the rpobject row takes precedence over a stored section, so that a row
+ * written by a full save is never overwritten with an older section on
+ * loading.
+ */
+public class StendhalRPObjectDAO extends RPObjectDAO {
+	private static final Logger logger = Logger.getLogger(StendhalRPObjectDAO.class);
+
+	/** Slots of player objects stored as sections. */
+	static final List<String> SECTIONS = Collections.unmodifiableList(Arrays.asList(
+			"bank", "bank_ados", "zaras_chest_ados", "bank_fado", "bank_nalwor",
+			"!quests", "!kills", "!visited"));
+
+	/** Slot versions of the last written sections, by object id. */
+	private final Cache<Integer, Map<String, Long>> writtenVersions = CacheBuilder.newBuilder()
+			.maximumSize(5000).build();
+
+	/**
+	 * Create a new StendhalRPObjectDAO.
+	 *
+	 * @param factory factory for transforming loaded objects
+	 */
+	public StendhalRPObjectDAO(final RPObjectFactory factory) {
+		super(factory);
+	}
+
+	@Override
+	public RPObject loadRPObject(final DBTransaction transaction, final int objectid,
+			final boolean transform) throws SQLException, IOException {
+		RPObject object = super.loadRPObject(transaction, objectid, false);
+		if (object == null) {
+			return null;
+		}
+		loadSections(transaction, objectid, object);
+		if (transform) {
+			object = factory.transform(object);
+			object.put("#db_id", objectid);
+		}
+		return object;
+	}
+
+	@Override
+	public int storeRPObject(final DBTransaction transaction, final RPObject object)
+			throws IOException, SQLException {
+		if (!hasSections(object)) {
+			return super.storeRPObject(transaction, object);
+		}
+
+		Map<String, Long> versions = null;
+		Map<String, Long> written = null;
+		if (object instanceof Player) {
+			versions = getSectionVersions((Player) object);
+			if (object.has("#db_id")) {
+				written = writtenVersions.getIfPresent(Integer.valueOf(object.getInt("#db_id")));
+			}
+		}
+		final List<String> changed = new ArrayList<String>();
+		for (final String name : SECTIONS) {
+			if ((written == null) || !written.get(name).equals(versions.get(name))) {
+				changed.add(name);
+			}
+		}
+
+		final Map<String, byte[]> sections = serializeSections(object, changed);
+		final int objectid = storeRow(transaction, object);
+		object.put("#db_id", objectid);
+		if (!changed.isEmpty()) {
+			storeSections(transaction, objectid, sections, changed);
+		}
+		if (versions != null) {
+			writtenVersions.put(Integer.valueOf(objectid), versions);
+		}
+		return objectid;
+	}
+
+	/**
+	 * Forget which sections of an object have been written, for example
+	 * because the transaction writing them was rolled back. The next save
+	 * compares all sections with the stored ones.
+	 *
+	 * @param objectid database id of the object
+	 */
+	public void forgetSections(final int objectid) {
+		writtenVersions.invalidate(Integer.valueOf(objectid));
+	}
+
+	/**
+	 * Get the current versions of the section slots of a player.
+	 *
+	 * @param player player
+	 * @return versions by section name
+	 */
+	private static Map<String, Long> getSectionVersions(final Player player) {
+		final Map<String, Long> versions = new HashMap<String, Long>();
+		for (final String name : SECTIONS) {
+			versions.put(name, Long.valueOf(player.getSlotVersion(name)));
+		}
+		return versions;
+	}
+
+	/**
+	 * Write the rpobject row of an object without its section slots. The
+	 * section slots of players are taken out for the time of writing, other
+	 * objects are written from a copy without them.
+	 *
+	 * @param transaction DBTransaction
+	 * @param object object to be stored
+	 * @return database id of the object
+	 * @throws IOException in case of a serialization error
+	 * @throws SQLException in case of an database error
+	 */
+	private int storeRow(final DBTransaction transaction, final RPObject object)
+			throws IOException, SQLException {
+		if (object instanceof Player) {
+			final Player player = (Player) object;
+			final SortedMap<Integer, RPSlot> detached = player.detachSlots(SECTIONS);
+			try {
+				return super.storeRPObject(transaction, player);
+			} finally {
+				player.restoreSlots(detached);
+			}
+		}
+		final RPObject row = new RPObject(object);
+		for (final String name : SECTIONS) {
+			if (row.hasSlot(name)) {
+				row.removeSlot(name);
+			}
+		}
+		return super.storeRPObject(transaction, row);
+	}
+
+	@Override
+	public int removeRPObject(final DBTransaction transaction, final int objectid)
+			throws SQLException {
+		final Map<String, Object> params = new HashMap<String, Object>();
+		params.put("objectid", Integer.valueOf(objectid));
+		transaction.execute("DELETE FROM rpobject_section WHERE object_id=[objectid]", params);
+		return super.removeRPObject(transaction, objectid);
+	}
+
+	/**
+	 * Add the stored sections to an object that was read from the rpobject
+	 * table. Sections whose slot is already in the object are ignored.
+	 *
+	 * @param transaction DBTransaction
+	 * @param objectid database id of the object
+	 * @param object object read from the rpobject table, not transformed yet
+	 * @throws SQLException in case of an database error
+	 * @throws IOException in case of a deserialization error
+	 */
+	public void loadSections(final DBTransaction transaction, final int objectid,
+			final RPObject object) throws SQLException, IOException {
+		final Map<String, Object> params = new HashMap<String, Object>();
+		params.put("objectid", Integer.valueOf(objectid));
+		final ResultSet resultSet = transaction.query("SELECT name, data, protocol_version"
+				+ " FROM rpobject_section WHERE object_id=[objectid]", params);
+		try {
+			while (resultSet.next()) {
+				final String name = resultSet.getString("name");
+				if (object.hasSlot(name)) {
+					logger.warn("Ignoring section " + name + " of object " + objectid
+							+ " in favour of the slot stored with the object");
+					continue;
+				}
+				object.addSlot(name);
+				final InputSerializer in = new InputSerializer(new InflaterInputStream(
+						new ByteArrayInputStream(resultSet.getBytes("data"))));
+				in.setProtocolVersion(resultSet.getInt("protocol_version"));
+				object.getSlot(name).readObject(in);
+			}
+		} finally {
+			resultSet.close();
+		}
+	}
+
+	/**
+	 * Get the digests of the stored sections of an object.
+	 *
+	 * @param transaction DBTransaction
+	 * @param objectid database id of the object
+	 * @return digests by section name
+	 * @throws SQLException in case of an database error
+	 */
+	Map<String, String> loadSectionDigests(final DBTransaction transaction,
+			final int objectid) throws SQLException {
+		final Map<String, Object> params = new HashMap<String, Object>();
+		params.put("objectid", Integer.valueOf(objectid));
+		final ResultSet resultSet = transaction.query("SELECT name, digest"
+				+ " FROM rpobject_section WHERE object_id=[objectid]", params);
+		final Map<String, String> digests = new HashMap<String, String>();
+		while (resultSet.next()) {
+			digests.put(resultSet.getString("name"), resultSet.getString("digest"));
+		}
+		resultSet.close();
+		return digests;
+	}
+
+	/**
+	 * Write the sections that differ from the stored ones, and delete stored
+	 * sections the object does not have anymore.
+	 *
+	 * @param transaction DBTransaction
+	 * @param objectid database id of the object
+	 * @param sections serialized sections by name
+	 * @param changed names of the sections that may differ from the stored
+	 * 	ones. Stored sections with other names are left alone
+	 * @throws SQLException in case of an database error
+	 * @throws IOException in case of a compression error
+	 */
+	private void storeSections(final DBTransaction transaction, final int objectid,
+			final Map<String, byte[]> sections, final List<String> changed)
+			throws SQLException, IOException {
+		final Map<String, String> stored = loadSectionDigests(transaction, objectid);
+		stored.keySet().retainAll(changed);
+		final Map<String, Object> params = new HashMap<String, Object>();
+		params.put("objectid", Integer.valueOf(objectid));
+		params.put("protocol_version", Integer.valueOf(NetConst.NETWORK_PROTOCOL_VERSION));
+
+		int written = 0;
+		for (final Map.Entry<String, byte[]> entry : sections.entrySet()) {
+			final String name = entry.getKey();
+			final String digest = Hashing.sha1().hashBytes(entry.getValue()).toString();
+			final boolean exists = stored.containsKey(name);
+			if (digest.equals(stored.remove(name))) {
+				continue;
+			}
+			params.put("name", name);
+			params.put("digest", digest);
+			final ByteArrayInputStream data = new ByteArrayInputStream(compress(entry.getValue()));
+			if (exists) {
+				transaction.execute("UPDATE rpobject_section SET digest='[digest]', data=?,"
+						+ " protocol_version=[protocol_version]"
+						+ " WHERE object_id=[objectid] AND name='[name]'", params, data);
+			} else {
+				transaction.execute("INSERT INTO rpobject_section"
+						+ " (object_id, name, digest, data, protocol_version)"
+						+ " VALUES ([objectid], '[name]', '[digest]', ?, [protocol_version])",
+						params, data);
+			}
+			written++;
+		}
+
+		for (final String name : stored.keySet()) {
+			params.put("name", name);
+			transaction.execute("DELETE FROM rpobject_section"
+					+ " WHERE object_id=[objectid] AND name='[name]'", params);
+		}
+		logger.debug("Object " + objectid + ": wrote " + written + " of "
+				+ sections.size() + " sections");
+	}
+
+	/**
+	 * Check if an object is stored with sections.
+	 *
+	 * @param object object to be stored
+	 * @return <code>true</code> for players
+	 */
+	private static boolean hasSections(final RPObject object) {
+		return (object.getRPClass() != null) && "player".equals(object.getRPClass().getName());
+	}
+
+	/**
+	 * Serialize section slots of an object.
+	 *
+	 * @param object player object
+	 * @param names names of the sections to serialize
+	 * @return uncompressed slot data by slot name
+	 * @throws IOException in case of a serialization error
+	 */
+	private static Map<String, byte[]> serializeSections(final RPObject object,
+			final List<String> names) throws IOException {
+		final Map<String, byte[]> sections = new LinkedHashMap<String, byte[]>();
+		for (final String name : names) {
+			if (object.hasSlot(name)) {
+				sections.put(name, serialize(object.getSlot(name)));
+			}
+		}
+		return sections;
+	}
+
+	/**
+	 * Serialize a slot the way it is serialized as part of its owner.
+	 *
+	 * @param slot slot
+	 * @return uncompressed data
+	 * @throws IOException in case of a serialization error
+	 */
+	public static byte[] serialize(final RPSlot slot) throws IOException {
+		final ByteArrayOutputStream array = new ByteArrayOutputStream();
+		final OutputSerializer serializer = new OutputSerializer(array);
+		serializer.setProtocolVersion(NetConst.NETWORK_PROTOCOL_VERSION);
+		slot.writeObject(serializer, DetailLevel.FULL);
+		return array.toByteArray();
+	}
+
+	private static byte[] compress(final byte[] data) throws IOException {
+		final ByteArrayOutputStream array = new ByteArrayOutputStream();
+		final DeflaterOutputStream out = new DeflaterOutputStream(array);
+		out.write(data);
+		out.close();
+		return array.toByteArray();
+	}
+}
@@ -19,6 +19,9 @@ import java.util.Map;
 
 import org.apache.log4j.Logger;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import games.stendhal.common.MathHelper;
 import games.stendhal.server.core.engine.StendhalRPZone;
 import games.stendhal.server.entity.item.Item;
@@ -34,6 +37,15 @@ import marauroa.server.db.TransactionPool;
  */
 public class StendhalWebsiteDAO {
 	private static Logger logger = Logger.getLogger(StendhalWebsiteDAO.class);
+	/** Maximum number of characters whose last written statistics are kept. */
+	private static final int WRITTEN_STATS_CACHE_SIZE = 5000;
+
+	/**
+	 * The statistics last written for each character. Used to skip writing
+	 * statistics that have not changed.
+	 */
+	private final Cache<String, Map<String, Object>> writtenStats = CacheBuilder.newBuilder()
+			.maximumSize(WRITTEN_STATS_CACHE_SIZE).build();
 
 	/**
 	 * clears the online status of all players (used on server startup)
@@ -129,11 +141,14 @@ public class StendhalWebsiteDAO {
 	 * updates the statistics information about a player
 	 *
 	 * @param transaction DBTransaction
-	 * @param player Player
+	 * @param params statistics of the player
+	 * @param condition additional condition for the row to update, or an
+	 * 	empty string
 	 * @return number of updates rows
 	 * @throws SQLException in case of an database error
 	 */
-	protected int updateCharStats(final DBTransaction transaction, final Player player) throws SQLException {
+	private int updateCharStats(final DBTransaction transaction, final Map<String, Object> params,
+			final String condition) throws SQLException {
 		final String query = "UPDATE character_stats SET "
 			+ " admin=[admin], sentence='[sentence]', age=[age], level=[level],"
 			+ " outfit=[outfit], outfit_colors='[outfit_colors]', xp=[xp], money='[money]',"
@@ -141,14 +156,83 @@ public class StendhalWebsiteDAO {
 			+ " head='[head]', armor='[armor]', lhand='[lhand]', rhand='[rhand]',"
 			+ " legs='[legs]', feet='[feet]', cloak='[cloak]', lastseen='[lastseen]',"
 			+ " finger='[finger]', zone='[zone]'"
-			+ " WHERE name='[name]'";
+			+ " WHERE name='[name]'" + condition;
 
-		Map<String, Object> params = getParamsFromPlayer(player);
 		logger.debug("storeCharacter is running: " + query);
 		final int count = transaction.execute(query, params);
 		return count;
 	}
 
+	/**
+	 * Updates the statistics information about a player. The lastseen time is
+	 * always written, the other values only if they differ from the ones
+	 * written on the previous call for the player. The row is inserted if it
+	 * does not exist yet.
+	 * <p>
+	 * The previous call may have been rolled back. Its values are only relied
+	 * on if the row still has the lastseen time written with them, otherwise
+	 * all values are written again.
+	 *
+	 * @param transaction DBTransaction
+	 * @param player Player
+	 * @return <code>true</code> if the values written on the previous call for
+	 * 	the player were found in the database, <code>false</code> if they were
+	 * 	not, or if there was no previous call
+	 * @throws SQLException in case of an database error
+	 */
+	public boolean storeCharStats(final DBTransaction transaction, final Player player) throws SQLException {
+		final Map<String, Object> params = getParamsFromPlayer(player);
+		final String name = player.getName();
+		final Map<String, Object> written = writtenStats.getIfPresent(name);
+		writtenStats.invalidate(name);
+
+		boolean found = false;
+		if (written != null) {
+			final Map<String, Object> query = new HashMap<String, Object>(params);
+			query.put("writtenlastseen", written.get("lastseen"));
+			final String condition = " AND lastseen='[writtenlastseen]'";
+			if (isSameStats(written, params)) {
+				found = transaction.execute("UPDATE character_stats SET lastseen='[lastseen]'"
+						+ " WHERE name='[name]'" + condition, query) > 0;
+			} else {
+				found = updateCharStats(transaction, query, condition) > 0;
+			}
+		}
+		if (!found && (updateCharStats(transaction, params, "") == 0)) {
+			insertIntoCharStats(transaction, params);
+		}
+
+		// Two writes within the same second could not be told apart
+		if ((written == null) || !params.get("lastseen").equals(written.get("lastseen"))) {
+			writtenStats.put(name, params);
+		}
+		return found;
+	}
+
+	/**
+	 * Check if two sets of statistics differ only in the lastseen time.
+	 *
+	 * @param stats statistics
+	 * @param other other statistics
+	 * @return <code>true</code> if the values other than lastseen are equal
+	 */
+	private static boolean isSameStats(final Map<String, Object> stats, final Map<String, Object> other) {
+		final Map<String, Object> copy = new HashMap<String, Object>(stats);
+		copy.put("lastseen", other.get("lastseen"));
+		return copy.equals(other);
+	}
+
+	/**
+	 * Forget the statistics written for a player, so that the next call to
+	 * storeCharStats writes them in any case. Should be called when storing a
+	 * character failed.
+	 *
+	 * @param charname name of the player
+	 */
+	public void forgetCharStats(final String charname) {
+		writtenStats.invalidate(charname);
+	}
+
 	/**
 	 * gets the attributes from a player object.
 	 *
@@ -185,7 +269,8 @@ public class StendhalWebsiteDAO {
 			zoneName = zone.getName();
 		}
 		params.put("zone", zoneName);
-		params.put("lastseen", new Timestamp(new Date().getTime()));
+		// The column stores whole seconds, so that the value can be compared
+		params.put("lastseen", new Timestamp(new Date().getTime() / 1000 * 1000));
 		return params;
 	}
 
@@ -198,6 +283,17 @@ public class StendhalWebsiteDAO {
 	 * @throws SQLException in case of an database error
 	 */
 	protected void insertIntoCharStats(final DBTransaction transaction, final Player player) throws SQLException {
+		insertIntoCharStats(transaction, getParamsFromPlayer(player));
+	}
+
+	/**
+	 * Insert statistics information about a new player
+	 *
+	 * @param transaction DBTransaction
+	 * @param params statistics of the player
+	 * @throws SQLException in case of an database error
+	 */
+	private void insertIntoCharStats(final DBTransaction transaction, final Map<String, Object> params) throws SQLException {
 		final String query = "INSERT INTO character_stats"
 			+ " (name, admin, sentence, age, level,"
 			+ " outfit, outfit_colors, xp, money, married, atk, def, hp,"
@@ -208,7 +304,6 @@ public class StendhalWebsiteDAO {
 			+ " '[atk]', '[atk]', '[hp]', '[karma]', '[head]', '[armor]',"
 			+ " '[lhand]', '[rhand]', '[legs]', '[feet]', '[cloak]', '[finger]',"
 			+ " '[zone]', '[lastseen]')";
-		Map<String, Object> params = getParamsFromPlayer(player);
 		logger.debug("storeCharacter is running: " + query);
 		transaction.execute(query, params);
 	}
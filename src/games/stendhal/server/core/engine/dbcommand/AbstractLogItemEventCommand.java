@@ -12,6 +12,7 @@
 package games.stendhal.server.core.engine.dbcommand;
 
 import java.sql.SQLException;
+import java.sql.Timestamp;
 
 import marauroa.common.game.RPObject;
 import marauroa.server.db.DBTransaction;
@@ -22,22 +23,40 @@ import marauroa.server.db.command.AbstractDBCommand;
  *
  * @author hendrik
  */
-public abstract class AbstractLogItemEventCommand extends AbstractDBCommand {
+public abstract class AbstractLogItemEventCommand extends AbstractDBCommand implements AuditLogEntry {
+	/** time of the event */
+	private final Timestamp timedate = new Timestamp(System.currentTimeMillis());
 
 
 	@Override
 	public void execute(DBTransaction transaction) throws SQLException {
-		log(transaction);
+		AuditLogBatch batch = new AuditLogBatch(transaction);
+		log(batch);
+		batch.write();
+	}
+
+	@Override
+	public void addTo(AuditLogBatch batch) throws SQLException {
+		log(batch);
+	}
+
+	/**
+	 * gets the time of the event
+	 *
+	 * @return time the command was created
+	 */
+	protected Timestamp getTimedate() {
+		return timedate;
 	}
 
 
 	/**
-	 * logs the event to the database.
+	 * adds the log entries of the event to a batch.
 	 *
-	 * @param transaction DBTransaction
+	 * @param batch AuditLogBatch
 	 * @throws SQLException in case of an database error
 	 */
-	protected abstract void log(DBTransaction transaction) throws SQLException;
+	protected abstract void log(AuditLogBatch batch) throws SQLException;
 
 	/**
 	 * gets the quantity from an item; correctly handles non stackable items
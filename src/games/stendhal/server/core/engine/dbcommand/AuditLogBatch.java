@@ -0,0 +1,162 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.dbcommand;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import games.stendhal.server.core.engine.GameEvent;
+import games.stendhal.server.core.engine.db.ItemLogEntry;
+import games.stendhal.server.core.engine.db.KillLogEntry;
+import games.stendhal.server.core.engine.db.StendhalGameEventDAO;
+import games.stendhal.server.core.engine.db.StendhalItemDAO;
+import games.stendhal.server.core.engine.db.StendhalKillLogDAO;
+import games.stendhal.server.entity.RPEntity;
+import marauroa.common.game.RPObject;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.game.db.DAORegister;
+
+/**
+ * collects the rows of audit log entries, so that they can be written with
+ * one batch insert per table.
+ */
+public class AuditLogBatch {
+	private final DBTransaction transaction;
+	private final StendhalItemDAO itemDAO;
+	private final List<GameEvent> gameEvents = new ArrayList<GameEvent>();
+	private final List<ItemLogEntry> registrations = new ArrayList<ItemLogEntry>();
+	private final List<ItemLogEntry> itemLogEntries = new ArrayList<ItemLogEntry>();
+	private final Map<KillLogEntry, Integer> kills = new LinkedHashMap<KillLogEntry, Integer>();
+	private final Map<RPObject, Integer> registeredItems = new IdentityHashMap<RPObject, Integer>();
+
+	/**
+	 * creates a new AuditLogBatch
+	 *
+	 * @param transaction transaction to write the batch in
+	 */
+	public AuditLogBatch(final DBTransaction transaction) {
+		this.transaction = transaction;
+		this.itemDAO = DAORegister.get().get(StendhalItemDAO.class);
+	}
+
+	/**
+	 * adds a game event
+	 *
+	 * @param event GameEvent
+	 */
+	public void addGameEvent(final GameEvent event) {
+		gameEvents.add(event);
+	}
+
+	/**
+	 * assigns the next logid to an item in case it does not already have
+	 * one, and adds the registration of the item.
+	 *
+	 * @param item item
+	 * @param timedate time of the event that caused the registration
+	 * @throws SQLException in case of an database error
+	 */
+	public void assignItemLogIdIfNotPresent(final RPObject item, final Timestamp timedate) throws SQLException {
+		if (item.has(StendhalItemDAO.ATTR_ITEM_LOGID)) {
+			return;
+		}
+		final int logid = itemDAO.nextLogId(transaction);
+		item.put(StendhalItemDAO.ATTR_ITEM_LOGID, logid);
+		registeredItems.put(item, Integer.valueOf(logid));
+		final ItemLogEntry registration = new ItemLogEntry(timedate, logid, null, "register",
+				getAttribute(item, "name"), getAttribute(item, "quantity"),
+				getAttribute(item, "infostring"), getAttribute(item, "bound"));
+		registrations.add(registration);
+		itemLogEntries.add(registration);
+	}
+
+	/**
+	 * adds an itemlog entry
+	 *
+	 * @param timedate time of the event
+	 * @param itemid logid of the item
+	 * @param player player object
+	 * @param event  name of event
+	 * @param param1 param 1
+	 * @param param2 param 2
+	 * @param param3 param 3
+	 * @param param4 param 4
+	 */
+	public void addItemLogEntry(final Timestamp timedate, final int itemid, final RPEntity player, final String event,
+			final String param1, final String param2, final String param3, final String param4) {
+		String playerName = null;
+		if (player != null) {
+			playerName = player.getName();
+		}
+		itemLogEntries.add(new ItemLogEntry(timedate, itemid, playerName, event, param1, param2, param3, param4));
+	}
+
+	/**
+	 * adds a kill. Kills of the same combination are counted together.
+	 *
+	 * @param kill KillLogEntry
+	 */
+	public void addKill(final KillLogEntry kill) {
+		final Integer count = kills.get(kill);
+		if (count == null) {
+			kills.put(kill, Integer.valueOf(1));
+		} else {
+			kills.put(kill, Integer.valueOf(count.intValue() + 1));
+		}
+	}
+
+	/**
+	 * writes the collected rows
+	 *
+	 * @throws SQLException in case of an database error
+	 */
+	public void write() throws SQLException {
+		DAORegister.get().get(StendhalGameEventDAO.class).addGameEvents(transaction, gameEvents);
+		itemDAO.itemLogInsertItems(transaction, registrations);
+		itemDAO.itemLogWriteEntries(transaction, itemLogEntries);
+		DAORegister.get().get(StendhalKillLogDAO.class).logKills(transaction, kills);
+	}
+
+	/**
+	 * takes back the logids assigned by this batch, after its transaction
+	 * has been rolled back. The items get registered again when they are
+	 * logged the next time.
+	 */
+	public void rollback() {
+		for (final Map.Entry<RPObject, Integer> entry : registeredItems.entrySet()) {
+			final RPObject item = entry.getKey();
+			if (entry.getValue().toString().equals(item.get(StendhalItemDAO.ATTR_ITEM_LOGID))) {
+				item.remove(StendhalItemDAO.ATTR_ITEM_LOGID);
+			}
+		}
+		registeredItems.clear();
+	}
+
+	/**
+	 * gets an optional attribute .
+	 *
+	 * @param object object to read the optional attribute from
+	 * @param attribute
+	 * @return attribute value, or "null"
+	 */
+	private static String getAttribute(final RPObject object, final String attribute) {
+		if (object.has(attribute)) {
+			return object.get(attribute);
+		}
+		return "null";
+	}
+}
@@ -0,0 +1,29 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.dbcommand;
+
+import java.sql.SQLException;
+
+/**
+ * an entry of the audit log, that is written to the database together with
+ * other entries
+ */
+public interface AuditLogEntry {
+
+	/**
+	 * adds the rows of this entry to a batch.
+	 *
+	 * @param batch AuditLogBatch
+	 * @throws SQLException in case of an database error
+	 */
+	void addTo(AuditLogBatch batch) throws SQLException;
+}
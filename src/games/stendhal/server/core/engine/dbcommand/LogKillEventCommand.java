@@ -13,6 +13,7 @@ package games.stendhal.server.core.engine.dbcommand;
 
 import java.sql.SQLException;
 
+import games.stendhal.server.core.engine.db.KillLogEntry;
 import games.stendhal.server.core.engine.db.StendhalKillLogDAO;
 import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.Killer;
@@ -25,10 +26,9 @@ import marauroa.server.game.db.DAORegister;
  *
  * @author hendrik
  */
-public class LogKillEventCommand extends AbstractDBCommand {
+public class LogKillEventCommand extends AbstractDBCommand implements AuditLogEntry {
 
-	private Entity frozenKilled;
-	private Killer frozenKiller;
+	private final KillLogEntry kill;
 
 	/**
 	 * creates a new LogKillEventCommand
@@ -37,14 +37,20 @@ public class LogKillEventCommand extends AbstractDBCommand {
 	 * @param killer killer entity
 	 */
 	public LogKillEventCommand(Entity killed, Killer killer) {
-		this.frozenKilled = (Entity) killed.clone();
-		this.frozenKiller = (Killer) killer.clone();
+		StendhalKillLogDAO killLog = DAORegister.get().get(StendhalKillLogDAO.class);
+		this.kill = killLog.createEntry(killed, killer);
 	}
 
 	@Override
 	public void execute(DBTransaction transaction) throws SQLException {
-		StendhalKillLogDAO killLog = DAORegister.get().get(StendhalKillLogDAO.class);
-		killLog.logKill(transaction, frozenKilled, frozenKiller);
+		AuditLogBatch batch = new AuditLogBatch(transaction);
+		addTo(batch);
+		batch.write();
+	}
+
+	@Override
+	public void addTo(AuditLogBatch batch) {
+		batch.addKill(kill);
 	}
 
 	/**
@@ -54,7 +60,6 @@ public class LogKillEventCommand extends AbstractDBCommand {
 	 */
 	@Override
 	public String toString() {
-		return "LogKillEventCommand [frozenKilled=" + frozenKilled
-				+ ", frozenKiller=" + frozenKiller + "]";
+		return "LogKillEventCommand [" + kill + "]";
 	}
 }
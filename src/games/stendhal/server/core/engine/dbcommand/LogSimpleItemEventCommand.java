@@ -18,8 +18,6 @@ import com.google.common.base.Objects;
 import games.stendhal.server.core.engine.db.StendhalItemDAO;
 import games.stendhal.server.entity.RPEntity;
 import marauroa.common.game.RPObject;
-import marauroa.server.db.DBTransaction;
-import marauroa.server.game.db.DAORegister;
 
 /**
  * logs a simple item event
@@ -60,14 +58,13 @@ public class LogSimpleItemEventCommand extends AbstractLogItemEventCommand {
 
 
 	@Override
-	protected void log(final DBTransaction transaction) throws SQLException {
+	protected void log(final AuditLogBatch batch) throws SQLException {
 		// don't log the destruction of items that have not been logged prior.
 		if (event.equals("destroy") && !item.has("logid")) {
 			return;
 		}
-		StendhalItemDAO stendhalItemDAO = DAORegister.get().get(StendhalItemDAO.class);
-		stendhalItemDAO.itemLogAssignIDIfNotPresent(transaction, item);
-		stendhalItemDAO.itemLogWriteEntry(transaction, item, player, event, param1, param2, param3, param4);
+		batch.assignItemLogIdIfNotPresent(item, getTimedate());
+		batch.addItemLogEntry(getTimedate(), item.getInt(StendhalItemDAO.ATTR_ITEM_LOGID), player, event, param1, param2, param3, param4);
 	}
 
 	/**
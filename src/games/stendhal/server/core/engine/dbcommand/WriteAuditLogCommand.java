@@ -0,0 +1,86 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.dbcommand;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import games.stendhal.server.core.engine.AuditLog;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.game.dbcommand.DBCommandWithCallback;
+
+/**
+ * writes a batch of audit log entries in one transaction. The outcome is
+ * reported to the audit log only after the transaction has been committed or
+ * rolled back, using the callback the database thread invokes when it is done
+ * with a command.
+ */
+public class WriteAuditLogCommand extends DBCommandWithCallback {
+	private final AuditLog auditLog;
+	private final List<AuditLogEntry> entries;
+	/** the batch of the last attempt to write the entries */
+	private AuditLogBatch batch;
+	private long start;
+
+	/**
+	 * creates a new WriteAuditLogCommand
+	 *
+	 * @param auditLog log to report the outcome to
+	 * @param entries entries to write
+	 */
+	public WriteAuditLogCommand(AuditLog auditLog, List<AuditLogEntry> entries) {
+		this.auditLog = auditLog;
+		this.entries = entries;
+	}
+
+	@Override
+	public void execute(DBTransaction transaction) throws SQLException {
+		if (batch != null) {
+			// the database thread retries commands whose transaction failed
+			batch.rollback();
+			setException(null);
+		} else {
+			start = System.nanoTime();
+		}
+		batch = new AuditLogBatch(transaction);
+		for (AuditLogEntry entry : entries) {
+			entry.addTo(batch);
+		}
+		batch.write();
+	}
+
+	/**
+	 * reports the outcome to the audit log. This is called by the database
+	 * thread after the transaction has been committed or rolled back.
+	 */
+	@Override
+	public void invokeCallback() {
+		if ((batch != null) && (getException() == null)) {
+			auditLog.onWritten(entries.size(), System.nanoTime() - start);
+		} else {
+			if (batch != null) {
+				batch.rollback();
+			}
+			auditLog.onFailed(entries);
+		}
+	}
+
+	/**
+	 * returns a string suitable for debug output of this DBCommand.
+	 *
+	 * @return debug string
+	 */
+	@Override
+	public String toString() {
+		return "WriteAuditLogCommand [" + entries.size() + " entries]";
+	}
+}
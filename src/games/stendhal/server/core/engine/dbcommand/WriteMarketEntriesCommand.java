@@ -0,0 +1,103 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.dbcommand;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.LinkedList;
+import java.util.List;
+
+import games.stendhal.server.core.engine.db.StendhalMarketDAO;
+import marauroa.common.game.RPObject;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.command.AbstractDBCommand;
+import marauroa.server.game.db.DAORegister;
+
+/**
+ * Writes the changed market entries in one transaction. The entry objects
+ * are serialized when they are added to the command, so later changes in
+ * the game do not affect what gets written.
+ */
+public class WriteMarketEntriesCommand extends AbstractDBCommand {
+	private final List<Change> changes = new LinkedList<Change>();
+
+	/**
+	 * Add an entry to be stored.
+	 *
+	 * @param id entry id
+	 * @param entryType type of the entry
+	 * @param charname name of the character owning the entry
+	 * @param object entry object
+	 * @throws IOException in case the object can not be serialized
+	 */
+	public void store(int id, String entryType, String charname, RPObject object) throws IOException {
+		changes.add(new Change(id, entryType, charname, StendhalMarketDAO.serialize(object)));
+	}
+
+	/**
+	 * Add an entry to be deleted.
+	 *
+	 * @param id entry id
+	 */
+	public void delete(int id) {
+		changes.add(new Change(id, null, null, null));
+	}
+
+	/**
+	 * Get the number of changed entries.
+	 *
+	 * @return number of changes
+	 */
+	public int size() {
+		return changes.size();
+	}
+
+	@Override
+	public void execute(DBTransaction transaction) throws SQLException, IOException {
+		StendhalMarketDAO dao = DAORegister.get().get(StendhalMarketDAO.class);
+		for (Change change : changes) {
+			if (change.data == null) {
+				dao.deleteEntry(transaction, change.id);
+			} else {
+				dao.storeEntry(transaction, change.id, change.entryType, change.charname, change.data);
+			}
+		}
+	}
+
+	/**
+	 * returns a string suitable for debug output of this DBCommand.
+	 *
+	 * @return debug string
+	 */
+	@Override
+	public String toString() {
+		return "WriteMarketEntriesCommand [changes=" + changes.size() + "]";
+	}
+
+	/**
+	 * A stored or deleted entry.
+	 */
+	private static final class Change {
+		private final int id;
+		private final String entryType;
+		private final String charname;
+		/** Serialized object, or <code>null</code> for deleted entries. */
+		private final byte[] data;
+
+		Change(int id, String entryType, String charname, byte[] data) {
+			this.id = id;
+			this.entryType = entryType;
+			this.charname = charname;
+			this.data = data;
+		}
+	}
+}
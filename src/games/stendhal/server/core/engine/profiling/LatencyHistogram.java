@@ -0,0 +1,142 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.profiling;
+
+/**
+ * A histogram of durations with a bounded relative error, in the manner of
+ * HdrHistogram. Values are sorted to buckets covering a power of two range
+ * each, and the buckets are split to 16 linear sub buckets. So the values
+ * reported for the percentiles are within about 6% of the recorded
+ * values, while the histogram needs only a fixed, small amount of memory
+ * regardless of the number and the range of the recorded values.
+ */
+public final class LatencyHistogram {
+	/** Number of bits of precision kept of the values. */
+	private static final int SUB_BUCKET_BITS = 5;
+	/** Number of sub buckets in the first bucket. */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/** Number of sub buckets added by each further bucket. */
+	private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+	private final long[] counts = new long[64 * HALF_SUB_BUCKETS];
+	private long totalCount;
+	private long sum;
+	private long max;
+
+	/**
+	 * Record a duration.
+	 *
+	 * @param value duration in nanoseconds. Negative values are recorded as
+	 * 	zero
+	 */
+	public synchronized void record(final long value) {
+		final long v = Math.max(0, value);
+		counts[index(v)]++;
+		totalCount++;
+		sum += v;
+		if (v > max) {
+			max = v;
+		}
+	}
+
+	/**
+	 * Get the number of recorded values.
+	 *
+	 * @return number of values
+	 */
+	public synchronized long getCount() {
+		return totalCount;
+	}
+
+	/**
+	 * Get the largest recorded value.
+	 *
+	 * @return largest value, or 0 if nothing has been recorded
+	 */
+	public synchronized long getMax() {
+		return max;
+	}
+
+	/**
+	 * Get the mean of the recorded values.
+	 *
+	 * @return mean, or 0 if nothing has been recorded
+	 */
+	public synchronized double getMean() {
+		if (totalCount == 0) {
+			return 0;
+		}
+		return sum / (double) totalCount;
+	}
+
+	/**
+	 * Get a percentile of the recorded values.
+	 *
+	 * @param percentile percentile in range 0 - 100
+	 * @return a value that is at least as large as the given percentage of
+	 * 	the recorded values, or 0 if nothing has been recorded
+	 */
+	public synchronized long getPercentile(final double percentile) {
+		if (totalCount == 0) {
+			return 0;
+		}
+		final double p = Math.min(100.0, Math.max(0.0, percentile));
+		final long wanted = Math.max(1, (long) Math.ceil(p / 100.0 * totalCount));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= wanted) {
+				return Math.min(highestEquivalentValue(i), max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Remove all recorded values.
+	 */
+	public synchronized void reset() {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = 0;
+		}
+		totalCount = 0;
+		sum = 0;
+		max = 0;
+	}
+
+	/**
+	 * Get the index of the sub bucket of a value.
+	 *
+	 * @param value non negative value
+	 * @return sub bucket index
+	 */
+	static int index(final long value) {
+		final int magnitude = 63 - Long.numberOfLeadingZeros(value | 1);
+		final int bucket = Math.max(0, magnitude - SUB_BUCKET_BITS + 1);
+		return bucket * HALF_SUB_BUCKETS + (int) (value >>> bucket);
+	}
+
+	/**
+	 * Get the largest value that is sorted to a sub bucket.
+	 *
+	 * @param index sub bucket index
+	 * @return largest value of the sub bucket
+	 */
+	static long highestEquivalentValue(final int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		final int bucket = index / HALF_SUB_BUCKETS - 1;
+		final long subBucket = index - bucket * HALF_SUB_BUCKETS;
+		return ((subBucket + 1) << bucket) - 1;
+	}
+}
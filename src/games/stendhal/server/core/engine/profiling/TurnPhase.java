@@ -0,0 +1,47 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.profiling;
+
+/**
+ * The timed phases of a server turn.
+ */
+public enum TurnPhase {
+	/** Whole <code>beginTurn()</code> of the rule processor. */
+	BEGIN_TURN("begin turn"),
+	/** Delayed death handling of the entities killed in the previous turn. */
+	KILLED_ENTITIES("killed entities"),
+	/** Logic of the online players. */
+	PLAYER_LOGIC("player logic"),
+	/** Pre logic of the NPCs. */
+	NPC_PRE_LOGIC("NPC pre logic"),
+	/** Whole <code>endTurn()</code> of the rule processor. */
+	END_TURN("end turn"),
+	/** Turn listeners run by the turn notifier. */
+	TURN_NOTIFIER("turn notifier"),
+	/** Logic of all zones. */
+	ZONE_LOGIC("zone logic");
+
+	private final String label;
+
+	private TurnPhase(final String label) {
+		this.label = label;
+	}
+
+	/**
+	 * Get the human readable name of the phase.
+	 *
+	 * @return name
+	 */
+	public String getLabel() {
+		return label;
+	}
+}
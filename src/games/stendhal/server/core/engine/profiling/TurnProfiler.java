@@ -0,0 +1,385 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.profiling;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.entity.npc.NPC;
+import marauroa.common.Configuration;
+
+/**
+ * Collects the run times of the turn phases, and finds the slowest zones,
+ * NPCs and turn listeners. The phase times are kept in histograms until
+ * reset. The slowest zones, NPCs and listeners are collected over a window
+ * of turns, and the list of the last completed window is available for the
+ * administrators through the <code>/turnprofile</code> command and through
+ * JMX.
+ * <p>
+ * The phase times are always recorded. Timing every zone, NPC and turn
+ * listener costs noticeably more, so it is only done while profiling is
+ * enabled (<code>turn_profiling=true</code>, or through JMX).
+ * <p>
+ * The zone and NPC times can be recorded from the zone logic threads, so
+ * the recording methods are thread safe.
+ */
+public final class TurnProfiler implements TurnProfilerMBean {
+	private static final Logger logger = Logger.getLogger(TurnProfiler.class);
+
+	/** Name of the profiler in the platform MBean server. */
+	private static final String OBJECT_NAME = "games.stendhal.server:type=TurnProfiler";
+
+	private static final TurnProfiler INSTANCE = new TurnProfiler(200, 10);
+
+	private volatile boolean enabled;
+	/** Length of the window of the slowest lists in turns. */
+	private volatile int windowTurns;
+	/** Maximum length of the slowest lists. */
+	private volatile int topCount;
+
+	private final Map<TurnPhase, LatencyHistogram> phases = new EnumMap<TurnPhase, LatencyHistogram>(TurnPhase.class);
+	private final Samples zones = new Samples();
+	private final Samples npcs = new Samples();
+	private final Samples listeners = new Samples();
+
+	/** Turns recorded in the current window. */
+	private int turnsInWindow;
+	private volatile List<String> slowestZones = Collections.emptyList();
+	private volatile List<String> slowestNPCs = Collections.emptyList();
+	private volatile List<String> slowestListeners = Collections.emptyList();
+
+	/**
+	 * Create a new TurnProfiler.
+	 *
+	 * @param windowTurns length of the window of the slowest lists in turns
+	 * @param topCount maximum length of the slowest lists
+	 */
+	TurnProfiler(final int windowTurns, final int topCount) {
+		this.windowTurns = Math.max(1, windowTurns);
+		this.topCount = Math.max(1, topCount);
+		for (final TurnPhase phase : TurnPhase.values()) {
+			phases.put(phase, new LatencyHistogram());
+		}
+	}
+
+	/**
+	 * Get the profiler instance.
+	 *
+	 * @return profiler
+	 */
+	public static TurnProfiler get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Configure the profiler from the server configuration, and register it
+	 * in the platform MBean server.
+	 *
+	 * @param config server configuration
+	 */
+	public void init(final Configuration config) {
+		setEnabled(Boolean.parseBoolean(config.get("turn_profiling", "false")));
+		windowTurns = Math.max(1, config.getInt("turn_profile_window", windowTurns));
+		topCount = Math.max(1, config.getInt("turn_profile_top", topCount));
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+		} catch (final JMException e) {
+			logger.warn("Could not register the turn profiler MBean", e);
+		}
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	@Override
+	public int getWindowTurns() {
+		return windowTurns;
+	}
+
+	/**
+	 * Record the run time of a turn phase.
+	 *
+	 * @param phase the phase
+	 * @param nanos run time in nanoseconds
+	 */
+	public void record(final TurnPhase phase, final long nanos) {
+		phases.get(phase).record(nanos);
+	}
+
+	/**
+	 * Record the logic run time of a zone.
+	 *
+	 * @param zone the zone
+	 * @param nanos run time in nanoseconds
+	 */
+	public void recordZone(final StendhalRPZone zone, final long nanos) {
+		if (enabled) {
+			zones.record(zone, nanos);
+		}
+	}
+
+	/**
+	 * Record the logic run time of an NPC.
+	 *
+	 * @param npc the NPC
+	 * @param nanos run time in nanoseconds
+	 */
+	public void recordNPC(final NPC npc, final long nanos) {
+		if (enabled) {
+			npcs.record(npc, nanos);
+		}
+	}
+
+	/**
+	 * Record the run time of a turn listener.
+	 *
+	 * @param listenerClass class of the listener
+	 * @param nanos run time in nanoseconds
+	 */
+	public void recordTurnListener(final Class<?> listenerClass, final long nanos) {
+		if (enabled) {
+			listeners.record(listenerClass, nanos);
+		}
+	}
+
+	/**
+	 * Called at the end of each turn. Completes the window of the slowest
+	 * lists when it is full.
+	 */
+	public synchronized void turnCompleted() {
+		if (!enabled) {
+			return;
+		}
+		turnsInWindow++;
+		if (turnsInWindow >= windowTurns) {
+			turnsInWindow = 0;
+			final int top = topCount;
+			slowestZones = describe(zones.drain(top));
+			slowestNPCs = describe(npcs.drain(top));
+			slowestListeners = describe(listeners.drain(top));
+			if (logger.isDebugEnabled()) {
+				logger.debug("Slowest zones: " + slowestZones);
+				logger.debug("Slowest NPCs: " + slowestNPCs);
+				logger.debug("Slowest turn listeners: " + slowestListeners);
+			}
+		}
+	}
+
+	@Override
+	public String[] getPhaseStatistics() {
+		final TurnPhase[] values = TurnPhase.values();
+		final String[] result = new String[values.length];
+		for (int i = 0; i < values.length; i++) {
+			final LatencyHistogram histogram = phases.get(values[i]);
+			result[i] = String.format(Locale.ENGLISH,
+					"%s: mean %.2f ms, p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms (%d turns)",
+					values[i].getLabel(), histogram.getMean() / 1e6,
+					toMillis(histogram.getPercentile(50)),
+					toMillis(histogram.getPercentile(99)),
+					toMillis(histogram.getPercentile(99.9)),
+					toMillis(histogram.getMax()), histogram.getCount());
+		}
+		return result;
+	}
+
+	@Override
+	public String[] getSlowestZones() {
+		return slowestZones.toArray(new String[slowestZones.size()]);
+	}
+
+	@Override
+	public String[] getSlowestNPCs() {
+		return slowestNPCs.toArray(new String[slowestNPCs.size()]);
+	}
+
+	@Override
+	public String[] getSlowestTurnListeners() {
+		return slowestListeners.toArray(new String[slowestListeners.size()]);
+	}
+
+	@Override
+	public double getPhasePercentile(final String phase, final double percentile) {
+		for (final TurnPhase value : TurnPhase.values()) {
+			if (value.name().equalsIgnoreCase(phase) || value.getLabel().equalsIgnoreCase(phase)) {
+				return toMillis(phases.get(value).getPercentile(percentile));
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public synchronized void reset() {
+		for (final LatencyHistogram histogram : phases.values()) {
+			histogram.reset();
+		}
+		zones.drain(0);
+		npcs.drain(0);
+		listeners.drain(0);
+		turnsInWindow = 0;
+		slowestZones = Collections.emptyList();
+		slowestNPCs = Collections.emptyList();
+		slowestListeners = Collections.emptyList();
+	}
+
+	/**
+	 * Get a report of the collected data for the administrators.
+	 *
+	 * @return report text
+	 */
+	public String getReport() {
+		final StringBuilder buf = new StringBuilder();
+		buf.append("Profiling of zones, NPCs and turn listeners is ").append(enabled ? "enabled" : "disabled").append('.');
+		buf.append("\nTurn phases:");
+		for (final String line : getPhaseStatistics()) {
+			buf.append("\n  ").append(line);
+		}
+		appendList(buf, "Slowest zones", slowestZones);
+		appendList(buf, "Slowest NPCs", slowestNPCs);
+		appendList(buf, "Slowest turn listeners", slowestListeners);
+		return buf.toString();
+	}
+
+	private void appendList(final StringBuilder buf, final String title, final List<String> lines) {
+		buf.append('\n').append(title).append(" of the last ").append(windowTurns).append(" turns:");
+		if (lines.isEmpty()) {
+			buf.append(" none recorded yet");
+		}
+		for (final String line : lines) {
+			buf.append("\n  ").append(line);
+		}
+	}
+
+	/**
+	 * Create the report lines of samples.
+	 *
+	 * @param samples samples
+	 * @return lines
+	 */
+	private static List<String> describe(final List<Sample> samples) {
+		final List<String> result = new ArrayList<String>(samples.size());
+		for (final Sample sample : samples) {
+			result.add(String.format(Locale.ENGLISH, "%s: max %.2f ms, total %.2f ms in %d runs",
+					getName(sample.key), toMillis(sample.max), toMillis(sample.total), sample.count));
+		}
+		return result;
+	}
+
+	/**
+	 * Get a human readable name of a sampled object.
+	 *
+	 * @param key sampled object
+	 * @return name
+	 */
+	private static String getName(final Object key) {
+		if (key instanceof Class) {
+			return ((Class<?>) key).getName();
+		} else if (key instanceof StendhalRPZone) {
+			return ((StendhalRPZone) key).getName();
+		} else if (key instanceof NPC) {
+			final NPC npc = (NPC) key;
+			final StendhalRPZone zone = npc.getZone();
+			if (zone != null) {
+				return npc.getName() + " in " + zone.getName();
+			}
+			return npc.getName();
+		}
+		return String.valueOf(key);
+	}
+
+	private static double toMillis(final long nanos) {
+		return nanos / 1e6;
+	}
+
+	/**
+	 * Run times of the objects of one kind in the current window.
+	 */
+	private static final class Samples {
+		private final Map<Object, Sample> samples = new IdentityHashMap<Object, Sample>();
+
+		/**
+		 * Record a run time.
+		 *
+		 * @param key the object that was run
+		 * @param nanos run time in nanoseconds
+		 */
+		synchronized void record(final Object key, final long nanos) {
+			Sample sample = samples.get(key);
+			if (sample == null) {
+				sample = new Sample(key);
+				samples.put(key, sample);
+			}
+			sample.count++;
+			sample.total += nanos;
+			if (nanos > sample.max) {
+				sample.max = nanos;
+			}
+		}
+
+		/**
+		 * Get the slowest samples and start a new window.
+		 *
+		 * @param count maximum number of samples to return
+		 * @return the samples with the longest single run times, slowest first
+		 */
+		synchronized List<Sample> drain(final int count) {
+			final List<Sample> result = new ArrayList<Sample>(samples.values());
+			samples.clear();
+			Collections.sort(result, new Comparator<Sample>() {
+				@Override
+				public int compare(final Sample a, final Sample b) {
+					if (a.max != b.max) {
+						return (a.max > b.max) ? -1 : 1;
+					}
+					return (a.total > b.total) ? -1 : ((a.total == b.total) ? 0 : 1);
+				}
+			});
+			if (result.size() > count) {
+				return new ArrayList<Sample>(result.subList(0, count));
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Run time summary of one object.
+	 */
+	private static final class Sample {
+		private final Object key;
+		private int count;
+		private long total;
+		private long max;
+
+		Sample(final Object key) {
+			this.key = key;
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.profiling;
+
+/**
+ * JMX management interface of the {@link TurnProfiler}. The times are in
+ * milliseconds.
+ */
+public interface TurnProfilerMBean {
+	/**
+	 * Check if the zones, NPCs and turn listeners are being profiled. The
+	 * turn phases are always profiled.
+	 *
+	 * @return <code>true</code> if profiling is enabled
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Enable or disable profiling.
+	 *
+	 * @param enabled <code>true</code> to enable profiling
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * Get the length of the window for the slowest zone, NPC and turn
+	 * listener lists.
+	 *
+	 * @return window length in turns
+	 */
+	int getWindowTurns();
+
+	/**
+	 * Get a summary of the recorded times of each turn phase.
+	 *
+	 * @return one line per phase
+	 */
+	String[] getPhaseStatistics();
+
+	/**
+	 * Get the slowest zones of the last completed window.
+	 *
+	 * @return one line per zone, slowest first
+	 */
+	String[] getSlowestZones();
+
+	/**
+	 * Get the slowest NPCs of the last completed window.
+	 *
+	 * @return one line per NPC, slowest first
+	 */
+	String[] getSlowestNPCs();
+
+	/**
+	 * Get the slowest turn listeners of the last completed window.
+	 *
+	 * @return one line per listener class, slowest first
+	 */
+	String[] getSlowestTurnListeners();
+
+	/**
+	 * Get a percentile of the recorded times of a turn phase.
+	 *
+	 * @param phase name of the phase, for example "ZONE_LOGIC"
+	 * @param percentile percentile in range 0 - 100
+	 * @return time in milliseconds, or -1 if the phase is not known
+	 */
+	double getPhasePercentile(String phase, double percentile);
+
+	/**
+	 * Remove all recorded data.
+	 */
+	void reset();
+}
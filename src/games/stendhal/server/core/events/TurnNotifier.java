@@ -15,18 +15,30 @@ package games.stendhal.server.core.events;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.log4j.Logger;
 
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.StendhalRPWorld;
+import games.stendhal.server.core.engine.ZoneLogicExecutor;
+import games.stendhal.server.core.engine.profiling.TurnProfiler;
 
 /**
  * Other classes can register here to be notified at some time in the future.
+ * <p>
+ * The scheduled events are kept in a hierarchical timing wheel: the first
+ * wheel has a slot for each of the next 256 turns, and each of the following
+ * wheels covers 64 times the range of the previous one with the same number of
+ * slots. Events are moved down to the finer wheels when their turn gets
+ * closer. Scheduling and firing an event thus costs constant time regardless
+ * of the number of scheduled events. The events of a listener are also chained
+ * together, so that they can be canceled and looked up without searching the
+ * wheels.
  *
  * @author hendrik, daniel
  */
@@ -37,20 +49,55 @@ public final class TurnNotifier {
 	/** The Singleton instance. */
 	private static final TurnNotifier INSTANCE = new TurnNotifier();
 
+	/** Number of wheels. */
+	private static final int LEVELS = 4;
+	/** Number of slots in the first wheel. */
+	private static final int FIRST_SLOTS = 1 << 8;
+	/** Number of slots in each of the other wheels. */
+	private static final int LEVEL_SLOTS = 1 << 6;
+	/**
+	 * Number of bits of the turn below the slot index of each wheel. The last
+	 * value is the range limit of the last wheel. Events further in the future
+	 * are kept in the overflow list.
+	 */
+	private static final int[] SHIFT = { 0, 8, 14, 20, 26 };
+
 	private int currentTurn = -1;
 
 	/**
-	 * This Map maps each turn to the set of all events that will take place at
-	 * this turn. Turns at which no event should take place needn't be
-	 * registered here.
+	 * The wheels. Each slot is the first event of a doubly linked list of the
+	 * events in that slot.
 	 */
-	private final Map<Integer, Set<TurnListener>> register = new HashMap<Integer, Set<TurnListener>>();
+	private final TurnEvent[][] wheels = new TurnEvent[LEVELS][];
+
+	/** Events too far in the future to be placed in the wheels. */
+	private TurnEvent overflow;
+
+	/**
+	 * The first scheduled event of each listener. Further events of the same
+	 * listener are chained through <code>TurnEvent.nextOfListener</code>.
+	 */
+	private final Map<TurnListener, TurnEvent> handles = new HashMap<TurnListener, TurnEvent>();
+
+	/** Number of scheduled events. */
+	private int size;
+
+	/** Events fired during the last logic() call. */
+	private int eventsFired;
+	/** Run time of the slowest listener of the last logic() call in nanoseconds. */
+	private long longestRuntime;
+	/** Class name of the slowest listener of the last logic() call. */
+	private String longestListener;
 
 	/** Used for multi-threading synchronization. * */
 	private final Object sync = new Object();
 
 	private TurnNotifier() {
 		// singleton
+		wheels[0] = new TurnEvent[FIRST_SLOTS];
+		for (int level = 1; level < LEVELS; level++) {
+			wheels[level] = new TurnEvent[LEVEL_SLOTS];
+		}
 	}
 
 	/**
@@ -64,48 +111,75 @@ public final class TurnNotifier {
 
 	/**
 	 * This method is invoked by StendhalRPRuleProcessor.endTurn().
+	 * <p>
+	 * Events of turns skipped since the previous call are fired too, each with
+	 * its own turn number. If the turn number goes backwards, the remaining
+	 * events are kept, and scheduled relative to the new turn.
 	 *
 	 * @param currentTurn
 	 *            currentTurn
 	 */
-
 	public void logic(final int currentTurn) {
-		// Note: It is OK to only synchronise the remove part
-		// because notifyAtTurn will not allow registrations
-		// for the current turn. So it is important to
-		// adjust currentTurn before the loop.
-
-		this.currentTurn = currentTurn;
+		int fired = 0;
+		long longest = 0;
+		String slowest = null;
+		final TurnProfiler profiler = TurnProfiler.get();
+		final boolean profile = profiler.isEnabled();
 
-		// get and remove the set for this turn
-		Set<TurnListener> set = null;
 		synchronized (sync) {
-			set = register.remove(Integer.valueOf(currentTurn));
+			if (currentTurn <= this.currentTurn) {
+				rebase(currentTurn - 1);
+			} else if (size == 0) {
+				// nothing to catch up
+				this.currentTurn = currentTurn - 1;
+			}
 		}
 
-		if (logger.isDebugEnabled()) {
-			final StringBuilder os = new StringBuilder();
-			os.append("register: " + register.size() + "\n");
-			int setSize;
-			if (set != null) {
-				setSize = set.size();
-			} else {
-				setSize = 0;
+		final List<TurnEvent> due = new ArrayList<TurnEvent>();
+		while (true) {
+			final int turn;
+			// Note: It is OK to only synchronise the removal part because
+			// notifyAtTurn will not allow registrations for the current turn.
+			// So it is important to adjust currentTurn before collecting the
+			// due events.
+			synchronized (sync) {
+				if (this.currentTurn >= currentTurn) {
+					break;
+				}
+				this.currentTurn++;
+				turn = this.currentTurn;
+				cascade(turn);
+				takeDue(turn, due);
 			}
-			os.append("set: " + setSize + "\n");
-			logger.info(os);
-		}
 
-		if (set != null) {
-			for (final TurnListener turnListener : set) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("turn " + turn + ": " + due.size() + " of " + size + " events");
+			}
 
+			for (final TurnEvent event : due) {
+				final TurnListener turnListener = event.listener;
+				final long start = System.nanoTime();
 				try {
-					turnListener.onTurnReached(currentTurn);
+					turnListener.onTurnReached(turn);
 				} catch (final RuntimeException e) {
 					logger.error("Exception in " + turnListener, e);
 				}
+				final long runtime = System.nanoTime() - start;
+				if (profile) {
+					profiler.recordTurnListener(turnListener.getClass(), runtime);
+				}
+				if (runtime > longest) {
+					longest = runtime;
+					slowest = turnListener.getClass().getName();
+				}
 			}
+			fired += due.size();
+			due.clear();
 		}
+
+		eventsFired = fired;
+		longestRuntime = longest;
+		longestListener = slowest;
 	}
 
 	/**
@@ -161,88 +235,114 @@ public final class TurnNotifier {
 			logger.info(st);
 		}
 
-		if (turn <= currentTurn) {
-			logger.error("requested turn " + turn
-					+ " is in the past. Current turn is " + currentTurn,
-					new IllegalArgumentException("turn"));
+		if (ZoneLogicExecutor.isParallelPhase()) {
+			ZoneLogicExecutor.defer(new Runnable() {
+				@Override
+				public void run() {
+					notifyAtTurn(turn, turnListener);
+				}
+			});
 			return;
 		}
 
 		synchronized (sync) {
-			// do we have other events for this turn?
-			final Integer turnInt = Integer.valueOf(turn);
-			Set<TurnListener> set = register.get(turnInt);
-			if (set == null) {
-				set = new HashSet<TurnListener>();
-				register.put(turnInt, set);
+			if (turn <= currentTurn) {
+				logger.error("requested turn " + turn
+						+ " is in the past. Current turn is " + currentTurn,
+						new IllegalArgumentException("turn"));
+				return;
 			}
-			// add it to the list
-			set.add(turnListener);
+
+			// an equal listener is notified only once per turn
+			final TurnEvent first = handles.get(turnListener);
+			for (TurnEvent event = first; event != null; event = event.nextOfListener) {
+				if (event.turn == turn) {
+					return;
+				}
+			}
+
+			final TurnEvent event = new TurnEvent(turnListener, turn);
+			event.nextOfListener = first;
+			handles.put(turnListener, event);
+			schedule(event);
+			size++;
 		}
 	}
 
 	/**
-	 * Forgets all registered notification entries for the given TurnListener
-	 * where the entry's message equals the given one.
+	 * Forgets all registered notification entries for the given TurnListener,
+	 * or any listener equal to it.
 	 *
 	 * @param turnListener
 	 */
 
 	public void dontNotify(final TurnListener turnListener) {
-		// all events that are equal to this one should be forgotten.
-		// TurnEvent turnEvent = new TurnEvent(turnListener);
-		for (final Map.Entry<Integer, Set<TurnListener>> mapEntry : register.entrySet()) {
-			final Set<TurnListener> set = mapEntry.getValue();
-			// We don't remove directly, but first store in this
-			// set. This is to avoid ConcurrentModificationExceptions.
-			final Set<TurnListener> toBeRemoved = new HashSet<TurnListener>();
-			if (set.contains(turnListener)) {
-					toBeRemoved.add(turnListener);
+		if (ZoneLogicExecutor.isParallelPhase()) {
+			ZoneLogicExecutor.defer(new Runnable() {
+				@Override
+				public void run() {
+					dontNotify(turnListener);
+				}
+			});
+			return;
+		}
+
+		synchronized (sync) {
+			TurnEvent event = handles.remove(turnListener);
+			while (event != null) {
+				unlink(event);
+				size--;
+				event = event.nextOfListener;
 			}
-			for (final TurnListener event : toBeRemoved) {
-				set.remove(event);
+		}
+	}
+
+	/**
+	 * Forgets all registered notification entries.
+	 */
+	public void clear() {
+		synchronized (sync) {
+			for (final TurnEvent[] wheel : wheels) {
+				for (int i = 0; i < wheel.length; i++) {
+					wheel[i] = null;
+				}
 			}
+			overflow = null;
+			handles.clear();
+			size = 0;
 		}
 	}
 
 	/**
 	 * Finds out how many turns will pass until the given TurnListener will be
-	 * notified with the given message.
+	 * notified.
 	 *
 	 * @param turnListener
 	 * @return the number of remaining turns, or -1 if the given TurnListener
-	 *         will not be notified with the given message.
+	 *         will not be notified.
 	 */
 
 	public int getRemainingTurns(final TurnListener turnListener) {
-		// all events match that are equal to this.
-		// TurnEvent turnEvent = new TurnEvent(turnListener);
-		// the HashMap is unsorted, so we need to run through
-		// all of it.
-		final List<Integer> matchingTurns = new ArrayList<Integer>();
-		for (final Map.Entry<Integer, Set<TurnListener>> mapEntry : register.entrySet()) {
-			final Set<TurnListener> set = mapEntry.getValue();
-			for (final TurnListener currentEvent : set) {
-				if (currentEvent.equals(turnListener)) {
-					matchingTurns.add(mapEntry.getKey());
-				}
+		synchronized (sync) {
+			TurnEvent event = handles.get(turnListener);
+			if (event == null) {
+				return -1;
 			}
-		}
-		if (matchingTurns.size() > 0) {
-			Collections.sort(matchingTurns);
-			return matchingTurns.get(0).intValue() - currentTurn;
-		} else {
-			return -1;
+			int turn = event.turn;
+			for (event = event.nextOfListener; event != null; event = event.nextOfListener) {
+				turn = Math.min(turn, event.turn);
+			}
+			return turn - currentTurn;
 		}
 	}
 
 	/**
 	 * Finds out how many seconds will pass until the given TurnListener will be
-	 * notified with the given message.
+	 * notified.
 	 *
 	 * @param turnListener
 	 * @return the number of remaining seconds, or -1 if the given TurnListener
-	 *         will not be notified with the given message.
+	 *         will not be notified.
 	 */
 
 	public int getRemainingSeconds(final TurnListener turnListener) {
@@ -251,13 +351,74 @@ public final class TurnNotifier {
 	}
 
 	/**
-	 * Returns the list of events. Note this is only for debugging the
-	 * TurnNotifier
+	 * Get the number of events that are waiting to be fired.
+	 *
+	 * @return number of scheduled events
+	 */
+	public int getScheduledEventCount() {
+		synchronized (sync) {
+			return size;
+		}
+	}
+
+	/**
+	 * Get the number of events fired during the last turn.
+	 *
+	 * @return number of fired events
+	 */
+	public int getEventsFiredLastTurn() {
+		return eventsFired;
+	}
+
+	/**
+	 * Get the run time of the slowest listener of the last turn.
+	 *
+	 * @return run time in nanoseconds
+	 */
+	public long getLongestListenerRuntime() {
+		return longestRuntime;
+	}
+
+	/**
+	 * Get the class name of the slowest listener of the last turn.
+	 *
+	 * @return class name, or <code>null</code> if no events were fired
+	 */
+	public String getLongestListener() {
+		return longestListener;
+	}
+
+	/**
+	 * Returns a snapshot of the scheduled events, mapped by turn. Note this is
+	 * only for debugging the TurnNotifier
 	 *
 	 * @return eventList
 	 */
 	public Map<Integer, Set<TurnListener>> getEventListForDebugging() {
-		return register;
+		final Map<Integer, Set<TurnListener>> res = new TreeMap<Integer, Set<TurnListener>>();
+		synchronized (sync) {
+			for (final TurnEvent first : handles.values()) {
+				for (TurnEvent event = first; event != null; event = event.nextOfListener) {
+					final Integer turn = Integer.valueOf(event.turn);
+					Set<TurnListener> set = res.get(turn);
+					if (set == null) {
+						set = new LinkedHashSet<TurnListener>();
+						res.put(turn, set);
+					}
+					set.add(event.listener);
+				}
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Get the turn that is currently being processed.
+	 *
+	 * @return current turn
+	 */
+	public int getCurrentTurn() {
+		return currentTurn;
 	}
 
 	/**
@@ -268,4 +429,182 @@ public final class TurnNotifier {
 	public int getCurrentTurnForDebugging() {
 		return currentTurn;
 	}
+
+	/**
+	 * Place an event in the wheel matching its distance from the current turn.
+	 *
+	 * @param event scheduled event
+	 */
+	private void schedule(final TurnEvent event) {
+		final int delta = event.turn - currentTurn;
+		if (delta < FIRST_SLOTS) {
+			link(event, 0, event.turn & (FIRST_SLOTS - 1));
+			return;
+		}
+		for (int level = 1; level < LEVELS; level++) {
+			if (delta < (1 << SHIFT[level + 1])) {
+				link(event, level, (event.turn >>> SHIFT[level]) & (LEVEL_SLOTS - 1));
+				return;
+			}
+		}
+		link(event, LEVELS, 0);
+	}
+
+	/**
+	 * Move the events whose range of a coarser wheel starts at a turn to the
+	 * finer wheels.
+	 *
+	 * @param turn turn that is about to be processed
+	 */
+	private void cascade(final int turn) {
+		if ((overflow != null) && ((turn & ((1 << SHIFT[LEVELS - 1]) - 1)) == 0)) {
+			TurnEvent event = overflow;
+			overflow = null;
+			reschedule(event);
+		}
+		for (int level = LEVELS - 1; level > 0; level--) {
+			if ((turn & ((1 << SHIFT[level]) - 1)) == 0) {
+				final int slot = (turn >>> SHIFT[level]) & (LEVEL_SLOTS - 1);
+				final TurnEvent event = wheels[level][slot];
+				wheels[level][slot] = null;
+				reschedule(event);
+			}
+		}
+	}
+
+	/**
+	 * Remove the events of a turn from the wheel and from the listener
+	 * handles.
+	 *
+	 * @param turn turn
+	 * @param due list where the events are added in registration order
+	 */
+	private void takeDue(final int turn, final List<TurnEvent> due) {
+		final int slot = turn & (FIRST_SLOTS - 1);
+		TurnEvent event = wheels[0][slot];
+		wheels[0][slot] = null;
+		while (event != null) {
+			due.add(event);
+			removeHandle(event);
+			size--;
+			event = event.next;
+		}
+		// the slot lists are filled at the front
+		Collections.reverse(due);
+	}
+
+	/**
+	 * Schedule again all the events of the wheels relative to a new current
+	 * turn.
+	 *
+	 * @param turn new current turn
+	 */
+	private void rebase(final int turn) {
+		currentTurn = turn;
+		for (final TurnEvent[] wheel : wheels) {
+			for (int i = 0; i < wheel.length; i++) {
+				final TurnEvent event = wheel[i];
+				wheel[i] = null;
+				reschedule(event);
+			}
+		}
+		final TurnEvent event = overflow;
+		overflow = null;
+		reschedule(event);
+	}
+
+	/**
+	 * Place a detached list of events in the wheels again.
+	 *
+	 * @param first first event of the list
+	 */
+	private void reschedule(TurnEvent first) {
+		TurnEvent event = first;
+		while (event != null) {
+			final TurnEvent next = event.next;
+			schedule(event);
+			event = next;
+		}
+	}
+
+	private void link(final TurnEvent event, final int level, final int slot) {
+		final TurnEvent next;
+		if (level == LEVELS) {
+			next = overflow;
+			overflow = event;
+		} else {
+			next = wheels[level][slot];
+			wheels[level][slot] = event;
+		}
+		event.level = level;
+		event.slot = slot;
+		event.prev = null;
+		event.next = next;
+		if (next != null) {
+			next.prev = event;
+		}
+	}
+
+	private void unlink(final TurnEvent event) {
+		if (event.prev != null) {
+			event.prev.next = event.next;
+		} else if (event.level == LEVELS) {
+			overflow = event.next;
+		} else {
+			wheels[event.level][event.slot] = event.next;
+		}
+		if (event.next != null) {
+			event.next.prev = event.prev;
+		}
+		event.prev = null;
+		event.next = null;
+	}
+
+	/**
+	 * Remove an event from the chain of events of its listener.
+	 *
+	 * @param event fired event
+	 */
+	private void removeHandle(final TurnEvent event) {
+		final TurnEvent first = handles.get(event.listener);
+		if (first == event) {
+			if (event.nextOfListener == null) {
+				handles.remove(event.listener);
+			} else {
+				handles.put(event.listener, event.nextOfListener);
+			}
+			return;
+		}
+		for (TurnEvent previous = first; previous != null; previous = previous.nextOfListener) {
+			if (previous.nextOfListener == event) {
+				previous.nextOfListener = event.nextOfListener;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * A scheduled notification.
+	 */
+	private static final class TurnEvent {
+		/** Notified listener. */
+		private final TurnListener listener;
+		/** Turn of the notification. */
+		private final int turn;
+		/** Wheel of the event, or LEVELS for the overflow list. */
+		private int level;
+		/** Slot of the event in its wheel. */
+		private int slot;
+		/** Previous event in the same slot. */
+		private TurnEvent prev;
+		/** Next event in the same slot. */
+		private TurnEvent next;
+		/** Next event of the same listener. */
+		private TurnEvent nextOfListener;
+
+		TurnEvent(final TurnListener listener, final int turn) {
+			this.listener = listener;
+			this.turn = turn;
+		}
+	}
 }
@@ -0,0 +1,439 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.pathfinder;
+
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.entity.GuidedEntity;
+
+/**
+ * Runs path searches on a pool of worker threads, and delivers the results on
+ * a later turn.
+ * <p>
+ * The search data (the navigation grid of the zone, and the resistance of the
+ * entities near the searching entity) is captured when the request is made,
+ * so the workers never look at the live zone. The results are delivered by
+ * {@link #logic()}, which is called by the rule processor every turn.
+ * <p>
+ * Identical requests (same zone, start, destination, search distance and
+ * entity size) share a single search, and a request identical to one that
+ * was delivered on the current turn gets the same result without a new
+ * search. An entity has at most one pending request; a new request cancels
+ * the previous one. At most a configured number of searches is started per
+ * turn, the rest wait for the following turns.
+ */
+public final class AsyncPathfinder {
+	private static final Logger logger = Logger.getLogger(AsyncPathfinder.class);
+
+	/** The configured instance, or <code>null</code> if searches are synchronous. */
+	private static volatile AsyncPathfinder instance;
+
+	/** Maximum number of searches started per turn. */
+	private final int budget;
+	private final ThreadPoolExecutor executor;
+
+	/** Searches that did not fit in the budget of their turn. */
+	private final Queue<Search> waiting = new ArrayDeque<Search>();
+	/** Searches that have been requested, but not yet delivered. */
+	private final Map<RequestKey, Search> inFlight = new HashMap<RequestKey, Search>();
+	/** Results delivered on the current turn. */
+	private final Map<RequestKey, List<Node>> recentResults = new HashMap<RequestKey, List<Node>>();
+	/** The pending request of each entity. */
+	private final Map<GuidedEntity, PathRequest> requests = new IdentityHashMap<GuidedEntity, PathRequest>();
+	/** Completed searches, waiting for delivery. */
+	private final Queue<Search> finished = new ConcurrentLinkedQueue<Search>();
+
+	/** Searches started during the current turn. */
+	private int startedThisTurn;
+	/** Searches started during the previous turn. */
+	private int startedLastTurn;
+	/** Requests delivered during the last logic() call. */
+	private int deliveredLastTurn;
+	/** Worker time used since the last logic() call, in nanoseconds. */
+	private final AtomicLong searchTime = new AtomicLong();
+	/** Worker time used between the two last logic() calls. */
+	private long searchTimeLastTurn;
+
+	/**
+	 * Create a new AsyncPathfinder.
+	 *
+	 * @param threads number of worker threads
+	 * @param budget maximum number of searches started per turn
+	 */
+	public AsyncPathfinder(final int threads, final int budget) {
+		this.budget = budget;
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(Math.max(1, budget)), new WorkerFactory());
+	}
+
+	/**
+	 * Get the configured instance.
+	 *
+	 * @return the pathfinder used by entities, or <code>null</code> if
+	 * 	paths should be searched synchronously
+	 */
+	public static AsyncPathfinder get() {
+		return instance;
+	}
+
+	/**
+	 * Set the instance used by entities.
+	 *
+	 * @param pathfinder new instance, or <code>null</code> to search paths
+	 * 	synchronously
+	 */
+	public static void setInstance(final AsyncPathfinder pathfinder) {
+		final AsyncPathfinder old = instance;
+		instance = pathfinder;
+		if ((old != null) && (old != pathfinder)) {
+			old.shutdown();
+		}
+	}
+
+	/**
+	 * Stop the worker threads. Pending requests are never delivered.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Request a path next to another entity. Same as
+	 * <code>Path.searchPath(entity, dest, maxDistance)</code>, but
+	 * asynchronous.
+	 *
+	 * @param entity searching entity
+	 * @param dest destination entity
+	 * @param maxDistance maximum path length
+	 * @param listener listener receiving the result, or <code>null</code> if
+	 * 	the path should be set directly to the entity
+	 * @return request handle, or <code>null</code> if the entity is not in a
+	 * 	zone
+	 */
+	public PathRequest request(final GuidedEntity entity, final Entity dest,
+			final double maxDistance, final PathListener listener) {
+		final Rectangle2D area = new Rectangle((int) (dest.getX() - entity.getWidth()),
+				(int) (dest.getY() - entity.getHeight()),
+				(int) (dest.getWidth() + entity.getWidth() + 1),
+				(int) (dest.getHeight() + entity.getHeight() + 1));
+
+		return request(entity, area, maxDistance, listener);
+	}
+
+	/**
+	 * Request a path from the current position of an entity to an area.
+	 *
+	 * @param entity searching entity
+	 * @param destination destination area
+	 * @param maxDistance maximum path length
+	 * @param listener listener receiving the result, or <code>null</code> if
+	 * 	the path should be set directly to the entity
+	 * @return request handle, or <code>null</code> if the entity is not in a
+	 * 	zone
+	 */
+	public synchronized PathRequest request(final GuidedEntity entity, final Rectangle2D destination,
+			final double maxDistance, final PathListener listener) {
+		final PathRequest previous = requests.get(entity);
+		if (previous != null) {
+			cancel(previous);
+		}
+
+		final StendhalRPZone zone = entity.getZone();
+		if (zone == null) {
+			return null;
+		}
+
+		final RequestKey key = new RequestKey(zone, entity, destination, maxDistance);
+		Search search = inFlight.get(key);
+		if (search == null) {
+			search = new Search(key, new EntityPathfinder(entity, zone, entity.getX(),
+					entity.getY(), destination, maxDistance, true));
+			final List<Node> result = recentResults.get(key);
+			if (result != null) {
+				search.result = result;
+				finished.add(search);
+			} else {
+				// Take the snapshot of the zone while we are on its thread
+				search.pathfinder.prepare();
+				inFlight.put(key, search);
+				start(search);
+			}
+		}
+
+		final PathRequest request = new PathRequest(this, entity, listener, search);
+		search.requests.add(request);
+		requests.put(entity, request);
+		return request;
+	}
+
+	/**
+	 * Cancel a request.
+	 *
+	 * @param request cancelled request
+	 */
+	synchronized void cancel(final PathRequest request) {
+		if (request.isCancelled() || request.isDone()) {
+			return;
+		}
+		request.setCancelled();
+		if (requests.get(request.getEntity()) == request) {
+			requests.remove(request.getEntity());
+		}
+
+		final Search search = request.search;
+		search.requests.remove(request);
+		if (search.requests.isEmpty() && (inFlight.get(search.key) == search)) {
+			// nobody waits for the search any more
+			inFlight.remove(search.key);
+			if (!waiting.remove(search)) {
+				executor.remove(search);
+			}
+		}
+	}
+
+	/**
+	 * Deliver the completed searches, and start the searches that have been
+	 * waiting for budget. Called once per turn on the turn thread.
+	 */
+	public void logic() {
+		final List<PathRequest> delivered = new ArrayList<PathRequest>();
+		final List<List<Node>> results = new ArrayList<List<Node>>();
+
+		synchronized (this) {
+			recentResults.clear();
+			Search search = finished.poll();
+			while (search != null) {
+				if (inFlight.get(search.key) == search) {
+					inFlight.remove(search.key);
+				}
+				recentResults.put(search.key, search.result);
+				for (final PathRequest request : search.requests) {
+					if (!request.isCancelled()) {
+						request.setDone();
+						if (requests.get(request.getEntity()) == request) {
+							requests.remove(request.getEntity());
+						}
+						delivered.add(request);
+						results.add(search.result);
+					}
+				}
+				search = finished.poll();
+			}
+
+			startedLastTurn = startedThisTurn;
+			startedThisTurn = 0;
+			while (!waiting.isEmpty() && (startedThisTurn < budget)) {
+				if (!start(waiting.poll())) {
+					break;
+				}
+			}
+		}
+
+		for (int i = 0; i < delivered.size(); i++) {
+			final PathRequest request = delivered.get(i);
+			try {
+				deliver(request, results.get(i));
+			} catch (final RuntimeException e) {
+				logger.error("Error delivering path to " + request.getEntity(), e);
+			}
+		}
+
+		deliveredLastTurn = delivered.size();
+		searchTimeLastTurn = searchTime.getAndSet(0);
+	}
+
+	/**
+	 * Start a search if the budget of the turn allows it. Otherwise the
+	 * search is put to the waiting queue.
+	 *
+	 * @param search search to start
+	 * @return <code>true</code> if the search was started
+	 */
+	private boolean start(final Search search) {
+		if (startedThisTurn < budget) {
+			try {
+				executor.execute(search);
+				startedThisTurn++;
+				return true;
+			} catch (final RejectedExecutionException e) {
+				// worker queue full
+				logger.debug("Path search queue full", e);
+			}
+		}
+		waiting.add(search);
+		return false;
+	}
+
+	/**
+	 * Give a search result to the requester.
+	 *
+	 * @param request request
+	 * @param result found path
+	 */
+	private void deliver(final PathRequest request, final List<Node> result) {
+		final GuidedEntity entity = request.getEntity();
+		if (entity.getZone() != request.search.key.zone) {
+			// The entity has left the zone, or has been removed
+			return;
+		}
+		// Every requester gets its own list, as FixedPath does not copy it
+		final List<Node> path = new LinkedList<Node>(result);
+		final PathListener listener = request.getListener();
+		if (listener != null) {
+			listener.onPathFound(entity, path);
+		} else {
+			entity.setPath(new FixedPath(path, false));
+		}
+	}
+
+	/**
+	 * Get the number of requests that are waiting for their result.
+	 *
+	 * @return number of pending requests
+	 */
+	public synchronized int getPendingRequestCount() {
+		return requests.size();
+	}
+
+	/**
+	 * Get the number of searches started during the previous turn.
+	 *
+	 * @return number of started searches
+	 */
+	public synchronized int getSearchesStartedLastTurn() {
+		return startedLastTurn;
+	}
+
+	/**
+	 * Get the number of results delivered during the last turn.
+	 *
+	 * @return number of delivered results
+	 */
+	public int getDeliveredLastTurn() {
+		return deliveredLastTurn;
+	}
+
+	/**
+	 * Get the worker time used for searches between the two last turns.
+	 *
+	 * @return search time in nanoseconds
+	 */
+	public long getSearchTimeLastTurn() {
+		return searchTimeLastTurn;
+	}
+
+	/**
+	 * A search shared by identical requests.
+	 */
+	final class Search implements Runnable {
+		private final RequestKey key;
+		private final EntityPathfinder pathfinder;
+		/** Requests waiting for the result. Guarded by the AsyncPathfinder. */
+		private final List<PathRequest> requests = new ArrayList<PathRequest>(1);
+		/** Search result. Set before the search is added to finished. */
+		private volatile List<Node> result;
+
+		Search(final RequestKey key, final EntityPathfinder pathfinder) {
+			this.key = key;
+			this.pathfinder = pathfinder;
+		}
+
+		@Override
+		public void run() {
+			final long start = System.nanoTime();
+			try {
+				result = pathfinder.getPath();
+			} catch (final RuntimeException e) {
+				logger.error("Error in path search", e);
+				result = new LinkedList<Node>();
+			}
+			searchTime.addAndGet(System.nanoTime() - start);
+			finished.add(this);
+		}
+	}
+
+	/**
+	 * Identity of a search. Requests with equal keys get the same result.
+	 */
+	private static final class RequestKey {
+		private final StendhalRPZone zone;
+		private final int startX;
+		private final int startY;
+		private final double entityWidth;
+		private final double entityHeight;
+		private final Rectangle2D destination;
+		private final double maxDistance;
+
+		RequestKey(final StendhalRPZone zone, final Entity entity,
+				final Rectangle2D destination, final double maxDistance) {
+			this.zone = zone;
+			startX = entity.getX();
+			startY = entity.getY();
+			entityWidth = entity.getWidth();
+			entityHeight = entity.getHeight();
+			this.destination = (Rectangle2D) destination.clone();
+			this.maxDistance = maxDistance;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof RequestKey)) {
+				return false;
+			}
+			final RequestKey other = (RequestKey) obj;
+			return (zone == other.zone) && (startX == other.startX) && (startY == other.startY)
+					&& (entityWidth == other.entityWidth) && (entityHeight == other.entityHeight)
+					&& (maxDistance == other.maxDistance) && destination.equals(other.destination);
+		}
+
+		@Override
+		public int hashCode() {
+			return ((System.identityHashCode(zone) * 31 + startX) * 31 + startY) * 31
+					+ destination.hashCode();
+		}
+	}
+
+	/**
+	 * Creates daemon worker threads.
+	 */
+	private static final class WorkerFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			final Thread thread = new Thread(runnable, "pathfinder-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -14,15 +14,20 @@ package games.stendhal.server.core.pathfinder;
 
 import java.awt.Point;
 import java.awt.geom.Rectangle2D;
+import java.util.BitSet;
 
 import games.stendhal.server.core.engine.StendhalRPZone;
 import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.mapstuff.portal.Portal;
 import games.stendhal.server.entity.player.Player;
-import marauroa.common.game.RPObject;
 
 /**
  * Server side path finder.
+ * <p>
+ * The static collision is checked using the navigation grid of the zone.
+ * Entities are taken into account through a resistance map, that is created
+ * only when there are blocking entities within the reach of the search, and
+ * that covers only the searched area.
  */
 class EntityPathfinder extends games.stendhal.server.core.pathfinder.Pathfinder {
 	/**
@@ -43,16 +48,44 @@ class EntityPathfinder extends games.stendhal.server.core.pathfinder.Pathfinder
 	private final boolean checkEntities;
 
 	/**
-	 * Contains the resistance data for entities.
+	 * The area where the path should end.
+	 */
+	private final Rectangle2D destination;
+
+	/** Width of the zone. */
+	private final int zoneWidth;
+
+	/**
+	 * Tiles where the entity would collide with the static collision, or
+	 * <code>null</code> if the entity has no area.
+	 */
+	private final BitSet blocked;
+
+	/**
+	 * Contains the resistance data for entities. <code>null</code> if there
+	 * are no entities affecting the search.
 	 */
 	private ResistanceMap resistanceMap;
 
 	EntityPathfinder(final Entity entity, final StendhalRPZone zone, final int startX, final int startY,
 			final Rectangle2D destination, final double maxDist, final boolean checkEntities) {
-		super(startX, startY, destination, maxDist);
+		this(entity, zone, zone.getNavigationGrid(), startX, startY, destination, maxDist, checkEntities);
+	}
+
+	private EntityPathfinder(final Entity entity, final StendhalRPZone zone, final NavigationGrid grid,
+			final int startX, final int startY, final Rectangle2D destination, final double maxDist,
+			final boolean checkEntities) {
+		super(grid.getWidth(), grid.getHeight(), startX, startY, destination, maxDist);
 		this.entity = entity;
 		this.zone = zone;
 		this.checkEntities = checkEntities;
+		this.destination = destination;
+		zoneWidth = grid.getWidth();
+		if ((entity.getWidth() > 0) && (entity.getHeight() > 0)) {
+			blocked = grid.getBlockedTiles(entity.getWidth(), entity.getHeight());
+		} else {
+			blocked = null;
+		}
 	}
 
 	@Override
@@ -71,76 +104,76 @@ class EntityPathfinder extends games.stendhal.server.core.pathfinder.Pathfinder
 	 * <li> have stopped
 	 */
 	private void createEntityCollisionMap() {
-		Point targetPoint = new Point(goalNode.getX(), goalNode.getY());
-		resistanceMap = new ResistanceMap(zone.getWidth(), zone.getHeight());
-		for (final RPObject obj : zone) {
-			final Entity otherEntity = (Entity) obj;
+		Point targetPoint = new Point(getGoalX(), getGoalY());
+		final Rectangle2D searchArea = getSearchArea();
+		for (final Entity otherEntity : zone.getEntitiesInArea(searchArea)) {
 			if (!entity.getID().equals(otherEntity.getID())
-					&& (otherEntity.stopped()|| (otherEntity.squaredDistance(startNode.getX(), startNode.getY()) < COLLISION_DISTANCE_SQUARED))) {
+					&& (otherEntity.stopped()|| (otherEntity.squaredDistance(getStartX(), getStartY()) < COLLISION_DISTANCE_SQUARED))) {
 				final Rectangle2D area = otherEntity.getArea();
 				// Hack: Allow players to move onto portals as destination
 				if ((entity instanceof Player) && (otherEntity instanceof Portal) && area.contains(targetPoint)) {
 					continue;
 				}
 				int resistance = otherEntity.getResistance(entity);
-				resistanceMap.addResistance(area, resistance);
+				if (resistance > 0) {
+					if (resistanceMap == null) {
+						resistanceMap = new ResistanceMap(searchArea, zone.getWidth(), zone.getHeight());
+					}
+					resistanceMap.addResistance(area, resistance);
+				}
 			}
 		}
 	}
 
-	@Override
-	public TreeNode createNode(int x, int y) {
-		return new PathTreeNode(x, y);
-	}
-
 	/**
-	 * Pathfinder node
+	 * Get the area that the search can cover. Nodes further than the maximum
+	 * distance from the start are never expanded, so entities outside the
+	 * area can not affect the path.
+	 *
+	 * @return search area
 	 */
-	private class PathTreeNode extends TreeNode {
-		private final double cost;
-
-		protected PathTreeNode(int x, int y) {
-			super(x, y);
-
-			/*
-			 * Modify movement cost by resistance
-			 */
-			if (resistanceMap != null) {
-				int resistance = resistanceMap.getResistance(x, y , entity.getWidth(), entity.getHeight());
-				cost = 100.0 / (100 - resistance);
-			} else {
-				cost = 1.0;
-			}
-		}
+	private Rectangle2D getSearchArea() {
+		final int range = (int) Math.ceil(getMaxDistance()) + 1;
+		final Rectangle2D area = new Rectangle2D.Double(getStartX() - range,
+				getStartY() - range,
+				2 * range + entity.getWidth(), 2 * range + entity.getHeight());
+		// The goal nodes are checked even when they are out of reach
+		final Rectangle2D goal = new Rectangle2D.Double(destination.getX(), destination.getY(),
+				destination.getWidth() + entity.getWidth(), destination.getHeight() + entity.getHeight());
+		area.add(goal);
+		return area;
+	}
 
-		@Override
-		protected double getCost() {
-			return cost;
+	@Override
+	protected double getCost(final int x, final int y) {
+		/*
+		 * Modify movement cost by resistance
+		 */
+		if (resistanceMap != null) {
+			int resistance = resistanceMap.getResistance(x, y, entity.getWidth(), entity.getHeight());
+			return 100.0 / (100 - resistance);
 		}
+		return 1.0;
+	}
 
-		@Override
-		public TreeNode createNode(int x, int y) {
-			return new PathTreeNode(x, y);
+	@Override
+	protected boolean isValid(int x, int y) {
+		boolean result;
+		if (blocked != null) {
+			result = !blocked.get(x + y * zoneWidth);
+		} else {
+			result = !zone.simpleCollides(entity, x, y, entity.getWidth(), entity.getHeight());
 		}
-
-		@Override
-		protected int createNodeID(int x, int y) {
-			return x + y * zone.getWidth();
+		if ((resistanceMap != null) && result) {
+			result = !resistanceMap.collides(x, y, entity.getWidth(), entity.getHeight());
 		}
 
-		@Override
-		public boolean isValid(int x, int y) {
-			boolean result = !zone.simpleCollides(entity, x, y, entity.getWidth(), entity.getHeight());
-			if (checkEntities && result) {
-				result = !resistanceMap.collides(x, y, entity.getWidth(), entity.getHeight());
-			}
-
-			return result;
-		}
+		return result;
 	}
 
 	/**
-	 * Resistance data for entities.
+	 * Resistance data for entities. The map covers only a part of the zone;
+	 * outside it there's no resistance.
 	 */
 	private static class ResistanceMap {
 		/** Resistance that corresponds to collision */
@@ -148,19 +181,28 @@ class EntityPathfinder extends games.stendhal.server.core.pathfinder.Pathfinder
 		/** Minimum resistance that is considered a collision */
 		private static final int COLLIDE_THRESHOLD = 95;
 
-		private final int width, height;
-		private final int[][] map;
+		/** Size of the zone. */
+		private final int zoneWidth, zoneHeight;
+		/** Covered part of the zone. */
+		private final int offsetX, offsetY, width, height;
+		/** Resistances in row major order. */
+		private final int[] map;
 
 		/**
 		 * Create a new ResistanceMap.
 		 *
-		 * @param width width of the area
-		 * @param height height of the area
+		 * @param area covered area
+		 * @param zoneWidth width of the zone
+		 * @param zoneHeight height of the zone
 		 */
-		public ResistanceMap(int width, int height) {
-			this.width = width;
-			this.height = height;
-			map = new int[width][height];
+		public ResistanceMap(Rectangle2D area, int zoneWidth, int zoneHeight) {
+			this.zoneWidth = zoneWidth;
+			this.zoneHeight = zoneHeight;
+			offsetX = Math.max(0, (int) Math.floor(area.getX()));
+			offsetY = Math.max(0, (int) Math.floor(area.getY()));
+			width = Math.max(0, Math.min(zoneWidth, (int) Math.ceil(area.getMaxX())) - offsetX);
+			height = Math.max(0, Math.min(zoneHeight, (int) Math.ceil(area.getMaxY())) - offsetY);
+			map = new int[width * height];
 		}
 
 		/**
@@ -189,10 +231,10 @@ class EntityPathfinder extends games.stendhal.server.core.pathfinder.Pathfinder
 			double w = area.getWidth();
 			double h = area.getHeight();
 
-			final int startx = (int) Math.max(0, x);
-			final int endx = (int) Math.min(width, x + w);
-			final int starty = (int) Math.max(0, y);
-			final int endy = (int) Math.min(height, y + h);
+			final int startx = (int) Math.max(offsetX, x);
+			final int endx = (int) Math.min(offsetX + width, x + w);
+			final int starty = (int) Math.max(offsetY, y);
+			final int endy = (int) Math.min(offsetY + height, y + h);
 
 			// Fill the area
 			for (int k = startx; k < endx; k++) {
@@ -204,14 +246,15 @@ class EntityPathfinder extends games.stendhal.server.core.pathfinder.Pathfinder
 					 * want to give something like corpses some resistance to
 					 * make it harder to wade through a pile of bodies.
 					 */
-					int old = map[k][i];
+					final int index = (k - offsetX) + (i - offsetY) * width;
+					int old = map[index];
 					/*
 					 * Add up like probabilities. Several slightly resistant
 					 * entities can still add up to a completely impassable
 					 * barrier, when the resistance grows over
 					 * COLLIDE_THRESHOLD.
 					 */
-					map[k][i] = 100 - ((100 - old) * (100 - resistance)) / 100;
+					map[index] = 100 - ((100 - old) * (100 - resistance)) / 100;
 				}
 			}
 		}
@@ -226,24 +269,24 @@ class EntityPathfinder extends games.stendhal.server.core.pathfinder.Pathfinder
 		 * @return resistance
 		 */
 		public int getResistance(final double x, final double y, double w, double h) {
-			if ((x < 0) || (x >= width)) {
+			if ((x < 0) || (x >= zoneWidth)) {
 				return COLLISION;
 			}
 
-			if ((y < 0) || (y >= height)) {
+			if ((y < 0) || (y >= zoneHeight)) {
 				return COLLISION;
 			}
 
-			final int startx = (int) Math.max(0, x);
-			final int endx = (int) Math.min(width, x + w);
-			final int starty = (int) Math.max(0, y);
-			final int endy = (int) Math.min(height, y + h);
+			final int startx = (int) Math.max(offsetX, x);
+			final int endx = (int) Math.min(offsetX + width, x + w);
+			final int starty = (int) Math.max(offsetY, y);
+			final int endy = (int) Math.min(offsetY + height, y + h);
 
 			final int entitySize = (int) (w * h);
 			int resistance = 0;
 			for (int k = startx; k < endx; k++) {
 				for (int i = starty; i < endy; i++) {
-					int r = map[k][i];
+					int r = map[(k - offsetX) + (i - offsetY) * width];
 					if (r > COLLIDE_THRESHOLD) {
 						/*
 						 * A full collision is always collision, regardless of
@@ -0,0 +1,147 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.pathfinder;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import games.stendhal.common.CollisionDetection;
+
+/**
+ * Static navigation data of a zone, derived from its collision map. For each
+ * entity size that has been used in path finding, the grid keeps a bit set of
+ * the tiles where an entity of that size can not stand, so that the path
+ * finder can check the static collision of a node with a single bit lookup.
+ * <p>
+ * The grid is a snapshot of the collision map. Use {@link #isCurrent} to check
+ * if it still matches the map.
+ */
+public final class NavigationGrid {
+	/** The collision map the grid was built from. */
+	private final CollisionDetection collision;
+	/** Modification count of the collision map when the grid was built. */
+	private final int modificationCount;
+	private final int width;
+	private final int height;
+	/**
+	 * Blocked tiles for entity sizes. The key is
+	 * <code>(width &lt;&lt; 16) | height</code>.
+	 */
+	private final Map<Integer, BitSet> blockedTiles = new HashMap<Integer, BitSet>();
+
+	/**
+	 * Create a new NavigationGrid. The blocked tiles of single tile entities
+	 * are calculated immediately, the others when they are first needed.
+	 *
+	 * @param collision collision map of the zone
+	 */
+	public NavigationGrid(final CollisionDetection collision) {
+		this.collision = collision;
+		modificationCount = collision.getModificationCount();
+		width = collision.getWidth();
+		height = collision.getHeight();
+		getBlockedTiles(1, 1);
+	}
+
+	/**
+	 * Check if the grid still matches a collision map.
+	 *
+	 * @param collision collision map
+	 * @return <code>true</code> if the grid was built from the map, and the
+	 * 	map has not changed since
+	 */
+	public boolean isCurrent(final CollisionDetection collision) {
+		return (this.collision == collision)
+				&& (collision.getModificationCount() == modificationCount);
+	}
+
+	/**
+	 * Get the width of the grid.
+	 *
+	 * @return width in tiles
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Get the height of the grid.
+	 *
+	 * @return height in tiles
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Get the tiles where an entity of a given size would collide with the
+	 * static collision or leave the zone. The bit of tile <code>(x, y)</code>
+	 * is <code>x + y * getWidth()</code>. The returned set must not be
+	 * modified.
+	 *
+	 * @param entityWidth width of the entity
+	 * @param entityHeight height of the entity
+	 * @return blocked tiles
+	 */
+	public synchronized BitSet getBlockedTiles(final double entityWidth, final double entityHeight) {
+		// Same rounding as CollisionDetection uses for integer positions
+		final int w = Math.max(1, (int) Math.ceil(entityWidth));
+		final int h = Math.max(1, (int) Math.ceil(entityHeight));
+		final Integer key = Integer.valueOf((w << 16) | h);
+		BitSet blocked = blockedTiles.get(key);
+		if (blocked == null) {
+			blocked = calculateBlockedTiles(w, h);
+			blockedTiles.put(key, blocked);
+		}
+		return blocked;
+	}
+
+	/**
+	 * Calculate the blocked tiles for an entity size.
+	 *
+	 * @param w entity width in tiles
+	 * @param h entity height in tiles
+	 * @return blocked tiles
+	 */
+	private BitSet calculateBlockedTiles(final int w, final int h) {
+		// Summed area table of the collision tiles
+		final int[] sums = new int[(width + 1) * (height + 1)];
+		for (int y = 0; y < height; y++) {
+			int row = 0;
+			for (int x = 0; x < width; x++) {
+				if (collision.collides(x, y)) {
+					row++;
+				}
+				sums[(x + 1) + (y + 1) * (width + 1)] = sums[(x + 1) + y * (width + 1)] + row;
+			}
+		}
+
+		final BitSet blocked = new BitSet(width * height);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if ((x + w > width) || (y + h > height)) {
+					blocked.set(x + y * width);
+					continue;
+				}
+				final int count = sums[(x + w) + (y + h) * (width + 1)]
+						- sums[x + (y + h) * (width + 1)]
+						- sums[(x + w) + y * (width + 1)]
+						+ sums[x + y * (width + 1)];
+				if (count > 0) {
+					blocked.set(x + y * width);
+				}
+			}
+		}
+		return blocked;
+	}
+}
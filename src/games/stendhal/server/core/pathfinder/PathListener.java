@@ -0,0 +1,31 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.pathfinder;
+
+import java.util.List;
+
+import games.stendhal.server.entity.GuidedEntity;
+
+/**
+ * Receives the results of asynchronous path searches.
+ *
+ * @see AsyncPathfinder
+ */
+public interface PathListener {
+	/**
+	 * Called on the turn thread when a path search has completed.
+	 *
+	 * @param entity the entity the path was searched for
+	 * @param path found path, or an empty list if there is no path
+	 */
+	void onPathFound(GuidedEntity entity, List<Node> path);
+}
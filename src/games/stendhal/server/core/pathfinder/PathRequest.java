@@ -0,0 +1,89 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.pathfinder;
+
+import games.stendhal.server.entity.GuidedEntity;
+
+/**
+ * Handle of an asynchronous path search made by an entity.
+ *
+ * @see AsyncPathfinder
+ */
+public final class PathRequest {
+	private final AsyncPathfinder pathfinder;
+	private final GuidedEntity entity;
+	private final PathListener listener;
+	/** The search the request is waiting for. Shared by identical requests. */
+	final AsyncPathfinder.Search search;
+	private volatile boolean cancelled;
+	private volatile boolean done;
+
+	PathRequest(final AsyncPathfinder pathfinder, final GuidedEntity entity,
+			final PathListener listener, final AsyncPathfinder.Search search) {
+		this.pathfinder = pathfinder;
+		this.entity = entity;
+		this.listener = listener;
+		this.search = search;
+	}
+
+	/**
+	 * Get the entity that made the request.
+	 *
+	 * @return entity
+	 */
+	public GuidedEntity getEntity() {
+		return entity;
+	}
+
+	/**
+	 * Get the listener that receives the result.
+	 *
+	 * @return listener, or <code>null</code> if the found path is given
+	 * 	directly to the entity
+	 */
+	PathListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * Cancel the request. The result will not be delivered.
+	 */
+	public void cancel() {
+		pathfinder.cancel(this);
+	}
+
+	void setCancelled() {
+		cancelled = true;
+	}
+
+	void setDone() {
+		done = true;
+	}
+
+	/**
+	 * Check if the request has been cancelled.
+	 *
+	 * @return <code>true</code> if the request was cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Check if the result has been delivered.
+	 *
+	 * @return <code>true</code> if the request is done
+	 */
+	public boolean isDone() {
+		return done;
+	}
+}
@@ -25,16 +25,16 @@ package games.stendhal.server.core.pathfinder;
 
 
 import java.awt.geom.Rectangle2D;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Stack;
 
 /**
- * Implements the A* algorithm. Pathing can be done on any class that implements
- * the <code>Navigable</code> interface. See org.generation5.ai.Navigable.
+ * Implements the A* algorithm on a grid of tiles.
+ * <p>
+ * The search state is kept in primitive arrays indexed by tile number, that
+ * are reused between searches of the same thread. Subclasses only need to
+ * define which tiles can be entered, and optionally the cost of entering them.
  *
  * @author James Matthews
  *
@@ -66,6 +66,14 @@ public abstract class Pathfinder {
 	 */
 	protected static final double STRAIGHT_PATH_PREFERENCE_FACTOR = 0.2;
 
+	/** Search arrays of each thread. */
+	private static final ThreadLocal<SearchState> STATE = new ThreadLocal<SearchState>() {
+		@Override
+		protected SearchState initialValue() {
+			return new SearchState();
+		}
+	};
+
 	/**
 	 * The current status of the pathfinder.
 	 *
@@ -74,37 +82,14 @@ public abstract class Pathfinder {
 	 * @see #IN_PROGRESS
 	 */
 	private int pathStatus = IN_PROGRESS;
-	/**
-	 * The open list.
-	 */
-	private final PriorityQueue<TreeNode> openList = new PriorityQueue<TreeNode>(16,
-			new Comparator<TreeNode>() {
-		@Override
-		public int compare(final TreeNode o1, final TreeNode o2) {
-			return (int) Math.signum(o1.weight - o2.weight);
-		}
-	});
-
-	private final HashMap<Integer, TreeNode> nodeRegistry = new HashMap<Integer, TreeNode>();
-
-	/**
-	 * The goal node.
-	 */
-	protected TreeNode goalNode;
-
-	/**
-	 * The start node.
-	 */
-	protected TreeNode startNode;
 
-	/**
-	 * The current best node. The best node is taken from the open list after
-	 * every iteration of <code>doStep</code>.
-	 */
-	private TreeNode bestNode;
+	/** Width of the searched grid. */
+	private final int width;
+	/** Height of the searched grid. */
+	private final int height;
 
 	/**
-	 * The maximum distance for the path. It is compared with the f value of the
+	 * The maximum distance for the path. It is compared with the g value of the
 	 * node. The minimum for working pathfinding is
 	 * heuristicFromStartNode + 1
 	 */
@@ -117,46 +102,103 @@ public abstract class Pathfinder {
 
 	/** Initialization data */
 	private final int startX, startY;
-	/** Initialization data */
-	private final Rectangle2D destination;
+	/** Target point of the heuristic. */
+	private final int goalX, goalY;
 	/** Initialization data */
 	private final double initMaxDist;
+	/** <code>true</code> when init() has been called. */
+	private boolean prepared;
 
-	protected Pathfinder(final int startX, final int startY, final Rectangle2D destination, final double maxDist) {
+	/**
+	 * Create a new Pathfinder.
+	 *
+	 * @param width width of the searched grid. Nodes outside the grid are
+	 * 	never valid
+	 * @param height height of the searched grid
+	 * @param startX x coordinate of the start
+	 * @param startY y coordinate of the start
+	 * @param destination area where the path should end
+	 * @param maxDist maximum path length
+	 */
+	protected Pathfinder(final int width, final int height, final int startX,
+			final int startY, final Rectangle2D destination, final double maxDist) {
+		this.width = width;
+		this.height = height;
 		this.goalArea = destination;
-
-		// Setup the initialization data needed for node creation
 		this.startX = startX;
 		this.startY = startY;
-		this.destination = destination;
+		this.goalX = (int) destination.getCenterX();
+		this.goalY = (int) destination.getCenterY();
 		this.initMaxDist = maxDist;
-
-		openList.clear();
-		nodeRegistry.clear();
-
-		bestNode = null;
-		pathStatus = IN_PROGRESS;
 	}
 
 	/**
 	 * Initialization that can not be done safely in the constructor.
 	 */
 	protected void init() {
-		/*
-		 * createNode is defined in child classes, so it may require
-		 * work in the child's constructor.
-		 */
-		startNode = createNode(startX, startY);
-		goalNode = createNode((int) (destination.getCenterX()),
-				(int) (destination.getCenterY()));
-		openList.offer(startNode);
-		nodeRegistry.put(startNode.nodeNumber, startNode);
-
 		// calculate shortest distance and allow a variance of X percent
-		final double startF = 1.1 * startNode.getHeuristic(goalNode) + 1;
+		final double startF = 1.1 * getHeuristic(startX, startY) + 1;
 		this.maxDistance = Math.max(initMaxDist, startF);
 	}
 
+	/**
+	 * Initialize the search, unless it has been done already. Searches that
+	 * are run in another thread must be prepared in the thread that owns the
+	 * zone, so that the data they use is a snapshot of the zone state.
+	 */
+	final void prepare() {
+		if (!prepared) {
+			init();
+			prepared = true;
+		}
+	}
+
+	/**
+	 * Get the maximum path length. Valid after <code>init()</code> has been
+	 * called.
+	 *
+	 * @return maximum distance
+	 */
+	protected double getMaxDistance() {
+		return maxDistance;
+	}
+
+	/**
+	 * Get the x coordinate of the start.
+	 *
+	 * @return x
+	 */
+	protected int getStartX() {
+		return startX;
+	}
+
+	/**
+	 * Get the y coordinate of the start.
+	 *
+	 * @return y
+	 */
+	protected int getStartY() {
+		return startY;
+	}
+
+	/**
+	 * Get the x coordinate of the point the search is heading to.
+	 *
+	 * @return x
+	 */
+	protected int getGoalX() {
+		return goalX;
+	}
+
+	/**
+	 * Get the y coordinate of the point the search is heading to.
+	 *
+	 * @return y
+	 */
+	protected int getGoalY() {
+		return goalY;
+	}
+
 	/**
 	 * Return the current status of the pathfinder.
 	 *
@@ -168,74 +210,44 @@ public abstract class Pathfinder {
 	}
 
 	public final List<Node> getPath() {
-		init();
+		prepare();
 		final List<Node> list = new LinkedList<Node>();
 
-		if (unreachableGoal()) {
+		if (unreachableGoal() || !inGrid(startX, startY)) {
+			pathStatus = PATH_NOT_FOUND;
 			return list;
 		}
 
-		while (pathStatus == Pathfinder.IN_PROGRESS) {
-			doStep();
+		final SearchState state = STATE.get();
+		state.reset(width * height);
+		final int start = startX + startY * width;
+		state.visit(start);
+		state.g[start] = 0.0;
+		state.parent[start] = -1;
+		state.weight[start] = 0.0;
+		state.push(start);
+
+		int best = -1;
+		while (pathStatus == IN_PROGRESS) {
+			best = state.poll();
+			if (best < 0) {
+				pathStatus = PATH_NOT_FOUND;
+			} else if (goalArea.contains(best % width, best / width)) {
+				pathStatus = PATH_FOUND;
+			} else {
+				createChildren(state, best);
+			}
 		}
 
-		if (pathStatus == Pathfinder.PATH_FOUND) {
-			TreeNode node = bestNode;
-			while (node != null) {
-				list.add(0, new Node(node.getX(), node.getY()));
-				node = node.getParent();
+		if (pathStatus == PATH_FOUND) {
+			for (int node = best; node >= 0; node = state.parent[node]) {
+				list.add(0, new Node(node % width, node / width));
 			}
 		}
-		/* */
 
 		return list;
 	}
 
-	/**
-	 * Iterate the pathfinder through one step.
-	 */
-	private void doStep() {
-		bestNode = getBest();
-		if (bestNode == null) {
-			pathStatus = PATH_NOT_FOUND;
-			return;
-		}
-
-		if (reachedGoal(bestNode)) {
-			pathStatus = PATH_FOUND;
-			return;
-		}
-
-		bestNode.createChildren();
-	}
-
-	/**
-	 * Assigns the best node from the open list.
-	 *
-	 * @return the best node.
-	 */
-	private TreeNode getBest() {
-		if (openList.isEmpty()) {
-			return null;
-		}
-
-		final TreeNode first = openList.poll();
-		first.setOpen(false);
-
-		return first;
-	}
-
-	/**
-	 * Checks if the goal is reached.
-	 *
-	 * @param nodeBest
-	 *            the currently best node
-	 * @return true if the goal is reached
-	 */
-	private boolean reachedGoal(final TreeNode nodeBest) {
-		return goalArea.contains(nodeBest.getX(), nodeBest.getY());
-	}
-
 	/**
 	 * Checks if the goal is unreachable. Only the outer nodes of the goal are
 	 * checked. There could be other reasons, why a goal is unreachable.
@@ -251,7 +263,7 @@ public abstract class Pathfinder {
 		for (int i = 0; i <= w; i++) {
 			for (int j = 0; j <= h; j++) {
 				if ((i == 0) || (j == 0) || (i == w) || (j == h)) {
-					if (createNode(x + i, y + j).isValid()) {
+					if (isValidNode(x + i, y + j)) {
 						return false;
 					}
 				}
@@ -262,378 +274,257 @@ public abstract class Pathfinder {
 	}
 
 	/**
-	 * Create a new TreeNode
+	 * Checks if the entity could stand on the given position. Positions
+	 * outside the grid are checked before calling this.
 	 *
-	 * @param x x coordinate of the node
-	 * @param y y coordinate of the node
-	 * @return TreeNode
+	 * @param x coordinate of the position to be checked
+	 * @param y coordinate of the position to be checked
+	 *
+	 * @return true if the the entity could stand on the position
 	 */
-	// A workaround for java lacking proper generics
-	public abstract TreeNode createNode(final int x, final int y);
-
+	protected abstract boolean isValid(int x, int y);
 
 	/**
-	 * Calculates the manhattan distance between to positions.
+	 * The cost of moving to a position.
 	 *
-	 * @param x1
-	 *            x value for position 1
-	 * @param y1
-	 *            y value for position 1
-	 * @param x2
-	 *            x value for position 2
-	 * @param y2
-	 *            y value for position 2
-	 * @return manhattan distance between to positions
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @return movement cost
 	 */
-	private static int manhattanDistance(final int x1, final int y1, final int x2, final int y2) {
-		return Math.abs(x1 - x2) + Math.abs(y1 - y2);
+	protected double getCost(final int x, final int y) {
+		return 1.0;
 	}
 
-	/**
-	 * Calculates the square distance between to positions.
-	 *
-	 * @param x1
-	 *            x value for position 1
-	 * @param y1
-	 *            y value for position 1
-	 * @param x2
-	 *            x value for position 2
-	 * @param y2
-	 *            y value for position 2
-	 * @return square distance between to positions
-	 */
-	private static int squareDistance(final int x1, final int y1, final int x2, final int y2) {
-		return (x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2);
+	private boolean inGrid(final int x, final int y) {
+		return (x >= 0) && (y >= 0) && (x < width) && (y < height);
 	}
 
+	private boolean isValidNode(final int x, final int y) {
+		return inGrid(x, y) && isValid(x, y);
+	}
 
 	/**
-	 * The pathfinder node.
+	 * Calculates the heuristic for the move from a node to the goal. <p> The right
+	 * heuristic is very important for A* - a over estimated heuristic will
+	 * turn A* in to bsf - a under estimated heuristic will turn A* in to
+	 * Dijkstra's so the manhattan distance seams to be the optimal
+	 * heuristic here. But it has one disadvantage. It will expand to much.
+	 * Several nodes will have the same f value It will search the area of
+	 * the size (abs(startX - goalX) + 1) * (abs(startY - goalY) + 1) So a
+	 * tie-breaker is needed. 1% square distace seems to work fine. A* will
+	 * prefer nodes closer to the goal.
+	 *
+	 * @param x x coordinate of the node
+	 * @param y y coordinate of the node
+	 * @return heuristic value for move
 	 */
-	protected abstract class TreeNode {
-
-		/**
-		 * The f-value.
-		 */
-		private double weight;
+	private double getHeuristic(final int x, final int y) {
+		final int dx = x - goalX;
+		final int dy = y - goalY;
+		final double heuristic = Math.abs(dx) + Math.abs(dy);
+		final double tieBreaking = 0.01 * (dx * dx + dy * dy);
 
-		/**
-		 * The g-value.
-		 */
-		private double g;
-
-		/**
-		 * The x-position of the node.
-		 */
-		private final int x;
-
-		/**
-		 * The y-position of the node.
-		 */
-		private final int y;
-
-		/**
-		 * The number of children the node has.
-		 */
-		private int numChildren;
-
-		/**
-		 * The node identifier.
-		 */
-		private final Integer nodeNumber;
-
-		/**
-		 * The parent of the node.
-		 */
-		private TreeNode parent;
-
-		private final TreeNode[] children = new TreeNode[4];
-
-		private boolean open = true;
-
-		/**
-		 * The default constructor with positional information.
-		 *
-		 * @param x
-		 *            the x-position of the node.
-		 * @param y
-		 *            the y-position of the node.
-		 */
-		protected TreeNode(final int x, final int y) {
-			this.x = x;
-			this.y = y;
-
-			this.nodeNumber = createNodeID(x, y);
-
-			init();
-		}
-
-		/**
-		 * Resets the node. This involves all f, g and h-values to 0 as well as
-		 * removing all children.
-		 */
-		private void init() {
-			this.weight = 0.0;
-			this.g = 0.0;
-			this.numChildren = 0;
-			for (int i = 0; i < 4; i++) {
-				this.children[i] = null;
-			}
-
-			this.open = true;
-		}
-
-		/**
-		 * Add a child to the node.
-		 *
-		 * @param child
-		 *            the child node.
-		 */
-		private void addChild(final TreeNode child) {
-			this.children[numChildren++] = child;
+		return heuristic + tieBreaking;
+	}
 
-			updateChild(child);
+	/**
+	 * Creates valid child nodes.
+	 * <p>
+	 * The child nodes have to be
+	 * <ul>
+	 * <li> a valid position
+	 * <li> a f value less than maxDistance (checked against the given node)
+	 * </ul>
+	 *
+	 * @param state search state
+	 * @param node expanded node
+	 */
+	private void createChildren(final SearchState state, final int node) {
+		if (state.g[node] < maxDistance) {
+			final int x = node % width;
+			final int y = node / width;
+			linkChild(state, node, x, y, x - 1, y + 0);
+			linkChild(state, node, x, y, x + 1, y + 0);
+			linkChild(state, node, x, y, x + 0, y - 1);
+			linkChild(state, node, x, y, x + 0, y + 1);
 		}
+	}
 
-		/**
-		 * Add a child to the node.
-		 *
-		 * @param child
-		 *            the child node.
-		 */
-		private void updateChild(final TreeNode child) {
-			child.parent = this;
-			child.g = this.g + child.getCost();
-
-			child.weight = calculateChildWeight(child);
+	/**
+	 * Links a child to the parent node, or updates the parent of an already
+	 * visited child, if a shorter path is found.
+	 *
+	 * @param state search state
+	 * @param node parent node
+	 * @param x x coordinate of the parent node
+	 * @param y y coordinate of the parent node
+	 * @param x1 x coordinate of the child
+	 * @param y1 y coordinate of the child
+	 */
+	private void linkChild(final SearchState state, final int node, final int x,
+			final int y, final int x1, final int y1) {
+		if (!isValidNode(x1, y1)) {
+			return;
 		}
 
-		/**
-		 * Calculate node weight for a child node.
-		 *
-		 * @param child the child to be calculated
-		 * @return weight for the child node
-		 */
-		private double calculateChildWeight(final TreeNode child) {
-			double childweight = child.g + child.getHeuristic(goalNode);
-
-			// Prefer nodes that do not result in direction change
-			if (parent != null) {
-				final int incx = parent.x - x;
-				final int incy = parent.y - y;
-
-				final int incx2 = x - child.x;
-				final int incy2 = y - child.y;
-
-				if ((incx == incx2) && (incy == incy2)) {
-					childweight -= STRAIGHT_PATH_PREFERENCE_FACTOR;
-				}
+		final int child = x1 + y1 * width;
+		final double g = state.g[node] + getCost(x1, y1);
+		if (state.isVisited(child)) {
+			if (state.g[child] <= g) {
+				return;
 			}
-
-			return childweight;
+		} else {
+			state.visit(child);
 		}
 
-		/**
-		 * Return the x-position of the node.
-		 *
-		 * @return the x-position of the node.
-		 */
-		public int getX() {
-			return x;
+		state.parent[child] = node;
+		state.g[child] = g;
+		double weight = g + getHeuristic(x1, y1);
+		// Prefer nodes that do not result in direction change
+		final int grandParent = state.parent[node];
+		if ((grandParent >= 0) && (grandParent - node == node - child)) {
+			weight -= STRAIGHT_PATH_PREFERENCE_FACTOR;
 		}
+		state.weight[child] = weight;
+		state.update(child);
+	}
 
-		/**
-		 * Return the y-position of the node.
-		 *
-		 * @return the y-position of the node.
-		 */
-		public int getY() {
-			return y;
-		}
+	/**
+	 * Search state arrays. The node data is valid for nodes marked with the
+	 * current search number, so the arrays do not need to be cleared between
+	 * searches.
+	 */
+	private static final class SearchState {
+		/** heapIndex value of nodes that are not in the open list. */
+		private static final int CLOSED = -1;
+
+		private int search;
+		private int[] visited = new int[0];
+		private double[] g = new double[0];
+		private double[] weight = new double[0];
+		private int[] parent = new int[0];
+		/** Position of each node in the heap. */
+		private int[] heapIndex = new int[0];
+		/** The open list as a binary heap ordered by weight. */
+		private int[] heap = new int[16];
+		private int heapSize;
 
 		/**
-		 * Return the parent node.
+		 * Prepare for a new search.
 		 *
-		 * @return the parent node.
+		 * @param size number of nodes
 		 */
-		public TreeNode getParent() {
-			return parent;
+		void reset(final int size) {
+			if (visited.length < size) {
+				visited = new int[size];
+				g = new double[size];
+				weight = new double[size];
+				parent = new int[size];
+				heapIndex = new int[size];
+				search = 0;
+			}
+			search++;
+			if (search == 0) {
+				// wrapped around
+				Arrays.fill(visited, 0);
+				search = 1;
+			}
+			heapSize = 0;
 		}
 
-		/**
-		 * The cost of moving to this node.
-		 *
-		 * @return movement cost
-		 */
-		protected double getCost() {
-			return 1.0;
+		boolean isVisited(final int node) {
+			return visited[node] == search;
 		}
 
-		/**
-		 * Calculates the heuristic for the move form node1 to node2. <p> The right
-		 * heuristic is very important for A* - a over estimated heuristic will
-		 * turn A* in to bsf - a under estimated heuristic will turn A* in to
-		 * Dijkstra's so the manhattan distance seams to be the optimal
-		 * heuristic here. But it has one disadvantage. It will expand to much.
-		 * Several nodes will have the same f value It will search the area of
-		 * the size (abs(startX - goalX) + 1) * (abs(startY - goalY) + 1) So a
-		 * tie-breaker is needed. 1% square distace seems to work fine. A* will
-		 * prefer nodes closer to the goal.
-		 * @param nodeGoal
-		 * @return heuristic value for move
-		 */
-		public double getHeuristic(final TreeNode nodeGoal) {
-			final double heuristic = manhattanDistance(x, y, nodeGoal.x, nodeGoal.y);
-			final double tieBreaking = 0.01 * squareDistance(x, y, nodeGoal.x,
-					nodeGoal.y);
-
-			return heuristic + tieBreaking;
+		void visit(final int node) {
+			visited[node] = search;
+			heapIndex[node] = CLOSED;
 		}
 
-		/**
-		 * Checks if the entity could stand on the position of this node.
-		 *
-		 * @return true if the the entity could stand on the position
-		 */
-		public boolean isValid() {
-			return isValid(x, y);
+		void push(final int node) {
+			if (heapSize == heap.length) {
+				heap = Arrays.copyOf(heap, 2 * heapSize);
+			}
+			heap[heapSize] = node;
+			heapIndex[node] = heapSize;
+			heapSize++;
+			siftUp(heapIndex[node]);
 		}
 
 		/**
-		 * Checks if the entity could stand on the given by the coordinates.
-		 * @param x coordinate of the position to be checked
-		 * @param y coordinate of the position to be checked
+		 * Put a node in the right position of the open list after changing
+		 * its weight. Closed nodes are opened again.
 		 *
-		 * @return true if the the entity could stand on the position
+		 * @param node node
 		 */
-		public abstract boolean isValid(int x, int y);
-
-		/**
-		 * Create a new <code>TreeNode</code>.
-		 *
-		 * @param x x coordinate of the created node
-		 * @param y y coordinate of the created node
-		 * @return a <code>TreeNode</code>
-		 */
-		// A workaround for java lacking proper generics
-		public abstract TreeNode createNode(int x, int y);
-
-		/**
-		 * Creates valid child nodes.
-		 * <p>
-		 * The child nodes have to be
-		 * <ul>
-		 * <li> a valid position
-		 * <li> a f value less than maxDistance (checked against the given node)
-		 * </ul>
-		 *
-		 */
-		public void createChildren() {
-			if (g < maxDistance) {
-				linkChild(x - 1, y + 0);
-				linkChild(x + 1, y + 0);
-				linkChild(x + 0, y - 1);
-				linkChild(x + 0, y + 1);
+		void update(final int node) {
+			final int index = heapIndex[node];
+			if (index == CLOSED) {
+				push(node);
+			} else {
+				siftUp(index);
+				siftDown(heapIndex[node]);
 			}
 		}
 
 		/**
-		 * Links the children to this parent node  and may also update the
-		 * parent path, if a shorter path is found.
-		 * @param x1
-		 * @param y1
+		 * Take the node with the lowest weight from the open list.
+		 *
+		 * @return node, or -1 if the list is empty
 		 */
-		private void linkChild(final int x1, final int y1) {
-			if (!isValid(x1, y1)) {
-				return;
+		int poll() {
+			if (heapSize == 0) {
+				return -1;
 			}
-
-			// search for original child node
-			TreeNode child = nodeRegistry.get(createNodeID(x1, y1));
-			if (child == null) {
-				// if not found original child node then create a new one
-				child = createNode(x1, y1);
-
-				addChild(child);
-
-				openList.offer(child);
-				child.setOpen(true);
-
-				nodeRegistry.put(child.nodeNumber, child);
-			} else {
-				// note:
-				// - working on closed nodes is stopped but they may own a better
-				// parent
-				// so they will also be added to this node (parent)
-				if (child.g > (this.g + child.getCost())) {
-					updateChild(child);
-				}
-
-				// update parents for closed nodes only
-				if (!child.isOpen()) {
-					updateSubTree(child);
-				}
+			final int first = heap[0];
+			heapIndex[first] = CLOSED;
+			heapSize--;
+			if (heapSize > 0) {
+				heap[0] = heap[heapSize];
+				heapIndex[heap[0]] = 0;
+				siftDown(0);
 			}
+			return first;
 		}
 
-		/**
-		 * Update the parents for the new route.
-		 *
-		 * @param node
-		 *            the root node.
-		 */
-		private void updateSubTree(final TreeNode node) {
-			int c = node.numChildren;
-			final Stack<TreeNode> nodeStack = new Stack<TreeNode>();
-
-			nodeStack.push(node);
-
-			TreeNode parentTemp;
-			TreeNode child;
-			while (nodeStack.size() > 0) {
-				parentTemp = nodeStack.pop();
-				c = parentTemp.numChildren;
-				for (int i = 0; i < c; i++) {
-					child = parentTemp.children[i];
-
-					if (parentTemp.g + child.getCost() < child.g) {
-						parentTemp.updateChild(child);
-
-						nodeStack.push(child);
-					}
+		private void siftUp(int index) {
+			final int node = heap[index];
+			final double w = weight[node];
+			while (index > 0) {
+				final int parentIndex = (index - 1) >>> 1;
+				final int other = heap[parentIndex];
+				if (w >= weight[other]) {
+					break;
 				}
+				heap[index] = other;
+				heapIndex[other] = index;
+				index = parentIndex;
 			}
+			heap[index] = node;
+			heapIndex[node] = index;
 		}
 
-		/**
-		 * Calculates the node id.
-		 * @param x of the node
-		 * @param y of the node
-		 *
-		 * @return the id of the node
-		 */
-		protected abstract int createNodeID(int x, int y);
-
-		public final boolean isOpen() {
-			return open;
-		}
-
-		public final void setOpen(final boolean open) {
-			this.open = open;
-		}
-
-		@Override
-		public boolean equals(final Object obj) {
-			if (obj instanceof TreeNode) {
-				final TreeNode treeN = (TreeNode) obj;
-				return this.nodeNumber.intValue() == treeN.nodeNumber.intValue();
+		private void siftDown(int index) {
+			final int node = heap[index];
+			final double w = weight[node];
+			final int half = heapSize >>> 1;
+			while (index < half) {
+				int childIndex = 2 * index + 1;
+				int child = heap[childIndex];
+				final int right = childIndex + 1;
+				if ((right < heapSize) && (weight[child] > weight[heap[right]])) {
+					childIndex = right;
+					child = heap[childIndex];
+				}
+				if (w <= weight[child]) {
+					break;
+				}
+				heap[index] = child;
+				heapIndex[child] = index;
+				index = childIndex;
 			}
-			return false;
-		}
-
-		@Override
-		public int hashCode() {
-			return nodeNumber.hashCode();
+			heap[index] = node;
+			heapIndex[node] = index;
 		}
 	}
 }
@@ -13,8 +13,8 @@
 package games.stendhal.server.core.pathfinder;
 
 import java.awt.geom.Rectangle2D;
+import java.util.BitSet;
 
-import games.stendhal.common.CollisionDetection;
 import games.stendhal.server.core.engine.StendhalRPZone;
 
 /**
@@ -22,7 +22,9 @@ import games.stendhal.server.core.engine.StendhalRPZone;
  * but does not require adding an entity to the map before using.
  */
 public class SimplePathfinder extends Pathfinder {
-	final CollisionDetection collision;
+	/** Tiles blocked by the collision map. */
+	private final BitSet blocked;
+	private final int width;
 
 	/**
 	 * Create a new <code>SimplePathfinder</code>.
@@ -35,33 +37,18 @@ public class SimplePathfinder extends Pathfinder {
 	 */
 	public SimplePathfinder(final StendhalRPZone zone, final int startX, final int startY,
 			final Rectangle2D destination, final double maxDist) {
-		super(startX, startY, destination, maxDist);
-		collision = zone.collisionMap;
+		this(zone.getNavigationGrid(), startX, startY, destination, maxDist);
 	}
 
-	@Override
-	public TreeNode createNode(int x, int y) {
-		return new SimpleTreeNode(x, y);
+	private SimplePathfinder(final NavigationGrid grid, final int startX, final int startY,
+			final Rectangle2D destination, final double maxDist) {
+		super(grid.getWidth(), grid.getHeight(), startX, startY, destination, maxDist);
+		blocked = grid.getBlockedTiles(1, 1);
+		width = grid.getWidth();
 	}
 
-	private class SimpleTreeNode extends TreeNode {
-		protected SimpleTreeNode(int x, int y) {
-			super(x, y);
-		}
-
-		@Override
-		public TreeNode createNode(int x, int y) {
-			return new SimpleTreeNode(x, y);
-		}
-
-		@Override
-		protected int createNodeID(int x, int y) {
-			return x + y * collision.getWidth();
-		}
-
-		@Override
-		public boolean isValid(int x, int y) {
-			return !collision.collides(x, y);
-		}
+	@Override
+	protected boolean isValid(int x, int y) {
+		return !blocked.get(x + y * width);
 	}
 }
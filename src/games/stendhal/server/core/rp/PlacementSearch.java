@@ -0,0 +1,171 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.rp;
+
+import java.awt.Point;
+import java.awt.Shape;
+
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.entity.Entity;
+
+/**
+ * Finds a free spot for an entity near a given position. The search is a
+ * single breadth first flood fill from the origin, so the cells are visited in
+ * the order of walking distance. When a path is required, the fill expands only
+ * through cells where the entity fits the collision map, which makes every
+ * found spot reachable from the origin without separate path searches.
+ */
+final class PlacementSearch {
+	/**
+	 * How many times the maximum displacement a required path is allowed to
+	 * wander when walking around obstacles.
+	 */
+	private static final int DETOUR_FACTOR = 2;
+
+	/** Zone to search in. */
+	private final StendhalRPZone zone;
+	/** Entity to be placed. */
+	private final Entity entity;
+	/** Entity dimensions. */
+	private final int entityWidth, entityHeight;
+	/** Searched part of the zone. */
+	private final int left, top, width, height;
+	/** Visited cells of the searched area in row major order. */
+	private final boolean[] visited;
+	/** Queue of the cells to be checked, as indices to the searched area. */
+	private final int[] queue;
+	private int head, tail;
+
+	/**
+	 * Create a new PlacementSearch.
+	 *
+	 * @param zone zone to search in
+	 * @param entity entity to be placed
+	 * @param x x coordinate of the search origin
+	 * @param y y coordinate of the search origin
+	 * @param range maximum walking distance from the origin
+	 */
+	private PlacementSearch(StendhalRPZone zone, Entity entity, int x, int y, int range) {
+		this.zone = zone;
+		this.entity = entity;
+		entityWidth = (int) entity.getWidth();
+		entityHeight = (int) entity.getHeight();
+		// Positions outside the zone can never be valid, but the origin may be
+		// one of them
+		left = Math.max(x - range, Math.min(x, 0));
+		top = Math.max(y - range, Math.min(y, 0));
+		width = Math.min(x + range, Math.max(x, zone.getWidth() - 1)) - left + 1;
+		height = Math.min(y + range, Math.max(y, zone.getHeight() - 1)) - top + 1;
+		visited = new boolean[width * height];
+		queue = new int[width * height];
+	}
+
+	/**
+	 * Find the closest free spot where an entity can be placed. Spots at the
+	 * same walking distance are ordered by the Euclidean distance. The origin
+	 * itself is never returned.
+	 *
+	 * @param zone zone to search in
+	 * @param entity the entity to place
+	 * @param allowedArea area where the spot must be, or <code>null</code> if
+	 * 	any spot within the displacement range will do
+	 * @param x x coordinate of the search origin
+	 * @param y y coordinate of the search origin
+	 * @param maxDisplacement maximum Manhattan distance of the spot from the
+	 * 	origin
+	 * @param checkPath if <code>true</code>, the entity must be able to walk
+	 * 	from the origin to the spot
+	 * @return location of the spot, or <code>null</code> if no suitable spot
+	 * 	was found
+	 */
+	static Point find(StendhalRPZone zone, Entity entity, Shape allowedArea,
+			int x, int y, int maxDisplacement, boolean checkPath) {
+		int range = maxDisplacement;
+		if (checkPath) {
+			range *= DETOUR_FACTOR;
+		}
+		PlacementSearch search = new PlacementSearch(zone, entity, x, y, range);
+		return search.search(allowedArea, x, y, maxDisplacement, range, checkPath);
+	}
+
+	/**
+	 * Run the flood fill.
+	 *
+	 * @param allowedArea area where the spot must be, or <code>null</code>
+	 * @param x x coordinate of the search origin
+	 * @param y y coordinate of the search origin
+	 * @param maxDisplacement maximum Manhattan distance of the spot from the
+	 * 	origin
+	 * @param range maximum walking distance
+	 * @param checkPath if <code>true</code>, expand only through walkable cells
+	 * @return location of the spot, or <code>null</code>
+	 */
+	private Point search(Shape allowedArea, int x, int y, int maxDisplacement,
+			int range, boolean checkPath) {
+		enqueue(x, y);
+		for (int distance = 0; (distance <= range) && (head < tail); distance++) {
+			Point best = null;
+			int bestDistance = Integer.MAX_VALUE;
+			final int layerEnd = tail;
+			while (head < layerEnd) {
+				final int cell = queue[head++];
+				final int cx = left + cell % width;
+				final int cy = top + cell / width;
+				if (distance > 0) {
+					if (checkPath && zone.simpleCollides(entity, cx, cy, entityWidth, entityHeight)) {
+						// Not walkable. The origin is always expanded, like in
+						// path finding
+						continue;
+					}
+					final int dx = cx - x;
+					final int dy = cy - y;
+					final int squared = dx * dx + dy * dy;
+					if ((squared < bestDistance) && (Math.abs(dx) + Math.abs(dy) <= maxDisplacement)
+							&& ((allowedArea == null) || allowedArea.contains(cx, cy))
+							&& !zone.collides(entity, cx, cy)) {
+						best = new Point(cx, cy);
+						bestDistance = squared;
+					}
+				}
+				enqueue(cx, cy - 1);
+				enqueue(cx, cy + 1);
+				enqueue(cx - 1, cy);
+				enqueue(cx + 1, cy);
+			}
+			if (best != null) {
+				return best;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Add a cell to the queue, unless it has been visited already or is
+	 * outside the searched area.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 */
+	private void enqueue(int x, int y) {
+		final int col = x - left;
+		final int row = y - top;
+		if ((col < 0) || (col >= width) || (row < 0) || (row >= height)) {
+			return;
+		}
+		final int cell = col + row * width;
+		if (!visited[cell]) {
+			visited[cell] = true;
+			queue[tail++] = cell;
+		}
+	}
+}
@@ -15,7 +15,6 @@ package games.stendhal.server.core.rp;
 import static games.stendhal.common.constants.Actions.MOVE_CONTINUOUS;
 
 import java.awt.Point;
-import java.awt.Rectangle;
 import java.awt.Shape;
 import java.util.LinkedList;
 import java.util.List;
@@ -29,10 +28,10 @@ import games.stendhal.server.core.engine.DataProvider;
 import games.stendhal.server.core.engine.GameEvent;
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.ZoneLogicExecutor;
 import games.stendhal.server.core.engine.db.StendhalKillLogDAO;
 import games.stendhal.server.core.events.TutorialNotifier;
 import games.stendhal.server.core.events.ZoneNotifier;
-import games.stendhal.server.core.pathfinder.Node;
 import games.stendhal.server.core.pathfinder.Path;
 import games.stendhal.server.core.rp.group.Group;
 import games.stendhal.server.core.rp.pvp.PlayerVsPlayerChallengeManager;
@@ -547,6 +546,19 @@ public class StendhalRPAction {
 			return false;
 		}
 
+		if ((entity.getZone() != zone) && ZoneLogicExecutor.isParallelPhase()) {
+			// Zone changes touch two zones. Do it after the parallel zone logic
+			final int newX = x;
+			final int newY = y;
+			ZoneLogicExecutor.defer(new Runnable() {
+				@Override
+				public void run() {
+					placeat(zone, entity, newX, newY, allowedArea);
+				}
+			});
+			return true;
+		}
+
 		// check in case of players that that they are still in game
 		// because the entity is added to the world again otherwise.
 		if (entity instanceof Player) {
@@ -693,125 +705,14 @@ public class StendhalRPAction {
 	 * 	or null if the whole normal search area should be used
 	 * @param x the x coordinate of the search center
 	 * @param y the y coordinate of the search center
-	 * @param checkPath if true, check that there's a valid path to the center
+	 * @param checkPath if true, check that there's a valid path from the center
 	 *
 	 * @return location of the new placement, or null if no suitable place was found
 	 */
 	private static Point findLocation(final StendhalRPZone zone, final Entity entity,
 			final Shape allowedArea, final int x, final int y, final boolean checkPath) {
 
-		// Minimum Euclidean distance within minimum walking distance
-		for (int totalShift = 1; totalShift <= maxDisplacement; totalShift++) {
-			for (int tilt = (totalShift + 1) / 2; tilt > 0; tilt--) {
-				final int spread = totalShift - tilt;
-
-				int tmpx = x - tilt;
-				int tmpy = y - spread;
-				if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
-					return new Point(tmpx, tmpy);
-				}
-				tmpx = x + tilt;
-				if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
-					return new Point(tmpx, tmpy);
-				}
-				tmpy = y + spread;
-				if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
-					return new Point(tmpx, tmpy);
-				}
-				tmpx = x - tilt;
-				if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
-					return new Point(tmpx, tmpy);
-				}
-
-				// center spots of the equidistance rectangle.
-				if (spread == tilt) {
-					continue;
-				}
-
-				tmpx = x - spread;
-				tmpy = y - tilt;
-				if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
-					return new Point(tmpx, tmpy);
-				}
-				tmpx = x + spread;
-				if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
-					return new Point(tmpx, tmpy);
-				}
-				tmpy = y + tilt;
-				if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
-					return new Point(tmpx, tmpy);
-				}
-				tmpx = x - spread;
-				if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
-					return new Point(tmpx, tmpy);
-				}
-			}
-
-			// Do tilt = 0 case here, since it takes only 4 checks
-			int tmpx = x;
-			int tmpy = y - totalShift;
-			if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
-				return new Point(tmpx, tmpy);
-			}
-			tmpy = y + totalShift;
-			if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
-				return new Point(tmpx, tmpy);
-			}
-			tmpy = y;
-			tmpx = x - totalShift;
-			if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
-				return new Point(tmpx, tmpy);
-			}
-			tmpx = x + totalShift;
-			if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
-				return new Point(tmpx, tmpy);
-			}
-		}
-
-		return null;
-	}
-
-	/**
-	 * Checks if a new placement for an entity is valid.
-	 *
-	 * @param zone the zone where the entity should be placed
-	 * @param entity the entity to place
-	 * @param allowedArea if specified, restrict placement within this area
-	 * @param oldX the x coordinate from where the entity was displaced
-	 * @param oldY the y coordinate from where the entity was displaced
-	 * @param newX the x coordinate of the new placement
-	 * @param newY the y coordinate of the new placement
-	 * @param checkPath if true, check that there is a path from <code>(newX, newY)</code>
-	 * to <code>(oldX, oldY)</code>
-	 *
-	 * @return true if placing is possible, false otherwise
-	 */
-	private static boolean isValidPlacement(final StendhalRPZone zone, final Entity entity,
-			final Shape allowedArea, final int oldX, final int oldY,
-			final int newX, final int newY, final boolean checkPath) {
-		if (!zone.collides(entity, newX, newY)) {
-			// Check the possibleArea now. This is a performance
-			// optimization because the pathfinding is very expensive.
-			if ((allowedArea != null) && (!allowedArea.contains(newX, newY))) {
-				return false;
-			}
-			if (!checkPath) {
-				return true;
-			}
-
-			// We verify that there is a walkable path between the original
-			// spot and the new destination. This is to prevent players to
-			// enter not allowed places by logging in on top of other players.
-			// Or monsters to spawn on the other side of a wall.
-			final List<Node> path = Path.searchPath(entity, zone,
-					oldX, oldY, new Rectangle(newX, newY, 1, 1),
-					400 /* maxDestination * maxDestination */, false);
-			if (!path.isEmpty()) {
-				// We found a place!
-				return true;
-			}
-		}
-		return false;
+		return PlacementSearch.find(zone, entity, allowedArea, x, y, maxDisplacement, checkPath);
 	}
 
 	/**
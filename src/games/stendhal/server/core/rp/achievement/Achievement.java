@@ -46,6 +46,8 @@ public class Achievement {
 
 	private final ChatCondition condition;
 
+	/** position of this achievement in the list of configured achievements, or -1 */
+	private int index = -1;
 
 
 	/**
@@ -120,6 +122,30 @@ public class Achievement {
 		return condition.fire(p, null, null);
 	}
 
+	/**
+	 * @return the condition a player has to fulfill for this achievement
+	 */
+	ChatCondition getCondition() {
+		return condition;
+	}
+
+	/**
+	 * @return the position of this achievement in the list of configured
+	 * 	achievements, or -1 if it is not configured
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Set the position of this achievement in the list of configured achievements.
+	 *
+	 * @param index position
+	 */
+	void setIndex(int index) {
+		this.index = index;
+	}
+
 	@Override
 	public String toString() {
 		return "Achievement<id: "+identifier+", title: "+title+">";
@@ -0,0 +1,201 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.rp.achievement;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import games.stendhal.server.entity.npc.ChatCondition;
+import games.stendhal.server.entity.npc.condition.AndCondition;
+import games.stendhal.server.entity.npc.condition.PlayerHasKilledNumberOfCreaturesCondition;
+import games.stendhal.server.entity.npc.condition.PlayerLootedNumberOfItemsCondition;
+import games.stendhal.server.entity.npc.condition.QuestActiveCondition;
+import games.stendhal.server.entity.npc.condition.QuestCompletedCondition;
+import games.stendhal.server.entity.npc.condition.QuestNotInStateCondition;
+import games.stendhal.server.entity.npc.condition.QuestStartedCondition;
+import games.stendhal.server.entity.npc.condition.QuestStateGreaterThanCondition;
+import games.stendhal.server.entity.npc.condition.QuestStateStartsWithCondition;
+
+/**
+ * Maps the quest slots, creatures and items to the achievements whose
+ * conditions look at them, so that only those achievements need to be
+ * checked when a quest slot changes, a creature is killed, or an item is
+ * looted.
+ * <p>
+ * The dependencies are read from the known condition types. Achievements with
+ * a condition that is not understood are kept in a per category list, and are
+ * checked on every event of their category like before.
+ */
+final class AchievementDependencyIndex {
+	private final Map<String, List<Achievement>> byQuestSlot = new HashMap<String, List<Achievement>>();
+	private final Map<String, List<Achievement>> byCreature = new HashMap<String, List<Achievement>>();
+	private final Map<String, List<Achievement>> byItem = new HashMap<String, List<Achievement>>();
+	private final Map<Category, List<Achievement>> unindexed = new EnumMap<Category, List<Achievement>>(Category.class);
+
+	/**
+	 * Add an achievement to the index.
+	 *
+	 * @param achievement added achievement
+	 */
+	void add(final Achievement achievement) {
+		final Set<String> questSlots = new LinkedHashSet<String>();
+		final Set<String> creatures = new LinkedHashSet<String>();
+		final Set<String> items = new LinkedHashSet<String>();
+
+		final boolean known = collect(achievement.getCondition(), questSlots, creatures, items);
+		if (!known || (questSlots.isEmpty() && creatures.isEmpty() && items.isEmpty())) {
+			List<Achievement> list = unindexed.get(achievement.getCategory());
+			if (list == null) {
+				list = new ArrayList<Achievement>();
+				unindexed.put(achievement.getCategory(), list);
+			}
+			list.add(achievement);
+			return;
+		}
+
+		addAll(byQuestSlot, questSlots, achievement);
+		addAll(byCreature, creatures, achievement);
+		addAll(byItem, items, achievement);
+	}
+
+	/**
+	 * Get the achievements that depend on a quest slot.
+	 *
+	 * @param questSlot name of the quest slot
+	 * @return achievements whose condition checks the slot
+	 */
+	List<Achievement> getQuestDependents(final String questSlot) {
+		return get(byQuestSlot, questSlot);
+	}
+
+	/**
+	 * Get the achievements that depend on the kills of a creature.
+	 *
+	 * @param creature creature name
+	 * @return achievements whose condition checks the kills of the creature
+	 */
+	List<Achievement> getCreatureDependents(final String creature) {
+		return get(byCreature, creature);
+	}
+
+	/**
+	 * Get the achievements that depend on the loots of an item.
+	 *
+	 * @param item item name
+	 * @return achievements whose condition checks the loots of the item
+	 */
+	List<Achievement> getItemDependents(final String item) {
+		return get(byItem, item);
+	}
+
+	/**
+	 * Get the achievements of a category whose dependencies are not known.
+	 *
+	 * @param category category
+	 * @return achievements that need to be checked on every event of the
+	 * 	category
+	 */
+	List<Achievement> getUnindexed(final Category category) {
+		final List<Achievement> list = unindexed.get(category);
+		if (list == null) {
+			return Collections.emptyList();
+		}
+		return list;
+	}
+
+	/**
+	 * Collect the dependencies of a condition.
+	 *
+	 * @param condition condition
+	 * @param questSlots set where the quest slot names are added
+	 * @param creatures set where the creature names are added
+	 * @param items set where the item names are added
+	 * @return <code>true</code> if all the dependencies of the condition are
+	 * 	known, otherwise <code>false</code>
+	 */
+	private static boolean collect(final ChatCondition condition, final Set<String> questSlots,
+			final Set<String> creatures, final Set<String> items) {
+		if (condition instanceof AndCondition) {
+			for (final ChatCondition part : ((AndCondition) condition).getConditions()) {
+				if (!collect(part, questSlots, creatures, items)) {
+					return false;
+				}
+			}
+			return true;
+		} else if (condition instanceof PlayerHasKilledNumberOfCreaturesCondition) {
+			creatures.addAll(((PlayerHasKilledNumberOfCreaturesCondition) condition).getCreatureNames());
+			return true;
+		} else if (condition instanceof PlayerLootedNumberOfItemsCondition) {
+			items.addAll(((PlayerLootedNumberOfItemsCondition) condition).getItems());
+			return true;
+		}
+
+		final String questSlot = getQuestSlot(condition);
+		// Slot names with parameters change with the date
+		if ((questSlot == null) || questSlot.contains("${")) {
+			return false;
+		}
+		questSlots.add(questSlot);
+		return true;
+	}
+
+	/**
+	 * Get the quest slot checked by a single quest slot condition.
+	 *
+	 * @param condition condition
+	 * @return quest slot name, or <code>null</code> if the condition is not a
+	 * 	known quest slot condition
+	 */
+	private static String getQuestSlot(final ChatCondition condition) {
+		if (condition instanceof QuestCompletedCondition) {
+			return ((QuestCompletedCondition) condition).getQuestName();
+		} else if (condition instanceof QuestStateGreaterThanCondition) {
+			return ((QuestStateGreaterThanCondition) condition).getQuestName();
+		} else if (condition instanceof QuestStateStartsWithCondition) {
+			return ((QuestStateStartsWithCondition) condition).getQuestName();
+		} else if (condition instanceof QuestNotInStateCondition) {
+			return ((QuestNotInStateCondition) condition).getQuestName();
+		} else if (condition instanceof QuestActiveCondition) {
+			return ((QuestActiveCondition) condition).getQuestName();
+		} else if (condition instanceof QuestStartedCondition) {
+			return ((QuestStartedCondition) condition).getQuestName();
+		}
+		return null;
+	}
+
+	private static void addAll(final Map<String, List<Achievement>> map, final Collection<String> keys,
+			final Achievement achievement) {
+		for (final String key : keys) {
+			List<Achievement> list = map.get(key);
+			if (list == null) {
+				list = new ArrayList<Achievement>(2);
+				map.put(key, list);
+			}
+			list.add(achievement);
+		}
+	}
+
+	private static List<Achievement> get(final Map<String, List<Achievement>> map, final String key) {
+		final List<Achievement> list = map.get(key);
+		if (list == null) {
+			return Collections.emptyList();
+		}
+		return list;
+	}
+}
@@ -56,9 +56,24 @@ public final class AchievementNotifier {
 
 	final private Map<String, Integer> identifiersToIds;
 
+	/** configured achievements by identifier */
+	final private Map<String, Achievement> achievementsByIdentifier;
+
+	/** achievements by the quest slots, creatures and items they depend on */
+	final private AchievementDependencyIndex dependencies;
+
+	/** categories checked when a quest slot changes */
+	private static final Category[] QUEST_CATEGORIES = {
+		Category.QUEST, Category.QUEST_ADOS_ITEMS, Category.QUEST_SEMOS_MONSTER,
+		Category.QUEST_KIRDNEH_ITEM, Category.FRIEND, Category.OBTAIN,
+		Category.PRODUCTION, Category.QUEST_MITHRILBOURGH_ENEMY_ARMY
+	};
+
 	private AchievementNotifier() {
 		achievements = new EnumMap<Category, List<Achievement>>(Category.class);
 		identifiersToIds = new HashMap<String, Integer>();
+		achievementsByIdentifier = new HashMap<String, Achievement>();
+		dependencies = new AchievementDependencyIndex();
 	}
 
 	/**
@@ -82,11 +97,15 @@ public final class AchievementNotifier {
 	public void initialize() {
 		//read all configured achievements and put them into the categorized map
 		final Map<String, Achievement> allAchievements = createAchievements();
+		int index = 0;
 		for(Achievement a : allAchievements.values()) {
 			if(!achievements.containsKey(a.getCategory())) {
 				achievements.put(a.getCategory(), new LinkedList<Achievement>());
 			}
 			achievements.get(a.getCategory()).add(a);
+			a.setIndex(index++);
+			achievementsByIdentifier.put(a.getIdentifier(), a);
+			dependencies.add(a);
 		}
 		//collect all identifiers from database
 		final Map<String, Integer> allIdentifiersInDatabase = collectAllIdentifiersFromDatabase();
@@ -159,20 +178,41 @@ public final class AchievementNotifier {
 		getAndCheckAchievementsInCategory(player, Category.FIGHTING);
 	}
 
+	/**
+	 * checks the achievements for a player that can change by killing a creature
+	 *
+	 * @param player
+	 * @param creature name of the killed creature
+	 */
+	public void onKill(Player player, String creature) {
+		List<Achievement> toCheck = new ArrayList<Achievement>(dependencies.getCreatureDependents(creature));
+		toCheck.addAll(dependencies.getUnindexed(Category.FIGHTING));
+		notifyPlayerAboutReachedAchievements(player, checkAchievements(player, toCheck));
+	}
+
 	/**
 	 * check all achievements for a player that are relevant on finishing a quest
 	 *
 	 * @param player
 	 */
 	public void onFinishQuest(Player player) {
-		getAndCheckAchievementsInCategory(player, Category.QUEST);
-		getAndCheckAchievementsInCategory(player, Category.QUEST_ADOS_ITEMS);
-		getAndCheckAchievementsInCategory(player, Category.QUEST_SEMOS_MONSTER);
-		getAndCheckAchievementsInCategory(player, Category.QUEST_KIRDNEH_ITEM);
-		getAndCheckAchievementsInCategory(player, Category.FRIEND);
-		getAndCheckAchievementsInCategory(player, Category.OBTAIN);
-		getAndCheckAchievementsInCategory(player, Category.PRODUCTION);
-		getAndCheckAchievementsInCategory(player, Category.QUEST_MITHRILBOURGH_ENEMY_ARMY);
+		for (Category category : QUEST_CATEGORIES) {
+			getAndCheckAchievementsInCategory(player, category);
+		}
+	}
+
+	/**
+	 * check the achievements for a player that can change by a change of a quest slot
+	 *
+	 * @param player
+	 * @param questSlot name of the changed quest slot
+	 */
+	public void onQuestChange(Player player, String questSlot) {
+		List<Achievement> toCheck = new ArrayList<Achievement>(dependencies.getQuestDependents(questSlot));
+		for (Category category : QUEST_CATEGORIES) {
+			toCheck.addAll(dependencies.getUnindexed(category));
+		}
+		notifyPlayerAboutReachedAchievements(player, checkAchievements(player, toCheck));
 	}
 
 	/**
@@ -204,6 +244,18 @@ public final class AchievementNotifier {
 		getAndCheckAchievementsInCategory(player, Category.ITEM);
 	}
 
+	/**
+	 * check the achievements for a player that can change by looting an item
+	 *
+	 * @param player
+	 * @param item name of the looted item
+	 */
+	public void onItemLoot(Player player, String item) {
+		List<Achievement> toCheck = new ArrayList<Achievement>(dependencies.getItemDependents(item));
+		toCheck.addAll(dependencies.getUnindexed(Category.ITEM));
+		notifyPlayerAboutReachedAchievements(player, checkAchievements(player, toCheck));
+	}
+
 	/**
 	 * check all achievements for a player that belong to the production category
 	 *
@@ -231,19 +283,11 @@ public final class AchievementNotifier {
 	 */
 	public void awardAchievementIfNotYetReached(Player player, String achievementIdentifier) {
 		if(!player.hasReachedAchievement(achievementIdentifier)) {
-			boolean found = false;
-			for(List<Achievement> achievementList : this.achievements.values()) {
-				if(!found) {
-					for(Achievement achievement : achievementList) {
-						if (achievement.getIdentifier().equals(achievementIdentifier)) {
-							logReachingOfAnAchievement(player, achievement);
-							notifyPlayerAboutReachedAchievement(player, achievement);
-							found = true;
-						}
-					}
-				}
-			}
-			if(!found) {
+			Achievement achievement = achievementsByIdentifier.get(achievementIdentifier);
+			if (achievement != null) {
+				logReachingOfAnAchievement(player, achievement);
+				notifyPlayerAboutReachedAchievement(player, achievement);
+			} else {
 				logger.warn("Tried to award non existing achievement identifier "+achievementIdentifier+" to "+player.getName());
 			}
 		}
@@ -308,7 +352,8 @@ public final class AchievementNotifier {
 		}
 
 		for (Achievement achievement : toCheck) {
-			if(achievement.isFulfilled(player) && !player.hasReachedAchievement(achievement.getIdentifier())) {
+			// the reached check is cheap, so do it before evaluating the condition
+			if(!player.hasReachedAchievement(achievement) && achievement.isFulfilled(player)) {
 				logReachingOfAnAchievement(player, achievement);
 				if (achievement.isActive()) {
 					reached.add(achievement);
@@ -376,6 +421,20 @@ public final class AchievementNotifier {
 		return achievementMap;
 	}
 
+	/**
+	 * gets the position of an achievement in the list of configured achievements
+	 *
+	 * @param identifier identifier of the achievement
+	 * @return position, or -1 if there is no configured achievement with the identifier
+	 */
+	public int getAchievementIndex(String identifier) {
+		Achievement achievement = achievementsByIdentifier.get(identifier);
+		if (achievement == null) {
+			return -1;
+		}
+		return achievement.getIndex();
+	}
+
 	/**
 	 * gets a list of all Achievements
 	 *
@@ -25,6 +25,8 @@ import games.stendhal.common.NotificationType;
 import games.stendhal.server.core.engine.GameEvent;
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.StendhalRPRuleProcessor;
+import games.stendhal.server.core.events.TurnListener;
+import games.stendhal.server.core.events.TurnNotifier;
 import games.stendhal.server.entity.player.Player;
 import games.stendhal.server.events.GroupChangeEvent;
 import games.stendhal.server.events.GroupInviteEvent;
@@ -43,6 +45,17 @@ public class Group {
 	private final HashMap<String, Long> openInvites = new HashMap<String, Long>();
 	private String leader = null;
 	private String lootmode = "shared";
+	/** The manager keeping track of the group members. */
+	private final GroupManager manager;
+
+	/**
+	 * creates a new group
+	 *
+	 * @param manager the manager keeping track of the group members
+	 */
+	Group(GroupManager manager) {
+		this.manager = manager;
+	}
 
 	/**
 	 * adds a member to the group
@@ -52,6 +65,7 @@ public class Group {
 	public void addMember(String playerName) {
 		openInvites.remove(playerName);
 		membersAndLastSeen.put(playerName, Long.valueOf(System.currentTimeMillis()));
+		manager.memberAdded(playerName, this);
 		if (leader == null) {
 			leader = playerName;
 		}
@@ -65,20 +79,17 @@ public class Group {
 	 * @return true if the player was a member of this group
 	 */
 	public boolean removeMember(String playerName) {
-		boolean res = membersAndLastSeen.remove(playerName) != null;
+		boolean res = forgetMember(playerName);
 		if (res) {
 			Set<String> toRemove = new HashSet<String>();
 			toRemove.add(playerName);
 
-			// destroy the group if there is only one person and no open invites left
-			if ((membersAndLastSeen.size() == 1) && openInvites.isEmpty()) {
-				toRemove.add(membersAndLastSeen.keySet().iterator().next());
-				membersAndLastSeen.clear();
-			}
+			dissolveIfAlone(toRemove);
 			fixLeader();
 
 			sendLeftGroupEvent(toRemove);
 			sendGroupChangeEvent();
+			checkEmpty();
 		}
 		return res;
 	}
@@ -107,40 +118,54 @@ public class Group {
 				}
 			}
 		}
-		membersAndLastSeen.keySet().removeAll(toRemove);
+		for (String playerName : toRemove) {
+			forgetMember(playerName);
+		}
 
 		// expire open invites
 		Iterator<Map.Entry<String, Long>> itr = openInvites.entrySet().iterator();
 		while (itr.hasNext()) {
 			Map.Entry<String, Long> entry = itr.next();
 			if (entry.getValue().compareTo(timeoutTime) < 0) {
-				// TODO: "leader" needs to be the leader at invite time
-				// TODO: alternatively: cancel the old invite and create a new one on leader change
-				//       but the new leader may not agree with the invite, so it may not be a good idea
-				//       to fake it his name.
-				Player invitedPlayer = ruleProcessor.getPlayer(entry.getKey());
-				if (invitedPlayer != null) {
-					invitedPlayer.addEvent(new GroupInviteEvent(leader, true));
-					invitedPlayer.notifyWorldAboutChanges();
-				}
-
+				sendInviteExpired(entry.getKey());
 				itr.remove();
 			}
 		}
 
 		fixLeader();
-
-		// destroy the group if there is only one person and no open invites left
-		if ((membersAndLastSeen.size() == 1) && openInvites.isEmpty()) {
-			toRemove.add(membersAndLastSeen.keySet().iterator().next());
-			membersAndLastSeen.clear();
-		}
+		dissolveIfAlone(toRemove);
 
 		// tell the clients about the changes
 		if (!toRemove.isEmpty()) {
 			sendGroupChangeEvent();
 			sendLeftGroupEvent(toRemove);
 		}
+		checkEmpty();
+	}
+
+	/**
+	 * Called when a member logs in. Keeps the player in the group.
+	 *
+	 * @param playerName name of player
+	 */
+	void memberLoggedIn(String playerName) {
+		if (hasMember(playerName)) {
+			membersAndLastSeen.put(playerName, Long.valueOf(System.currentTimeMillis()));
+		}
+	}
+
+	/**
+	 * Called when a member logs out. The player is removed from the group,
+	 * if they do not come back before the timeout.
+	 *
+	 * @param playerName name of player
+	 */
+	void memberLoggedOut(String playerName) {
+		if (hasMember(playerName)) {
+			Long lastSeen = Long.valueOf(System.currentTimeMillis());
+			membersAndLastSeen.put(playerName, lastSeen);
+			TurnNotifier.get().notifyInSeconds(getTimeoutSeconds(), new MemberTimeout(playerName, lastSeen));
+		}
 	}
 
 	/**
@@ -148,6 +173,9 @@ public class Group {
 	 */
 	public void destory() {
 		sendLeftGroupEvent(membersAndLastSeen.keySet());
+		for (String playerName : membersAndLastSeen.keySet()) {
+			manager.memberRemoved(playerName, this);
+		}
 		membersAndLastSeen.clear();
 	}
 
@@ -239,11 +267,122 @@ public class Group {
 	 * @param targetPlayer invited player
 	 */
 	public void invite(Player player, Player targetPlayer) {
-		openInvites.put(targetPlayer.getName(), Long.valueOf(System.currentTimeMillis()));
+		Long time = Long.valueOf(System.currentTimeMillis());
+		openInvites.put(targetPlayer.getName(), time);
+		TurnNotifier.get().notifyInSeconds(getTimeoutSeconds(), new InviteTimeout(targetPlayer.getName(), time));
 		targetPlayer.addEvent(new GroupInviteEvent(player.getName(), false));
 		targetPlayer.notifyWorldAboutChanges();
 	}
 
+	/**
+	 * gets the timeout of invites and offline members
+	 *
+	 * @return timeout in seconds
+	 */
+	private static int getTimeoutSeconds() {
+		return (int) (TIMEOUT / 1000);
+	}
+
+	/**
+	 * removes a member from the group without telling anyone
+	 *
+	 * @param playerName name of player
+	 * @return true if the player was a member of this group
+	 */
+	private boolean forgetMember(String playerName) {
+		if (membersAndLastSeen.remove(playerName) != null) {
+			manager.memberRemoved(playerName, this);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * destroys the group if there is only one person and no open invites left
+	 *
+	 * @param toRemove set where the name of the last member is added, if the
+	 * 	group is destroyed
+	 */
+	private void dissolveIfAlone(Set<String> toRemove) {
+		if ((membersAndLastSeen.size() == 1) && openInvites.isEmpty()) {
+			String last = membersAndLastSeen.keySet().iterator().next();
+			toRemove.add(last);
+			forgetMember(last);
+		}
+	}
+
+	/**
+	 * tells the manager to drop this group, if it has no members left
+	 */
+	private void checkEmpty() {
+		if (membersAndLastSeen.isEmpty()) {
+			manager.groupEmptied(this);
+		}
+	}
+
+	/**
+	 * tells an invited player that the invite expired
+	 *
+	 * @param playerName name of the invited player
+	 */
+	private void sendInviteExpired(String playerName) {
+		// TODO: "leader" needs to be the leader at invite time
+		// TODO: alternatively: cancel the old invite and create a new one on leader change
+		//       but the new leader may not agree with the invite, so it may not be a good idea
+		//       to fake it his name.
+		Player invitedPlayer = SingletonRepository.getRuleProcessor().getPlayer(playerName);
+		if (invitedPlayer != null) {
+			invitedPlayer.addEvent(new GroupInviteEvent(leader, true));
+			invitedPlayer.notifyWorldAboutChanges();
+		}
+	}
+
+	/**
+	 * expires an invite, unless it has been renewed or used meanwhile
+	 *
+	 * @param playerName name of the invited player
+	 * @param time time of the invite
+	 */
+	void expireInvite(String playerName, Long time) {
+		if (!time.equals(openInvites.get(playerName))) {
+			return;
+		}
+		openInvites.remove(playerName);
+		sendInviteExpired(playerName);
+
+		Set<String> toRemove = new HashSet<String>();
+		dissolveIfAlone(toRemove);
+		if (!toRemove.isEmpty()) {
+			sendGroupChangeEvent();
+			sendLeftGroupEvent(toRemove);
+		}
+		checkEmpty();
+	}
+
+	/**
+	 * removes a member that has been offline for longer than the timeout,
+	 * unless the player has come back meanwhile
+	 *
+	 * @param playerName name of player
+	 * @param lastSeen logout time of the player
+	 */
+	void expireMember(String playerName, Long lastSeen) {
+		if (!lastSeen.equals(membersAndLastSeen.get(playerName))
+				|| (SingletonRepository.getRuleProcessor().getPlayer(playerName) != null)) {
+			return;
+		}
+		new GameEvent(playerName, "group", playerName, "timeout").raise();
+		forgetMember(playerName);
+
+		Set<String> toRemove = new HashSet<String>();
+		toRemove.add(playerName);
+		fixLeader();
+		dissolveIfAlone(toRemove);
+		sendGroupChangeEvent();
+		sendLeftGroupEvent(toRemove);
+		checkEmpty();
+	}
+
 	/**
 	 * defines a new leader, if the leader is not part of the group anymore.
 	 */
@@ -319,4 +458,40 @@ public class Group {
 			}
 		}
 	}
+
+	/**
+	 * Expires an open invite.
+	 */
+	private class InviteTimeout implements TurnListener {
+		private final String playerName;
+		private final Long time;
+
+		InviteTimeout(String playerName, Long time) {
+			this.playerName = playerName;
+			this.time = time;
+		}
+
+		@Override
+		public void onTurnReached(int currentTurn) {
+			expireInvite(playerName, time);
+		}
+	}
+
+	/**
+	 * Removes a member that did not come back after logging out.
+	 */
+	private class MemberTimeout implements TurnListener {
+		private final String playerName;
+		private final Long lastSeen;
+
+		MemberTimeout(String playerName, Long lastSeen) {
+			this.playerName = playerName;
+			this.lastSeen = lastSeen;
+		}
+
+		@Override
+		public void onTurnReached(int currentTurn) {
+			expireMember(playerName, lastSeen);
+		}
+	}
 }
@@ -12,31 +12,40 @@
  ***************************************************************************/
 package games.stendhal.server.core.rp.group;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 import games.stendhal.server.core.events.LoginListener;
 import games.stendhal.server.core.events.LoginNotifier;
-import games.stendhal.server.core.events.TurnListener;
-import games.stendhal.server.core.events.TurnNotifier;
+import games.stendhal.server.core.events.LogoutListener;
+import games.stendhal.server.core.events.LogoutNotifier;
 import games.stendhal.server.entity.player.Player;
 
 /**
- * manages player groups
+ * manages player groups.
+ * <p>
+ * The groups are indexed by the names of their members, so that looking up
+ * the group of a player does not depend on the number of groups. Expired
+ * invites and members that stay offline too long are removed by timeouts
+ * scheduled when the player is invited or logs out.
  *
  * @author hendrik
  */
-public class GroupManager implements TurnListener, LoginListener {
+public class GroupManager implements LoginListener, LogoutListener {
 
 	private final Set<Group> groups = new HashSet<Group>();
+	/** The groups by the names of their members. */
+	private final Map<String, Group> groupsByMember = new HashMap<String, Group>();
 
 	/**
 	 * creates a new GroupManager.
 	 */
 	public GroupManager() {
-		TurnNotifier.get().notifyInSeconds(60, this);
 		LoginNotifier.get().addListener(this);
+		LogoutNotifier.get().addListener(this);
 	}
 
 	/**
@@ -46,12 +55,7 @@ public class GroupManager implements TurnListener, LoginListener {
 	 * @return Group or <code>null</code> if the player is not a member of any group
 	 */
 	public Group getGroup(String playerName) {
-		for (Group group : groups) {
-			if (group.hasMember(playerName)) {
-				return group;
-			}
-		}
-		return null;
+		return groupsByMember.get(playerName);
 	}
 
 
@@ -66,9 +70,9 @@ public class GroupManager implements TurnListener, LoginListener {
 			return null;
 		}
 
-		Group group = new Group();
-		group.addMember(playerName);
+		Group group = new Group(this);
 		groups.add(group);
+		group.addMember(playerName);
 		return group;
 	}
 
@@ -91,26 +95,54 @@ public class GroupManager implements TurnListener, LoginListener {
 
 
 	/**
-	 * handles timeouts and removes empty groups
+	 * handles timeouts and removes empty groups in all groups at once. The
+	 * timeouts are normally handled as they expire, so this is needed only
+	 * if the clock has been adjusted.
 	 */
 	public void clean() {
-		Iterator<Group> itr = groups.iterator();
-		while (itr.hasNext()) {
-			Group group = itr.next();
+		for (Group group : new ArrayList<Group>(groups)) {
 			group.clean();
-			if (group.isEmpty()) {
-				itr.remove();
-			}
 		}
 	}
 
 	/**
-	 * cleans up
+	 * gets the number of groups
+	 *
+	 * @return number of groups
 	 */
-	@Override
-	public void onTurnReached(int currentTurn) {
-		clean();
-		TurnNotifier.get().notifyInSeconds(60, this);
+	public int getGroupCount() {
+		return groups.size();
+	}
+
+	/**
+	 * Called by a group when a player joins it.
+	 *
+	 * @param playerName name of player
+	 * @param group the group
+	 */
+	void memberAdded(String playerName, Group group) {
+		groupsByMember.put(playerName, group);
+	}
+
+	/**
+	 * Called by a group when a player leaves it.
+	 *
+	 * @param playerName name of player
+	 * @param group the group
+	 */
+	void memberRemoved(String playerName, Group group) {
+		if (groupsByMember.get(playerName) == group) {
+			groupsByMember.remove(playerName);
+		}
+	}
+
+	/**
+	 * Called by a group when its last member has left.
+	 *
+	 * @param group the group
+	 */
+	void groupEmptied(Group group) {
+		groups.remove(group);
 	}
 
 	/**
@@ -120,7 +152,19 @@ public class GroupManager implements TurnListener, LoginListener {
 	public void onLoggedIn(Player player) {
 		Group group = getGroup(player.getName());
 		if (group != null) {
+			group.memberLoggedIn(player.getName());
 			group.sendGroupChangeEvent(player);
 		}
 	}
+
+	/**
+	 * start the timeout for players leaving the game
+	 */
+	@Override
+	public void onLoggedOut(Player player) {
+		Group group = getGroup(player.getName());
+		if (group != null) {
+			group.memberLoggedOut(player.getName());
+		}
+	}
 }
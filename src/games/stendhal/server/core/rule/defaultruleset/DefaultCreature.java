@@ -39,6 +39,14 @@ public class DefaultCreature {
 	/** the logger instance. */
 	private static final Logger logger = Logger.getLogger(DefaultCreature.class);
 
+	/** Order of the dropped items, from the least probable to the most probable. */
+	private static final Comparator<DropItem> DROP_ORDER = new Comparator<DropItem>() {
+		@Override
+		public int compare(final DropItem o1, final DropItem o2) {
+			return Double.compare(o1.probability, o2.probability);
+		}
+	};
+
 	/** Creature class. */
 	private String clazz;
 
@@ -223,6 +231,8 @@ public class DefaultCreature {
 	}
 
 	public void setDropItems(final List<DropItem> dropsItems) {
+		// Sorted once here, the created creatures share the list
+		Collections.sort(dropsItems, DROP_ORDER);
 		this.dropsItems = dropsItems;
 	}
 
@@ -258,19 +268,6 @@ public class DefaultCreature {
 	/** @return a creature-instance.
 	 */
 	public Creature getCreature() {
-		Collections.sort(dropsItems, new Comparator<DropItem>() {
-			@Override
-			public int compare(final DropItem o1, final DropItem o2) {
-				if (o1.probability < o2.probability) {
-					return -1;
-				} else if (o1.probability > o2.probability) {
-					return 1;
-				} else {
-					return 0;
-				}
-			}
-		});
-
 		final Creature creature = new Creature(clazz, subclass, name, hp, atk, def,
 				level, xp, width, height, speed, dropsItems, aiProfiles,
 				creatureSays, respawn, description);
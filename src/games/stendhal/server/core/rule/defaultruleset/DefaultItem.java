@@ -14,17 +14,25 @@ package games.stendhal.server.core.rule.defaultruleset;
 
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import games.stendhal.common.constants.Nature;
 import games.stendhal.server.core.rule.defaultruleset.creator.AbstractCreator;
 import games.stendhal.server.core.rule.defaultruleset.creator.AttributesItemCreator;
 import games.stendhal.server.core.rule.defaultruleset.creator.DefaultItemCreator;
 import games.stendhal.server.core.rule.defaultruleset.creator.FullItemCreator;
+import games.stendhal.server.core.rule.defaultruleset.creator.PrototypeItemCreator;
+import games.stendhal.server.entity.item.Drink;
+import games.stendhal.server.entity.item.Food;
 import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.entity.item.Money;
+import games.stendhal.server.entity.item.StackableItem;
 import games.stendhal.server.entity.item.behavior.UseBehavior;
 import games.stendhal.server.entity.status.StatusType;
 
@@ -35,6 +43,15 @@ import games.stendhal.server.entity.status.StatusType;
  * @author Matthias Totz, chad3f
  */
 public class DefaultItem {
+	/**
+	 * Item classes that can be created by copying a template item. The
+	 * constructors of these only set the attributes, so a copy is identical to
+	 * a newly constructed item. Constructors of some other classes have side
+	 * effects, such as the random contents of a present.
+	 */
+	private static final Set<Class< ? >> PROTOTYPE_CLASSES = new HashSet<Class< ? >>(
+			Arrays.<Class< ? >>asList(Item.class, StackableItem.class, Food.class,
+					Drink.class, Money.class));
 
 	/** Implementation creator. */
 	private AbstractCreator<Item> creator;
@@ -193,8 +210,9 @@ public class DefaultItem {
 	}
 
 	/**
-	 * Build a creator for the class. It uses the following constructor search
-	 * order:<br>
+	 * Build a creator for the class. Items of the common item classes are
+	 * copied from a template item. The creators of the other classes, and of
+	 * the template items, use the following constructor search order:<br>
 	 *
 	 * <ul>
 	 * <li><em>Class</em>(<em>name</em>, <em>clazz</em>,
@@ -209,6 +227,29 @@ public class DefaultItem {
 	 * @return A creator, or <code>null</code> if none found.
 	 */
 	protected AbstractCreator<Item> buildCreator(final Class< ? > implementation) {
+		AbstractCreator<Item> constructorCreator = buildConstructorCreator(implementation);
+		if ((constructorCreator != null) && PROTOTYPE_CLASSES.contains(implementation)) {
+			try {
+				Constructor< ? > copy = implementation.getConstructor(new Class[] { implementation });
+				return new PrototypeItemCreator(this, copy, constructorCreator);
+			} catch (final NoSuchMethodException ex) {
+				// ignore and use the constructor creator
+			}
+		}
+
+		return constructorCreator;
+	}
+
+	/**
+	 * Build a creator that calls a constructor of the class with the item
+	 * definition.
+	 *
+	 * @param implementation
+	 *            The implementation class.
+	 *
+	 * @return A creator, or <code>null</code> if none found.
+	 */
+	private AbstractCreator<Item> buildConstructorCreator(final Class< ? > implementation) {
 		Constructor< ? > construct;
 
 		/*
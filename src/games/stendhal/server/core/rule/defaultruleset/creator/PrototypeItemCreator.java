@@ -0,0 +1,64 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.rule.defaultruleset.creator;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+import games.stendhal.server.core.rule.defaultruleset.DefaultItem;
+import games.stendhal.server.entity.item.Item;
+
+/**
+ * Create an item class via the copy constructor, using a template item as the
+ * source. The template is created once with another creator the first time
+ * an item is needed. Copying skips the attribute validation done when the
+ * attributes are put one by one, and is suitable only for item classes whose
+ * constructors have no side effects besides setting the attributes. The item
+ * definition must not be changed after the first item has been created.
+ */
+public class PrototypeItemCreator extends AbstractItemCreator {
+	/** Creator for the template item. */
+	private final AbstractCreator<Item> templateCreator;
+	/** The template item. It must never be handed out. */
+	private volatile Item prototype;
+
+	/**
+	 * Create a new PrototypeItemCreator.
+	 *
+	 * @param defaultItem item definition
+	 * @param construct copy constructor of the item class
+	 * @param templateCreator creator for the template item
+	 */
+	public PrototypeItemCreator(DefaultItem defaultItem, final Constructor< ? > construct,
+			AbstractCreator<Item> templateCreator) {
+		super(defaultItem, construct);
+		this.templateCreator = templateCreator;
+	}
+
+	@Override
+	protected Item createObject() throws IllegalAccessException,
+			InstantiationException, InvocationTargetException {
+		Item template = prototype;
+		if (template == null) {
+			/*
+			 * Creating the template more than once in a race does no harm, so
+			 * there's no need to lock.
+			 */
+			template = templateCreator.create();
+			if (template == null) {
+				return null;
+			}
+			prototype = template;
+		}
+		return (Item) construct.newInstance(new Object[] { template });
+	}
+}
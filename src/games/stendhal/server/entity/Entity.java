@@ -197,6 +197,9 @@ public abstract class Entity extends RPObject implements Killer {
 			resistance = getInt("resistance");
 		}
 
+		if (zone != null) {
+			zone.updateEntityIndex(this);
+		}
 	}
 
 	public boolean hasDescription() {
@@ -630,6 +633,7 @@ public abstract class Entity extends RPObject implements Killer {
 		}
 
 		if (moved && (zone != null)) {
+			zone.updateEntityIndex(this);
 			onMoved(oldX, oldY, x, y);
 		}
 	}
@@ -667,6 +671,10 @@ public abstract class Entity extends RPObject implements Killer {
 
 		this.area.height = height;
 		put("height", height);
+
+		if (zone != null) {
+			zone.updateEntityIndex(this);
+		}
 	}
 
 	/**
@@ -0,0 +1,375 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.entity.slot.Slots;
+import marauroa.common.game.RPObject;
+import marauroa.common.game.RPSlot;
+import marauroa.common.game.SlotOwner;
+
+/**
+ * Item name to count index of the items an RPEntity has in its slots,
+ * including the items nested in containers like bags and keyrings. The index
+ * is built by a full scan on the first query, and kept up to date as items
+ * enter or leave the slots of the entity, and as the quantities of stacks
+ * change. Changes that can not be followed item by item, like adding or
+ * removing whole slots, invalidate the index so that the next query scans
+ * again.
+ * <p>
+ * The entity holding a changed item is also told which of its slots changed,
+ * whether or not it has an index.
+ * <p>
+ * Setting the system property <code>stendhal.itemindex.validate</code> to
+ * <code>true</code> makes every query compare the index against a full scan,
+ * and log any differences.
+ */
+public final class ItemIndex {
+	private static final Logger logger = Logger.getLogger(ItemIndex.class);
+
+	/** When set, every query is validated against a full scan. */
+	private static final boolean VALIDATING = Boolean.getBoolean("stendhal.itemindex.validate");
+
+	/** The entity whose items are indexed. */
+	private final RPEntity entity;
+	/** Counts by item name. */
+	private final Map<String, Counts> counts = new HashMap<String, Counts>();
+	/** <code>true</code> if the counts reflect the current slot contents. */
+	private boolean valid;
+
+	/**
+	 * Create a new ItemIndex. The index is empty and gets built on the first
+	 * query.
+	 *
+	 * @param entity indexed entity
+	 */
+	ItemIndex(final RPEntity entity) {
+		this.entity = entity;
+	}
+
+	/**
+	 * Get the number of items of a name in the carrying slots.
+	 *
+	 * @param name item name
+	 * @return number of items
+	 */
+	int getNumberOfEquipped(final String name) {
+		final Counts count = getCounts(name);
+		final int result = (count != null) ? count.carried : 0;
+		if (VALIDATING) {
+			validate(name, result, entity.scanNumberOfEquipped(name));
+		}
+		return result;
+	}
+
+	/**
+	 * Get the number of items of a name in all the slots, including the bank
+	 * slots.
+	 *
+	 * @param name item name
+	 * @return number of items
+	 */
+	int getTotalNumberOf(final String name) {
+		final Counts count = getCounts(name);
+		final int result = (count != null) ? count.total : 0;
+		if (VALIDATING) {
+			validate(name, result, entity.scanTotalNumberOf(name));
+		}
+		return result;
+	}
+
+	/**
+	 * Get the only item (or stack) of a name in the carrying slots.
+	 *
+	 * @param name item name
+	 * @return the item, if there is exactly one item object with the name in
+	 * 	the carrying slots, otherwise <code>null</code>
+	 */
+	Item getOnlyEquipped(final String name) {
+		final Counts count = getCounts(name);
+		if ((count != null) && (count.items.size() == 1)) {
+			return count.items.get(0);
+		}
+		return null;
+	}
+
+	/**
+	 * Forget the current counts. The next query rebuilds the index.
+	 */
+	void invalidate() {
+		valid = false;
+		counts.clear();
+	}
+
+	/**
+	 * Called before an item leaves its container.
+	 *
+	 * @param item item
+	 */
+	public static void onItemRemoving(final Item item) {
+		update(item, -1);
+	}
+
+	/**
+	 * Called after an item has been added to a container.
+	 *
+	 * @param item item
+	 */
+	public static void onItemAdded(final Item item) {
+		update(item, 1);
+	}
+
+	/**
+	 * Called when the quantity of an item has changed.
+	 *
+	 * @param item item
+	 * @param delta change of the quantity
+	 */
+	public static void onQuantityChanged(final Item item, final int delta) {
+		if (delta == 0) {
+			return;
+		}
+		final RPObject top = getTopObject(item);
+		if (top != null) {
+			final RPEntity holder = getHolder(top);
+			if (holder != null) {
+				holder.onSlotContentChanged(top.getContainerSlot().getName());
+				final ItemIndex index = getIndex(holder);
+				if (index != null) {
+					index.count(item, isCarrying(top.getContainerSlot()), delta, false);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add or remove an item and its contents to the index of the entity
+	 * holding it.
+	 *
+	 * @param item item
+	 * @param sign 1 for added items, -1 for removed items
+	 */
+	private static void update(final Item item, final int sign) {
+		final RPObject top = getTopObject(item);
+		if (top != null) {
+			final RPEntity holder = getHolder(top);
+			if (holder != null) {
+				holder.onSlotContentChanged(top.getContainerSlot().getName());
+				final ItemIndex index = getIndex(holder);
+				if (index != null) {
+					index.addTree(item, isCarrying(top.getContainerSlot()), sign);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the entity holding an object.
+	 *
+	 * @param top object directly in a slot of an RPEntity
+	 * @return entity, or <code>null</code> if the object is not really in the
+	 * 	slots of the entity
+	 */
+	private static RPEntity getHolder(final RPObject top) {
+		/*
+		 * Copies of objects made when cloning an entity refer to the
+		 * original entity and its slots while the copy is being built. Only
+		 * follow objects in the slots the owner really has, and ignore copies
+		 * of the objects that are in them.
+		 */
+		final RPEntity entity = (RPEntity) top.getContainerOwner();
+		final RPSlot slot = top.getContainerSlot();
+		if (entity.getSlot(slot.getName()) != slot) {
+			return null;
+		}
+		if (top.has("id")) {
+			final RPObject current = slot.get(top.getID());
+			if ((current != null) && (current != top)) {
+				return null;
+			}
+		}
+		return entity;
+	}
+
+	/**
+	 * Get the valid index of an entity.
+	 *
+	 * @param entity entity holding a changed item
+	 * @return index, or <code>null</code> if there is no index that needs
+	 * 	updating
+	 */
+	private static ItemIndex getIndex(final RPEntity entity) {
+		final ItemIndex index = entity.itemIndex;
+		if ((index != null) && index.valid && index.isIndexOf(entity)) {
+			return index;
+		}
+		return null;
+	}
+
+	/**
+	 * Check if this is the index of an entity. A shallow copy of an entity,
+	 * made with clone(), refers to the index of the original entity until
+	 * the copy is complete, and must not change it.
+	 *
+	 * @param entity entity to check
+	 * @return <code>true</code> if the index belongs to the entity
+	 */
+	boolean isIndexOf(final RPEntity entity) {
+		return this.entity == entity;
+	}
+
+	/**
+	 * Find the object in the slots of an RPEntity that holds an item, either
+	 * the item itself or an item containing it.
+	 *
+	 * @param item item
+	 * @return object directly in a slot of an RPEntity, or <code>null</code>
+	 * 	if the item is not held by an RPEntity
+	 */
+	private static RPObject getTopObject(final Item item) {
+		RPObject object = item;
+		SlotOwner owner = object.getContainerOwner();
+		while (owner instanceof Item) {
+			object = (RPObject) owner;
+			owner = object.getContainerOwner();
+		}
+		if (owner instanceof RPEntity) {
+			return object;
+		}
+		return null;
+	}
+
+	private static boolean isCarrying(final RPSlot slot) {
+		return Slots.CARRYING.getNames().contains(slot.getName());
+	}
+
+	/**
+	 * Get the counts of an item name, building the index first if needed.
+	 *
+	 * @param name item name
+	 * @return counts, or <code>null</code> if there are no items of that name
+	 */
+	private Counts getCounts(final String name) {
+		if (!valid) {
+			rebuild();
+		}
+		return counts.get(name);
+	}
+
+	private void rebuild() {
+		counts.clear();
+		for (final RPSlot slot : entity.slots()) {
+			final boolean carrying = isCarrying(slot);
+			for (final RPObject object : slot) {
+				if (object instanceof Item) {
+					addTree((Item) object, carrying, 1);
+				}
+			}
+		}
+		valid = true;
+	}
+
+	/**
+	 * Count an item, and the items it contains.
+	 *
+	 * @param item top item
+	 * @param carrying <code>true</code> if the item is in a carrying slot
+	 * @param sign 1 for adding, -1 for removing
+	 */
+	private void addTree(final Item item, final boolean carrying, final int sign) {
+		count(item, carrying, sign * item.getQuantity(), true);
+		for (final RPSlot slot : item.slots()) {
+			for (final RPObject object : slot) {
+				if (object instanceof Item) {
+					addTree((Item) object, carrying, sign);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Change the count of an item.
+	 *
+	 * @param item item
+	 * @param carrying <code>true</code> if the item is in a carrying slot
+	 * @param delta quantity change
+	 * @param placement <code>true</code> if the item itself was added or
+	 * 	removed, <code>false</code> if only its quantity changed
+	 */
+	private void count(final Item item, final boolean carrying, final int delta,
+			final boolean placement) {
+		final String name = item.getName();
+		Counts count = counts.get(name);
+		if (count == null) {
+			count = new Counts();
+			counts.put(name, count);
+		}
+		count.total += delta;
+		if (carrying) {
+			count.carried += delta;
+			if (placement) {
+				if (delta > 0) {
+					count.items.add(item);
+				} else {
+					removeIdentical(count.items, item);
+				}
+			}
+		}
+		if ((count.total == 0) && count.items.isEmpty()) {
+			counts.remove(name);
+		}
+	}
+
+	private static void removeIdentical(final List<Item> list, final Item item) {
+		for (int i = list.size() - 1; i >= 0; i--) {
+			if (list.get(i) == item) {
+				list.remove(i);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Compare an indexed count against a scanned one, and rebuild the index
+	 * if they differ.
+	 *
+	 * @param name item name
+	 * @param indexed count from the index
+	 * @param scanned count from a full scan
+	 */
+	private void validate(final String name, final int indexed, final int scanned) {
+		if (indexed != scanned) {
+			logger.error("Item index of " + entity.getName() + " has " + indexed
+					+ " " + name + " but the slots have " + scanned, new Throwable());
+			rebuild();
+		}
+	}
+
+	/**
+	 * Item counts of one item name.
+	 */
+	private static final class Counts {
+		/** Number of items in the carrying slots. */
+		private int carried;
+		/** Number of items in all slots. */
+		private int total;
+		/** The item objects directly or indirectly in the carrying slots. */
+		private final List<Item> items = new ArrayList<Item>(2);
+	}
+}
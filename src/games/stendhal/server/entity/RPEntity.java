@@ -38,6 +38,7 @@ import games.stendhal.common.constants.Testing;
 import games.stendhal.common.grammar.Grammar;
 import games.stendhal.common.parser.WordList;
 import games.stendhal.server.actions.equip.DropAction;
+import games.stendhal.server.core.engine.AuditLog;
 import games.stendhal.server.core.engine.GameEvent;
 import games.stendhal.server.core.engine.ItemLogger;
 import games.stendhal.server.core.engine.SingletonRepository;
@@ -68,7 +69,6 @@ import marauroa.common.game.RPAction;
 import marauroa.common.game.RPObject;
 import marauroa.common.game.RPSlot;
 import marauroa.common.game.SyntaxException;
-import marauroa.server.db.command.DBCommandQueue;
 import marauroa.server.game.Statistics;
 import marauroa.server.game.db.DAORegister;
 
@@ -153,6 +153,12 @@ public abstract class RPEntity extends GuidedEntity {
 	/** the enemy that is currently attacked by this entity. */
 	private RPEntity attackTarget;
 
+	/**
+	 * Index of the items in the slots. Created on the first query, and
+	 * updated by ItemIndex as items move.
+	 */
+	ItemIndex itemIndex;
+
 	/**
 	 * Maps each attacker to the sum of hitpoint loss it has caused to this
 	 * RPEntity.
@@ -1684,7 +1690,11 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 				}
 			}
 
-			SingletonRepository.getAchievementNotifier().onKill(killer);
+			if (killedName == null) {
+				SingletonRepository.getAchievementNotifier().onKill(killer);
+			} else {
+				SingletonRepository.getAchievementNotifier().onKill(killer, killedName);
+			}
 
 			killer.notifyWorldAboutChanges();
 		}
@@ -1797,7 +1807,7 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 			new GameEvent(killerName, "killed", this.getName(), killLog.entityToType(killer), killLog.entityToType(this)).raise();
 		}
 
-		DBCommandQueue.get().enqueue(new LogKillEventCommand(this, killer));
+		AuditLog.get().log(new LogKillEventCommand(this, killer));
 
 		die(killer, remove);
 	}
@@ -2302,6 +2312,58 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 		return false;
 	}
 
+	/**
+	 * Get the item index of the entity.
+	 *
+	 * @return item index
+	 */
+	private ItemIndex getItemIndex() {
+		if (itemIndex == null) {
+			itemIndex = new ItemIndex(this);
+		}
+		return itemIndex;
+	}
+
+	@Override
+	public void addSlot(final RPSlot slot) {
+		super.addSlot(slot);
+		if ((itemIndex != null) && itemIndex.isIndexOf(this)) {
+			itemIndex.invalidate();
+		}
+		onSlotContentChanged(slot.getName());
+	}
+
+	@Override
+	public RPSlot removeSlot(final String name) {
+		final RPSlot slot = super.removeSlot(name);
+		if ((itemIndex != null) && itemIndex.isIndexOf(this)) {
+			itemIndex.invalidate();
+		}
+		onSlotContentChanged(name);
+		return slot;
+	}
+
+	/**
+	 * Called when a slot is added or removed, or when the items in a slot
+	 * change. Note that this can be called already during the construction
+	 * of the entity.
+	 *
+	 * @param name slot name
+	 */
+	protected void onSlotContentChanged(final String name) {
+		// Only players need to know
+	}
+
+	@Override
+	public Object clone() {
+		final RPEntity copy = (RPEntity) super.clone();
+		if (copy != null) {
+			// The copy builds its own index if it is ever queried
+			copy.itemIndex = null;
+		}
+		return copy;
+	}
+
 	/**
 	 * Determine if this entity is equipped with a minimum quantity of an item.
 	 *
@@ -2318,23 +2380,7 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 			return false;
 		}
 
-		int found = 0;
-
-		for (RPSlot slot : this.slots(Slots.CARRYING)) {
-
-			for (final RPObject object : slot) {
-				if (!(object instanceof Item)) {
-					continue;
-				}
-
-				found += getItemCount(name, (Item) object);
-				if (found >= amount) {
-					return true;
-				}
-			}
-		}
-
-		return false;
+		return getNumberOfEquipped(name) >= amount;
 	}
 
 	/**
@@ -2358,6 +2404,18 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 	 * @return The number of carried items
 	 */
 	public int getNumberOfEquipped(final String name) {
+		return getItemIndex().getNumberOfEquipped(name);
+	}
+
+	/**
+	 * Count the carried items of the given name by going through all the
+	 * carrying slots.
+	 *
+	 * @param name
+	 *            The item's name
+	 * @return The number of carried items
+	 */
+	int scanNumberOfEquipped(final String name) {
 		int result = 0;
 
 		for (RPSlot slot : this.slots(Slots.CARRYING)) {
@@ -2406,6 +2464,18 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 	 * @return The number of carried items
 	 */
 	public int getTotalNumberOf(final String name) {
+		return getItemIndex().getTotalNumberOf(name);
+	}
+
+	/**
+	 * Count the items of the given name, including bank, by going through all
+	 * the slots.
+	 *
+	 * @param name
+	 *            The item's name
+	 * @return The number of items
+	 */
+	int scanTotalNumberOf(final String name) {
 		int result = 0;
 
 		for (final RPSlot slot : slots()) {
@@ -2429,6 +2499,15 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 	 *         found
 	 */
 	public Item getFirstEquipped(final String name) {
+		final ItemIndex index = getItemIndex();
+		if (index.getNumberOfEquipped(name) == 0) {
+			return null;
+		}
+		final Item only = index.getOnlyEquipped(name);
+		if (only != null) {
+			return only;
+		}
+
 		for (RPSlot slot : this.slots(Slots.CARRYING)) {
 
 			for (final RPObject object : slot) {
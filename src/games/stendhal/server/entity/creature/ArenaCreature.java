@@ -43,7 +43,21 @@ public class ArenaCreature extends Creature {
 	@Override
 	public List<RPEntity> getEnemyList() {
 		// only return those enemies which are in the arena
-		final List<RPEntity> standardEnemyList = super.getEnemyList();
+		return filterArena(super.getEnemyList());
+	}
+
+	@Override
+	public List<RPEntity> getEnemyList(final double range) {
+		return filterArena(super.getEnemyList(range));
+	}
+
+	/**
+	 * Get the enemies which are in the arena.
+	 *
+	 * @param standardEnemyList enemy candidates
+	 * @return enemies in the arena
+	 */
+	private List<RPEntity> filterArena(final List<RPEntity> standardEnemyList) {
 		final List<RPEntity> resultList = new LinkedList<RPEntity>();
 
 		for (final RPEntity enemy : standardEnemyList) {
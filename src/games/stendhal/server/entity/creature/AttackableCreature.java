@@ -49,6 +49,12 @@ public class AttackableCreature extends Creature {
 		return res;
 	}
 
+	@Override
+	public List<RPEntity> getEnemyList(final double range) {
+		// The attackers are few, so there is no need to look them up by range
+		return getEnemyList();
+	}
+
 	/**
 	 * Sets the master of this creature.
 	 *
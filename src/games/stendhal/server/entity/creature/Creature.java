@@ -12,9 +12,11 @@
  ***************************************************************************/
 package games.stendhal.server.entity.creature;
 
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -30,11 +32,15 @@ import games.stendhal.common.constants.SoundLayer;
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.StendhalRPRuleProcessor;
 import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.pathfinder.AsyncPathfinder;
 import games.stendhal.server.core.pathfinder.FixedPath;
 import games.stendhal.server.core.pathfinder.Node;
 import games.stendhal.server.core.pathfinder.Path;
+import games.stendhal.server.core.pathfinder.PathListener;
+import games.stendhal.server.core.pathfinder.PathRequest;
 import games.stendhal.server.core.rule.EntityManager;
 import games.stendhal.server.entity.Entity;
+import games.stendhal.server.entity.GuidedEntity;
 import games.stendhal.server.entity.Killer;
 import games.stendhal.server.entity.RPEntity;
 import games.stendhal.server.entity.Registrator;
@@ -150,6 +156,14 @@ public class Creature extends NPC {
 
 	private CounterMap<String> hitPlayers;
 
+	/** Turns an enemy is considered unreachable after a failed background path search */
+	private static final int UNREACHABLE_TURNS = 20;
+	/** Enemies without a path, and the turns when the path search failed. Created on demand */
+	private Map<RPEntity, Integer> unreachableEnemies;
+	/** Pending background path search to the chosen enemy */
+	private PathRequest enemyPathRequest;
+	private RPEntity enemyPathTarget;
+
 	/**
 	 * creates a new Creature
 	 *
@@ -679,6 +693,23 @@ public class Creature extends NPC {
 		}
 	}
 
+	/**
+	 * Returns a list of enemies near the creature. The list contains at least
+	 * the enemies whose area is within <i>range</i> of the creature's area,
+	 * but it can contain also enemies somewhat further away.
+	 *
+	 * @param range search range
+	 * @return list of enemies
+	 */
+	public List<RPEntity> getEnemyList(final double range) {
+		if (getAIProfiles().containsKey("offensive")) {
+			return getZone().getPlayerAndFriendsInArea(new Rectangle2D.Double(getX() - range - 1,
+					getY() - range - 1, getWidth() + 2 * range + 2, getHeight() + 2 * range + 2));
+		} else {
+			return getAttackingRPEntities();
+		}
+	}
+
 	/**
 	 * Returns the nearest enemy, which is reachable or otherwise attackable.
 	 *
@@ -688,7 +719,7 @@ public class Creature extends NPC {
 	 */
 	public RPEntity getNearestEnemy(final double range) {
 		// create list of enemies
-		final List<RPEntity> enemyList = getEnemyList();
+		final List<RPEntity> enemyList = getEnemyList(range);
 		if (enemyList.isEmpty()) {
 			return null;
 		}
@@ -724,13 +755,23 @@ public class Creature extends NPC {
 			}
 
 			if (shortestDistance >= 1) {
-				final List<Node> path = Path.searchPath(this, chosen, getMovementRange());
-				if ((path == null) || path.isEmpty() && !strategy.canAttackNow(this, chosen)) {
-					distances.remove(chosen);
-					chosen = null;
+				final AsyncPathfinder pathfinder = AsyncPathfinder.get();
+				if (pathfinder != null) {
+					if (isUnreachable(chosen)) {
+						distances.remove(chosen);
+						chosen = null;
+					} else {
+						requestEnemyPath(pathfinder, chosen);
+					}
 				} else {
-					// set the path. if not setMovement() will search a new one
-					setPath(new FixedPath(path, false));
+					final List<Node> path = Path.searchPath(this, chosen, getMovementRange());
+					if ((path == null) || path.isEmpty() && !strategy.canAttackNow(this, chosen)) {
+						distances.remove(chosen);
+						chosen = null;
+					} else {
+						// set the path. if not setMovement() will search a new one
+						setPath(new FixedPath(path, false));
+					}
 				}
 			}
 		}
@@ -738,14 +779,70 @@ public class Creature extends NPC {
 		return chosen;
 	}
 
+	/**
+	 * Check if a background path search to an enemy failed recently.
+	 *
+	 * @param enemy checked enemy
+	 * @return <code>true</code> if the enemy should not be chosen
+	 */
+	private boolean isUnreachable(final RPEntity enemy) {
+		if (unreachableEnemies == null) {
+			return false;
+		}
+		final Integer turn = unreachableEnemies.get(enemy);
+		if (turn == null) {
+			return false;
+		}
+		if (SingletonRepository.getTurnNotifier().getCurrentTurn() - turn > UNREACHABLE_TURNS) {
+			unreachableEnemies.remove(enemy);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Search a path to the chosen enemy in the background, unless a search is
+	 * already pending. The enemy is treated as reachable until the search
+	 * tells otherwise.
+	 *
+	 * @param pathfinder background path finder
+	 * @param enemy chosen enemy
+	 */
+	private void requestEnemyPath(final AsyncPathfinder pathfinder, final RPEntity enemy) {
+		if ((enemyPathRequest != null) && !enemyPathRequest.isDone()
+				&& !enemyPathRequest.isCancelled() && (enemyPathTarget == enemy)) {
+			return;
+		}
+		enemyPathTarget = enemy;
+		enemyPathRequest = pathfinder.request(this, enemy, getMovementRange(), new PathListener() {
+			@Override
+			public void onPathFound(final GuidedEntity entity, final List<Node> path) {
+				if (path.isEmpty() && !strategy.canAttackNow(Creature.this, enemy)) {
+					if (unreachableEnemies == null) {
+						unreachableEnemies = new IdentityHashMap<RPEntity, Integer>();
+					}
+					unreachableEnemies.put(enemy, SingletonRepository.getTurnNotifier().getCurrentTurn());
+					if (getAttackTarget() == enemy) {
+						stopAttack();
+					}
+				} else {
+					// set the path. if not setMovement() will search a new one
+					setPath(new FixedPath(path, false));
+				}
+			}
+		});
+	}
+
 	public boolean isEnemyNear(final double range) {
 		final int x = getX();
 		final int y = getY();
 
-		List<RPEntity> enemyList = getEnemyList();
+		List<RPEntity> enemyList = getEnemyList(range);
 		if (enemyList.isEmpty()) {
+			// players and friends standing in the checked area
 			final StendhalRPZone zone = getZone();
-			enemyList = zone.getPlayerAndFriends();
+			enemyList = zone.getPlayerAndFriendsInArea(new Rectangle2D.Double(x - range, y - range,
+					2 * range, 2 * range));
 		}
 
 		for (final RPEntity playerOrFriend : enemyList) {
@@ -850,6 +947,16 @@ public class Creature extends NPC {
 		// do nothing
 	}
 
+	/**
+	 * Catch up with the logic that was skipped while the zone of the
+	 * creature was dormant.
+	 *
+	 * @param turns number of skipped turns
+	 */
+	public void catchUp(final int turns) {
+		healer.heal(this, turns);
+	}
+
 	@Override
 	public void logic() {
 		healer.heal(this);
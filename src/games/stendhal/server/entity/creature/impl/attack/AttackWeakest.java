@@ -46,7 +46,8 @@ public class AttackWeakest extends HandToHand {
 	 */
 	private boolean attackWeakest(Creature creature) {
 		// create list of possible enemies
-		final List<RPEntity> enemyList = creature.getEnemyList();
+		// enemies next to the creature
+		final List<RPEntity> enemyList = creature.getEnemyList(1);
 		if (enemyList.isEmpty()) {
 			return false;
 		}
@@ -40,4 +40,11 @@ class Healer implements HealerBehavior {
 
 	}
 
+	@Override
+	public void heal(final Creature creature, final int turns) {
+		final int times = turns / frequency;
+		if ((times > 0) && (creature.getHP() > 0)) {
+			creature.heal(amount * times);
+		}
+	}
 }
@@ -18,4 +18,12 @@ public interface HealerBehavior {
 	void init(String healingProfile);
 	void heal(Creature creature);
 
+	/**
+	 * Apply the healing of several turns at once.
+	 *
+	 * @param creature healed creature
+	 * @param turns number of turns
+	 */
+	void heal(Creature creature, int turns);
+
 }
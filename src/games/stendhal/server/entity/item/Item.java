@@ -29,6 +29,7 @@ import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.events.EquipListener;
 import games.stendhal.server.core.events.TurnListener;
 import games.stendhal.server.core.events.UseListener;
+import games.stendhal.server.entity.ItemIndex;
 import games.stendhal.server.entity.PassiveEntity;
 import games.stendhal.server.entity.RPEntity;
 import games.stendhal.server.entity.item.behavior.UseBehavior;
@@ -40,6 +41,7 @@ import marauroa.common.game.Definition.Type;
 import marauroa.common.game.RPClass;
 import marauroa.common.game.RPObject;
 import marauroa.common.game.RPSlot;
+import marauroa.common.game.SlotOwner;
 
 /**
  * This is an item.
@@ -123,12 +125,14 @@ public class Item extends PassiveEntity implements TurnListener, EquipListener,
 		update();
 	}
 
-	/** no public 'default' item. */
+	/**
+	 * no public 'default' item. The caller is responsible for calling
+	 * update() once the attributes are in place.
+	 */
 	private Item() {
 		setRPClass("item");
 		put("type", "item");
 		possibleSlots = new LinkedList<String>();
-		update();
 	}
 
 	/**
@@ -419,6 +423,13 @@ public class Item extends PassiveEntity implements TurnListener, EquipListener,
 				+ this);
 	}
 
+	@Override
+	public void setContainer(final SlotOwner container, final RPSlot slot) {
+		ItemIndex.onItemRemoving(this);
+		super.setContainer(container, slot);
+		ItemIndex.onItemAdded(this);
+	}
+
 	/**
 	 * Gets the name of the item.
 	 *
@@ -20,6 +20,7 @@ import java.util.Map;
 import org.apache.log4j.Logger;
 
 import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.entity.ItemIndex;
 import marauroa.common.game.RPObject;
 
 public class StackableItem extends Item implements Stackable<StackableItem> {
@@ -79,6 +80,7 @@ public class StackableItem extends Item implements Stackable<StackableItem> {
 
 	@Override
 	public void setQuantity(final int amount) {
+		final int oldQuantity = quantity;
 		if (amount <= 0) {
 			logger.error("Trying to set invalid quantity: " + amount,
 					new Throwable());
@@ -87,6 +89,7 @@ public class StackableItem extends Item implements Stackable<StackableItem> {
 			quantity = amount;
 		}
 		put("quantity", getQuantity());
+		ItemIndex.onQuantityChanged(this, quantity - oldQuantity);
 	}
 
 	/**
@@ -101,6 +104,7 @@ public class StackableItem extends Item implements Stackable<StackableItem> {
 		}
 		quantity = getQuantity() - amount;
 		put("quantity", getQuantity());
+		ItemIndex.onQuantityChanged(this, -amount);
 		return getQuantity();
 	}
 
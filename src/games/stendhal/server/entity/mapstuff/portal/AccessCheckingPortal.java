@@ -121,18 +121,10 @@ abstract class AccessCheckingPortal extends Portal {
 
         final List<Player> players = new LinkedList<Player>();
 
-        for (final Player player : getZone().getPlayers()) {
-            final int px = player.getX();
-            final int py = player.getY();
-
+        // checks a rectangular area
+        for (final Player player : getZone().getPlayersNear(x, y, listeningRadius)) {
             if (player.has("text")) {
-                int dx = px - x;
-                int dy = py - y;
-
-                if (Math.abs(dx)<listeningRadius && Math.abs(dy)<listeningRadius) { // check rectangular area
-//              if (dx*dx + dy*dy < range*range) { // optionally we could check a circular area
-                    players.add(player);
-                }
+                players.add(player);
             }
         }
 
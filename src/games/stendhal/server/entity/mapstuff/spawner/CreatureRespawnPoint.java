@@ -169,6 +169,10 @@ public class CreatureRespawnPoint implements TurnListener {
 	 */
 	@Override
 	public void onTurnReached(final int currentTurn) {
+		if ((zone != null) && zone.postponeTurnEvent(this, currentTurn)) {
+			// Respawned when a player enters the zone
+			return;
+		}
 		respawn();
 
 		// Is this all or should we spawn more creatures?
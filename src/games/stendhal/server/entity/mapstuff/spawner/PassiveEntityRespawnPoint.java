@@ -142,6 +142,11 @@ public class PassiveEntityRespawnPoint extends Entity implements TurnListener {
 
 	@Override
 	public void onTurnReached(final int currentTurn) {
+		final StendhalRPZone zone = getZone();
+		if ((zone != null) && zone.postponeTurnEvent(this, currentTurn)) {
+			// Grows when a player enters the zone
+			return;
+		}
 		growNewFruit();
 	}
 
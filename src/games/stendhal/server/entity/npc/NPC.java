@@ -21,9 +21,11 @@ import games.stendhal.common.Direction;
 import games.stendhal.common.Rand;
 import games.stendhal.common.constants.Events;
 import games.stendhal.common.constants.SoundLayer;
+import games.stendhal.server.core.pathfinder.AsyncPathfinder;
 import games.stendhal.server.core.pathfinder.FixedPath;
 import games.stendhal.server.core.pathfinder.Node;
 import games.stendhal.server.core.pathfinder.Path;
+import games.stendhal.server.core.pathfinder.PathRequest;
 import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.RPEntity;
 import games.stendhal.server.entity.item.Corpse;
@@ -68,6 +70,11 @@ public abstract class NPC extends RPEntity {
 	 */
 	private int movementRange = 20;
 
+	/** Pending background path search, if any. */
+	private PathRequest pathRequest;
+	/** Destination of the pending path search. */
+	private Entity pathRequestTarget;
+
 	/**
 	 * Idling between path cycles
 	 */
@@ -192,8 +199,18 @@ public abstract class NPC extends RPEntity {
 			logger.debug("Creating path because (" + getX() + "," + getY()
 					+ ") distance(" + destEntity.getX() + ","
 					+ destEntity.getY() + ")>" + max);
-			final List<Node> path = Path.searchPath(this, destEntity, maxPathRadius);
-			setPath(new FixedPath(path, false));
+			final AsyncPathfinder pathfinder = AsyncPathfinder.get();
+			if (pathfinder != null) {
+				// Keep following the old path until the new one is delivered
+				if ((pathRequest == null) || pathRequest.isDone() || pathRequest.isCancelled()
+						|| (pathRequestTarget != destEntity)) {
+					pathRequest = pathfinder.request(this, destEntity, maxPathRadius, null);
+					pathRequestTarget = destEntity;
+				}
+			} else {
+				final List<Node> path = Path.searchPath(this, destEntity, maxPathRadius);
+				setPath(new FixedPath(path, false));
+			}
 		}
 	}
 
@@ -245,18 +245,10 @@ public class SpeakerNPC extends NPC {
 
 		final List<Player> players = new LinkedList<Player>();
 
-		for (final Player player : getZone().getPlayers()) {
-			final int px = player.getX();
-			final int py = player.getY();
-
+		// checks a rectangular area
+		for (final Player player : getZone().getPlayersNear(x, y, range)) {
 			if (player.has("text")) {
-				int dx = px - x;
-				int dy = py - y;
-
-				if (Math.abs(dx)<range && Math.abs(dy)<range) { // check rectangular area
-//				if (dx*dx + dy*dy < range*range) { // optionally we could check a circular area
-					players.add(player);
-				}
+				players.add(player);
 			}
 		}
 
@@ -282,18 +274,16 @@ public class SpeakerNPC extends NPC {
 
 		int squaredDistanceOfNearestPlayer = Integer.MAX_VALUE;
 
-		for (final Player player : getZone().getPlayers()) {
+		for (final Player player : getZone().getPlayersNear(x, y, range)) {
 			final int px = player.getX();
 			final int py = player.getY();
 
-			if ((Math.abs(px - x) < range) && (Math.abs(py - y) < range)) {
-				final int squaredDistanceOfThisPlayer =
-						(px - x) * (px - x) + (py - y) * (py - y);
+			final int squaredDistanceOfThisPlayer =
+					(px - x) * (px - x) + (py - y) * (py - y);
 
-				if (squaredDistanceOfThisPlayer < squaredDistanceOfNearestPlayer) {
-					squaredDistanceOfNearestPlayer = squaredDistanceOfThisPlayer;
-					nearest = player;
-				}
+			if (squaredDistanceOfThisPlayer < squaredDistanceOfNearestPlayer) {
+				squaredDistanceOfNearestPlayer = squaredDistanceOfThisPlayer;
+				nearest = player;
 			}
 		}
 
@@ -698,7 +688,7 @@ public class SpeakerNPC extends NPC {
 		// If we are attending another player make this one wait.
 		if (attending != null && !player.equals(attending)) {
 			if (ConversationPhrases.GREETING_MESSAGES.contains(
-					ConversationParser.parse(text).getTriggerExpression().getNormalized())) {
+					ConversationParser.parseCached(text).getTriggerExpression().getNormalized())) {
 				logger.debug("Already attending a player");
 
 				if (waitMessage != null) {
@@ -13,6 +13,7 @@
 package games.stendhal.server.entity.npc.condition;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import games.stendhal.common.parser.Sentence;
@@ -41,6 +42,15 @@ public class AndCondition implements ChatCondition {
 		this.conditions = Arrays.asList(condition);
 	}
 
+	/**
+	 * Get the combined conditions.
+	 *
+	 * @return unmodifiable list of conditions
+	 */
+	public List<ChatCondition> getConditions() {
+		return Collections.unmodifiableList(conditions);
+	}
+
 	@Override
 	public boolean fire(final Player player, final Sentence sentence, final Entity entity) {
 		for (final ChatCondition condition : conditions) {
@@ -13,10 +13,12 @@
 package games.stendhal.server.entity.npc.condition;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import games.stendhal.common.parser.Sentence;
 import games.stendhal.server.core.config.annotations.Dev;
@@ -73,6 +75,15 @@ public class PlayerHasKilledNumberOfCreaturesCondition implements ChatCondition
 		}
 	}
 
+	/**
+	 * Get the names of the creatures that need to be killed.
+	 *
+	 * @return unmodifiable set of creature names
+	 */
+	public Set<String> getCreatureNames() {
+		return Collections.unmodifiableSet(creatures.keySet());
+	}
+
 	@Override
 	public boolean fire(Player player, Sentence sentence, Entity npc) {
 		for (Entry<String, Integer> entry : creatures.entrySet()) {
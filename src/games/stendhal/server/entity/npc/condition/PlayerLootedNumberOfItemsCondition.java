@@ -1,5 +1,6 @@
 package games.stendhal.server.entity.npc.condition;
 
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -38,6 +39,15 @@ public class PlayerLootedNumberOfItemsCondition implements ChatCondition {
 		}
 	}
 
+	/**
+	 * Get the names of the items that need to be looted.
+	 *
+	 * @return unmodifiable list of item names
+	 */
+	public List<String> getItems() {
+		return Collections.unmodifiableList(items);
+	}
+
 	@Override
 	public boolean fire(Player player, Sentence sentence, Entity npc) {
 		for (String item : items) {
@@ -61,6 +61,15 @@ public class QuestNotInStateCondition implements ChatCondition {
 		this.state = checkNotNull(state);
 	}
 
+	/**
+	 * Get the name of the checked quest slot.
+	 *
+	 * @return quest slot name
+	 */
+	public String getQuestName() {
+		return questname;
+	}
+
 	@Override
 	public boolean fire(final Player player, final Sentence sentence, final Entity entity) {
 		if (!player.hasQuest(questname)) {
@@ -39,6 +39,15 @@ public class QuestStartedCondition implements ChatCondition {
 		this.questname = checkNotNull(questname);
 	}
 
+	/**
+	 * Get the name of the checked quest slot.
+	 *
+	 * @return quest slot name
+	 */
+	public String getQuestName() {
+		return questname;
+	}
+
 	@Override
 	public boolean fire(final Player player, final Sentence sentence, final Entity entity) {
 		return (player.hasQuest(questname) && !"rejected".equals(player.getQuest(questname, 0)));
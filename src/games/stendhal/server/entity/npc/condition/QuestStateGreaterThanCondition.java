@@ -56,6 +56,15 @@ public class QuestStateGreaterThanCondition implements ChatCondition {
 		this.index = index;
 	}
 
+	/**
+	 * Get the name of the checked quest slot.
+	 *
+	 * @return quest slot name
+	 */
+	public String getQuestName() {
+		return questname;
+	}
+
 	@Override
 	public boolean fire(Player player, Sentence sentence, Entity npc) {
 		if(player.hasQuest(questname)) {
@@ -43,6 +43,15 @@ public class QuestStateStartsWithCondition implements ChatCondition {
 		this.state = checkNotNull(state);
 	}
 
+	/**
+	 * Get the name of the checked quest slot.
+	 *
+	 * @return quest slot name
+	 */
+	public String getQuestName() {
+		return questname;
+	}
+
 	@Override
 	public boolean fire(final Player player, final Sentence sentence, final Entity entity) {
 		return (player.hasQuest(questname) && player.getQuest(questname).startsWith(state));
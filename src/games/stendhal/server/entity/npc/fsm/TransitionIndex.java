@@ -0,0 +1,237 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.npc.fsm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import games.stendhal.common.parser.Expression;
+import games.stendhal.server.entity.npc.ConversationStates;
+
+/**
+ * Lookup of the transitions of an {@link Engine} by state and trigger.
+ * <p>
+ * Triggers without an ExpressionMatcher match by string equality, so they are
+ * indexed by their original and normalized forms. Transitions with a matcher
+ * in any of their triggers are candidates for every input in their state. The
+ * candidates are returned in the order the transitions were added, so that
+ * the choice between several matching transitions stays the same as when
+ * scanning the whole transition table.
+ */
+final class TransitionIndex {
+	/** Transitions of each state. */
+	private final Map<ConversationStates, StateTransitions> states =
+			new EnumMap<ConversationStates, StateTransitions>(ConversationStates.class);
+	/** Insertion order of the transitions. */
+	private final Map<Transition, Integer> order = new IdentityHashMap<Transition, Integer>();
+	private int nextOrder;
+
+	/**
+	 * Add a transition to the index.
+	 *
+	 * @param transition added transition
+	 */
+	void add(final Transition transition) {
+		order.put(transition, Integer.valueOf(nextOrder++));
+		StateTransitions entry = states.get(transition.getState());
+		if (entry == null) {
+			entry = new StateTransitions();
+			states.put(transition.getState(), entry);
+		}
+		entry.all.add(transition);
+
+		boolean matcher = false;
+		for (final Expression trigger : transition.getTriggers()) {
+			if (trigger.getMatcher() != null) {
+				matcher = true;
+			} else {
+				addTo(entry.byOriginal, trigger.getOriginal(), transition);
+				addTo(entry.byNormalized, trigger.getNormalized(), transition);
+			}
+		}
+		if (matcher) {
+			entry.withMatcher.add(transition);
+		}
+	}
+
+	/**
+	 * Remove a transition from the index.
+	 *
+	 * @param transition removed transition
+	 */
+	void remove(final Transition transition) {
+		if (order.remove(transition) == null) {
+			return;
+		}
+		final StateTransitions entry = states.get(transition.getState());
+		removeFrom(entry.all, transition);
+		removeFrom(entry.withMatcher, transition);
+		for (final Expression trigger : transition.getTriggers()) {
+			if (trigger.getMatcher() == null) {
+				removeFrom(entry.byOriginal, trigger.getOriginal(), transition);
+				removeFrom(entry.byNormalized, trigger.getNormalized(), transition);
+			}
+		}
+	}
+
+	/**
+	 * Get the transitions that can match an input with a match type. The
+	 * returned list must not be modified.
+	 *
+	 * @param type match type
+	 * @param state current state
+	 * @param trigger trigger expression of the input
+	 * @return candidate transitions in insertion order. The caller still
+	 * 	needs to check them with <code>type.match()</code>
+	 */
+	List<Transition> getCandidates(final MatchType type, final ConversationStates state,
+			final Expression trigger) {
+		switch (type) {
+		case EXACT_MATCH:
+			return lookup(states.get(state), trigger.getOriginal(), true);
+		case NORMALIZED_MATCH:
+			return lookup(states.get(state), trigger.getNormalized(), false);
+		case SIMILAR_MATCH:
+			return all(states.get(state));
+		case ABSOLUTE_JUMP:
+			return lookup(states.get(ConversationStates.ANY), trigger.getOriginal(), true);
+		case NORMALIZED_JUMP:
+			return lookup(states.get(ConversationStates.ANY), trigger.getNormalized(), false);
+		default:
+			return all(states.get(ConversationStates.ANY));
+		}
+	}
+
+	/**
+	 * Get the transitions of a state whose triggers can be equal to a text.
+	 *
+	 * @param entry state transitions
+	 * @param text original or normalized text
+	 * @param original <code>true</code> to look up original triggers,
+	 * 	<code>false</code> to look up normalized ones
+	 * @return candidate transitions
+	 */
+	private List<Transition> lookup(final StateTransitions entry, final String text,
+			final boolean original) {
+		if (entry == null) {
+			return Collections.emptyList();
+		}
+		List<Transition> found = null;
+		if (text != null) {
+			found = (original ? entry.byOriginal : entry.byNormalized).get(text);
+		}
+		if ((found == null) || found.isEmpty()) {
+			return entry.withMatcher;
+		} else if (entry.withMatcher.isEmpty()) {
+			return found;
+		}
+		return merge(found, entry.withMatcher);
+	}
+
+	private static List<Transition> all(final StateTransitions entry) {
+		if (entry == null) {
+			return Collections.emptyList();
+		}
+		return entry.all;
+	}
+
+	/**
+	 * Merge two lists in insertion order, dropping duplicates.
+	 *
+	 * @param first ordered list
+	 * @param second ordered list
+	 * @return merged list
+	 */
+	private List<Transition> merge(final List<Transition> first, final List<Transition> second) {
+		final List<Transition> result = new ArrayList<Transition>(first.size() + second.size());
+		int i = 0;
+		int j = 0;
+		while ((i < first.size()) && (j < second.size())) {
+			final Transition a = first.get(i);
+			final Transition b = second.get(j);
+			final int orderA = order.get(a).intValue();
+			final int orderB = order.get(b).intValue();
+			if (orderA < orderB) {
+				result.add(a);
+				i++;
+			} else if (orderA > orderB) {
+				result.add(b);
+				j++;
+			} else {
+				result.add(a);
+				i++;
+				j++;
+			}
+		}
+		result.addAll(first.subList(i, first.size()));
+		result.addAll(second.subList(j, second.size()));
+		return result;
+	}
+
+	private static void addTo(final Map<String, List<Transition>> map, final String key,
+			final Transition transition) {
+		if (key == null) {
+			return;
+		}
+		List<Transition> list = map.get(key);
+		if (list == null) {
+			list = new ArrayList<Transition>(1);
+			map.put(key, list);
+		}
+		// A transition may have several triggers with the same key
+		if (list.isEmpty() || (list.get(list.size() - 1) != transition)) {
+			list.add(transition);
+		}
+	}
+
+	private static void removeFrom(final Map<String, List<Transition>> map, final String key,
+			final Transition transition) {
+		if (key == null) {
+			return;
+		}
+		final List<Transition> list = map.get(key);
+		if (list != null) {
+			removeFrom(list, transition);
+			if (list.isEmpty()) {
+				map.remove(key);
+			}
+		}
+	}
+
+	private static void removeFrom(final List<Transition> list, final Transition transition) {
+		for (int i = list.size() - 1; i >= 0; i--) {
+			if (list.get(i) == transition) {
+				list.remove(i);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * The indexed transitions of one state.
+	 */
+	private static final class StateTransitions {
+		/** All transitions of the state. */
+		private final List<Transition> all = new ArrayList<Transition>();
+		/** Transitions by the original text of the triggers without a matcher. */
+		private final Map<String, List<Transition>> byOriginal = new HashMap<String, List<Transition>>();
+		/** Transitions by the normalized text of the triggers without a matcher. */
+		private final Map<String, List<Transition>> byNormalized = new HashMap<String, List<Transition>>();
+		/** Transitions that have a trigger with an ExpressionMatcher. */
+		private final List<Transition> withMatcher = new ArrayList<Transition>();
+	}
+}
@@ -23,13 +23,21 @@ import static games.stendhal.common.constants.Actions.TELECLICKMODE;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 
@@ -53,6 +61,7 @@ import games.stendhal.server.core.events.TurnNotifier;
 import games.stendhal.server.core.events.TutorialNotifier;
 import games.stendhal.server.core.events.UseListener;
 import games.stendhal.server.core.rp.StendhalRPAction;
+import games.stendhal.server.core.rp.achievement.Achievement;
 import games.stendhal.server.core.rp.achievement.AchievementNotifier;
 import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.Killer;
@@ -133,6 +142,11 @@ public class Player extends RPEntity implements UseListener {
 	 */
 	private Set<String> reachedAchievements;
 
+	/**
+	 * positions of the reached achievements in the list of configured achievements
+	 */
+	private BitSet reachedAchievementIndexes;
+
 	/**
 	 * preferred language
 	 */
@@ -157,6 +171,16 @@ public class Player extends RPEntity implements UseListener {
 	 */
 	private long lastClientActionTimestamp = System.currentTimeMillis();
 
+	/** Source of the slot versions of all players. */
+	private static final AtomicLong slotVersionCounter = new AtomicLong();
+	/** Version of the slots that have not changed since the player was created. */
+	private final long baseSlotVersion = slotVersionCounter.incrementAndGet();
+	/**
+	 * Versions of the slots whose contents have changed. Created when first
+	 * needed, as slots are added already in the RPEntity constructor.
+	 */
+	private Map<String, Long> slotVersions;
+
 	public static void generateRPClass() {
 		try {
 			PlayerRPClass.generateRPClass();
@@ -926,9 +950,80 @@ public class Player extends RPEntity implements UseListener {
 	 */
 	public boolean setKeyedSlot(final String name, final String key,
 			final String value) {
+		onSlotContentChanged(name);
 		return KeyedSlotUtil.setKeyedSlot(this, name, key, value);
 	}
 
+	@Override
+	protected void onSlotContentChanged(final String name) {
+		if (slotVersions == null) {
+			slotVersions = new HashMap<String, Long>();
+		}
+		slotVersions.put(name, Long.valueOf(slotVersionCounter.incrementAndGet()));
+	}
+
+	/**
+	 * Get the version of the contents of a slot. The version is different
+	 * after any change to the items in the slot or to its keyed values, and
+	 * is never the same for two players. Copies of the player made with
+	 * clone() keep the versions the player had when copied.
+	 *
+	 * @param name slot name
+	 * @return version
+	 */
+	public long getSlotVersion(final String name) {
+		if (slotVersions != null) {
+			final Long version = slotVersions.get(name);
+			if (version != null) {
+				return version.longValue();
+			}
+		}
+		return baseSlotVersion;
+	}
+
+	/**
+	 * Take slots out of the player without changing them, so that the rest
+	 * of the player can be stored on its own. The slots must be put back
+	 * with restoreSlots() before the player is used again.
+	 *
+	 * @param names names of the slots to take out
+	 * @return the removed slots by their former positions
+	 */
+	public SortedMap<Integer, RPSlot> detachSlots(final Collection<String> names) {
+		final SortedMap<Integer, RPSlot> detached = new TreeMap<Integer, RPSlot>();
+		int position = 0;
+		final Iterator<RPSlot> it = slots.iterator();
+		while (it.hasNext()) {
+			final RPSlot slot = it.next();
+			if (names.contains(slot.getName())) {
+				detached.put(Integer.valueOf(position), slot);
+				it.remove();
+			}
+			position++;
+		}
+		return detached;
+	}
+
+	/**
+	 * Put back slots taken out with detachSlots().
+	 *
+	 * @param detached the slots returned by detachSlots()
+	 */
+	public void restoreSlots(final SortedMap<Integer, RPSlot> detached) {
+		for (final Entry<Integer, RPSlot> entry : detached.entrySet()) {
+			slots.add(entry.getKey().intValue(), entry.getValue());
+		}
+	}
+
+	@Override
+	public Object clone() {
+		final Player copy = (Player) super.clone();
+		if ((copy != null) && (slotVersions != null)) {
+			copy.slotVersions = new HashMap<String, Long>(slotVersions);
+		}
+		return copy;
+	}
+
 	/**
 	 * Get a client feature value.
 	 *
@@ -2271,6 +2366,10 @@ public class Player extends RPEntity implements UseListener {
 	 */
 	public void addReachedAchievement(String identifier) {
 		getAchievements().add(identifier);
+		int index = AchievementNotifier.get().getAchievementIndex(identifier);
+		if (index >= 0) {
+			reachedAchievementIndexes.set(index);
+		}
 	}
 
 	private Set<String> getAchievements() {
@@ -2279,6 +2378,7 @@ public class Player extends RPEntity implements UseListener {
 
 	public void initReachedAchievements() {
 		reachedAchievements = new HashSet<String>();
+		reachedAchievementIndexes = new BitSet();
 	}
 
 	/**
@@ -2307,6 +2407,22 @@ public class Player extends RPEntity implements UseListener {
 		}
 	}
 
+	/**
+	 * Checks if a player has reached an achievement
+	 *
+	 * @param achievement
+	 * @return true if player had reached the achievement
+	 */
+	public boolean hasReachedAchievement(Achievement achievement) {
+		if (reachedAchievementIndexes == null) {
+			return false;
+		}
+		if (achievement.getIndex() < 0) {
+			return reachedAchievements.contains(achievement.getIdentifier());
+		}
+		return reachedAchievementIndexes.get(achievement.getIndex());
+	}
+
 	/**
 	 * Checks if the player has visited the given zone
 	 *
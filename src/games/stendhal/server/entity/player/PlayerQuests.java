@@ -96,13 +96,14 @@ class PlayerQuests {
 	 *            reset the player's status for the quest.
 	 */
 	public void setQuest(final String name, final String status) {
-		final String oldStatus = player.getKeyedSlot("!quests", evaluateSlotName(name));
-		player.setKeyedSlot("!quests", evaluateSlotName(name), status);
+		final String slotName = evaluateSlotName(name);
+		final String oldStatus = player.getKeyedSlot("!quests", slotName);
+		player.setKeyedSlot("!quests", slotName, status);
 		if ((status == null) || !status.equals(oldStatus)) {
-			new GameEvent(player.getName(), "quest", evaluateSlotName(name), status).raise();
+			new GameEvent(player.getName(), "quest", slotName, status).raise();
 		}
 		// check for reached achievements
-		SingletonRepository.getAchievementNotifier().onFinishQuest(player);
+		SingletonRepository.getAchievementNotifier().onQuestChange(player, slotName);
 	}
 
 
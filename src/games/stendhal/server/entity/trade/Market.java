@@ -12,9 +12,13 @@
  ***************************************************************************/
 package games.stendhal.server.entity.trade;
 
+import java.io.IOException;
+import java.sql.SQLException;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
@@ -22,7 +26,9 @@ import org.apache.log4j.Logger;
 import games.stendhal.server.core.engine.GameEvent;
 import games.stendhal.server.core.engine.ItemLogger;
 import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.engine.db.StendhalMarketDAO;
 import games.stendhal.server.core.engine.dbcommand.LogSimpleItemEventCommand;
+import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.PassiveEntity;
 import games.stendhal.server.entity.item.Item;
 import games.stendhal.server.entity.item.StackableItem;
@@ -31,6 +37,9 @@ import marauroa.common.game.Definition;
 import marauroa.common.game.RPClass;
 import marauroa.common.game.RPObject;
 import marauroa.common.game.RPSlot;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.TransactionPool;
+import marauroa.server.game.db.DAORegister;
 
 /**
  * A Market handles sales offers of players. Players can place offers or accept
@@ -62,6 +71,9 @@ public class Market extends PassiveEntity {
 	 */
 	public static final String EXPIRED_OFFERS_SLOT_NAME = "expired_offers";
 
+	/** Writes the changed offers and earnings to the database. */
+	private final MarketEntryWriter entryWriter = new MarketEntryWriter();
+
 	/**
 	 * Generate the RPClass for the Market
 	 */
@@ -166,6 +178,151 @@ public class Market extends PassiveEntity {
 		store();
 	}
 
+	/**
+	 * Load the offers and earnings from the market_entry table. If the table
+	 * is still empty, the entries that were loaded with the zone are written
+	 * there instead. Afterwards the market is no longer stored with the zone,
+	 * and each trade writes only the entries it changes.
+	 */
+	public void loadFromDatabase() {
+		if (TransactionPool.get() == null) {
+			logger.warn("No database, the market stays stored with the zone");
+			return;
+		}
+		final StendhalMarketDAO dao = DAORegister.get().get(StendhalMarketDAO.class);
+		final DBTransaction transaction = TransactionPool.get().beginWork();
+		boolean migrated = false;
+		try {
+			if (dao.hasEntries(transaction)) {
+				loadEntries(transaction, dao);
+			} else {
+				migrateEntries(transaction, dao);
+				migrated = true;
+			}
+			TransactionPool.get().commit(transaction);
+		} catch (final SQLException e) {
+			TransactionPool.get().rollback(transaction);
+			logger.error("Cannot load the market entries", e);
+			return;
+		} catch (final IOException e) {
+			TransactionPool.get().rollback(transaction);
+			logger.error("Cannot load the market entries", e);
+			return;
+		}
+
+		entryWriter.enable();
+		unstore();
+		if (migrated && (getZone() != null)) {
+			// Drop the market from the stored zone contents
+			getZone().storeToDatabase();
+		}
+	}
+
+	/**
+	 * Replace the slot contents with the entries from the database. The slots
+	 * are changed only after all entries have been read.
+	 *
+	 * @param transaction DBTransaction
+	 * @param dao market DAO
+	 * @throws SQLException in case of a database error
+	 * @throws IOException in case of a deserialization error
+	 */
+	private void loadEntries(final DBTransaction transaction, final StendhalMarketDAO dao)
+			throws SQLException, IOException {
+		final Map<Integer, Offer> offers = readOffers(transaction, dao, MarketEntryWriter.OFFER);
+		final Map<Integer, Offer> expiredOffers = readOffers(transaction, dao,
+				MarketEntryWriter.EXPIRED_OFFER);
+		final Map<Integer, RPObject> earnings = dao.loadEntries(transaction, MarketEntryWriter.EARNING);
+		entryWriter.setNextId(dao.getHighestEntryId(transaction) + 1);
+
+		fillSlot(OFFERS_SLOT_NAME, offers);
+		fillSlot(EXPIRED_OFFERS_SLOT_NAME, expiredOffers);
+		final Map<Integer, Earning> earningEntities = new LinkedHashMap<Integer, Earning>();
+		for (final Map.Entry<Integer, RPObject> entry : earnings.entrySet()) {
+			earningEntities.put(entry.getKey(), new Earning(entry.getValue()));
+		}
+		fillSlot(EARNINGS_SLOT_NAME, earningEntities);
+	}
+
+	/**
+	 * Read the stored offers of an entry type. Offers of items that do not
+	 * exist anymore are deleted.
+	 *
+	 * @param transaction DBTransaction
+	 * @param dao market DAO
+	 * @param entryType type of the offers
+	 * @return offers by entry id
+	 * @throws SQLException in case of a database error
+	 * @throws IOException in case of a deserialization error
+	 */
+	private Map<Integer, Offer> readOffers(final DBTransaction transaction,
+			final StendhalMarketDAO dao, final String entryType) throws SQLException, IOException {
+		final Map<Integer, Offer> offers = new LinkedHashMap<Integer, Offer>();
+		for (final Map.Entry<Integer, RPObject> entry : dao.loadEntries(transaction, entryType).entrySet()) {
+			final Offer offer = new Offer(entry.getValue());
+
+			// an offer might have become obsolete, when items are removed
+			if (offer.getItem() == null) {
+				logger.warn("Cannot restore an offer by "
+						+ offer.getOfferer() + " because this item"
+						+ " was removed from items.xml");
+				dao.deleteEntry(transaction, entry.getKey().intValue());
+				continue;
+			}
+			offers.put(entry.getKey(), offer);
+		}
+		return offers;
+	}
+
+	/**
+	 * Replace the contents of a slot with loaded entries.
+	 *
+	 * @param slotName name of the slot
+	 * @param entries entries by entry id
+	 */
+	private void fillSlot(final String slotName, final Map<Integer, ? extends Entity> entries) {
+		final RPSlot slot = getSlot(slotName);
+		slot.clear();
+		for (final Map.Entry<Integer, ? extends Entity> entry : entries.entrySet()) {
+			slot.add(entry.getValue());
+			entryWriter.register(entry.getValue(), entry.getKey().intValue());
+		}
+	}
+
+	/**
+	 * Write the current slot contents to the empty market_entry table.
+	 *
+	 * @param transaction DBTransaction
+	 * @param dao market DAO
+	 * @throws SQLException in case of a database error
+	 * @throws IOException in case of a serialization error
+	 */
+	private void migrateEntries(final DBTransaction transaction, final StendhalMarketDAO dao)
+			throws SQLException, IOException {
+		int id = 1;
+		for (final RPObject object : getSlot(OFFERS_SLOT_NAME)) {
+			final Offer offer = (Offer) object;
+			dao.storeEntry(transaction, id, MarketEntryWriter.OFFER, offer.getOfferer(),
+					StendhalMarketDAO.serialize(offer));
+			entryWriter.register(offer, id++);
+		}
+		for (final RPObject object : getSlot(EXPIRED_OFFERS_SLOT_NAME)) {
+			final Offer offer = (Offer) object;
+			dao.storeEntry(transaction, id, MarketEntryWriter.EXPIRED_OFFER, offer.getOfferer(),
+					StendhalMarketDAO.serialize(offer));
+			entryWriter.register(offer, id++);
+		}
+		for (final RPObject object : getSlot(EARNINGS_SLOT_NAME)) {
+			final Earning earning = (Earning) object;
+			dao.storeEntry(transaction, id, MarketEntryWriter.EARNING, earning.getSeller(),
+					StendhalMarketDAO.serialize(earning));
+			entryWriter.register(earning, id++);
+		}
+		if (id > 1) {
+			logger.info("Moved " + (id - 1) + " market entries from the zone to the market_entry table");
+		}
+	}
+
 	/**
 	 * creates a new offer at the market
 	 *
@@ -200,7 +357,8 @@ public class Market extends PassiveEntity {
 		Offer offer = new Offer(item, money, offerer);
 		RPSlot slot = this.getSlot(OFFERS_SLOT_NAME);
 		slot.add(offer);
-		getZone().storeToDatabase();
+		entryWriter.stored(offer, MarketEntryWriter.OFFER, offer.getOfferer());
+		storeWithZone();
 
 		new ItemLogger().addLogItemEventCommand(new LogSimpleItemEventCommand(
 				item, offerer, "slot-to-market", item.get("name"), Integer
@@ -234,6 +392,9 @@ public class Market extends PassiveEntity {
 						offer.getOfferer(), reward);
 				this.getSlot(EARNINGS_SLOT_NAME).add(earning);
 				this.getSlot(OFFERS_SLOT_NAME).remove(offer.getID());
+				entryWriter.removed(offer);
+				entryWriter.stored(earning, MarketEntryWriter.EARNING, earning.getSeller());
+				storeWithZone();
 				if (reward) {
 					applyTradingBonus(acceptingPlayer);
 				}
@@ -252,7 +413,6 @@ public class Market extends PassiveEntity {
 										.toString(getQuantity(item)),
 								"accept offer", slotName));
 
-				this.getZone().storeToDatabase();
 				return true;
 			}
 		}
@@ -260,6 +420,26 @@ public class Market extends PassiveEntity {
 		return false;
 	}
 
+	/**
+	 * Get the writer of the market_entry changes.
+	 *
+	 * @return entry writer
+	 */
+	MarketEntryWriter getEntryWriter() {
+		return entryWriter;
+	}
+
+	/**
+	 * Store the whole market with the zone contents, if it has not been
+	 * loaded from the market_entry table. Otherwise the entry writer takes
+	 * care of storing the changes.
+	 */
+	private void storeWithZone() {
+		if (!entryWriter.isEnabled()) {
+			getZone().storeToDatabase();
+		}
+	}
+
 	/**
 	 * rewards player for a successfull trade
 	 *
@@ -321,8 +501,9 @@ public class Market extends PassiveEntity {
 	public void removeEarnings(Iterable<Earning> earningsToRemove) {
 		for (Earning earning : earningsToRemove) {
 			this.getSlot(EARNINGS_SLOT_NAME).remove(earning.getID());
+			entryWriter.removed(earning);
 		}
-		this.getZone().storeToDatabase();
+		storeWithZone();
 	}
 
 	/**
@@ -362,7 +543,8 @@ public class Market extends PassiveEntity {
 		getExpiredOffers().remove(o);
 		getSlot(EXPIRED_OFFERS_SLOT_NAME).remove(o.getID());
 
-		getZone().storeToDatabase();
+		entryWriter.removed(o);
+		storeWithZone();
 
 		// log the item movement
 		String slotName = null;
@@ -386,7 +568,8 @@ public class Market extends PassiveEntity {
 	public void expireOffer(Offer o) {
 		this.getSlot(OFFERS_SLOT_NAME).remove(o.getID());
 		this.getSlot(EXPIRED_OFFERS_SLOT_NAME).add(o);
-		this.getZone().storeToDatabase();
+		entryWriter.stored(o, MarketEntryWriter.EXPIRED_OFFER, o.getOfferer());
+		storeWithZone();
 		String itemname = "null";
 		if (o.hasItem()) {
 			itemname = o.getItem().getName();
@@ -412,14 +595,14 @@ public class Market extends PassiveEntity {
 	 */
 	public void removeExpiredOffer(Offer offerToRemove) {
 		this.getSlot(EXPIRED_OFFERS_SLOT_NAME).remove(offerToRemove.getID());
+		entryWriter.removed(offerToRemove);
+		storeWithZone();
 
 		Item item = offerToRemove.getItem();
 		if (item != null) {
 			new ItemLogger().destroy(null, this.getSlot(EXPIRED_OFFERS_SLOT_NAME),
 					item, "timeout");
 		}
-
-		this.getZone().storeToDatabase();
 	}
 
 	/**
@@ -441,7 +624,8 @@ public class Market extends PassiveEntity {
 			return null;
 		}
 
-		this.getZone().storeToDatabase();
+		entryWriter.stored(offer, MarketEntryWriter.OFFER, offer.getOfferer());
+		storeWithZone();
 		return offer;
 	}
 
@@ -0,0 +1,192 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.trade;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.server.core.engine.dbcommand.WriteMarketEntriesCommand;
+import games.stendhal.server.core.events.TurnListener;
+import games.stendhal.server.core.events.TurnNotifier;
+import games.stendhal.server.entity.Entity;
+import marauroa.server.db.command.DBCommandQueue;
+
+/**
+ * Collects the changed offers and earnings of a market, and writes them to
+ * the market_entry table at the end of the turn. Several changes of the same
+ * entry during a turn result in a single write. The writer does nothing until
+ * it is enabled, which happens when the market has been loaded from the
+ * table.
+ */
+final class MarketEntryWriter implements TurnListener {
+	private static final Logger logger = Logger.getLogger(MarketEntryWriter.class);
+
+	/** Entry type of active offers. */
+	static final String OFFER = "offer";
+	/** Entry type of expired offers. */
+	static final String EXPIRED_OFFER = "expired";
+	/** Entry type of earnings. */
+	static final String EARNING = "earning";
+
+	/** Database ids of the entries. */
+	private final Map<Entity, Integer> ids = new IdentityHashMap<Entity, Integer>();
+	/** Entries changed during this turn, by id. */
+	private final Map<Integer, Change> changes = new LinkedHashMap<Integer, Change>();
+	/** The next free entry id. */
+	private int nextId = 1;
+	/** <code>true</code> if the changes are written to the table. */
+	private boolean enabled;
+	/** <code>true</code> if a write has been scheduled for this turn. */
+	private boolean scheduled;
+
+	/**
+	 * Start writing the changes to the table.
+	 */
+	void enable() {
+		enabled = true;
+	}
+
+	/**
+	 * Check if the changes are written to the table.
+	 *
+	 * @return <code>true</code> if the writer is enabled
+	 */
+	boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Set the first id to use for new entries.
+	 *
+	 * @param id first unused id
+	 */
+	void setNextId(final int id) {
+		nextId = id;
+	}
+
+	/**
+	 * Remember the id of an entry loaded from the database.
+	 *
+	 * @param entry offer or earning
+	 * @param id database id
+	 */
+	void register(final Entity entry, final int id) {
+		ids.put(entry, Integer.valueOf(id));
+		nextId = Math.max(nextId, id + 1);
+	}
+
+	/**
+	 * Mark an entry as added or changed.
+	 *
+	 * @param entry offer or earning
+	 * @param entryType type of the entry
+	 * @param charname name of the character owning the entry
+	 */
+	void stored(final Entity entry, final String entryType, final String charname) {
+		if (!enabled) {
+			return;
+		}
+		Integer id = ids.get(entry);
+		if (id == null) {
+			id = Integer.valueOf(nextId++);
+			ids.put(entry, id);
+		}
+		changes.put(id, new Change(entry, entryType, charname));
+		schedule();
+	}
+
+	/**
+	 * Mark an entry as removed.
+	 *
+	 * @param entry offer or earning
+	 */
+	void removed(final Entity entry) {
+		if (!enabled) {
+			return;
+		}
+		final Integer id = ids.remove(entry);
+		if (id != null) {
+			changes.put(id, new Change(null, null, null));
+			schedule();
+		}
+	}
+
+	private void schedule() {
+		if (!scheduled) {
+			scheduled = true;
+			TurnNotifier.get().notifyInTurns(0, this);
+		}
+	}
+
+	@Override
+	public void onTurnReached(final int currentTurn) {
+		scheduled = false;
+		flush();
+	}
+
+	/**
+	 * Write the pending changes.
+	 */
+	private void flush() {
+		final WriteMarketEntriesCommand command = createCommand();
+		if (command != null) {
+			DBCommandQueue.get().enqueue(command);
+		}
+	}
+
+	/**
+	 * Create a command for writing the pending changes, and forget them.
+	 *
+	 * @return command, or <code>null</code> if there are no changes
+	 */
+	WriteMarketEntriesCommand createCommand() {
+		if (changes.isEmpty()) {
+			return null;
+		}
+		final WriteMarketEntriesCommand command = new WriteMarketEntriesCommand();
+		for (final Map.Entry<Integer, Change> entry : changes.entrySet()) {
+			final int id = entry.getKey().intValue();
+			final Change change = entry.getValue();
+			if (change.entry == null) {
+				command.delete(id);
+			} else {
+				try {
+					command.store(id, change.entryType, change.charname, change.entry);
+				} catch (final IOException e) {
+					logger.error("Cannot serialize market entry " + id, e);
+				}
+			}
+		}
+		changes.clear();
+		return command;
+	}
+
+	/**
+	 * A changed entry.
+	 */
+	private static final class Change {
+		/** The changed entry, or <code>null</code> if it was removed. */
+		private final Entity entry;
+		private final String entryType;
+		private final String charname;
+
+		Change(final Entity entry, final String entryType, final String charname) {
+			this.entry = entry;
+			this.entryType = entryType;
+			this.charname = charname;
+		}
+	}
+}
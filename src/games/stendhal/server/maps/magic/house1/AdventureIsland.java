@@ -17,8 +17,10 @@ import java.awt.geom.Rectangle2D;
 import org.apache.log4j.Logger;
 
 import games.stendhal.common.Rand;
+import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.Spot;
 import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.ZoneInstancePool;
 import games.stendhal.server.core.events.MovementListener;
 import games.stendhal.server.core.events.TurnNotifier;
 import games.stendhal.server.core.rp.StendhalRPAction;
@@ -50,6 +52,18 @@ public class AdventureIsland extends StendhalRPZone {
 	/** The creatures spawned are between player level * ratio and player level. */
 	private static final double LEVEL_RATIO = 0.75;
 
+	/** Name of the template zone of the islands. */
+	private static final String TEMPLATE_ZONE = "int_adventure_island";
+
+	/** Unused island zones. */
+	private static final ZoneInstancePool<AdventureIsland> pool = new ZoneInstancePool<AdventureIsland>(
+			new ZoneInstancePool.Factory<AdventureIsland>() {
+				@Override
+				public AdventureIsland create(final String name) {
+					return new AdventureIsland(name, SingletonRepository.getRPWorld().getZone(TEMPLATE_ZONE));
+				}
+			});
+
 	private int numCreatures;
 
 
@@ -61,6 +75,31 @@ public class AdventureIsland extends StendhalRPZone {
 
 	}
 
+	/**
+	 * Create an empty island.
+	 *
+	 * @param name zone name
+	 * @param zone template zone
+	 */
+	private AdventureIsland(final String name, final StendhalRPZone zone) {
+		super(name, zone);
+	}
+
+	/**
+	 * Get an island for a player. The island is taken from the pool of unused
+	 * islands if possible, and returned there when it is removed from the
+	 * world.
+	 *
+	 * @param name zone name
+	 * @param player player who gets the island
+	 * @return island zone
+	 */
+	public static AdventureIsland create(final String name, final Player player) {
+		final AdventureIsland island = pool.acquire(name);
+		island.init(player);
+		return island;
+	}
+
 	private void init(final Player player) {
 		Portal portal = new Teleporter(new Spot(player.getZone(), player.getX(), player.getY()));
 		portal.setPosition(6, 3);
@@ -72,11 +72,9 @@ public class ChallengerNPC implements ZoneConfigurator  {
 				return;
 			}
 			// now set up the new zone
-			final StendhalRPZone challengezone = (StendhalRPZone) SingletonRepository
-			.getRPWorld().getRPZone("int_adventure_island");
 			String zoneName = player.getName() + "_adventure_island";
 
-			final AdventureIsland zone = new AdventureIsland(zoneName, challengezone, player);
+			final AdventureIsland zone = AdventureIsland.create(zoneName, player);
 
 			// add a colour to the zone
 			ZoneAttributes attr = new ZoneAttributes(zone);
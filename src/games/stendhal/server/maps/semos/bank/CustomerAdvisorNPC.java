@@ -38,11 +38,9 @@ public class CustomerAdvisorNPC implements ZoneConfigurator {
 
 		@Override
 		public void fire(final Player player, final Sentence sentence, final EventRaiser npc) {
-			final StendhalRPZone vaultzone = (StendhalRPZone) SingletonRepository
-					.getRPWorld().getRPZone("int_vault");
 			String zoneName = player.getName() + "_vault";
 
-			final StendhalRPZone zone = new Vault(zoneName, vaultzone, player);
+			final StendhalRPZone zone = Vault.create(zoneName, player);
 
 
 			SingletonRepository.getRPWorld().addRPZone(zone);
@@ -21,6 +21,7 @@ import games.stendhal.server.core.engine.ItemLogger;
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.Spot;
 import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.ZoneInstancePool;
 import games.stendhal.server.core.events.GuaranteedDelayedPlayerTextSender;
 import games.stendhal.server.core.events.MovementListener;
 import games.stendhal.server.core.events.TurnNotifier;
@@ -34,6 +35,17 @@ import games.stendhal.server.entity.mapstuff.sign.Sign;
 import games.stendhal.server.entity.player.Player;
 
 public class Vault extends StendhalRPZone {
+	/** Name of the template zone of the vaults. */
+	private static final String TEMPLATE_ZONE = "int_vault";
+
+	/** Unused vault zones. */
+	private static final ZoneInstancePool<Vault> pool = new ZoneInstancePool<Vault>(
+			new ZoneInstancePool.Factory<Vault>() {
+				@Override
+				public Vault create(final String name) {
+					return new Vault(name, SingletonRepository.getRPWorld().getZone(TEMPLATE_ZONE));
+				}
+			});
 
 	private PersonalChest chest;
 
@@ -45,6 +57,31 @@ public class Vault extends StendhalRPZone {
 
 	}
 
+	/**
+	 * Create an empty vault.
+	 *
+	 * @param name zone name
+	 * @param zone template zone
+	 */
+	private Vault(final String name, final StendhalRPZone zone) {
+		super(name, zone);
+	}
+
+	/**
+	 * Get a vault for a player. The vault is taken from the pool of unused
+	 * vaults if possible, and returned there when it is removed from the
+	 * world.
+	 *
+	 * @param name zone name
+	 * @param player player who gets the vault
+	 * @return vault zone
+	 */
+	public static Vault create(final String name, final Player player) {
+		final Vault vault = pool.acquire(name);
+		vault.init(player);
+		return vault;
+	}
+
 	private void init(final Player player) {
 		Portal portal = new Teleporter(new Spot(player.getZone(),
 				player.getX(), player.getY()));
@@ -45,6 +45,9 @@ public class DumpTurnListenerEvents extends ScriptImpl {
 		// send result
 		admin.sendPrivateText("Statistics: " + "\n" + counter.getMap()
 				+ "\nCounted turn events:" + events.size()
-				+ "\nOutdated turn events: " + outdated);
+				+ "\nOutdated turn events: " + outdated
+				+ "\nEvents fired last turn: " + turnNotifier.getEventsFiredLastTurn()
+				+ "\nSlowest listener last turn: " + turnNotifier.getLongestListener()
+				+ " (" + (turnNotifier.getLongestListenerRuntime() / 1000) + " microseconds)");
 	}
 }
@@ -292,3 +292,28 @@ CREATE TABLE IF NOT EXISTS searchindex
   
 CREATE INDEX IF NOT EXISTS i_searchindex_searchterm ON searchindex(searchterm);
 CREATE INDEX IF NOT EXISTS i_searchindex_entitytype_entityname ON searchindex(entitytype, entityname);
+
+
+CREATE TABLE IF NOT EXISTS market_entry
+  (
+  id               INTEGER NOT NULL,
+  entrytype        VARCHAR(8),
+  charname         VARCHAR(32),
+  data             BLOB,
+  protocol_version INTEGER,
+  timedate         TIMESTAMP default CURRENT_TIMESTAMP,
+  PRIMARY KEY(id)
+  );
+
+CREATE INDEX IF NOT EXISTS i_market_entry_entrytype ON market_entry(entrytype);
+
+
+CREATE TABLE IF NOT EXISTS rpobject_section
+  (
+  object_id        INTEGER NOT NULL,
+  name             VARCHAR(32) NOT NULL,
+  digest           VARCHAR(40),
+  data             BLOB,
+  protocol_version INTEGER,
+  PRIMARY KEY(object_id, name)
+  );
@@ -0,0 +1,169 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.playerUpdate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.server.core.engine.StendhalRPWorld;
+import games.stendhal.server.core.engine.db.CharacterIterator;
+import games.stendhal.server.core.engine.db.StendhalRPObjectDAO;
+import marauroa.common.game.DetailLevel;
+import marauroa.common.game.RPObject;
+import marauroa.common.game.RPSlot;
+import marauroa.common.net.InputSerializer;
+import marauroa.common.net.NetConst;
+import marauroa.common.net.OutputSerializer;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.TransactionPool;
+import marauroa.server.game.db.DAORegister;
+import marauroa.server.game.db.DatabaseFactory;
+import marauroa.server.game.db.RPObjectDAO;
+
+/**
+ * Checks that characters saved with their slots split into sections load
+ * the same as when saved as a whole. Each character is stored and loaded
+ * again, and compared to the character written and read back as a single
+ * object. The changes to the database are rolled back.
+ */
+public class CheckCharacterSections {
+	private static Logger logger = Logger.getLogger(CheckCharacterSections.class);
+
+	/**
+	 * Store an object, load it again and compare it to a full save.
+	 *
+	 * @param transaction DBTransaction
+	 * @param object character object
+	 * @return descriptions of the differences; empty if the loaded object is
+	 * 	the same as the fully saved one
+	 * @throws SQLException in case of an database error
+	 * @throws IOException in case of a serialization error
+	 */
+	public List<String> check(final DBTransaction transaction, final RPObject object)
+			throws SQLException, IOException {
+		final RPObject full = fullSave(object);
+		final RPObjectDAO rpObjectDAO = DAORegister.get().get(RPObjectDAO.class);
+		final int objectid = rpObjectDAO.storeRPObject(transaction, object);
+		final RPObject loaded = rpObjectDAO.loadRPObject(transaction, objectid, false);
+		return compare(full, loaded);
+	}
+
+	/**
+	 * Write an object and read it back as a whole, the same way it would be
+	 * done when storing it in a single row.
+	 *
+	 * @param object object
+	 * @return copy of the object
+	 * @throws IOException in case of a serialization error
+	 */
+	private RPObject fullSave(final RPObject object) throws IOException {
+		final ByteArrayOutputStream array = new ByteArrayOutputStream();
+		final OutputSerializer out = new OutputSerializer(array);
+		out.setProtocolVersion(NetConst.NETWORK_PROTOCOL_VERSION);
+		object.writeObject(out, DetailLevel.FULL);
+
+		final InputSerializer in = new InputSerializer(new ByteArrayInputStream(array.toByteArray()));
+		in.setProtocolVersion(NetConst.NETWORK_PROTOCOL_VERSION);
+		return (RPObject) in.readObject(new RPObject());
+	}
+
+	/**
+	 * Compare two objects. The order of the slots is ignored.
+	 *
+	 * @param expected fully saved object
+	 * @param actual object saved with sections
+	 * @return descriptions of the differences
+	 * @throws IOException in case of a serialization error
+	 */
+	private List<String> compare(final RPObject expected, final RPObject actual) throws IOException {
+		final List<String> differences = new ArrayList<String>();
+
+		final Set<String> attributes = new TreeSet<String>();
+		for (final String attribute : expected) {
+			attributes.add(attribute);
+		}
+		for (final String attribute : actual) {
+			attributes.add(attribute);
+		}
+		attributes.remove("#db_id");
+		for (final String attribute : attributes) {
+			final String value = expected.get(attribute);
+			if ((value == null) ? actual.has(attribute) : !value.equals(actual.get(attribute))) {
+				differences.add("attribute " + attribute);
+			}
+		}
+
+		if (!expected.maps().equals(actual.maps())) {
+			differences.add("maps");
+		}
+
+		final Set<String> slots = new TreeSet<String>();
+		for (final RPSlot slot : expected.slots()) {
+			slots.add(slot.getName());
+		}
+		for (final RPSlot slot : actual.slots()) {
+			slots.add(slot.getName());
+		}
+		for (final String slot : slots) {
+			if (!expected.hasSlot(slot) || !actual.hasSlot(slot)
+					|| !Arrays.equals(StendhalRPObjectDAO.serialize(expected.getSlot(slot)),
+							StendhalRPObjectDAO.serialize(actual.getSlot(slot)))) {
+				differences.add("slot " + slot);
+			}
+		}
+
+		return differences;
+	}
+
+	/**
+	 * Check all characters.
+	 *
+	 * @return number of characters with differences
+	 */
+	private int checkAll() {
+		int failed = 0;
+		final DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			for (final RPObject object : new CharacterIterator(transaction, false)) {
+				if (object == null) {
+					continue;
+				}
+				final List<String> differences = check(transaction, object);
+				if (!differences.isEmpty()) {
+					System.out.println(object.get("name") + ": " + differences);
+					failed++;
+				}
+			}
+		} catch (final Exception e) {
+			logger.error(e, e);
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+		return failed;
+	}
+
+	public static void main(final String[] args) {
+		new DatabaseFactory().initializeDatabase();
+		StendhalRPWorld.get();
+		final int failed = new CheckCharacterSections().checkAll();
+		System.out.println(failed + " characters differ");
+	}
+}
@@ -123,16 +123,49 @@ stendhal.data.map = {
 	},
 
 	httpRequest: -1,
-	requestMap: function(url) {
+
+	/**
+	 * creates a request object.
+	 */
+	createRequest: function() {
 		if (window.XMLHttpRequest) {
-			this.httpRequest = new XMLHttpRequest();
+			return new XMLHttpRequest();
 		} else if (window.ActiveXObject) {
 			try {
-				this.httpRequest = new ActiveXObject("Msxml2.XMLHTTP");
+				return new ActiveXObject("Msxml2.XMLHTTP");
 			} catch (e) {
-				this.httpRequest = new ActiveXObject("Microsoft.XMLHTTP");
+				return new ActiveXObject("Microsoft.XMLHTTP");
 			}
 		}
+	},
+
+	/**
+	 * requests a map in the compact binary format, and falls back to the
+	 * tmx file if the browser or the server do not support it.
+	 */
+	requestCompactMap: function(url, tmxUrl) {
+		var request = this.createRequest();
+		if (!window.Uint8Array || !("responseType" in request)) {
+			this.requestMap(tmxUrl);
+			return;
+		}
+		this.httpRequest = request;
+		request.onreadystatechange = function() {
+			if (request.readyState != 4 || stendhal.data.map.httpRequest !== request) {
+				return;
+			}
+			if (request.status != 200 || !request.response
+					|| !stendhal.data.map.parseCompactMap(new Uint8Array(request.response))) {
+				stendhal.data.map.requestMap(tmxUrl);
+			}
+		};
+		request.open('GET', url, true);
+		request.responseType = "arraybuffer";
+		request.send(null);
+	},
+
+	requestMap: function(url) {
+		this.httpRequest = this.createRequest();
 		if (this.httpRequest.overrideMimeType) {
 			this.httpRequest.overrideMimeType('text/xml');
 		}
@@ -180,21 +213,89 @@ stendhal.data.map = {
 				var decoder = new JXG.Util.Unzip(JXG.Util.Base64.decodeAsArray(mapData));
 				var data = decoder.unzip()[0][0];
 				this.readLayer(layerName, data);
-				if (layerName == "collision") {
-					this.collisionData = this.layers[this.layers.length - 1];
-				} else if (layerName === "protection") {
-					this.protection = this.layers[this.layers.length - 1];
-				}
 			}
 		}
+
+		this.numberOfXTiles = root.getAttribute("width");
+		this.numberOfYTiles = root.getAttribute("height");
+		this.onMapLoaded(images);
+	},
+
+	/**
+	 * parses a map in the compact binary format, see CompactMapFormat on the
+	 * server side.
+	 *
+	 * @param bytes gzip compressed map data
+	 * @return <code>true</code> if the map could be parsed
+	 */
+	parseCompactMap: function(bytes) {
+		var data = new JXG.Util.Unzip(bytes).unzip();
+		if (!data.length) {
+			return false;
+		}
+		data = data[0][0];
+		var pos = 0;
+		function readInt() {
+			var value = (data.charCodeAt(pos) >>> 0)
+				+ (data.charCodeAt(pos + 1) << 8)
+				+ (data.charCodeAt(pos + 2) << 16)
+				+ (data.charCodeAt(pos + 3) << 24);
+			pos += 4;
+			return value;
+		}
+		function readString() {
+			var length = readInt();
+			var value = data.substr(pos, length);
+			pos += length;
+			return decodeURIComponent(escape(value));
+		}
+
+		if (data.substr(0, 4) !== "SMAP") {
+			return false;
+		}
+		pos = 4;
+		if (readInt() !== 1) {
+			return false;
+		}
+		var images = new Array;
+		this.firstgids = new Array;
+		this.layers = new Array;
+		this.layerNames = new Array;
+
+		// stendhal maps always use 32 pixel tiles
+		this.tileWidth = 32;
+		this.tileHeight = 32;
+		this.zoneSizeX = readInt();
+		this.zoneSizeY = readInt();
+
+		var count = readInt();
+		for (var i = 0; i < count; i++) {
+			images.push(this.toTilesetFilename(readString()));
+			this.firstgids.push(readInt());
+		}
+		count = readInt();
+		var layerSize = this.zoneSizeX * this.zoneSizeY * 4;
+		for (var i = 0; i < count; i++) {
+			var layerName = readString();
+			this.readLayer(layerName, data.substr(pos, layerSize));
+			pos += layerSize;
+		}
+
+		this.numberOfXTiles = this.zoneSizeX;
+		this.numberOfYTiles = this.zoneSizeY;
+		this.onMapLoaded(images);
+		return true;
+	},
+
+	/**
+	 * loads the tilesets of a parsed map.
+	 */
+	onMapLoaded: function(images) {
 		new ImagePreloader(images, function() {
 			var body = document.getElementById("body");
 			body.style.cursor = "auto";
 		});
 
-		this.numberOfXTiles = root.getAttribute("width");
-		this.numberOfYTiles = root.getAttribute("height");
-
 		// create a lookup table from gid to tileset index for a significant performance reasons
 		this.gidsindex = new Array;
 		var pos, lastStart = 0, i;
@@ -212,6 +313,10 @@ stendhal.data.map = {
 		if (image.length > 0) {
 			name = image[0].getAttribute("source");
 		}
+		return this.toTilesetFilename(name);
+	},
+
+	toTilesetFilename: function(name) {
 		return "/" + name.replace(/\.\.\/\.\.\//g, "");
 	},
 
@@ -230,6 +335,11 @@ stendhal.data.map = {
 		}
 		this.layerNames.push(name);
 		this.layers.push(layer);
+		if (name == "collision") {
+			this.collisionData = layer;
+		} else if (name === "protection") {
+			this.protection = layer;
+		}
 	},
 
 	load: function(locat) {
@@ -246,12 +356,12 @@ stendhal.data.map = {
 				} else {
 					temp[1] = "Level " + temp[1];
 				}
-				filename = "/tiled/" + escape(temp[1]) + "/" + escape(temp[2]) + "/" + escape(temp[3]) + ".tmx";
+				filename = escape(temp[1]) + "/" + escape(temp[2]) + "/" + escape(temp[3]);
 			} else {
 				var temp = /[^_]*_(.*)/.exec(locat);
-				filename = "/tiled/interiors/abstract/" + escape(temp[1]) + ".tmx";
+				filename = "interiors/abstract/" + escape(temp[1]);
 			}
-			this.requestMap(filename);
+			this.requestCompactMap("/map/" + filename + ".bin", "/tiled/" + filename + ".tmx");
 		}
 	},
 	
@@ -0,0 +1,81 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+import games.stendhal.client.sprite.AnimatedSprite;
+import games.stendhal.client.sprite.EmptySprite;
+import games.stendhal.client.sprite.ImageSprite;
+import games.stendhal.client.sprite.Sprite;
+
+/**
+ * Tests for TileChunkCache.
+ */
+public class TileChunkCacheTest {
+	private static TileChunkCache.Chunk createChunk() {
+		// 16 * 16 * 4 = 1024 bytes
+		return new TileChunkCache.Chunk(new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB), new int[0]);
+	}
+
+	/**
+	 * Chunks should be dropped in least recently used order.
+	 */
+	@Test
+	public void testEviction() {
+		TileChunkCache cache = new TileChunkCache(3000);
+		assertTrue(cache.isEnabled());
+		LayerRenderer layer = new EmptyLayerRenderer();
+		TileChunkCache.Chunk first = createChunk();
+		cache.put(layer, 0, 0, first);
+		cache.put(layer, 1, 0, createChunk());
+		assertEquals(2048, cache.getMemoryUsage());
+
+		// use the first, so that the second is the oldest
+		assertSame(first, cache.get(layer, 0, 0));
+		cache.put(layer, 0, 1, createChunk());
+		assertEquals(2, cache.size());
+		assertNull(cache.get(layer, 1, 0));
+		assertNotNull(cache.get(layer, 0, 0));
+		assertNotNull(cache.get(layer, 0, 1));
+		assertNull("chunks of other layers are separate", cache.get(new EmptyLayerRenderer(), 0, 0));
+
+		// empty chunks take no memory
+		cache.put(layer, 5, 5, new TileChunkCache.Chunk(null, new int[] { 1 }));
+		assertEquals(3, cache.size());
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getMemoryUsage());
+		assertFalse(new TileChunkCache(0).isEnabled());
+	}
+
+	/**
+	 * Only animated sprites should need drawing separately.
+	 */
+	@Test
+	public void testIsStatic() {
+		Sprite image = new ImageSprite(new BufferedImage(32, 32, BufferedImage.TYPE_INT_ARGB));
+		assertTrue(TileChunkCache.isStatic(image));
+		assertTrue(TileChunkCache.isStatic(new EmptySprite(32, 32, null)));
+		assertFalse(TileChunkCache.isStatic(new AnimatedSprite(new Sprite[] { image, image }, 100, true)));
+	}
+}
@@ -0,0 +1,109 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client.sprite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import games.stendhal.client.sprite.SpriteCache.Region;
+
+/**
+ * Tests for SpriteCache.
+ */
+public class SpriteCacheTest {
+	private static Sprite createSprite(int size) {
+		return new ImageSprite(new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB));
+	}
+
+	/**
+	 * Sprites should be dropped in least recently used order when the budget
+	 * of the region is exceeded.
+	 */
+	@Test
+	public void testEviction() {
+		// room for two 16x16 sprites
+		SpriteCache cache = new SpriteCache(2 * SpriteCache.estimateSize(createSprite(16)) + 10);
+		Sprite first = createSprite(16);
+		cache.add(Region.OUTFITS, "first", first);
+		cache.add(Region.OUTFITS, "second", createSprite(16));
+		assertSame(first, cache.get(Region.OUTFITS, "first"));
+		cache.add(Region.OUTFITS, "third", createSprite(16));
+
+		assertNull(cache.get(Region.OUTFITS, "second"));
+		assertSame(first, cache.get(Region.OUTFITS, "first"));
+		assertEquals(1, cache.getEvictions(Region.OUTFITS));
+		assertEquals(2, cache.getHits(Region.OUTFITS));
+		assertEquals(1, cache.getMisses(Region.OUTFITS));
+		assertEquals(2 * SpriteCache.estimateSize(first), cache.getMemoryUsage(Region.OUTFITS));
+	}
+
+	/**
+	 * The regions should have separate budgets.
+	 */
+	@Test
+	public void testRegions() {
+		SpriteCache cache = new SpriteCache(SpriteCache.estimateSize(createSprite(16)));
+		Sprite tile = createSprite(16);
+		cache.add(Region.TILES, "sprite", tile);
+		cache.add(Region.OUTFITS, "sprite", createSprite(16));
+		cache.add(Region.OUTFITS, "other", createSprite(16));
+
+		assertSame(tile, cache.get(Region.TILES, "sprite"));
+		assertNull(cache.get(Region.OUTFITS, "sprite"));
+		assertNull(cache.get("sprite"));
+		assertEquals(0, cache.getEvictions(Region.TILES));
+		assertEquals(1, cache.getEvictions(Region.OUTFITS));
+
+		// a sprite bigger than the budget is kept until something else is added
+		Sprite big = createSprite(64);
+		cache.add(Region.EFFECTS, "big", big);
+		assertSame(big, cache.get(Region.EFFECTS, "big"));
+	}
+
+	/**
+	 * Composites should be charged for the images they create.
+	 */
+	@Test
+	public void testCompositeSize() {
+		// Copying images needs a screen
+		assumeFalse(GraphicsEnvironment.isHeadless());
+		SpriteCache cache = new SpriteCache(1024L * 1024L);
+		List<Sprite> layers = new ArrayList<Sprite>();
+		layers.add(createSprite(16));
+		layers.add(createSprite(16));
+		Sprite composite = CompositeSprite.getComposite(cache, layers, null, null);
+		long before = cache.getMemoryUsage(Region.TILES);
+
+		// The layers are merged to a new image
+		assertTrue(((CompositeSprite) composite).isStatic());
+		assertEquals(before + SpriteCache.estimateSize(createSprite(16)), cache.getMemoryUsage(Region.TILES));
+	}
+
+	/**
+	 * Tile regions should be charged for their area.
+	 */
+	@Test
+	public void testTileSize() {
+		Sprite tile = new TileSprite(createSprite(64), 0, 0, 16, 16, "tile");
+		assertEquals(SpriteCache.estimateSize(createSprite(16)), SpriteCache.estimateSize(tile));
+	}
+}
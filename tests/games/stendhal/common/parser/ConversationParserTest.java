@@ -17,7 +17,9 @@ import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -593,4 +595,20 @@ public class ConversationParserTest {
 		assertNull(sentence.getObjectName());
 		assertFalse(sentence.hasError());
 	}
+
+	/**
+	 * Tests for parseCached.
+	 */
+	@Test
+	public final void testParseCached() {
+		final Sentence sentence = ConversationParser.parseCached("buy 3 cookies");
+		assertEquals("buy cookie", sentence.getNormalized());
+		assertSame(sentence, ConversationParser.parseCached("buy 3 cookies"));
+		assertNotSame(sentence, ConversationParser.parseCached("buy 4 cookies"));
+
+		// a changed word list invalidates the cached result
+		final Sentence unknown = ConversationParser.parseCached("gimme zzyzxqq");
+		WordList.getInstance().registerName("zzyzxqq", ExpressionType.OBJECT);
+		assertNotSame(unknown, ConversationParser.parseCached("gimme zzyzxqq"));
+	}
 }
@@ -0,0 +1,62 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.benchmark;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A server benchmark run by {@link BenchmarkRunner}. The runner calls
+ * {@link #setUp()} once, then {@link #run()} repeatedly while measuring the
+ * time, and finally {@link #tearDown()}.
+ */
+public abstract class Benchmark {
+	/**
+	 * Get the name of the benchmark.
+	 *
+	 * @return name
+	 */
+	public String getName() {
+		return getClass().getSimpleName();
+	}
+
+	/**
+	 * Get the parameters the benchmark was set up with. They are included in
+	 * the results, so that only comparable results get compared.
+	 *
+	 * @return parameter names mapped to their values
+	 */
+	public Map<String, Object> getParameters() {
+		return Collections.emptyMap();
+	}
+
+	/**
+	 * Prepare the benchmark state.
+	 */
+	public abstract void setUp();
+
+	/**
+	 * Run one operation of the benchmark.
+	 *
+	 * @return any value depending on the result of the operation. The runner
+	 * 	uses it so that the measured work can not be optimized away
+	 */
+	public abstract int run();
+
+	/**
+	 * Release the benchmark state, so that it does not disturb the
+	 * benchmarks run after this one.
+	 */
+	public void tearDown() {
+		// nothing to release by default
+	}
+}
@@ -0,0 +1,268 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Runs the server benchmarks and writes the results as JSON. The layout of
+ * the results follows the JSON output of JMH, so that the results of
+ * different builds can be compared with the usual tools.
+ * <p>
+ * Run with <code>java games.stendhal.server.benchmark.BenchmarkRunner
+ * [result file]</code>, or with <code>ant benchmark</code>. The run can be
+ * adjusted with the system properties
+ * <ul>
+ * 	<li><code>benchmark.filter</code>: regular expression for the names of
+ * 		the benchmarks to run</li>
+ * 	<li><code>benchmark.warmup</code>: number of warm up iterations</li>
+ * 	<li><code>benchmark.iterations</code>: number of measured iterations</li>
+ * 	<li><code>benchmark.time</code>: length of an iteration in
+ * 		milliseconds</li>
+ * 	<li><code>benchmark.players</code>: number of players in the turn
+ * 		cycle benchmark</li>
+ * </ul>
+ */
+public class BenchmarkRunner {
+	private static final Logger logger = Logger.getLogger(BenchmarkRunner.class);
+
+	/** Student's t quantiles for a 99.9% confidence interval, by degrees of freedom. */
+	private static final double[] T_QUANTILES = { 636.619, 31.599, 12.924,
+		8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587 };
+
+	/** Keeps the benchmark results alive, so that the work is not optimized away. */
+	private static volatile int sink;
+
+	private final int warmupIterations;
+	private final int iterations;
+	private final long iterationTime;
+
+	/**
+	 * Create a new BenchmarkRunner.
+	 *
+	 * @param warmupIterations number of warm up iterations
+	 * @param iterations number of measured iterations
+	 * @param iterationTime length of an iteration in milliseconds
+	 */
+	public BenchmarkRunner(int warmupIterations, int iterations, long iterationTime) {
+		this.warmupIterations = warmupIterations;
+		this.iterations = Math.max(1, iterations);
+		this.iterationTime = iterationTime;
+	}
+
+	public static void main(String[] args) throws IOException {
+		File output = new File((args.length > 0) ? args[0] : "benchmark.json");
+		Pattern filter = Pattern.compile(System.getProperty("benchmark.filter", ".*"));
+		BenchmarkRunner runner = new BenchmarkRunner(Integer.getInteger("benchmark.warmup", 3),
+				Integer.getInteger("benchmark.iterations", 5),
+				Long.getLong("benchmark.time", 1000L));
+
+		MockStendlRPWorld.get();
+		List<Benchmark> benchmarks = Arrays.asList(
+				new PathSearchBenchmark(),
+				new ZoneCollisionBenchmark(),
+				new NPCConversationBenchmark(),
+				new ConversationParserBenchmark(),
+				new IsEquippedBenchmark(),
+				new ItemCreationBenchmark(false),
+				new ItemCreationBenchmark(true),
+				new TurnNotifierBenchmark(),
+				new TurnCycleBenchmark(Integer.getInteger("benchmark.players", 100)));
+
+		StringBuilder json = new StringBuilder("[\n");
+		boolean first = true;
+		for (Benchmark benchmark : benchmarks) {
+			if (!filter.matcher(benchmark.getName()).matches()) {
+				continue;
+			}
+			double[] scores = runner.measure(benchmark);
+			if (!first) {
+				json.append(",\n");
+			}
+			first = false;
+			runner.appendResult(json, benchmark, scores);
+			System.out.printf("%-30s %12.3f us/op%n", benchmark.getName(), mean(scores));
+		}
+		json.append("\n]\n");
+
+		File dir = output.getAbsoluteFile().getParentFile();
+		if (dir != null) {
+			dir.mkdirs();
+		}
+		Writer writer = new OutputStreamWriter(new FileOutputStream(output), "UTF-8");
+		try {
+			writer.write(json.toString());
+		} finally {
+			writer.close();
+		}
+		System.out.println("Results written to " + output);
+		System.exit(0);
+	}
+
+	/**
+	 * Run a benchmark.
+	 *
+	 * @param benchmark benchmark to run
+	 * @return average time of an operation in microseconds for each measured
+	 * 	iteration
+	 */
+	double[] measure(Benchmark benchmark) {
+		logger.info("Running " + benchmark.getName());
+		benchmark.setUp();
+		try {
+			for (int i = 0; i < warmupIterations; i++) {
+				runIteration(benchmark);
+			}
+			double[] scores = new double[iterations];
+			for (int i = 0; i < iterations; i++) {
+				scores[i] = runIteration(benchmark);
+			}
+			return scores;
+		} finally {
+			benchmark.tearDown();
+		}
+	}
+
+	/**
+	 * Run operations until the iteration time has passed.
+	 *
+	 * @param benchmark benchmark to run
+	 * @return average time of an operation in microseconds
+	 */
+	private double runIteration(Benchmark benchmark) {
+		final long end = System.nanoTime() + iterationTime * 1000000L;
+		final long start = System.nanoTime();
+		long now;
+		long operations = 0;
+		int result = 0;
+		do {
+			result += benchmark.run();
+			operations++;
+			now = System.nanoTime();
+		} while (now < end);
+		sink += result;
+		return (now - start) / 1000.0 / operations;
+	}
+
+	/**
+	 * Append the result of a benchmark as a JSON object.
+	 *
+	 * @param json buffer to append to
+	 * @param benchmark the benchmark
+	 * @param scores iteration scores
+	 */
+	private void appendResult(StringBuilder json, Benchmark benchmark, double[] scores) {
+		json.append("  {\n");
+		json.append("    \"benchmark\" : ").append(quote(benchmark.getClass().getName())).append(",\n");
+		json.append("    \"mode\" : \"avgt\",\n");
+		json.append("    \"warmupIterations\" : ").append(warmupIterations).append(",\n");
+		json.append("    \"warmupTime\" : \"").append(iterationTime).append(" ms\",\n");
+		json.append("    \"measurementIterations\" : ").append(iterations).append(",\n");
+		json.append("    \"measurementTime\" : \"").append(iterationTime).append(" ms\",\n");
+		json.append("    \"params\" : {");
+		boolean first = true;
+		for (Map.Entry<String, Object> entry : benchmark.getParameters().entrySet()) {
+			if (!first) {
+				json.append(", ");
+			}
+			first = false;
+			json.append(quote(entry.getKey())).append(" : ").append(quote(String.valueOf(entry.getValue())));
+		}
+		json.append("},\n");
+		json.append("    \"primaryMetric\" : {\n");
+		json.append("      \"score\" : ").append(mean(scores)).append(",\n");
+		double error = error(scores);
+		json.append("      \"scoreError\" : ").append(Double.isNaN(error) ? "\"NaN\"" : String.valueOf(error)).append(",\n");
+		json.append("      \"scoreUnit\" : \"us/op\",\n");
+		json.append("      \"rawData\" : [ [");
+		for (int i = 0; i < scores.length; i++) {
+			if (i > 0) {
+				json.append(", ");
+			}
+			json.append(scores[i]);
+		}
+		json.append("] ]\n");
+		json.append("    }\n");
+		json.append("  }");
+	}
+
+	/**
+	 * Quote a string for JSON.
+	 *
+	 * @param str string to quote
+	 * @return quoted string
+	 */
+	static String quote(String str) {
+		StringBuilder buf = new StringBuilder(str.length() + 2);
+		buf.append('"');
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			if ((c == '"') || (c == '\\')) {
+				buf.append('\\').append(c);
+			} else if (c < ' ') {
+				buf.append(String.format("\\u%04x", (int) c));
+			} else {
+				buf.append(c);
+			}
+		}
+		buf.append('"');
+		return buf.toString();
+	}
+
+	/**
+	 * Get the mean of the scores.
+	 *
+	 * @param scores scores
+	 * @return mean
+	 */
+	static double mean(double[] scores) {
+		double sum = 0;
+		for (double score : scores) {
+			sum += score;
+		}
+		return sum / scores.length;
+	}
+
+	/**
+	 * Get the half width of the 99.9% confidence interval of the mean.
+	 *
+	 * @param scores scores
+	 * @return error, or <code>NaN</code> if there are too few scores for an
+	 * 	estimate
+	 */
+	static double error(double[] scores) {
+		int n = scores.length;
+		if (n < 2) {
+			return Double.NaN;
+		}
+		double mean = mean(scores);
+		double squares = 0;
+		for (double score : scores) {
+			squares += (score - mean) * (score - mean);
+		}
+		double deviation = Math.sqrt(squares / (n - 1));
+		double t = (n - 1 <= T_QUANTILES.length) ? T_QUANTILES[n - 2] : 3.291;
+		return t * deviation / Math.sqrt(n);
+	}
+}
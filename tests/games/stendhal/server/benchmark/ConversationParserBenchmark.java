@@ -0,0 +1,46 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.benchmark;
+
+import games.stendhal.common.parser.ConversationParser;
+
+/**
+ * Parsing of typical player sentences. One operation parses all the
+ * sentences once.
+ */
+public class ConversationParserBenchmark extends Benchmark {
+	private static final String[] SENTENCES = {
+		"hi",
+		"buy 3 bottles of wine",
+		"sell two pieces of leather armor",
+		"I would like to have some cheese, please!",
+		"what is your job?",
+		"Please give me 5 big flasks of potion",
+		"Do you know where the mine town is?",
+		"bye"
+	};
+
+	@Override
+	public void setUp() {
+		// make sure the word list is loaded before measuring
+		ConversationParser.parse("hello");
+	}
+
+	@Override
+	public int run() {
+		int result = 0;
+		for (String text : SENTENCES) {
+			result += ConversationParser.parse(text).getExpressions().size();
+		}
+		return result;
+	}
+}
@@ -0,0 +1,51 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.benchmark;
+
+import games.stendhal.server.entity.player.Player;
+import utilities.PlayerTestHelper;
+
+/**
+ * Item checks of a player with a full bag, both for an item the player has
+ * and for one the player does not have.
+ */
+public class IsEquippedBenchmark extends Benchmark {
+	private static final String[] ITEMS = { "dagger", "club", "leather armor",
+		"leather helmet", "leather legs", "leather boots", "wooden shield",
+		"flask", "cheese", "apple", "carrot", "bread" };
+
+	private Player player;
+
+	@Override
+	public void setUp() {
+		player = PlayerTestHelper.createPlayer("benchmarker");
+		for (String item : ITEMS) {
+			PlayerTestHelper.equipWithItem(player, item);
+		}
+		PlayerTestHelper.equipWithMoney(player, 1000);
+	}
+
+	@Override
+	public int run() {
+		int result = 0;
+		if (player.isEquipped("money", 500)) {
+			result++;
+		}
+		if (player.isEquipped("bread")) {
+			result++;
+		}
+		if (player.isEquipped("golden blade")) {
+			result++;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,108 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.benchmark;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import games.stendhal.server.core.config.ItemGroupsXMLLoader;
+import games.stendhal.server.core.rule.defaultruleset.DefaultItem;
+import games.stendhal.server.core.rule.defaultruleset.creator.AbstractCreator;
+import games.stendhal.server.core.rule.defaultruleset.creator.AttributesItemCreator;
+import games.stendhal.server.core.rule.defaultruleset.creator.FullItemCreator;
+import games.stendhal.server.core.rule.defaultruleset.creator.PrototypeItemCreator;
+import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.entity.item.Money;
+
+/**
+ * Creating typical loot and shop items, either by calling the item
+ * constructors, or by copying template items. One operation creates one of
+ * each of the items, so the items per second are the number of items divided
+ * by the score.
+ */
+public class ItemCreationBenchmark extends Benchmark {
+	private static final List<String> ITEMS = Arrays.asList("money", "dagger",
+			"leather armor", "wooden shield", "bread", "cheese", "apple",
+			"greater potion", "wooden arrow", "carbuncle");
+
+	private final boolean prototypes;
+	private final List<AbstractCreator<Item>> creators = new ArrayList<AbstractCreator<Item>>();
+
+	/**
+	 * Create a new ItemCreationBenchmark.
+	 *
+	 * @param prototypes <code>true</code> if the items should be copied from
+	 * 	templates, <code>false</code> if they should be constructed from the
+	 * 	item definitions
+	 */
+	public ItemCreationBenchmark(boolean prototypes) {
+		this.prototypes = prototypes;
+	}
+
+	@Override
+	public String getName() {
+		return super.getName() + (prototypes ? ".prototype" : ".constructor");
+	}
+
+	@Override
+	public Map<String, Object> getParameters() {
+		return Collections.<String, Object>singletonMap("creator", prototypes ? "prototype" : "constructor");
+	}
+
+	@Override
+	public void setUp() {
+		try {
+			List<DefaultItem> items = new ItemGroupsXMLLoader(new URI("/data/conf/items.xml")).load();
+			for (DefaultItem item : items) {
+				if (!ITEMS.contains(item.getItemName())) {
+					continue;
+				}
+				Class<?> implementation = item.getImplementation();
+				AbstractCreator<Item> creator;
+				if (implementation == Money.class) {
+					creator = new AttributesItemCreator(item, implementation.getConstructor(Map.class));
+				} else {
+					creator = new FullItemCreator(item, implementation.getConstructor(String.class,
+							String.class, String.class, Map.class));
+				}
+				if (prototypes) {
+					creator = new PrototypeItemCreator(item,
+							implementation.getConstructor(implementation), creator);
+				}
+				creators.add(creator);
+			}
+		} catch (Exception e) {
+			throw new IllegalStateException("Failed to set up the item creators", e);
+		}
+		if (creators.size() != ITEMS.size()) {
+			throw new IllegalStateException("Missing item definitions");
+		}
+	}
+
+	@Override
+	public int run() {
+		int result = 0;
+		for (AbstractCreator<Item> creator : creators) {
+			result += creator.create().getQuantity();
+		}
+		return result;
+	}
+
+	@Override
+	public void tearDown() {
+		creators.clear();
+	}
+}
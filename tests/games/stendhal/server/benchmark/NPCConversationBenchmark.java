@@ -0,0 +1,59 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import games.stendhal.server.entity.npc.SpeakerNPC;
+import games.stendhal.server.entity.npc.behaviour.adder.SellerAdder;
+import games.stendhal.server.entity.npc.behaviour.impl.SellerBehaviour;
+import games.stendhal.server.entity.npc.fsm.Engine;
+import games.stendhal.server.entity.player.Player;
+import utilities.PlayerTestHelper;
+
+/**
+ * A short shopping conversation with a shop NPC. One operation is the whole
+ * conversation from greeting to goodbye.
+ */
+public class NPCConversationBenchmark extends Benchmark {
+	private static final String[] CONVERSATION = { "hi", "offer", "buy 2 daggers", "no", "bye" };
+
+	private Engine engine;
+	private Player player;
+
+	@Override
+	public void setUp() {
+		Map<String, Integer> prices = new HashMap<String, Integer>();
+		prices.put("dagger", 50);
+		prices.put("leather armor", 100);
+		prices.put("potion", 20);
+		prices.put("flask", 5);
+		SpeakerNPC npc = new SpeakerNPC("benchmark shopkeeper");
+		npc.addGreeting("Welcome!");
+		npc.addGoodbye();
+		new SellerAdder().addSeller(npc, new SellerBehaviour(prices));
+		engine = npc.getEngine();
+		player = PlayerTestHelper.createPlayer("benchmarker");
+	}
+
+	@Override
+	public int run() {
+		int result = 0;
+		for (String text : CONVERSATION) {
+			if (engine.step(player, text)) {
+				result++;
+			}
+		}
+		return result;
+	}
+}
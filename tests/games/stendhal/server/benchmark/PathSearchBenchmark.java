@@ -0,0 +1,47 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.benchmark;
+
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.pathfinder.Path;
+
+/**
+ * Path search across a zone whose walls force the path to wind through the
+ * whole zone.
+ */
+public class PathSearchBenchmark extends Benchmark {
+	private static final int ZONE_SIZE = 128;
+	/** Distance between the walls. */
+	private static final int WALL_SPACING = 16;
+
+	private StendhalRPZone zone;
+
+	@Override
+	public void setUp() {
+		zone = new StendhalRPZone("benchmark_path", ZONE_SIZE, ZONE_SIZE);
+		// Vertical walls with the gap alternating between the top and the bottom
+		for (int x = WALL_SPACING; x < ZONE_SIZE; x += WALL_SPACING) {
+			boolean gapAtTop = (x / WALL_SPACING) % 2 == 0;
+			for (int y = 0; y < ZONE_SIZE; y++) {
+				boolean gap = gapAtTop ? (y < 2) : (y >= ZONE_SIZE - 2);
+				if (!gap) {
+					zone.collisionMap.setCollide(x, y);
+				}
+			}
+		}
+	}
+
+	@Override
+	public int run() {
+		return Path.searchPath(zone, 1, ZONE_SIZE / 2, ZONE_SIZE - 2, ZONE_SIZE / 2, 4 * ZONE_SIZE).size();
+	}
+}
@@ -0,0 +1,125 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import games.stendhal.common.Direction;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.server.maps.MockStendhalRPRuleProcessor;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import utilities.Log4JAppender;
+import utilities.PlayerTestHelper;
+
+/**
+ * A full server turn with walking players. One operation is a
+ * <code>beginTurn()</code>, <code>endTurn()</code> cycle of the rule
+ * processor. The players turn before reaching the edge of the zone, and the
+ * turn must not log any warnings.
+ */
+public class TurnCycleBenchmark extends Benchmark {
+	private static final int ZONE_SIZE = 128;
+
+	private final int playerCount;
+	private final Random random = new Random(42);
+	private final List<Player> players = new ArrayList<Player>();
+	private StendhalRPZone zone;
+	private MockStendhalRPRuleProcessor processor;
+	private Log4JAppender warnings;
+
+	/**
+	 * Create a new TurnCycleBenchmark.
+	 *
+	 * @param playerCount number of online players
+	 */
+	public TurnCycleBenchmark(int playerCount) {
+		this.playerCount = playerCount;
+	}
+
+	@Override
+	public Map<String, Object> getParameters() {
+		return Collections.<String, Object>singletonMap("players", playerCount);
+	}
+
+	@Override
+	public void setUp() {
+		Log4JAppender.clear();
+		warnings = new Log4JAppender();
+		warnings.setThreshold(Level.WARN);
+		Logger.getRootLogger().addAppender(warnings);
+		processor = MockStendhalRPRuleProcessor.get();
+		zone = new StendhalRPZone("benchmark_turn", ZONE_SIZE, ZONE_SIZE);
+		MockStendlRPWorld.get().addRPZone(zone);
+		for (int i = 0; i < playerCount; i++) {
+			Player player = PlayerTestHelper.createPlayer("benchmarker" + i);
+			player.setPosition(random.nextInt(ZONE_SIZE), random.nextInt(ZONE_SIZE));
+			PlayerTestHelper.registerPlayer(player, zone);
+			players.add(player);
+		}
+		// Only the turns are checked
+		Log4JAppender.clear();
+	}
+
+	@Override
+	public int run() {
+		// Keep the players walking around inside the zone
+		for (Player player : players) {
+			if (player.stopped() || leavesZone(player, player.getDirection())) {
+				Direction direction = Direction.rand();
+				while (leavesZone(player, direction)) {
+					direction = direction.nextDirection();
+				}
+				player.setDirection(direction);
+				player.setSpeed(player.getBaseSpeed());
+			}
+		}
+		MockStendlRPWorld.get().nextTurn();
+		processor.beginTurn();
+		processor.endTurn();
+		String[] messages = Log4JAppender.getMessages();
+		if (messages.length > 0) {
+			throw new IllegalStateException("Warnings logged during the turn: " + Arrays.toString(messages));
+		}
+		return zone.getPlayers().size();
+	}
+
+	/**
+	 * Check if the next step of a player would take it out of the zone.
+	 *
+	 * @param player player
+	 * @param direction direction of the step
+	 * @return <code>true</code> if the step leaves the zone
+	 */
+	private boolean leavesZone(Player player, Direction direction) {
+		return zone.leavesZone(player, player.getX() + direction.getdx(), player.getY() + direction.getdy());
+	}
+
+	@Override
+	public void tearDown() {
+		for (Player player : players) {
+			zone.remove(player);
+		}
+		players.clear();
+		PlayerTestHelper.removeAllPlayers();
+		Logger.getRootLogger().removeAppender(warnings);
+		Log4JAppender.clear();
+	}
+}
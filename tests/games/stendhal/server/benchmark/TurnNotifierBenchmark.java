@@ -0,0 +1,78 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.benchmark;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+
+import games.stendhal.server.core.events.TurnListener;
+import games.stendhal.server.core.events.TurnNotifier;
+
+/**
+ * Turn notifier processing with a large number of scheduled listeners that
+ * reschedule themselves when notified. One operation is one turn.
+ */
+public class TurnNotifierBenchmark extends Benchmark {
+	private static final int LISTENERS = 100000;
+	/** Maximum delay of the rescheduled listeners. */
+	private static final int MAX_DELAY = 200;
+
+	private final Random random = new Random(42);
+	private TurnNotifier notifier;
+	private int turn;
+	private boolean running;
+
+	@Override
+	public Map<String, Object> getParameters() {
+		return Collections.<String, Object>singletonMap("listeners", LISTENERS);
+	}
+
+	@Override
+	public void setUp() {
+		notifier = TurnNotifier.get();
+		turn = notifier.getCurrentTurn();
+		running = true;
+		for (int i = 0; i < LISTENERS; i++) {
+			notifier.notifyInTurns(random.nextInt(MAX_DELAY), new Listener());
+		}
+	}
+
+	@Override
+	public int run() {
+		turn++;
+		notifier.logic(turn);
+		return notifier.getEventsFiredLastTurn();
+	}
+
+	@Override
+	public void tearDown() {
+		// Let the listeners run out
+		running = false;
+		for (int i = 0; i <= MAX_DELAY; i++) {
+			turn++;
+			notifier.logic(turn);
+		}
+	}
+
+	/**
+	 * A listener rescheduling itself after a random delay.
+	 */
+	private class Listener implements TurnListener {
+		@Override
+		public void onTurnReached(int currentTurn) {
+			if (running) {
+				notifier.notifyInTurns(random.nextInt(MAX_DELAY), this);
+			}
+		}
+	}
+}
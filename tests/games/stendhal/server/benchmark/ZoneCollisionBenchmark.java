@@ -0,0 +1,67 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.benchmark;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.entity.Entity;
+
+/**
+ * Collision checks of a moving entity in a crowded zone.
+ */
+public class ZoneCollisionBenchmark extends Benchmark {
+	private static final int ZONE_SIZE = 128;
+	private static final int ENTITIES = 1000;
+	/** Number of precalculated check positions. */
+	private static final int POSITIONS = 1024;
+
+	private StendhalRPZone zone;
+	private Entity mover;
+	private final int[] xs = new int[POSITIONS];
+	private final int[] ys = new int[POSITIONS];
+	private int index;
+
+	@Override
+	public Map<String, Object> getParameters() {
+		return Collections.<String, Object>singletonMap("entities", ENTITIES);
+	}
+
+	@Override
+	public void setUp() {
+		zone = new StendhalRPZone("benchmark_collision", ZONE_SIZE, ZONE_SIZE);
+		Random random = new Random(42);
+		for (int i = 0; i < ENTITIES; i++) {
+			Entity entity = new Entity() {
+				// just to create an instance
+			};
+			entity.setPosition(random.nextInt(ZONE_SIZE), random.nextInt(ZONE_SIZE));
+			zone.add(entity);
+		}
+		mover = new Entity() {
+			// just to create an instance
+		};
+		zone.add(mover);
+		for (int i = 0; i < POSITIONS; i++) {
+			xs[i] = random.nextInt(ZONE_SIZE);
+			ys[i] = random.nextInt(ZONE_SIZE);
+		}
+	}
+
+	@Override
+	public int run() {
+		index = (index + 1) % POSITIONS;
+		return zone.collides(mover, xs[index], ys[index]) ? 1 : 0;
+	}
+}
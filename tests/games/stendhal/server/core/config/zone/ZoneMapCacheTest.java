@@ -0,0 +1,78 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.config.zone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import games.stendhal.common.CollisionDetection;
+import games.stendhal.common.tiled.LayerDefinition;
+
+/**
+ * Tests for ZoneMapCache.
+ */
+public class ZoneMapCacheTest {
+	private static final String MAP = "tiled/Level 0/semos/city.tmx";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Maps read from the cache should match maps parsed from the TMX file.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testLoad() throws Exception {
+		final ZoneMapData expected = ZoneMapData.create(TMXLoader.load(MAP));
+
+		final File directory = folder.getRoot();
+		final ZoneMapCache cache = new ZoneMapCache(directory);
+		// parsed and stored
+		assertSameMap(expected, cache.load(MAP));
+		assertEquals(1, directory.listFiles().length);
+		assertTrue(directory.listFiles()[0].getName().endsWith(".bin"));
+
+		// read from the cache
+		assertSameMap(expected, new ZoneMapCache(directory).load(MAP));
+		assertEquals(1, directory.listFiles().length);
+	}
+
+	private static void assertSameMap(final ZoneMapData expected, final ZoneMapData actual) {
+		final Map<String, byte[]> contents = actual.getContents();
+		assertEquals(expected.getContents().keySet(), contents.keySet());
+		for (final Map.Entry<String, byte[]> entry : expected.getContents().entrySet()) {
+			assertArrayEquals(entry.getKey(), entry.getValue(), contents.get(entry.getKey()));
+		}
+
+		final LayerDefinition objects = actual.getObjectsLayer();
+		assertArrayEquals(expected.getObjectsLayer().expose(), objects.expose());
+
+		final CollisionDetection collision = actual.getCollision();
+		assertEquals(expected.getCollision().getWidth(), collision.getWidth());
+		assertEquals(expected.getCollision().getHeight(), collision.getHeight());
+		for (int x = 0; x < collision.getWidth(); x++) {
+			for (int y = 0; y < collision.getHeight(); y++) {
+				assertEquals(expected.getCollision().collides(x, y), collision.collides(x, y));
+				assertEquals(expected.getProtection().collides(x, y), actual.getProtection().collides(x, y));
+			}
+		}
+	}
+}
@@ -0,0 +1,199 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.engine.db.StendhalItemDAO;
+import games.stendhal.server.core.engine.dbcommand.AuditLogBatch;
+import games.stendhal.server.core.engine.dbcommand.AuditLogEntry;
+import games.stendhal.server.core.engine.dbcommand.LogKillEventCommand;
+import games.stendhal.server.core.engine.dbcommand.LogSimpleItemEventCommand;
+import games.stendhal.server.core.engine.dbcommand.WriteAuditLogCommand;
+import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import marauroa.common.Log4J;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.TransactionPool;
+import marauroa.server.game.db.DatabaseFactory;
+import utilities.PlayerTestHelper;
+
+/**
+ * Tests for writing the audit log in batches.
+ */
+public class AuditLogTest {
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		Log4J.init();
+		new DatabaseFactory().initializeDatabase();
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		MockStendlRPWorld.reset();
+	}
+
+	private static int count(final DBTransaction transaction, final String sql,
+			final String value) throws Exception {
+		final Map<String, Object> params = new HashMap<String, Object>();
+		params.put("value", value);
+		return transaction.querySingleCellInt(sql, params);
+	}
+
+	/**
+	 * Tests writing the rows of the different entry types.
+	 */
+	@Test
+	public void testBatch() throws Exception {
+		final Player killer = PlayerTestHelper.createPlayer("auditlogkiller");
+		final Player killed = PlayerTestHelper.createPlayer("auditlogvictim");
+		final Item item = SingletonRepository.getEntityManager().getItem("dagger");
+
+		final DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			final AuditLogBatch batch = new AuditLogBatch(transaction);
+			new GameEvent("auditlogkiller", "test", "a", "b", "c").addTo(batch);
+			new LogSimpleItemEventCommand(item, killer, "ground-to-slot", "a", "b", "c", "d").addTo(batch);
+			new LogSimpleItemEventCommand(item, killer, "slot-to-ground", "a", "b", "c", "d").addTo(batch);
+			new LogKillEventCommand(killed, killer).addTo(batch);
+			new LogKillEventCommand(killed, killer).addTo(batch);
+			batch.write();
+
+			assertEquals(1, count(transaction, "SELECT COUNT(*) FROM gameEvents WHERE source='[value]'"
+					+ " AND param1='a' AND param2='b c '", "auditlogkiller"));
+			final String logid = item.get(StendhalItemDAO.ATTR_ITEM_LOGID);
+			assertEquals(1, count(transaction, "SELECT COUNT(*) FROM item WHERE id=[value] AND name='dagger'", logid));
+			assertEquals("register and two moves", 3,
+					count(transaction, "SELECT COUNT(*) FROM itemlog WHERE itemid=[value]", logid));
+			assertEquals("kills are counted in one row", 2,
+					count(transaction, "SELECT SUM(cnt) FROM kills WHERE killed='[value]'", "auditlogvictim"));
+			assertEquals(1, count(transaction, "SELECT COUNT(*) FROM kills WHERE killed='[value]'", "auditlogvictim"));
+
+			// the next log id is handed out without asking the database
+			final Item other = SingletonRepository.getEntityManager().getItem("dagger");
+			batch.assignItemLogIdIfNotPresent(other, null);
+			assertEquals(Integer.parseInt(logid) + 1, other.getInt(StendhalItemDAO.ATTR_ITEM_LOGID));
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+
+	/**
+	 * Tests the overflow handling while the database is behind.
+	 */
+	@Test
+	public void testOverflow() throws Exception {
+		final List<WriteAuditLogCommand> queue = new ArrayList<WriteAuditLogCommand>();
+		final AuditLog log = new AuditLog(2, 4, 1, false, new HoldingSink(queue));
+		final AuditLogEntry entry = new EmptyEntry();
+		log.log(entry);
+		log.log(entry);
+		assertEquals("the full batch is queued", 1, queue.size());
+		log.log(entry);
+		log.log(entry);
+		assertEquals(2, queue.size());
+		assertEquals(4, log.getPending());
+
+		log.log(entry);
+		assertEquals(4, log.getPending());
+		assertEquals(1, log.getDropped());
+		assertEquals(5, log.getLogged());
+
+		for (final WriteAuditLogCommand command : queue) {
+			process(command);
+		}
+		assertEquals(4, log.getWritten());
+		assertEquals(0, log.getPending());
+		assertEquals(2, log.getBatches());
+		assertEquals(4, log.getMaxPending());
+	}
+
+	/**
+	 * Tests that a batch whose transaction is rolled back is not counted as
+	 * written, and does not leave log ids on the items.
+	 */
+	@Test
+	public void testFailedBatch() throws Exception {
+		final Player player = PlayerTestHelper.createPlayer("auditlogfailure");
+		final Item item = SingletonRepository.getEntityManager().getItem("dagger");
+		final List<WriteAuditLogCommand> queue = new ArrayList<WriteAuditLogCommand>();
+		final AuditLog log = new AuditLog(2, 4, 1, false, new HoldingSink(queue));
+		log.log(new LogSimpleItemEventCommand(item, player, "ground-to-slot", "a", "b", "c", "d"));
+		log.log(new AuditLogEntry() {
+			@Override
+			public void addTo(final AuditLogBatch batch) throws SQLException {
+				throw new SQLException("test failure");
+			}
+		});
+		assertEquals(1, queue.size());
+
+		process(queue.get(0));
+		assertEquals(0, log.getWritten());
+		assertEquals(2, log.getFailed());
+		assertEquals(0, log.getPending());
+		assertFalse("the log id is taken back", item.has(StendhalItemDAO.ATTR_ITEM_LOGID));
+	}
+
+	/**
+	 * Process a command the way the database thread does.
+	 */
+	private static void process(final WriteAuditLogCommand command) {
+		final DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			command.execute(transaction);
+			TransactionPool.get().commit(transaction);
+		} catch (final Exception e) {
+			TransactionPool.get().rollback(transaction);
+			command.setException(e);
+		}
+		command.invokeCallback();
+	}
+
+	/**
+	 * A sink that keeps the commands instead of writing them.
+	 */
+	private static class HoldingSink implements AuditLog.CommandSink {
+		private final List<WriteAuditLogCommand> queue;
+
+		HoldingSink(final List<WriteAuditLogCommand> queue) {
+			this.queue = queue;
+		}
+
+		@Override
+		public void enqueue(final WriteAuditLogCommand command) {
+			queue.add(command);
+		}
+	}
+
+	/**
+	 * An entry without any rows.
+	 */
+	private static class EmptyEntry implements AuditLogEntry {
+		@Override
+		public void addTo(final AuditLogBatch batch) {
+			// nothing to write
+		}
+	}
+}
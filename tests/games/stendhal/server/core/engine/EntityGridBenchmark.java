@@ -0,0 +1,110 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import marauroa.common.game.RPObject;
+
+/**
+ * Compares the turn time of entity movement in a crowded zone using the
+ * indexed zone collision checks against a scan over all zone objects (the
+ * way collisions were checked before the zones had an entity index).
+ * <p>
+ * Run with <code>java games.stendhal.server.core.engine.EntityGridBenchmark
+ * [entities] [turns]</code>.
+ */
+public class EntityGridBenchmark {
+	private static final int ZONE_SIZE = 128;
+
+	public static void main(String[] args) {
+		int entityCount = 600;
+		int turns = 500;
+		if (args.length > 0) {
+			entityCount = Integer.parseInt(args[0]);
+		}
+		if (args.length > 1) {
+			turns = Integer.parseInt(args[1]);
+		}
+
+		MockStendlRPWorld.get();
+		StendhalRPZone zone = new StendhalRPZone("benchmark", ZONE_SIZE, ZONE_SIZE);
+		Random random = new Random(42);
+		List<Entity> entities = new ArrayList<Entity>();
+		for (int i = 0; i < entityCount; i++) {
+			Entity entity = new Entity() {
+				// just to create an instance
+			};
+			entity.setPosition(random.nextInt(ZONE_SIZE), random.nextInt(ZONE_SIZE));
+			zone.add(entity);
+			entities.add(entity);
+		}
+
+		// warm up
+		runTurns(zone, entities, new Random(1), turns / 10, true);
+		runTurns(zone, entities, new Random(1), turns / 10, false);
+
+		long indexed = runTurns(zone, entities, new Random(2), turns, true);
+		long scanned = runTurns(zone, entities, new Random(2), turns, false);
+
+		System.out.println(entityCount + " entities, " + turns + " turns");
+		System.out.printf("indexed: %.3f ms/turn%n", indexed / 1e6 / turns);
+		System.out.printf("scanned: %.3f ms/turn%n", scanned / 1e6 / turns);
+	}
+
+	/**
+	 * Let every entity try a step in a random direction each turn.
+	 *
+	 * @return elapsed time in nanoseconds
+	 */
+	private static long runTurns(StendhalRPZone zone, List<Entity> entities,
+			Random random, int turns, boolean indexed) {
+		long start = System.nanoTime();
+		for (int turn = 0; turn < turns; turn++) {
+			for (Entity entity : entities) {
+				int x = entity.getX() + random.nextInt(3) - 1;
+				int y = entity.getY() + random.nextInt(3) - 1;
+				if ((x < 0) || (y < 0) || (x >= ZONE_SIZE) || (y >= ZONE_SIZE)) {
+					continue;
+				}
+				boolean collides;
+				if (indexed) {
+					collides = zone.collides(entity, x, y);
+				} else {
+					collides = scanCollides(zone, entity, x, y);
+				}
+				if (!collides) {
+					entity.setPosition(x, y);
+				}
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static boolean scanCollides(StendhalRPZone zone, Entity entity, int x, int y) {
+		if (zone.collisionMap.collides(x, y, entity.getWidth(), entity.getHeight())) {
+			return true;
+		}
+		for (RPObject obj : zone) {
+			Entity other = (Entity) obj;
+			if ((other != entity) && entity.getArea(x, y).intersects(other.getArea())
+					&& other.isObstacle(entity)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
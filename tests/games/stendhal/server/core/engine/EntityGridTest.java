@@ -0,0 +1,196 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import utilities.PlayerTestHelper;
+
+/**
+ * Tests for EntityGrid, and the zone queries using it.
+ */
+public class EntityGridTest {
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	private static Entity createEntity(int x, int y, int width, int height) {
+		Entity entity = new Entity() {
+			// just to create an instance
+		};
+		entity.setPosition(x, y);
+		entity.setSize(width, height);
+		return entity;
+	}
+
+	/**
+	 * Tests for point queries.
+	 */
+	@Test
+	public void testGetEntityAt() {
+		EntityGrid grid = new EntityGrid(64, 64);
+		Entity small = createEntity(3, 4, 1, 1);
+		Entity big = createEntity(6, 6, 4, 4);
+		grid.add(small);
+		grid.add(big);
+		assertEquals(2, grid.size());
+
+		assertSame(small, grid.getEntityAt(3, 4));
+		assertSame(small, grid.getEntityAt(3.5, 4.5));
+		assertNull(grid.getEntityAt(4, 4));
+		// big spans several buckets
+		assertSame(big, grid.getEntityAt(6, 6));
+		assertSame(big, grid.getEntityAt(9, 9));
+		assertNull(grid.getEntityAt(10, 9));
+
+		List<Entity> result = new ArrayList<Entity>();
+		grid.getEntitiesAt(8, 8, result);
+		assertEquals(1, result.size());
+		assertSame(big, result.get(0));
+	}
+
+	/**
+	 * Tests for area queries.
+	 */
+	@Test
+	public void testGetEntities() {
+		EntityGrid grid = new EntityGrid(64, 64);
+		Entity small = createEntity(3, 4, 1, 1);
+		Entity big = createEntity(6, 6, 4, 4);
+		Entity far = createEntity(50, 50, 1, 1);
+		grid.add(small);
+		grid.add(big);
+		grid.add(far);
+
+		List<Entity> result = new ArrayList<Entity>();
+		grid.getEntities(0, 0, 20, 20, result);
+		assertEquals("entities spanning buckets are reported once", 2, result.size());
+		assertTrue(result.contains(small));
+		assertTrue(result.contains(big));
+
+		result.clear();
+		grid.getEntities(9, 9, 1, 1, result);
+		assertEquals(1, result.size());
+		assertSame(big, result.get(0));
+
+		result.clear();
+		grid.getEntities(0, 0, 64, 64, result);
+		assertEquals(3, result.size());
+	}
+
+	/**
+	 * Tests for moving and removing entities.
+	 */
+	@Test
+	public void testUpdateAndRemove() {
+		EntityGrid grid = new EntityGrid(64, 64);
+		Entity entity = createEntity(3, 4, 1, 1);
+		grid.add(entity);
+
+		entity.setPosition(40, 41);
+		grid.update(entity);
+		assertNull(grid.getEntityAt(3, 4));
+		assertSame(entity, grid.getEntityAt(40, 41));
+
+		grid.remove(entity);
+		assertEquals(0, grid.size());
+		assertNull(grid.getEntityAt(40, 41));
+	}
+
+	/**
+	 * Entities outside the indexed area should be found at the borders.
+	 */
+	@Test
+	public void testOutsideGrid() {
+		EntityGrid grid = new EntityGrid(16, 16);
+		Entity entity = createEntity(20, 30, 1, 1);
+		grid.add(entity);
+		assertSame(entity, grid.getEntityAt(20, 30));
+		assertNull(grid.getEntityAt(15, 15));
+	}
+
+	/**
+	 * Zone queries should follow entity movement.
+	 */
+	@Test
+	public void testZoneQueries() {
+		StendhalRPZone zone = new StendhalRPZone("test", 64, 64);
+		Entity blocker = createEntity(10, 10, 1, 1);
+		Entity walker = createEntity(0, 0, 1, 1);
+		zone.add(blocker);
+		zone.add(walker);
+
+		assertTrue(zone.collides(walker, 10, 10));
+		assertFalse(zone.collides(walker, 11, 10));
+		assertSame(blocker, zone.getEntityAt(10, 10));
+
+		blocker.setPosition(30, 30);
+		assertFalse(zone.collides(walker, 10, 10));
+		assertTrue(zone.collides(walker, 30, 30));
+		assertEquals(1, zone.getEntitiesAt(30, 30).size());
+		assertEquals(2, zone.getEntitiesInArea(new Rectangle2D.Double(0, 0, 64, 64)).size());
+
+		zone.remove(blocker);
+		assertFalse(zone.collides(walker, 30, 30));
+		assertNull(zone.getEntityAt(30, 30));
+	}
+
+	/**
+	 * Player and friend queries should follow movement.
+	 */
+	@Test
+	public void testPlayerQueries() {
+		StendhalRPZone zone = new StendhalRPZone("test", 64, 64);
+		Player near = PlayerTestHelper.createPlayer("near");
+		Player far = PlayerTestHelper.createPlayer("far");
+		near.setPosition(10, 10);
+		far.setPosition(40, 40);
+		zone.add(near);
+		zone.add(far);
+		zone.add(createEntity(11, 11, 1, 1));
+
+		List<Player> players = zone.getPlayersNear(12, 12, 3);
+		assertEquals(1, players.size());
+		assertSame(near, players.get(0));
+		assertTrue("range is exclusive", zone.getPlayersNear(13, 13, 3).isEmpty());
+		assertEquals(1, zone.getPlayerAndFriendsInArea(new Rectangle2D.Double(0, 0, 20, 20)).size());
+
+		far.setPosition(13, 12);
+		assertEquals(2, zone.getPlayersNear(12, 12, 3).size());
+
+		zone.remove(near);
+		players = zone.getPlayersNear(12, 12, 3);
+		assertEquals(1, players.size());
+		assertSame(far, players.get(0));
+	}
+}
@@ -0,0 +1,56 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for LoginDataCache.
+ */
+public class LoginDataCacheTest {
+	/**
+	 * Tests parsing the super admin list.
+	 */
+	@Test
+	public void testParseAdmins() throws Exception {
+		BufferedReader reader = new BufferedReader(new StringReader("alice=600\n bob \ncarol=lots\n"));
+		Map<String, Integer> levels = LoginDataCache.parseAdmins(reader);
+
+		assertEquals(Integer.valueOf(600), levels.get("alice"));
+		assertEquals(Integer.valueOf(5000), levels.get("bob"));
+		assertFalse(levels.containsKey("carol"));
+	}
+
+	/**
+	 * Tests the welcome message selection.
+	 */
+	@Test
+	public void testWelcomeMessage() {
+		LoginDataCache cache = new LoginDataCache();
+		assertNull(cache.getWelcomeMessage());
+		cache.setWelcomeSource("Hello");
+		assertEquals("Hello", cache.getWelcomeMessage());
+		// Not read yet. The old message is kept until the URL has been read
+		cache.setWelcomeSource("http://localhost:1/welcome.txt");
+		assertEquals("Hello", cache.getWelcomeMessage());
+		cache.refresh();
+		assertEquals("Hello", cache.getWelcomeMessage());
+	}
+}
@@ -0,0 +1,171 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import games.stendhal.server.core.events.MovementListener;
+import games.stendhal.server.entity.ActiveEntity;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Compares the turn time of the movement notifications of walking entities
+ * in a zone with many trigger areas using the indexed listener lookup
+ * against checking every listener on every step (the way the notifications
+ * were done before the zones had a listener index).
+ * <p>
+ * Run with <code>java games.stendhal.server.core.engine.MovementListenerBenchmark
+ * [walkers] [areas] [turns]</code>.
+ */
+public class MovementListenerBenchmark {
+	private static final int ZONE_SIZE = 256;
+
+	public static void main(String[] args) {
+		int walkerCount = 1000;
+		int areaCount = 200;
+		int turns = 500;
+		if (args.length > 0) {
+			walkerCount = Integer.parseInt(args[0]);
+		}
+		if (args.length > 1) {
+			areaCount = Integer.parseInt(args[1]);
+		}
+		if (args.length > 2) {
+			turns = Integer.parseInt(args[2]);
+		}
+
+		MockStendlRPWorld.get();
+		StendhalRPZone zone = new StendhalRPZone("benchmark", ZONE_SIZE, ZONE_SIZE);
+		Random random = new Random(42);
+		List<MovementListener> listeners = new ArrayList<MovementListener>();
+		for (int i = 0; i < areaCount; i++) {
+			MovementListener listener = new TriggerArea(new Rectangle(random.nextInt(ZONE_SIZE - 8),
+					random.nextInt(ZONE_SIZE - 8), 1 + random.nextInt(8), 1 + random.nextInt(8)));
+			zone.addMovementListener(listener);
+			listeners.add(listener);
+		}
+		List<ActiveEntity> walkers = new ArrayList<ActiveEntity>();
+		for (int i = 0; i < walkerCount; i++) {
+			ActiveEntity walker = new ActiveEntity() {
+				// just to create an instance
+			};
+			walker.setPosition(random.nextInt(ZONE_SIZE), random.nextInt(ZONE_SIZE));
+			zone.add(walker);
+			walkers.add(walker);
+		}
+
+		// warm up
+		runTurns(zone, listeners, walkers, new Random(1), turns / 10, true);
+		runTurns(zone, listeners, walkers, new Random(1), turns / 10, false);
+
+		long indexed = runTurns(zone, listeners, walkers, new Random(2), turns, true);
+		long scanned = runTurns(zone, listeners, walkers, new Random(2), turns, false);
+
+		System.out.println(walkerCount + " walkers, " + areaCount + " areas, " + turns + " turns");
+		System.out.printf("indexed: %.3f ms/turn%n", indexed / 1e6 / turns);
+		System.out.printf("scanned: %.3f ms/turn%n", scanned / 1e6 / turns);
+	}
+
+	/**
+	 * Let every walker take a step in a random direction each turn.
+	 *
+	 * @return elapsed time in nanoseconds
+	 */
+	private static long runTurns(StendhalRPZone zone, List<MovementListener> listeners,
+			List<ActiveEntity> walkers, Random random, int turns, boolean indexed) {
+		long start = System.nanoTime();
+		for (int turn = 0; turn < turns; turn++) {
+			for (ActiveEntity walker : walkers) {
+				int oldX = walker.getX();
+				int oldY = walker.getY();
+				int x = oldX + random.nextInt(3) - 1;
+				int y = oldY + random.nextInt(3) - 1;
+				if ((x < 0) || (y < 0) || (x >= ZONE_SIZE) || (y >= ZONE_SIZE)) {
+					continue;
+				}
+				if (indexed) {
+					zone.notifyBeforeMovement(walker, oldX, oldY, x, y);
+					zone.notifyMovement(walker, oldX, oldY, x, y);
+				} else {
+					scanNotify(zone, listeners, walker, oldX, oldY, x, y);
+				}
+				walker.setPosition(x, y);
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static void scanNotify(StendhalRPZone zone, List<MovementListener> listeners,
+			ActiveEntity walker, int oldX, int oldY, int x, int y) {
+		Rectangle2D oldArea = walker.getArea(oldX, oldY);
+		Rectangle2D newArea = walker.getArea(x, y);
+		for (MovementListener l : listeners) {
+			if (l.getArea().intersects(newArea)) {
+				l.beforeMove(walker, zone, oldX, oldY, x, y);
+			}
+		}
+		for (MovementListener l : listeners) {
+			boolean oldIn = l.getArea().intersects(oldArea);
+			boolean newIn = l.getArea().intersects(newArea);
+			if (!oldIn && newIn) {
+				l.onEntered(walker, zone, x, y);
+			} else if (oldIn && newIn) {
+				l.onMoved(walker, zone, oldX, oldY, x, y);
+			} else if (oldIn) {
+				l.onExited(walker, zone, oldX, oldY);
+			}
+		}
+	}
+
+	/**
+	 * A trigger area that just counts the notifications.
+	 */
+	private static class TriggerArea implements MovementListener {
+		private final Rectangle2D area;
+		private int count;
+
+		TriggerArea(Rectangle2D area) {
+			this.area = area;
+		}
+
+		@Override
+		public Rectangle2D getArea() {
+			return area;
+		}
+
+		@Override
+		public void onEntered(ActiveEntity entity, StendhalRPZone zone, int newX, int newY) {
+			count++;
+		}
+
+		@Override
+		public void onExited(ActiveEntity entity, StendhalRPZone zone, int oldX, int oldY) {
+			count++;
+		}
+
+		@Override
+		public void beforeMove(ActiveEntity entity, StendhalRPZone zone, int oldX,
+				int oldY, int newX, int newY) {
+			count++;
+		}
+
+		@Override
+		public void onMoved(ActiveEntity entity, StendhalRPZone zone, int oldX,
+				int oldY, int newX, int newY) {
+			count++;
+		}
+	}
+}
@@ -0,0 +1,189 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.events.MovementListener;
+import games.stendhal.server.entity.ActiveEntity;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for MovementListenerGrid and the movement notifications of the zones.
+ */
+public class MovementListenerGridTest {
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * Tests for intersects.
+	 */
+	@Test
+	public void testIntersects() {
+		Rectangle2D rect = new Rectangle(10, 10, 2, 2);
+		assertTrue(MovementListenerGrid.intersects(rect, 10, 10, 1, 1));
+		assertTrue(MovementListenerGrid.intersects(rect, 11, 11, 1, 1));
+		assertTrue(MovementListenerGrid.intersects(rect, 9, 9, 2, 2));
+		assertFalse("touching edge", MovementListenerGrid.intersects(rect, 12, 10, 1, 1));
+		assertFalse("touching edge", MovementListenerGrid.intersects(rect, 9, 10, 1, 1));
+		assertFalse("empty area", MovementListenerGrid.intersects(rect, 10, 10, 0, 1));
+		assertFalse("empty rect", MovementListenerGrid.intersects(new Rectangle(10, 10, 0, 0), 10, 10, 1, 1));
+		for (int x = 7; x < 14; x++) {
+			for (int y = 7; y < 14; y++) {
+				assertEquals(rect.intersects(x, y, 1, 2),
+						MovementListenerGrid.intersects(rect, x, y, 1, 2));
+			}
+		}
+	}
+
+	/**
+	 * Tests for getListeners.
+	 */
+	@Test
+	public void testGetListeners() {
+		MovementListenerGrid grid = new MovementListenerGrid(64, 64);
+		RecordingListener small = new RecordingListener(new Rectangle(2, 2, 2, 2));
+		// spans several buckets
+		RecordingListener large = new RecordingListener(new Rectangle(5, 5, 20, 20));
+		RecordingListener far = new RecordingListener(new Rectangle(50, 50, 1, 1));
+		grid.add(large);
+		grid.add(small);
+		grid.add(far);
+
+		assertEquals(Arrays.asList(small), grid.getListeners(3, 3, 1, 1));
+		assertEquals(Arrays.asList(large), grid.getListeners(20, 20, 1, 1));
+		assertEquals("registration order", Arrays.asList(large, small), grid.getListeners(0, 0, 10, 10));
+		assertEquals("no duplicates", Arrays.asList(large), grid.getListeners(4, 4, 30, 30));
+		assertTrue(grid.getListeners(40, 10, 1, 1).isEmpty());
+		// outside the zone
+		assertTrue(grid.getListeners(-5, -5, 1, 1).isEmpty());
+		assertEquals(Arrays.asList(far), grid.getListeners(50, 50, 1, 1));
+
+		grid.remove(small);
+		assertTrue(grid.getListeners(3, 3, 1, 1).isEmpty());
+
+		// updated area
+		far.area.setLocation(10, 40);
+		grid.update(far);
+		assertTrue(grid.getListeners(50, 50, 1, 1).isEmpty());
+		assertEquals(Arrays.asList(far), grid.getListeners(10, 40, 1, 1));
+	}
+
+	/**
+	 * Listeners added several times should stay in the index until they
+	 * have been removed as many times.
+	 */
+	@Test
+	public void testMultipleAdd() {
+		MovementListenerGrid grid = new MovementListenerGrid(20, 20);
+		RecordingListener listener = new RecordingListener(new Rectangle(2, 2, 2, 2));
+		grid.add(listener);
+		grid.add(listener);
+		grid.remove(listener);
+		assertEquals(Arrays.asList(listener), grid.getListeners(2, 2, 1, 1));
+		grid.remove(listener);
+		assertTrue(grid.getListeners(2, 2, 1, 1).isEmpty());
+	}
+
+	/**
+	 * Tests for the zone movement notifications.
+	 */
+	@Test
+	public void testZoneNotifications() {
+		StendhalRPZone zone = new StendhalRPZone("listener_test", 40, 40);
+		RecordingListener listener = new RecordingListener(new Rectangle(10, 10, 3, 3));
+		RecordingListener other = new RecordingListener(new Rectangle(30, 30, 3, 3));
+		zone.addMovementListener(listener);
+		zone.addMovementListener(other);
+
+		ActiveEntity entity = new ActiveEntity() {
+			// just to create an instance
+		};
+		entity.setPosition(8, 11);
+		zone.add(entity);
+		assertTrue(listener.events.isEmpty());
+
+		zone.notifyBeforeMovement(entity, 8, 11, 9, 11);
+		zone.notifyMovement(entity, 8, 11, 9, 11);
+		assertTrue(listener.events.isEmpty());
+		zone.notifyBeforeMovement(entity, 9, 11, 10, 11);
+		zone.notifyMovement(entity, 9, 11, 10, 11);
+		assertEquals(Arrays.asList("before", "entered"), listener.events);
+		zone.notifyMovement(entity, 10, 11, 11, 12);
+		assertEquals(Arrays.asList("before", "entered", "moved"), listener.events);
+		zone.notifyMovement(entity, 11, 12, 13, 12);
+		assertEquals(Arrays.asList("before", "entered", "moved", "exited"), listener.events);
+		assertTrue(other.events.isEmpty());
+
+		zone.removeMovementListener(listener);
+		zone.notifyMovement(entity, 13, 12, 12, 12);
+		assertEquals(4, listener.events.size());
+	}
+
+	/**
+	 * A listener that records the received notifications.
+	 */
+	private static class RecordingListener implements MovementListener {
+		private final Rectangle area;
+		private final List<String> events = new ArrayList<String>();
+
+		RecordingListener(Rectangle area) {
+			this.area = area;
+		}
+
+		@Override
+		public Rectangle2D getArea() {
+			return area;
+		}
+
+		@Override
+		public void onEntered(ActiveEntity entity, StendhalRPZone zone, int newX, int newY) {
+			events.add("entered");
+		}
+
+		@Override
+		public void onExited(ActiveEntity entity, StendhalRPZone zone, int oldX, int oldY) {
+			events.add("exited");
+		}
+
+		@Override
+		public void beforeMove(ActiveEntity entity, StendhalRPZone zone, int oldX, int oldY,
+				int newX, int newY) {
+			events.add("before");
+		}
+
+		@Override
+		public void onMoved(ActiveEntity entity, StendhalRPZone zone, int oldX, int oldY,
+				int newX, int newY) {
+			events.add("moved");
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+/**
+ * Tests for ResourceCache.
+ */
+public class ResourceCacheTest {
+	private static final String TMX = "/tiled/interiors/abstract/afterlife.tmx";
+	private static final String MAP = "/map/interiors/abstract/afterlife.bin";
+
+	/**
+	 * Tests for getClassPath.
+	 */
+	@Test
+	public void testGetClassPath() {
+		assertEquals("tiled/Level 0/semos/city.tmx", ResourceCache.getClassPath("/tiled/Level 0/semos/city.tmx"));
+		assertEquals("data/sprites/npc/gnome.png", ResourceCache.getClassPath("/data/sprites/npc/gnome.png"));
+		assertEquals("tiled/tileset/ground/ground.png", ResourceCache.getClassPath("/tileset/ground/ground.png"));
+		assertNull(ResourceCache.getClassPath("/server.ini"));
+	}
+
+	/**
+	 * Resources should be read once, and dropped when the cache is full.
+	 */
+	@Test
+	public void testCaching() {
+		ResourceCache cache = new ResourceCache(1024 * 1024);
+		byte[] tmx = cache.getData(TMX);
+		assertNotNull(tmx);
+		assertSame(tmx, cache.getData(TMX));
+		assertEquals(tmx.length, cache.getSize());
+		assertNull(cache.getData("/tiled/no such map.tmx"));
+		assertNull(cache.getData("/server.ini"));
+
+		// Too small to keep the file
+		cache = new ResourceCache(tmx.length);
+		byte[] uncached = cache.getData(TMX);
+		assertEquals(tmx.length, uncached.length);
+		assertEquals(0, cache.getSize());
+	}
+
+	/**
+	 * The compact maps should be available next to the tmx files.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCompactMap() throws Exception {
+		ResourceCache cache = new ResourceCache(1024 * 1024);
+		byte[] map = cache.getData(MAP);
+		assertNotNull(map);
+		assertTrue("compressed map is smaller", map.length < cache.getData(TMX).length);
+		assertNull(cache.getData("/map/interiors/abstract/no such map.bin"));
+
+		DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(map)));
+		byte[] magic = new byte[4];
+		in.readFully(magic);
+		assertEquals("SMAP", new String(magic, "US-ASCII"));
+		// little endian version
+		assertEquals(1, in.read());
+		in.close();
+	}
+}
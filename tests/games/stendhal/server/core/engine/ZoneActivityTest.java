@@ -0,0 +1,121 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.events.TurnListener;
+import games.stendhal.server.core.events.TurnNotifier;
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import utilities.PlayerTestHelper;
+
+/**
+ * Tests for the zone activity states.
+ */
+public class ZoneActivityTest {
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * Run the turn notifier and the zone logic for a number of turns.
+	 */
+	private static void runTurns(StendhalRPZone zone, int turns) {
+		TurnNotifier notifier = TurnNotifier.get();
+		for (int i = 0; i < turns; i++) {
+			notifier.logic(notifier.getCurrentTurn() + 1);
+			zone.logic();
+		}
+	}
+
+	/**
+	 * Tests for the activity state changes.
+	 */
+	@Test
+	public void testStates() {
+		StendhalRPZone zone = new StendhalRPZone("activity_test", 20, 20);
+		assertEquals(ZoneActivity.COOLING, zone.getActivity());
+
+		Player player = PlayerTestHelper.createPlayer("bob");
+		zone.add(player);
+		assertEquals(ZoneActivity.ACTIVE, zone.getActivity());
+		runTurns(zone, 500);
+		assertEquals(ZoneActivity.ACTIVE, zone.getActivity());
+
+		zone.remove(player);
+		assertEquals(ZoneActivity.COOLING, zone.getActivity());
+		runTurns(zone, 10);
+		assertFalse(zone.isDormant());
+		runTurns(zone, 500);
+		assertTrue(zone.isDormant());
+
+		zone.add(player);
+		assertEquals(ZoneActivity.ACTIVE, zone.getActivity());
+	}
+
+	/**
+	 * Turn events postponed while dormant should be caught up on wake up.
+	 */
+	@Test
+	public void testCatchUp() {
+		final StendhalRPZone zone = new StendhalRPZone("catch_up_test", 20, 20);
+		runTurns(zone, 500);
+		assertTrue(zone.isDormant());
+
+		Counter counter = new Counter(zone);
+		TurnNotifier.get().notifyInTurns(9, counter);
+		runTurns(zone, 55);
+		assertEquals("events are postponed while dormant", 0, counter.count);
+
+		zone.add(PlayerTestHelper.createPlayer("bob"));
+		// due at 10, 20, 30, 40 and 50
+		assertEquals(5, counter.count);
+		// next event 5 turns after waking up
+		assertEquals(5, TurnNotifier.get().getRemainingTurns(counter));
+		runTurns(zone, 5);
+		assertEquals(6, counter.count);
+	}
+
+	/**
+	 * A listener that reschedules itself every 10 turns.
+	 */
+	private static class Counter implements TurnListener {
+		private final StendhalRPZone zone;
+		private int count;
+
+		Counter(StendhalRPZone zone) {
+			this.zone = zone;
+		}
+
+		@Override
+		public void onTurnReached(int currentTurn) {
+			if (zone.postponeTurnEvent(this, currentTurn)) {
+				return;
+			}
+			count++;
+			TurnNotifier.get().notifyInTurns(9, this);
+		}
+	}
+}
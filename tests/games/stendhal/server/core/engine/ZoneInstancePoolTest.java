@@ -0,0 +1,126 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.common.tiled.LayerDefinition;
+import games.stendhal.server.core.events.TurnNotifier;
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for ZoneInstancePool.
+ */
+public class ZoneInstancePoolTest {
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	private static ZoneInstancePool<StendhalRPZone> createPool(final StendhalRPZone template) {
+		return new ZoneInstancePool<StendhalRPZone>(new ZoneInstancePool.Factory<StendhalRPZone>() {
+			@Override
+			public StendhalRPZone create(String name) {
+				return new StendhalRPZone(name, template);
+			}
+		});
+	}
+
+	/**
+	 * Tests reusing a removed instance.
+	 */
+	@Test
+	public void testReuse() {
+		StendhalRPZone template = new StendhalRPZone("int_pool_template", 10, 10);
+		template.collisionMap.setCollide(3, 3);
+		ZoneInstancePool<StendhalRPZone> pool = createPool(template);
+		StendhalRPWorld world = MockStendlRPWorld.get();
+
+		StendhalRPZone zone = pool.acquire("bob_pooled");
+		assertEquals("bob_pooled", zone.getName());
+		assertSame(template.collisionMap, zone.collisionMap);
+		Entity entity = new Entity() {
+			// just to create an instance
+		};
+		entity.setPosition(5, 5);
+		zone.add(entity);
+		zone.disallowIn();
+		world.addRPZone(zone);
+		world.removeZone(zone);
+		assertFalse(world.hasRPZone(zone.getID()));
+		assertEquals(1, pool.getIdleCount());
+		// A second removal must not return the same zone to the pool again
+		world.removeZone(zone);
+		assertEquals(1, pool.getIdleCount());
+
+		StendhalRPZone reused = pool.acquire("alice_pooled");
+		assertSame(zone, reused);
+		assertEquals("alice_pooled", reused.getName());
+		assertEquals(0, reused.size());
+		assertFalse(reused.collides(entity, 5, 5));
+		assertTrue(reused.collides(entity, 3, 3));
+		assertTrue(reused.isTeleportInAllowed(5, 5));
+		assertEquals(0, pool.getIdleCount());
+
+		assertNotSame(reused, pool.acquire("carol_pooled"));
+	}
+
+	/**
+	 * Tests that spare instances are created on later turns.
+	 */
+	@Test
+	public void testSpares() {
+		ZoneInstancePool<StendhalRPZone> pool = createPool(new StendhalRPZone("int_spare_template", 10, 10));
+		pool.acquire("bob_spare");
+		assertEquals(0, pool.getIdleCount());
+
+		TurnNotifier notifier = TurnNotifier.get();
+		for (int i = 0; i < 10; i++) {
+			notifier.logic(notifier.getCurrentTurn() + 1);
+		}
+		assertEquals(4, pool.getIdleCount());
+	}
+
+	/**
+	 * Tests that changing the collision of an instance does not change the
+	 * template.
+	 */
+	@Test
+	public void testCopyOnWrite() throws Exception {
+		StendhalRPZone template = new StendhalRPZone("int_cow_template", 10, 10);
+		StendhalRPZone zone = createPool(template).acquire("bob_cow");
+
+		LayerDefinition collisionLayer = new LayerDefinition(10, 10);
+		collisionLayer.setName("collision");
+		collisionLayer.build();
+		collisionLayer.set(1, 1, 255);
+		zone.addCollisionLayer("bob_cow.collision", collisionLayer);
+
+		assertNotSame(template.collisionMap, zone.collisionMap);
+		assertTrue(zone.collisionMap.collides(1, 1));
+		assertFalse(template.collisionMap.collides(1, 1));
+	}
+}
@@ -0,0 +1,116 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.events.TurnListener;
+import games.stendhal.server.core.events.TurnNotifier;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for ZoneLogicExecutor.
+ */
+public class ZoneLogicExecutorTest {
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * Effects deferred by the zones should be applied after the parallel
+	 * phase, in zone order.
+	 */
+	@Test
+	public void testDeferredEffects() {
+		final List<StendhalRPZone> zones = new ArrayList<StendhalRPZone>();
+		for (int i = 0; i < 20; i++) {
+			zones.add(new StendhalRPZone("parallel_" + i, 10, 10));
+		}
+		final List<String> applied = Collections.synchronizedList(new ArrayList<String>());
+		final List<Boolean> parallel = Collections.synchronizedList(new ArrayList<Boolean>());
+
+		assertFalse(ZoneLogicExecutor.defer(new Runnable() {
+			@Override
+			public void run() {
+				// not deferred outside the parallel phase
+			}
+		}));
+
+		new ZoneLogicExecutor(4).execute(zones, new Task<StendhalRPZone>() {
+			@Override
+			public void execute(final StendhalRPZone zone) {
+				parallel.add(Boolean.valueOf(ZoneLogicExecutor.isParallelPhase()));
+				for (int i = 0; i < 2; i++) {
+					final String effect = zone.getName() + "/" + i;
+					ZoneLogicExecutor.defer(new Runnable() {
+						@Override
+						public void run() {
+							assertFalse(ZoneLogicExecutor.isParallelPhase());
+							applied.add(effect);
+						}
+					});
+				}
+			}
+		});
+
+		assertEquals(20, parallel.size());
+		assertFalse(parallel.contains(Boolean.FALSE));
+		assertEquals(40, applied.size());
+		for (int i = 0; i < 20; i++) {
+			assertEquals("parallel_" + i + "/0", applied.get(2 * i));
+			assertEquals("parallel_" + i + "/1", applied.get(2 * i + 1));
+		}
+	}
+
+	/**
+	 * Turn notifications registered from zone logic should be scheduled in the
+	 * merge phase.
+	 */
+	@Test
+	public void testTurnNotification() {
+		final TurnListener listener = new TurnListener() {
+			@Override
+			public void onTurnReached(final int currentTurn) {
+				// not used
+			}
+		};
+		final List<Integer> remaining = Collections.synchronizedList(new ArrayList<Integer>());
+		new ZoneLogicExecutor(2).execute(Collections.singletonList(new StendhalRPZone("notify", 10, 10)),
+				new Task<StendhalRPZone>() {
+			@Override
+			public void execute(final StendhalRPZone zone) {
+				TurnNotifier.get().notifyInTurns(5, listener);
+				remaining.add(Integer.valueOf(TurnNotifier.get().getRemainingTurns(listener)));
+			}
+		});
+		assertEquals(Integer.valueOf(-1), remaining.get(0));
+		assertEquals(6, TurnNotifier.get().getRemainingTurns(listener));
+		TurnNotifier.get().dontNotify(listener);
+		assertTrue(TurnNotifier.get().getRemainingTurns(listener) < 0);
+	}
+}
@@ -0,0 +1,188 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import games.stendhal.tools.playerUpdate.CheckCharacterSections;
+import marauroa.common.Log4J;
+import marauroa.common.game.RPObject;
+import marauroa.common.game.RPSlot;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.TransactionPool;
+import marauroa.server.game.db.DAORegister;
+import marauroa.server.game.db.DatabaseFactory;
+import marauroa.server.game.db.RPObjectDAO;
+import utilities.PlayerTestHelper;
+
+/**
+ * Tests for storing players with sections.
+ */
+public class StendhalRPObjectDAOTest {
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		Log4J.init();
+		new DatabaseFactory().initializeDatabase();
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * Get the names of the sections of an object that were written after
+	 * the protocol versions of all its sections were cleared.
+	 */
+	private static List<String> getWrittenSections(final DBTransaction transaction,
+			final int objectid) throws Exception {
+		final Map<String, Object> params = new HashMap<String, Object>();
+		params.put("objectid", Integer.valueOf(objectid));
+		final ResultSet resultSet = transaction.query("SELECT name FROM rpobject_section"
+				+ " WHERE object_id=[objectid] AND protocol_version<>0 ORDER BY name", params);
+		final List<String> names = new ArrayList<String>();
+		while (resultSet.next()) {
+			names.add(resultSet.getString(1));
+		}
+		resultSet.close();
+		return names;
+	}
+
+	private static void clearProtocolVersions(final DBTransaction transaction,
+			final int objectid) throws Exception {
+		final Map<String, Object> params = new HashMap<String, Object>();
+		params.put("objectid", Integer.valueOf(objectid));
+		transaction.execute("UPDATE rpobject_section SET protocol_version=0"
+				+ " WHERE object_id=[objectid]", params);
+	}
+
+	/**
+	 * A player stored with sections should load the same as with a full save.
+	 *
+	 * @throws Exception on database errors
+	 */
+	@Test
+	public void testRoundTrip() throws Exception {
+		final Player player = PlayerTestHelper.createPlayer("sectionbob");
+		final Item dagger = SingletonRepository.getEntityManager().getItem("dagger");
+		player.getSlot("bank").add(dagger);
+		final int daggerId = dagger.getID().getObjectID();
+		player.setQuest("section_test", "done");
+		final RPSlot bank = player.getSlot("bank");
+
+		final RPObjectDAO dao = DAORegister.get().get(RPObjectDAO.class);
+		final DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			final int objectid = dao.storeRPObject(transaction, player);
+			assertEquals(StendhalRPObjectDAO.SECTIONS.size(),
+					((StendhalRPObjectDAO) dao).loadSectionDigests(transaction, objectid).size());
+			// The stored player keeps its slots and item ids
+			assertSame(bank, player.getSlot("bank"));
+			assertEquals(dagger, player.getSlot("bank").getFirst());
+			assertEquals(daggerId, player.getSlot("bank").getFirst().getID().getObjectID());
+
+			final RPObject loaded = dao.loadRPObject(transaction, objectid, false);
+			assertEquals(1, loaded.getSlot("bank").size());
+			assertEquals("dagger", loaded.getSlot("bank").getFirst().get("name"));
+			assertEquals(daggerId, loaded.getSlot("bank").getFirst().getID().getObjectID());
+
+			assertEquals(new ArrayList<String>(), new CheckCharacterSections().check(transaction, player));
+			assertEquals(new ArrayList<String>(), new CheckCharacterSections().check(transaction, loaded));
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+
+	/**
+	 * Only the changed sections should be written.
+	 *
+	 * @throws Exception on database errors
+	 */
+	@Test
+	public void testWriteChangedSections() throws Exception {
+		final Player player = PlayerTestHelper.createPlayer("sectionalice");
+		final RPObjectDAO dao = DAORegister.get().get(RPObjectDAO.class);
+		final DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			final int objectid = dao.storeRPObject(transaction, player);
+			player.put("#db_id", objectid);
+			clearProtocolVersions(transaction, objectid);
+
+			dao.storeRPObject(transaction, player);
+			assertTrue("unchanged sections are not written", getWrittenSections(transaction, objectid).isEmpty());
+
+			player.getSlot("bank_fado").add(SingletonRepository.getEntityManager().getItem("dagger"));
+			player.setQuest("section_test", "start");
+			dao.storeRPObject(transaction, player);
+			final List<String> expected = new ArrayList<String>();
+			expected.add("!quests");
+			expected.add("bank_fado");
+			assertEquals(expected, getWrittenSections(transaction, objectid));
+
+			final RPObject loaded = dao.loadRPObject(transaction, objectid, false);
+			assertEquals(1, loaded.getSlot("bank_fado").size());
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+
+	/**
+	 * Sections whose slots have not changed since they were written should
+	 * not be looked at, and forgotten sections should be compared with the
+	 * stored ones.
+	 *
+	 * @throws Exception on database errors
+	 */
+	@Test
+	public void testSkipUnchangedSlots() throws Exception {
+		final Player player = PlayerTestHelper.createPlayer("sectioncarol");
+		final StendhalRPObjectDAO dao = (StendhalRPObjectDAO) DAORegister.get().get(RPObjectDAO.class);
+		final DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			final int objectid = dao.storeRPObject(transaction, player);
+			player.put("#db_id", objectid);
+			clearProtocolVersions(transaction, objectid);
+			final Map<String, Object> params = new HashMap<String, Object>();
+			params.put("objectid", Integer.valueOf(objectid));
+			transaction.execute("UPDATE rpobject_section SET digest='changed'"
+					+ " WHERE object_id=[objectid] AND name='bank'", params);
+
+			dao.storeRPObject(transaction, player);
+			assertTrue("unchanged slots are skipped", getWrittenSections(transaction, objectid).isEmpty());
+
+			dao.forgetSections(objectid);
+			dao.storeRPObject(transaction, player);
+			final List<String> expected = new ArrayList<String>();
+			expected.add("bank");
+			assertEquals(expected, getWrittenSections(transaction, objectid));
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import marauroa.common.Log4J;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.TransactionPool;
+import marauroa.server.game.db.DAORegister;
+import marauroa.server.game.db.DatabaseFactory;
+import utilities.PlayerTestHelper;
+
+/**
+ * Tests for writing the character_stats table.
+ */
+public class StendhalWebsiteDAOTest {
+	private static final String OLD_LASTSEEN = "2000-01-01 00:00:00";
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		Log4J.init();
+		new DatabaseFactory().initializeDatabase();
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		MockStendlRPWorld.reset();
+	}
+
+	private static Map<String, Object> getParams(final String name) {
+		final Map<String, Object> params = new HashMap<String, Object>();
+		params.put("name", name);
+		return params;
+	}
+
+	private static void execute(final String query, final String name) throws Exception {
+		final DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			transaction.execute(query, getParams(name));
+			TransactionPool.get().commit(transaction);
+		} catch (final Exception e) {
+			TransactionPool.get().rollback(transaction);
+			throw e;
+		}
+	}
+
+	/**
+	 * Get a column of the character_stats row of a player.
+	 */
+	private static String getStat(final String name, final String column) throws Exception {
+		final DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			final ResultSet resultSet = transaction.query("SELECT " + column
+					+ " FROM character_stats WHERE name='[name]'", getParams(name));
+			try {
+				assertTrue(resultSet.next());
+				return resultSet.getString(1);
+			} finally {
+				resultSet.close();
+			}
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+
+	/**
+	 * Store the statistics of a player in a transaction of its own.
+	 *
+	 * @param player player
+	 * @param commit <code>true</code> to commit the transaction,
+	 * 	<code>false</code> to roll it back
+	 * @return result of storeCharStats
+	 */
+	private static boolean store(final Player player, final boolean commit) throws Exception {
+		final DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			final boolean found = DAORegister.get().get(StendhalWebsiteDAO.class).storeCharStats(transaction, player);
+			if (commit) {
+				TransactionPool.get().commit(transaction);
+			} else {
+				TransactionPool.get().rollback(transaction);
+			}
+			return found;
+		} catch (final Exception e) {
+			TransactionPool.get().rollback(transaction);
+			throw e;
+		}
+	}
+
+	/**
+	 * The lastseen time should be written even if nothing else changed.
+	 *
+	 * @throws Exception on database errors
+	 */
+	@Test
+	public void testLastSeen() throws Exception {
+		final Player player = PlayerTestHelper.createPlayer("statsbob");
+		try {
+			assertFalse(store(player, true));
+			assertTrue(store(player, true));
+
+			execute("UPDATE character_stats SET lastseen='" + OLD_LASTSEEN + "' WHERE name='[name]'", "statsbob");
+			store(player, true);
+			assertNotEquals(OLD_LASTSEEN, getStat("statsbob", "lastseen").substring(0, OLD_LASTSEEN.length()));
+		} finally {
+			execute("DELETE FROM character_stats WHERE name='[name]'", "statsbob");
+		}
+	}
+
+	/**
+	 * Values written in a transaction that was rolled back should be written
+	 * again, even if they have not changed since.
+	 *
+	 * @throws Exception on database errors
+	 */
+	@Test
+	public void testRollback() throws Exception {
+		final Player player = PlayerTestHelper.createPlayer("statsalice");
+		try {
+			player.setXP(100);
+			assertFalse(store(player, true));
+			// The rolled back values get a lastseen time of their own
+			Thread.sleep(1000 - System.currentTimeMillis() % 1000);
+			player.setXP(200);
+			assertTrue(store(player, false));
+			assertEquals("100", getStat("statsalice", "xp"));
+
+			assertFalse(store(player, true));
+			assertEquals("200", getStat("statsalice", "xp"));
+		} finally {
+			execute("DELETE FROM character_stats WHERE name='[name]'", "statsalice");
+		}
+	}
+}
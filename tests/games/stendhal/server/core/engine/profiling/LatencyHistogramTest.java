@@ -0,0 +1,75 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.profiling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for LatencyHistogram.
+ */
+public class LatencyHistogramTest {
+	/**
+	 * Every value should be sorted to a sub bucket whose range contains it.
+	 */
+	@Test
+	public void testBuckets() {
+		Random random = new Random(42);
+		for (int i = 0; i < 10000; i++) {
+			long value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+			int index = LatencyHistogram.index(value);
+			assertTrue(value <= LatencyHistogram.highestEquivalentValue(index));
+			if (index > 0) {
+				assertTrue(value > LatencyHistogram.highestEquivalentValue(index - 1));
+			}
+		}
+		assertEquals(0, LatencyHistogram.index(0));
+		assertEquals(31, LatencyHistogram.index(31));
+		assertEquals(32, LatencyHistogram.index(32));
+		assertEquals(32, LatencyHistogram.index(33));
+		assertTrue(LatencyHistogram.index(Long.MAX_VALUE) < 64 * 16);
+	}
+
+	/**
+	 * Tests for the percentiles.
+	 */
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentile(50));
+		for (long i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1000000, histogram.getMax());
+		assertEquals(500500.0, histogram.getMean(), 0.001);
+		assertWithin(500000, histogram.getPercentile(50));
+		assertWithin(990000, histogram.getPercentile(99));
+		assertEquals(1000000, histogram.getPercentile(100));
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+	}
+
+	/**
+	 * Check that a reported value is within the precision of the histogram.
+	 */
+	private static void assertWithin(long expected, long actual) {
+		assertTrue("expected about " + expected + ", got " + actual,
+				(actual >= expected) && (actual <= expected * 1.07));
+	}
+}
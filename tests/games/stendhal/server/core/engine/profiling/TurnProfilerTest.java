@@ -0,0 +1,94 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.profiling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for TurnProfiler.
+ */
+public class TurnProfilerTest {
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * The slowest lists should be available after a window is completed.
+	 */
+	@Test
+	public void testWindow() {
+		TurnProfiler profiler = new TurnProfiler(3, 2);
+		profiler.setEnabled(true);
+		StendhalRPZone fast = new StendhalRPZone("fast_zone");
+		StendhalRPZone slow = new StendhalRPZone("slow_zone");
+		StendhalRPZone slowest = new StendhalRPZone("slowest_zone");
+
+		for (int turn = 0; turn < 3; turn++) {
+			assertEquals("window not complete", 0, profiler.getSlowestZones().length);
+			profiler.recordZone(fast, 1000);
+			profiler.recordZone(slow, 2000000);
+			profiler.recordZone(slowest, 5000000 * turn);
+			profiler.recordTurnListener(String.class, 1000);
+			profiler.turnCompleted();
+		}
+
+		String[] zones = profiler.getSlowestZones();
+		assertEquals(2, zones.length);
+		assertTrue(zones[0], zones[0].startsWith("slowest_zone: max 10.00 ms, total 15.00 ms in 3 runs"));
+		assertTrue(zones[1], zones[1].startsWith("slow_zone: max 2.00 ms"));
+		String[] listeners = profiler.getSlowestTurnListeners();
+		assertEquals(1, listeners.length);
+		assertTrue(listeners[0], listeners[0].startsWith("java.lang.String:"));
+
+		// A new window does not include the old data
+		profiler.recordZone(fast, 1000);
+		for (int turn = 0; turn < 3; turn++) {
+			profiler.turnCompleted();
+		}
+		assertEquals(1, profiler.getSlowestZones().length);
+	}
+
+	/**
+	 * Tests for the phase histograms.
+	 */
+	@Test
+	public void testPhases() {
+		TurnProfiler profiler = new TurnProfiler(10, 10);
+		profiler.record(TurnPhase.ZONE_LOGIC, 1000000);
+		profiler.record(TurnPhase.ZONE_LOGIC, 3000000);
+		assertEquals(3.0, profiler.getPhasePercentile("ZONE_LOGIC", 100), 0.001);
+		assertEquals(3.0, profiler.getPhasePercentile("zone logic", 100), 0.001);
+		assertEquals(-1.0, profiler.getPhasePercentile("nonexistent", 100), 0.001);
+		assertEquals(TurnPhase.values().length, profiler.getPhaseStatistics().length);
+
+		profiler.record(TurnPhase.ZONE_LOGIC, 9000000);
+		assertEquals("phases are recorded without enabling the profiler", 9.0,
+				profiler.getPhasePercentile("ZONE_LOGIC", 100), 0.001);
+
+		profiler.reset();
+		assertEquals(0.0, profiler.getPhasePercentile("ZONE_LOGIC", 100), 0.001);
+	}
+}
@@ -0,0 +1,171 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for TurnNotifier.
+ */
+public class TurnNotifierTest {
+	private TurnNotifier notifier;
+
+	@Before
+	public void setUp() {
+		notifier = TurnNotifier.get();
+		notifier.clear();
+	}
+
+	@After
+	public void tearDown() {
+		notifier.clear();
+	}
+
+	/**
+	 * Run the notifier until a turn.
+	 *
+	 * @param turn last turn to run
+	 */
+	private void runUntil(int turn) {
+		while (notifier.getCurrentTurn() < turn) {
+			notifier.logic(notifier.getCurrentTurn() + 1);
+		}
+	}
+
+	/**
+	 * Events at various distances should fire exactly at their turn.
+	 */
+	@Test
+	public void testFireAtTurn() {
+		int start = notifier.getCurrentTurn();
+		int[] delays = { 1, 2, 255, 256, 257, 1000, 16383, 16384, 20000, 300000 };
+		List<Recorder> recorders = new ArrayList<Recorder>();
+		for (int delay : delays) {
+			Recorder recorder = new Recorder();
+			notifier.notifyAtTurn(start + delay, recorder);
+			recorders.add(recorder);
+		}
+		assertEquals(delays.length, notifier.getScheduledEventCount());
+		runUntil(start + 300000);
+		for (int i = 0; i < delays.length; i++) {
+			assertEquals(1, recorders.get(i).turns.size());
+			assertEquals(Integer.valueOf(start + delays[i]), recorders.get(i).turns.get(0));
+		}
+		assertEquals(0, notifier.getScheduledEventCount());
+	}
+
+	/**
+	 * Tests for dontNotify and getRemainingTurns.
+	 */
+	@Test
+	public void testCancelAndRemaining() {
+		Recorder recorder = new Recorder();
+		assertEquals(-1, notifier.getRemainingTurns(recorder));
+		notifier.notifyInTurns(99, recorder);
+		notifier.notifyInTurns(4, recorder);
+		assertEquals(5, notifier.getRemainingTurns(recorder));
+		// equal listeners are registered only once per turn
+		notifier.notifyInTurns(4, recorder);
+		assertEquals(2, notifier.getScheduledEventCount());
+
+		runUntil(notifier.getCurrentTurn() + 5);
+		assertEquals(1, recorder.turns.size());
+		assertEquals(95, notifier.getRemainingTurns(recorder));
+
+		notifier.dontNotify(recorder);
+		assertEquals(-1, notifier.getRemainingTurns(recorder));
+		assertEquals(0, notifier.getScheduledEventCount());
+		runUntil(notifier.getCurrentTurn() + 200);
+		assertEquals(1, recorder.turns.size());
+	}
+
+	/**
+	 * Events of skipped turns should be fired with their own turn numbers.
+	 */
+	@Test
+	public void testSkippedTurns() {
+		int start = notifier.getCurrentTurn();
+		Recorder recorder = new Recorder();
+		notifier.notifyAtTurn(start + 2, recorder);
+		notifier.notifyAtTurn(start + 3, recorder);
+		notifier.logic(start + 10);
+		assertEquals(2, recorder.turns.size());
+		assertEquals(Integer.valueOf(start + 2), recorder.turns.get(0));
+		assertEquals(Integer.valueOf(start + 3), recorder.turns.get(1));
+		assertEquals(2, notifier.getEventsFiredLastTurn());
+		assertNotNull(notifier.getLongestListener());
+		assertTrue(notifier.getLongestListenerRuntime() >= 0);
+	}
+
+	/**
+	 * Setting the turn back should keep the scheduled events.
+	 */
+	@Test
+	public void testTurnSetBack() {
+		int start = notifier.getCurrentTurn() + 1000;
+		runUntil(start);
+		Recorder recorder = new Recorder();
+		notifier.notifyAtTurn(start + 300, recorder);
+		notifier.logic(10);
+		assertEquals(10, notifier.getCurrentTurn());
+		assertEquals(start + 290, notifier.getRemainingTurns(recorder));
+		runUntil(start + 299);
+		assertEquals(0, recorder.turns.size());
+		notifier.logic(start + 300);
+		assertEquals(1, recorder.turns.size());
+	}
+
+	/**
+	 * Listeners may schedule new events while being notified.
+	 */
+	@Test
+	public void testRescheduleFromListener() {
+		final List<Integer> turns = new ArrayList<Integer>();
+		TurnListener listener = new TurnListener() {
+			@Override
+			public void onTurnReached(int currentTurn) {
+				turns.add(Integer.valueOf(currentTurn));
+				if (turns.size() < 3) {
+					notifier.notifyInTurns(299, this);
+				}
+			}
+		};
+		int start = notifier.getCurrentTurn();
+		notifier.notifyInTurns(0, listener);
+		runUntil(start + 1000);
+		assertEquals(3, turns.size());
+		assertEquals(Integer.valueOf(start + 1), turns.get(0));
+		assertEquals(Integer.valueOf(start + 301), turns.get(1));
+		assertEquals(Integer.valueOf(start + 601), turns.get(2));
+	}
+
+	/**
+	 * A listener recording the turns it was notified.
+	 */
+	private static class Recorder implements TurnListener {
+		private final List<Integer> turns = new ArrayList<Integer>();
+
+		@Override
+		public void onTurnReached(int currentTurn) {
+			turns.add(Integer.valueOf(currentTurn));
+		}
+	}
+}
@@ -0,0 +1,184 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.pathfinder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.entity.GuidedEntity;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for AsyncPathfinder.
+ */
+public class AsyncPathfinderTest {
+	private AsyncPathfinder pathfinder;
+	private StendhalRPZone zone;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	@Before
+	public void setUp() {
+		pathfinder = new AsyncPathfinder(1, 1);
+		zone = new StendhalRPZone("async_path", 10, 10);
+		for (int y = 0; y < 9; y++) {
+			zone.collisionMap.setCollide(5, y);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		pathfinder.shutdown();
+	}
+
+	private GuidedEntity createEntity(int x, int y) {
+		GuidedEntity entity = new GuidedEntity() {
+			// just to create an instance
+		};
+		entity.setPosition(x, y);
+		entity.setResistance(0);
+		zone.add(entity);
+		return entity;
+	}
+
+	/**
+	 * Run turns until a listener has got its result.
+	 */
+	private void runUntilDone(Listener listener) throws InterruptedException {
+		for (int i = 0; (i < 500) && (listener.path == null); i++) {
+			Thread.sleep(5);
+			pathfinder.logic();
+		}
+		assertNotNull("path delivered", listener.path);
+	}
+
+	/**
+	 * Results should be delivered on a later turn, and match the path of a
+	 * synchronous search.
+	 */
+	@Test
+	public void testDelivery() throws InterruptedException {
+		GuidedEntity entity = createEntity(1, 1);
+		Rectangle destination = new Rectangle(8, 1, 1, 1);
+		List<Node> expected = Path.searchPath(entity, zone, 1, 1, destination, 30, true);
+
+		Listener listener = new Listener();
+		PathRequest request = pathfinder.request(entity, destination, 30, listener);
+		Thread.sleep(50);
+		assertNull("not delivered before the next turn", listener.path);
+		assertFalse(request.isDone());
+
+		runUntilDone(listener);
+		assertTrue(request.isDone());
+		assertEquals(expected, listener.path);
+		assertEquals(0, pathfinder.getPendingRequestCount());
+	}
+
+	/**
+	 * Identical requests should share a search.
+	 */
+	@Test
+	public void testDeduplication() throws InterruptedException {
+		GuidedEntity first = createEntity(1, 1);
+		GuidedEntity second = createEntity(1, 1);
+		Rectangle destination = new Rectangle(8, 1, 1, 1);
+		Listener firstListener = new Listener();
+		Listener secondListener = new Listener();
+		pathfinder.request(first, destination, 30, firstListener);
+		pathfinder.request(second, destination, 30, secondListener);
+		assertEquals(2, pathfinder.getPendingRequestCount());
+
+		pathfinder.logic();
+		assertEquals("one search for both requests", 1, pathfinder.getSearchesStartedLastTurn());
+		runUntilDone(firstListener);
+		assertEquals(firstListener.path, secondListener.path);
+		pathfinder.logic();
+		assertEquals(0, pathfinder.getSearchesStartedLastTurn());
+	}
+
+	/**
+	 * Cancelled requests should not be delivered. A new request of an entity
+	 * replaces the old one.
+	 */
+	@Test
+	public void testCancel() throws InterruptedException {
+		GuidedEntity entity = createEntity(1, 1);
+		Listener cancelled = new Listener();
+		PathRequest request = pathfinder.request(entity, new Rectangle(8, 1, 1, 1), 30, cancelled);
+		request.cancel();
+		assertTrue(request.isCancelled());
+		assertEquals(0, pathfinder.getPendingRequestCount());
+
+		Listener replaced = new Listener();
+		PathRequest old = pathfinder.request(entity, new Rectangle(8, 2, 1, 1), 30, replaced);
+		Listener listener = new Listener();
+		pathfinder.request(entity, new Rectangle(8, 3, 1, 1), 30, listener);
+		assertTrue(old.isCancelled());
+		assertEquals(1, pathfinder.getPendingRequestCount());
+
+		runUntilDone(listener);
+		assertNull(cancelled.path);
+		assertNull(replaced.path);
+	}
+
+	/**
+	 * No more than the budget of searches should be started per turn.
+	 */
+	@Test
+	public void testBudget() throws InterruptedException {
+		Listener first = new Listener();
+		Listener second = new Listener();
+		pathfinder.request(createEntity(1, 1), new Rectangle(8, 1, 1, 1), 30, first);
+		pathfinder.request(createEntity(1, 2), new Rectangle(8, 2, 1, 1), 30, second);
+
+		pathfinder.logic();
+		assertEquals(1, pathfinder.getSearchesStartedLastTurn());
+		pathfinder.logic();
+		assertEquals("the waiting search was started on the next turn", 1,
+				pathfinder.getSearchesStartedLastTurn());
+		runUntilDone(first);
+		runUntilDone(second);
+	}
+
+	/**
+	 * Path listener recording the delivered path.
+	 */
+	private static class Listener implements PathListener {
+		private List<Node> path;
+
+		@Override
+		public void onPathFound(GuidedEntity entity, List<Node> path) {
+			this.path = path;
+		}
+	}
+}
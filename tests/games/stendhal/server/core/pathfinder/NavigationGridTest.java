@@ -0,0 +1,110 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.pathfinder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.common.CollisionDetection;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for NavigationGrid, and path finding using it.
+ */
+public class NavigationGridTest {
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * The blocked tiles should match the collision checks of the map for
+	 * various entity sizes.
+	 */
+	@Test
+	public void testBlockedTiles() {
+		CollisionDetection collision = new CollisionDetection();
+		collision.init(12, 10);
+		collision.setCollide(3, 4);
+		collision.setCollide(7, 7);
+		collision.setCollide(11, 0);
+		NavigationGrid grid = new NavigationGrid(collision);
+
+		double[][] sizes = { { 1, 1 }, { 2, 2 }, { 1, 2 }, { 1.5, 1 }, { 3, 2 } };
+		for (double[] size : sizes) {
+			BitSet blocked = grid.getBlockedTiles(size[0], size[1]);
+			for (int y = 0; y < 10; y++) {
+				for (int x = 0; x < 12; x++) {
+					assertEquals("(" + x + "," + y + ") size " + size[0] + "x" + size[1],
+							collision.collides(x, y, size[0], size[1]), blocked.get(x + y * 12));
+				}
+			}
+		}
+	}
+
+	/**
+	 * The zone grid should follow the changes of the collision map.
+	 */
+	@Test
+	public void testZoneGridUpdate() {
+		StendhalRPZone zone = new StendhalRPZone("navigation", 10, 10);
+		NavigationGrid grid = zone.getNavigationGrid();
+		assertSame(grid, zone.getNavigationGrid());
+		assertFalse(grid.getBlockedTiles(1, 1).get(5 + 5 * 10));
+
+		zone.collisionMap.setCollide(5, 5);
+		assertFalse(grid.isCurrent(zone.collisionMap));
+		NavigationGrid updated = zone.getNavigationGrid();
+		assertNotSame(grid, updated);
+		assertTrue(updated.getBlockedTiles(1, 1).get(5 + 5 * 10));
+	}
+
+	/**
+	 * Paths should go around static collisions.
+	 */
+	@Test
+	public void testPathAroundWall() {
+		StendhalRPZone zone = new StendhalRPZone("wall", 10, 10);
+		// a wall from (5, 0) to (5, 8)
+		for (int y = 0; y < 9; y++) {
+			zone.collisionMap.setCollide(5, y);
+		}
+		List<Node> path = Path.searchPath(zone, 2, 2, 8, 2, 50);
+		assertEquals(new Node(2, 2), path.get(0));
+		assertEquals(new Node(8, 2), path.get(path.size() - 1));
+		// down to row 9, through the gap, and back up
+		assertEquals(21, path.size());
+		for (Node node : path) {
+			assertFalse(zone.collisionMap.collides(node.getX(), node.getY()));
+		}
+
+		// no way through a closed wall
+		zone.collisionMap.setCollide(5, 9);
+		assertTrue(Path.searchPath(zone, 2, 2, 8, 2, 50).isEmpty());
+	}
+}
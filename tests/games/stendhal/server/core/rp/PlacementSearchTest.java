@@ -0,0 +1,125 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.rp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for PlacementSearch.
+ */
+public class PlacementSearchTest {
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	private static Entity createEntity() {
+		return new Entity() {
+			// just to create an instance
+		};
+	}
+
+	private static void addBlocker(StendhalRPZone zone, int x, int y) {
+		Entity blocker = createEntity();
+		blocker.setPosition(x, y);
+		zone.add(blocker);
+	}
+
+	/**
+	 * Tests placing next to an occupied spot.
+	 */
+	@Test
+	public void testNearest() {
+		StendhalRPZone zone = new StendhalRPZone("placement_nearest", 10, 10);
+		addBlocker(zone, 5, 5);
+		addBlocker(zone, 5, 4);
+		Entity entity = createEntity();
+
+		assertEquals(new Point(5, 6), PlacementSearch.find(zone, entity, null, 5, 5, 36, true));
+		// same walking distance, but closer on the diagonal
+		addBlocker(zone, 5, 6);
+		addBlocker(zone, 4, 5);
+		addBlocker(zone, 6, 5);
+		assertEquals(new Point(4, 4), PlacementSearch.find(zone, entity, null, 5, 5, 36, true));
+	}
+
+	/**
+	 * Tests restricting the placement to an area.
+	 */
+	@Test
+	public void testAllowedArea() {
+		StendhalRPZone zone = new StendhalRPZone("placement_area", 10, 10);
+		addBlocker(zone, 5, 5);
+		Entity entity = createEntity();
+
+		assertEquals(new Point(8, 5), PlacementSearch.find(zone, entity,
+				new Rectangle(8, 5, 2, 1), 5, 5, 36, true));
+		assertNull(PlacementSearch.find(zone, entity, new Rectangle(8, 5, 2, 1), 5, 5, 2, true));
+	}
+
+	/**
+	 * Tests that a spot behind a wall is used only when a path is not
+	 * required.
+	 */
+	@Test
+	public void testReachability() {
+		StendhalRPZone zone = new StendhalRPZone("placement_wall", 20, 20);
+		for (int y = 0; y < 19; y++) {
+			zone.collisionMap.setCollide(5, y);
+			for (int x = 0; x < 4; x++) {
+				zone.collisionMap.setCollide(x, y);
+			}
+		}
+		// A corridor along the wall, full of entities. Its only exit is at
+		// the bottom
+		for (int y = 0; y < 19; y++) {
+			addBlocker(zone, 4, y);
+		}
+		Entity entity = createEntity();
+
+		assertEquals(new Point(6, 10), PlacementSearch.find(zone, entity, null, 4, 10, 36, false));
+		assertEquals(new Point(4, 19), PlacementSearch.find(zone, entity, null, 4, 10, 36, true));
+	}
+
+	/**
+	 * Tests a search with no free spots.
+	 */
+	@Test
+	public void testNoSpace() {
+		StendhalRPZone zone = new StendhalRPZone("placement_full", 3, 3);
+		for (int x = 0; x < 3; x++) {
+			for (int y = 0; y < 3; y++) {
+				addBlocker(zone, x, y);
+			}
+		}
+
+		assertNull(PlacementSearch.find(zone, createEntity(), null, 1, 1, 36, true));
+		assertNull(PlacementSearch.find(zone, createEntity(), null, 1, 1, 36, false));
+	}
+}
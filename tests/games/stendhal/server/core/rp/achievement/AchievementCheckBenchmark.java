@@ -0,0 +1,202 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.rp.achievement;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import games.stendhal.server.core.rp.achievement.factory.AbstractAchievementFactory;
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import utilities.PlayerTestHelper;
+
+/**
+ * Compares the achievement checks done on quest slot changes and kills using
+ * the dependency index against checking all achievements of the affected
+ * categories (the way achievements were checked before the index), and the
+ * login check with and without skipping the already reached achievements.
+ * <p>
+ * Run with <code>java games.stendhal.server.core.rp.achievement.AchievementCheckBenchmark
+ * [events]</code>.
+ */
+public class AchievementCheckBenchmark {
+	private static final Set<Category> QUEST_CATEGORIES = EnumSet.of(Category.QUEST,
+			Category.QUEST_ADOS_ITEMS, Category.QUEST_SEMOS_MONSTER, Category.QUEST_KIRDNEH_ITEM,
+			Category.FRIEND, Category.OBTAIN, Category.PRODUCTION, Category.QUEST_MITHRILBOURGH_ENEMY_ARMY);
+
+	private static final String[] QUEST_SLOTS = { "maze", "elf_princess", "daily", "kill_dhohr_nuggetcutter",
+		"meet_hackim", "deathmatch_score", "hungry_joshua", "fishermans_license1", "sad_scientist" };
+	private static final String[] CREATURES = { "rat", "caverat", "deer", "boar", "wolf", "dark elf", "balrog" };
+
+	public static void main(String[] args) {
+		int events = 20000;
+		if (args.length > 0) {
+			events = Integer.parseInt(args[0]);
+		}
+
+		MockStendlRPWorld.get();
+		List<Achievement> all = new ArrayList<Achievement>();
+		AchievementDependencyIndex index = new AchievementDependencyIndex();
+		for (AbstractAchievementFactory factory : AbstractAchievementFactory.createFactories()) {
+			for (Achievement achievement : factory.createAchievements()) {
+				achievement.setIndex(all.size());
+				all.add(achievement);
+				index.add(achievement);
+			}
+		}
+
+		Player player = PlayerTestHelper.createPlayer("bench");
+		Random random = new Random(42);
+		for (String slot : QUEST_SLOTS) {
+			player.setQuest(slot, "done;" + random.nextInt(50));
+		}
+		for (String creature : CREATURES) {
+			for (int i = random.nextInt(30); i > 0; i--) {
+				player.setSoloKill(creature);
+			}
+		}
+
+		// warm up
+		runQuestChanges(player, all, index, events / 10, false);
+		runQuestChanges(player, all, index, events / 10, true);
+		runKills(player, all, index, events / 10, false);
+		runKills(player, all, index, events / 10, true);
+
+		System.out.println(all.size() + " achievements, " + events + " events");
+		System.out.printf("quest change, all categories: %.2f us/event%n",
+				runQuestChanges(player, all, index, events, false) / 1e3 / events);
+		System.out.printf("quest change, indexed:        %.2f us/event%n",
+				runQuestChanges(player, all, index, events, true) / 1e3 / events);
+		System.out.printf("kill, all fighting:           %.2f us/event%n",
+				runKills(player, all, index, events, false) / 1e3 / events);
+		System.out.printf("kill, indexed:                %.2f us/event%n",
+				runKills(player, all, index, events, true) / 1e3 / events);
+
+		BitSet reached = new BitSet();
+		for (Achievement achievement : all) {
+			if (achievement.isFulfilled(player)) {
+				reached.set(achievement.getIndex());
+			}
+		}
+		int logins = Math.max(1, events / 10);
+		runLogins(player, all, reached, logins / 10, false);
+		runLogins(player, all, reached, logins / 10, true);
+		System.out.printf("login, all conditions:        %.2f us/login%n",
+				runLogins(player, all, reached, logins, false) / 1e3 / logins);
+		System.out.printf("login, skip reached:          %.2f us/login%n",
+				runLogins(player, all, reached, logins, true) / 1e3 / logins);
+		// the database command queue would keep running
+		System.exit(0);
+	}
+
+	/**
+	 * Check the achievements affected by random quest slot changes.
+	 *
+	 * @return elapsed time in nanoseconds
+	 */
+	private static long runQuestChanges(Player player, List<Achievement> all,
+			AchievementDependencyIndex index, int events, boolean indexed) {
+		Random random = new Random(1);
+		int fulfilled = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < events; i++) {
+			String slot = QUEST_SLOTS[random.nextInt(QUEST_SLOTS.length)];
+			if (indexed) {
+				fulfilled += count(player, index.getQuestDependents(slot));
+				for (Category category : QUEST_CATEGORIES) {
+					fulfilled += count(player, index.getUnindexed(category));
+				}
+			} else {
+				for (Achievement achievement : all) {
+					if (QUEST_CATEGORIES.contains(achievement.getCategory()) && achievement.isFulfilled(player)) {
+						fulfilled++;
+					}
+				}
+			}
+		}
+		long time = System.nanoTime() - start;
+		if (fulfilled < 0) {
+			System.out.println(fulfilled);
+		}
+		return time;
+	}
+
+	/**
+	 * Check the achievements affected by random kills.
+	 *
+	 * @return elapsed time in nanoseconds
+	 */
+	private static long runKills(Player player, List<Achievement> all,
+			AchievementDependencyIndex index, int events, boolean indexed) {
+		Random random = new Random(2);
+		int fulfilled = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < events; i++) {
+			String creature = CREATURES[random.nextInt(CREATURES.length)];
+			if (indexed) {
+				fulfilled += count(player, index.getCreatureDependents(creature));
+				fulfilled += count(player, index.getUnindexed(Category.FIGHTING));
+			} else {
+				for (Achievement achievement : all) {
+					if ((achievement.getCategory() == Category.FIGHTING) && achievement.isFulfilled(player)) {
+						fulfilled++;
+					}
+				}
+			}
+		}
+		long time = System.nanoTime() - start;
+		if (fulfilled < 0) {
+			System.out.println(fulfilled);
+		}
+		return time;
+	}
+
+	/**
+	 * Check all achievements, like on login.
+	 *
+	 * @return elapsed time in nanoseconds
+	 */
+	private static long runLogins(Player player, List<Achievement> all, BitSet reached,
+			int logins, boolean skipReached) {
+		int fulfilled = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < logins; i++) {
+			for (Achievement achievement : all) {
+				if (skipReached && reached.get(achievement.getIndex())) {
+					continue;
+				}
+				if (achievement.isFulfilled(player)) {
+					fulfilled++;
+				}
+			}
+		}
+		long time = System.nanoTime() - start;
+		if (fulfilled < 0) {
+			System.out.println(fulfilled);
+		}
+		return time;
+	}
+
+	private static int count(Player player, List<Achievement> achievements) {
+		int fulfilled = 0;
+		for (Achievement achievement : achievements) {
+			if (achievement.isFulfilled(player)) {
+				fulfilled++;
+			}
+		}
+		return fulfilled;
+	}
+}
@@ -0,0 +1,93 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.rp.achievement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import games.stendhal.common.parser.Sentence;
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.entity.npc.ChatCondition;
+import games.stendhal.server.entity.npc.condition.AndCondition;
+import games.stendhal.server.entity.npc.condition.PlayerHasKilledNumberOfCreaturesCondition;
+import games.stendhal.server.entity.npc.condition.PlayerLootedNumberOfItemsCondition;
+import games.stendhal.server.entity.npc.condition.QuestCompletedCondition;
+import games.stendhal.server.entity.npc.condition.QuestStateGreaterThanCondition;
+import games.stendhal.server.entity.player.Player;
+
+/**
+ * Tests for AchievementDependencyIndex.
+ */
+public class AchievementDependencyIndexTest {
+	private static Achievement create(String identifier, Category category, ChatCondition condition) {
+		return new Achievement(identifier, identifier, category, "", Achievement.EASY_BASE_SCORE, true, condition);
+	}
+
+	/**
+	 * Achievements should be found by the quest slots, creatures and items
+	 * their conditions check.
+	 */
+	@Test
+	public void testDependents() {
+		AchievementDependencyIndex index = new AchievementDependencyIndex();
+		Achievement maze = create("maze", Category.QUEST, new QuestStateGreaterThanCondition("maze", 2, 0));
+		Achievement both = create("both", Category.QUEST, new AndCondition(
+				new QuestCompletedCondition("maze"), new QuestCompletedCondition("elf_princess")));
+		Achievement rats = create("rats", Category.FIGHTING,
+				new PlayerHasKilledNumberOfCreaturesCondition(10, "rat", "caverat"));
+		Achievement loot = create("loot", Category.ITEM,
+				new PlayerLootedNumberOfItemsCondition(5, "money", "meat"));
+		index.add(maze);
+		index.add(both);
+		index.add(rats);
+		index.add(loot);
+
+		assertEquals(Arrays.asList(maze, both), index.getQuestDependents("maze"));
+		assertEquals(Arrays.asList(both), index.getQuestDependents("elf_princess"));
+		assertTrue(index.getQuestDependents("unknown").isEmpty());
+		assertEquals(Arrays.asList(rats), index.getCreatureDependents("caverat"));
+		assertTrue(index.getCreatureDependents("deer").isEmpty());
+		assertEquals(Arrays.asList(loot), index.getItemDependents("meat"));
+		assertTrue(index.getUnindexed(Category.QUEST).isEmpty());
+	}
+
+	/**
+	 * Achievements with unknown conditions should be checked on every event
+	 * of their category.
+	 */
+	@Test
+	public void testUnindexed() {
+		AchievementDependencyIndex index = new AchievementDependencyIndex();
+		ChatCondition custom = new ChatCondition() {
+			@Override
+			public boolean fire(Player player, Sentence sentence, Entity npc) {
+				return false;
+			}
+		};
+		Achievement unknown = create("unknown", Category.FRIEND, custom);
+		Achievement partlyKnown = create("partly", Category.FRIEND,
+				new AndCondition(new QuestCompletedCondition("maze"), custom));
+		Achievement seasonal = create("seasonal", Category.QUEST,
+				new QuestCompletedCondition("event_${year}"));
+		index.add(unknown);
+		index.add(partlyKnown);
+		index.add(seasonal);
+
+		assertEquals(Arrays.asList(unknown, partlyKnown), index.getUnindexed(Category.FRIEND));
+		assertEquals(Arrays.asList(seasonal), index.getUnindexed(Category.QUEST));
+		assertTrue(index.getQuestDependents("maze").isEmpty());
+	}
+}
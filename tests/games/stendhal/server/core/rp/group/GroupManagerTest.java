@@ -0,0 +1,150 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.rp.group;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.events.TurnNotifier;
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.server.maps.MockStendhalRPRuleProcessor;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import utilities.PlayerTestHelper;
+
+/**
+ * Tests for GroupManager.
+ */
+public class GroupManagerTest {
+	/** Turns enough for the group timeouts to expire. */
+	private static final int TIMEOUT_TURNS = 5 * 60 * 1000 / 300 + 10;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	@After
+	public void tearDown() {
+		PlayerTestHelper.removeAllPlayers();
+	}
+
+	private static Player createPlayer(String name) {
+		Player player = PlayerTestHelper.createPlayer(name);
+		MockStendhalRPRuleProcessor.get().addPlayer(player);
+		return player;
+	}
+
+	private static void passTimeout() {
+		TurnNotifier notifier = TurnNotifier.get();
+		notifier.logic(notifier.getCurrentTurn() + TIMEOUT_TURNS);
+	}
+
+	/**
+	 * Tests for the member index.
+	 */
+	@Test
+	public void testGetGroup() {
+		GroupManager manager = new GroupManager();
+		Player alice = createPlayer("alice");
+		createPlayer("bob");
+		createPlayer("carol");
+
+		Group group = manager.createGroup("alice");
+		assertNotNull(group);
+		assertNull("already in a group", manager.createGroup("alice"));
+		assertSame(group, manager.getGroup("alice"));
+		assertNull(manager.getGroup("bob"));
+
+		group.invite(alice, PlayerTestHelper.createPlayer("bob"));
+		group.addMember("bob");
+		group.addMember("carol");
+		assertSame(group, manager.getGroup("bob"));
+		assertSame(group, manager.getGroup("carol"));
+
+		group.removeMember("carol");
+		assertNull(manager.getGroup("carol"));
+		assertSame(group, manager.getGroup("bob"));
+
+		// the last member is removed too when only one is left
+		group.removeMember("bob");
+		assertNull(manager.getGroup("bob"));
+		assertNull(manager.getGroup("alice"));
+		assertEquals(0, manager.getGroupCount());
+
+		manager.createGroup("alice");
+		assertTrue(manager.destroyGroup("alice"));
+		assertNull(manager.getGroup("alice"));
+		assertEquals(0, manager.getGroupCount());
+	}
+
+	/**
+	 * A group of one whose invite expires should be removed.
+	 */
+	@Test
+	public void testInviteTimeout() {
+		GroupManager manager = new GroupManager();
+		Player alice = createPlayer("alice");
+		Player bob = createPlayer("bob");
+
+		Group group = manager.createGroup("alice");
+		group.invite(alice, bob);
+		assertTrue(group.hasBeenInvited("bob"));
+		assertEquals(1, manager.getGroupCount());
+
+		passTimeout();
+		assertTrue(!group.hasBeenInvited("bob"));
+		assertNull(manager.getGroup("alice"));
+		assertEquals(0, manager.getGroupCount());
+	}
+
+	/**
+	 * Members that stay offline should be removed after the timeout, but not
+	 * if they come back.
+	 */
+	@Test
+	public void testOfflineTimeout() {
+		GroupManager manager = new GroupManager();
+		createPlayer("alice");
+		Player bob = createPlayer("bob");
+		Player carol = createPlayer("carol");
+
+		Group group = manager.createGroup("alice");
+		group.addMember("bob");
+		group.addMember("carol");
+
+		MockStendhalRPRuleProcessor.get().getOnlinePlayers().remove(bob);
+		manager.onLoggedOut(bob);
+		MockStendhalRPRuleProcessor.get().getOnlinePlayers().remove(carol);
+		manager.onLoggedOut(carol);
+		// carol comes back
+		MockStendhalRPRuleProcessor.get().addPlayer(carol);
+		manager.onLoggedIn(carol);
+
+		passTimeout();
+		assertNull(manager.getGroup("bob"));
+		assertSame(group, manager.getGroup("carol"));
+		assertSame(group, manager.getGroup("alice"));
+	}
+}
@@ -0,0 +1,82 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.rule.defaultruleset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.entity.item.StackableItem;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for DefaultItem.
+ */
+public class DefaultItemTest {
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	private static DefaultItem createDefinition(Class<?> implementation) {
+		DefaultItem definition = new DefaultItem("misc", "pebble", "pebble", -1);
+		Map<String, String> attributes = new HashMap<String, String>();
+		attributes.put("quantity", "1");
+		attributes.put("max_quantity", "50");
+		definition.setAttributes(attributes);
+		definition.setDescription("You see a pebble.");
+		definition.setEquipableSlots(Arrays.asList("bag", "lhand"));
+		definition.setImplementation(implementation);
+		return definition;
+	}
+
+	/**
+	 * Items copied from the template should look like constructed items, and
+	 * be independent of each other.
+	 */
+	@Test
+	public void testCopiedItems() {
+		DefaultItem definition = createDefinition(StackableItem.class);
+		Item first = definition.getItem();
+		Item second = definition.getItem();
+		assertNotSame(first, second);
+		for (Item item : Arrays.asList(first, second)) {
+			assertTrue(item instanceof StackableItem);
+			assertEquals("pebble", item.getName());
+			assertEquals("misc", item.getItemClass());
+			assertEquals("pebble", item.getItemSubclass());
+			assertEquals("You see a pebble.", item.getDescription());
+			assertEquals(Arrays.asList("bag", "lhand"), item.getPossibleSlots());
+			assertEquals(50, ((StackableItem) item).getCapacity());
+		}
+
+		((StackableItem) first).setQuantity(10);
+		first.put("name", "stone");
+		assertEquals(1, definition.getItem().getQuantity());
+		assertEquals("pebble", definition.getItem().getName());
+		assertEquals(1, second.getQuantity());
+	}
+}
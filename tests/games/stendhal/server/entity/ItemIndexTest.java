@@ -0,0 +1,165 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.entity.item.StackableItem;
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.server.entity.slot.PlayerSlot;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import utilities.PlayerTestHelper;
+
+/**
+ * Tests for ItemIndex.
+ */
+public class ItemIndexTest {
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	private static StackableItem createStack(String name, int quantity) {
+		StackableItem item = (StackableItem) SingletonRepository.getEntityManager().getItem(name);
+		item.setQuantity(quantity);
+		return item;
+	}
+
+	/**
+	 * Check the indexed counts of an item against a full scan.
+	 */
+	private static void assertCount(RPEntity entity, String name, int carried, int total) {
+		assertEquals(carried, entity.scanNumberOfEquipped(name));
+		assertEquals(carried, entity.getNumberOfEquipped(name));
+		assertEquals(total, entity.scanTotalNumberOf(name));
+		assertEquals(total, entity.getTotalNumberOf(name));
+	}
+
+	/**
+	 * Tests following items entering and leaving slots.
+	 */
+	@Test
+	public void testAddAndRemove() {
+		Player player = PlayerTestHelper.createPlayer("bob");
+		assertCount(player, "money", 0, 0);
+
+		StackableItem money = createStack("money", 10);
+		player.equipToInventoryOnly(money);
+		assertTrue(player.isEquipped("money", 10));
+		assertFalse(player.isEquipped("money", 11));
+		assertSame(money, player.getFirstEquipped("money"));
+
+		// merged into the existing stack
+		player.equipToInventoryOnly(createStack("money", 5));
+		assertCount(player, "money", 15, 15);
+		assertSame(money, player.getFirstEquipped("money"));
+
+		assertTrue(player.drop("money", 7));
+		assertCount(player, "money", 8, 8);
+		assertTrue(player.drop("money", 8));
+		assertCount(player, "money", 0, 0);
+		assertNull(player.getFirstEquipped("money"));
+		assertFalse(player.drop("money"));
+	}
+
+	/**
+	 * Tests splitting stacks and changing quantities in place.
+	 */
+	@Test
+	public void testQuantityChanges() {
+		Player player = PlayerTestHelper.createPlayer("bob");
+		StackableItem arrows = createStack("wooden arrow", 20);
+		player.equipToInventoryOnly(arrows);
+
+		StackableItem split = arrows.splitOff(5);
+		assertCount(player, "wooden arrow", 15, 15);
+		player.equip("lhand", split);
+		assertCount(player, "wooden arrow", 20, 20);
+		assertEquals(2, player.getAllEquipped("wooden arrow").size());
+		assertSame(arrows, player.getFirstEquipped("wooden arrow"));
+
+		split.setQuantity(8);
+		assertCount(player, "wooden arrow", 23, 23);
+		split.sub(3);
+		assertCount(player, "wooden arrow", 20, 20);
+	}
+
+	/**
+	 * Tests items nested in containers, and items outside the carrying slots.
+	 */
+	@Test
+	public void testContainersAndBank() {
+		Player player = PlayerTestHelper.createPlayer("bob");
+		if (!player.hasSlot("belt")) {
+			player.addSlot(new PlayerSlot("belt"));
+		}
+		if (!player.hasSlot("bank")) {
+			player.addSlot(new PlayerSlot("bank"));
+		}
+		Item keyring = SingletonRepository.getEntityManager().getItem("keyring");
+		player.equip("belt", keyring);
+		assertTrue(player.isEquipped("keyring"));
+
+		Item key = SingletonRepository.getEntityManager().getItem("dungeon silver key");
+		keyring.getSlot("content").add(key);
+		assertTrue(player.isEquipped("dungeon silver key"));
+		assertSame(key, player.getFirstEquipped("dungeon silver key"));
+
+		player.getSlot("belt").remove(keyring.getID());
+		assertFalse(player.isEquipped("dungeon silver key"));
+		assertFalse(player.isEquipped("keyring"));
+
+		// contents come along when the container is added again
+		player.getSlot("bank").add(keyring);
+		assertCount(player, "dungeon silver key", 0, 1);
+		keyring.getSlot("content").clear();
+		assertCount(player, "dungeon silver key", 0, 0);
+		assertCount(player, "keyring", 0, 1);
+
+		player.removeSlot("bank");
+		assertCount(player, "keyring", 0, 0);
+	}
+
+	/**
+	 * Changing a copy of a player must not change the index of the original.
+	 */
+	@Test
+	public void testClone() {
+		Player player = PlayerTestHelper.createPlayer("bob");
+		player.equipToInventoryOnly(createStack("money", 10));
+		assertCount(player, "money", 10, 10);
+
+		Player copy = (Player) player.clone();
+		assertCount(player, "money", 10, 10);
+		copy.equipToInventoryOnly(createStack("money", 5));
+		((StackableItem) copy.getFirstEquipped("money")).add(createStack("money", 3));
+		copy.removeSlot("bag");
+
+		assertCount(player, "money", 10, 10);
+		assertCount(copy, "money", 0, 0);
+	}
+}
@@ -75,6 +75,11 @@ public class CreatureTest {
 
 			return enemies;
 		}
+
+		@Override
+		public List<RPEntity> getEnemyList(final double range) {
+			return enemies;
+		}
 	}
 
 	/**
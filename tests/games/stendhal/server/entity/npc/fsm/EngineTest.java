@@ -16,6 +16,7 @@ import static games.stendhal.server.entity.npc.ConversationStates.ATTENDING;
 import static games.stendhal.server.entity.npc.ConversationStates.IDLE;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static utilities.SpeakerNPCTestHelper.getReply;
@@ -23,6 +24,7 @@ import static utilities.SpeakerNPCTestHelper.getReply;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import games.stendhal.common.parser.CaseInsensitiveExprMatcher;
 import games.stendhal.common.parser.Sentence;
 import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.npc.ChatAction;
@@ -209,4 +211,48 @@ public class EngineTest {
 		assertEquals(reply, getReply(bob));
 	}
 
+	/**
+	 * Removed transitions should not be matched any more, and the remaining
+	 * ones should still be found.
+	 */
+	@Test
+	public void testRemove() {
+		final SpeakerNPC bob = new SpeakerNPC("bob");
+		final Engine en = new Engine(bob);
+		en.add(IDLE, "boo", null, false, ATTENDING, "first", null, "first");
+		en.add(ATTENDING, "bye", null, false, IDLE, "bye", null);
+		en.add(IDLE, "hello", null, false, ATTENDING, "second", null, "second");
+		assertTrue(en.remove("first"));
+
+		final Player pete = PlayerTestHelper.createPlayer("player");
+		assertFalse(en.step(pete, "boo"));
+		assertEquals(IDLE, en.getCurrentState());
+		assertTrue(en.step(pete, "hello"));
+		assertEquals("second", getReply(bob));
+		assertEquals(2, en.getTransitions().size());
+	}
+
+	/**
+	 * Transitions using an ExpressionMatcher, normalized and wildcard
+	 * triggers should be matched with the transition index.
+	 */
+	@Test
+	public void testMatchTypes() {
+		final SpeakerNPC bob = new SpeakerNPC("bob");
+		final Engine en = new Engine(bob);
+		en.add(IDLE, "hi", null, false, ATTENDING, "hello", null);
+		en.add(ATTENDING, "job", null, false, ATTENDING, "no job", null);
+		en.addMatching(ATTENDING, "ABC", new CaseInsensitiveExprMatcher(), null, false, ATTENDING, "letters", null);
+		en.add(ConversationStates.ANY, "bye", null, false, IDLE, "goodbye", null);
+
+		final Player pete = PlayerTestHelper.createPlayer("player");
+		assertFalse("wildcard transitions do not start a conversation", en.step(pete, "bye"));
+		assertTrue(en.step(pete, "hi"));
+		assertTrue(en.step(pete, "Job"));
+		assertEquals("normalized match", "no job", getReply(bob));
+		assertTrue(en.step(pete, "abc"));
+		assertEquals("letters", getReply(bob));
+		assertTrue(en.step(pete, "bye"));
+		assertEquals(IDLE, en.getCurrentState());
+	}
 }
@@ -31,10 +31,12 @@ import org.junit.Test;
 
 import games.stendhal.common.KeyedSlotUtil;
 import games.stendhal.common.constants.Nature;
+import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.StendhalRPZone;
 import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.Outfit;
 import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.entity.item.StackableItem;
 import games.stendhal.server.entity.status.StatusType;
 import games.stendhal.server.maps.MockStendhalRPRuleProcessor;
 import games.stendhal.server.maps.MockStendlRPWorld;
@@ -517,4 +519,30 @@ public class PlayerTest {
 		int magicSkillXpLater = player.getMagicSkillXp(Nature.LIGHT);
 		assertThat(magicSkillXpLater, is(0));
 	}
+
+	/**
+	 * Tests for getSlotVersion.
+	 */
+	@Test
+	public void testSlotVersions() {
+		final Player player = PlayerTestHelper.createPlayer("slotty");
+		final long bank = player.getSlotVersion("bank");
+		final long quests = player.getSlotVersion("!quests");
+
+		final Item money = SingletonRepository.getEntityManager().getItem("money");
+		player.getSlot("bank").add(money);
+		assertThat(player.getSlotVersion("bank"), not(equalTo(bank)));
+		assertThat(player.getSlotVersion("!quests"), is(quests));
+
+		final Player copy = (Player) player.clone();
+		final long copied = copy.getSlotVersion("bank");
+		assertThat(copied, is(player.getSlotVersion("bank")));
+		((StackableItem) money).setQuantity(5);
+		assertThat(player.getSlotVersion("bank"), not(equalTo(copied)));
+		assertThat(copy.getSlotVersion("bank"), is(copied));
+
+		player.setQuest("slotty_quest", "done");
+		assertThat(player.getSlotVersion("!quests"), not(equalTo(quests)));
+		assertThat(copy.getSlotVersion("!quests"), is(quests));
+	}
 }
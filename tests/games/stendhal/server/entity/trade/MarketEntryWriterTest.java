@@ -0,0 +1,162 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2017 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.trade;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.dbcommand.WriteMarketEntriesCommand;
+import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.entity.item.StackableItem;
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.server.maps.MockStendhalRPRuleProcessor;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import marauroa.common.Log4J;
+import marauroa.common.game.RPSlot;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.TransactionPool;
+import marauroa.server.game.db.DatabaseFactory;
+import utilities.PlayerTestHelper;
+
+/**
+ * Tests for storing the market entries in the market_entry table.
+ */
+public class MarketEntryWriterTest {
+	@BeforeClass
+	public static void beforeClass() {
+		Log4J.init();
+		new DatabaseFactory().initializeDatabase();
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		MockStendlRPWorld.reset();
+		MockStendhalRPRuleProcessor.get().clearPlayers();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		clearEntries();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		clearEntries();
+	}
+
+	private static void clearEntries() throws Exception {
+		final DBTransaction transaction = TransactionPool.get().beginWork();
+		transaction.execute("DELETE FROM market_entry", null);
+		TransactionPool.get().commit(transaction);
+	}
+
+	/**
+	 * Write the pending changes of a market synchronously.
+	 *
+	 * @param market market
+	 * @return number of written changes
+	 */
+	private static int write(final Market market) throws Exception {
+		final WriteMarketEntriesCommand command = market.getEntryWriter().createCommand();
+		if (command == null) {
+			return 0;
+		}
+		final DBTransaction transaction = TransactionPool.get().beginWork();
+		command.execute(transaction);
+		TransactionPool.get().commit(transaction);
+		return command.size();
+	}
+
+	private static Market createMarket(final String zoneName) {
+		final StendhalRPZone zone = new StendhalRPZone(zoneName);
+		final Market market = Market.createShop();
+		zone.add(market);
+		return market;
+	}
+
+	private static Offer createOffer(final Market market, final Player player,
+			final String itemName, final int price) {
+		final Item item = SingletonRepository.getEntityManager().getItem(itemName);
+		player.equipToInventoryOnly(item);
+		return market.createOffer(player, item, price, 1);
+	}
+
+	/**
+	 * Tests that the entries survive a reload.
+	 */
+	@Test
+	public void testRoundTrip() throws Exception {
+		final Market market = createMarket("market_round_trip");
+		final Player bob = PlayerTestHelper.createPlayer("bob");
+		final Player alice = PlayerTestHelper.createPlayer("alice");
+		final Offer sold = createOffer(market, bob, "axe", 10);
+		createOffer(market, bob, "dagger", 20);
+		final StackableItem money = (StackableItem) SingletonRepository.getEntityManager().getItem("money");
+		money.setQuantity(10);
+		alice.equipToInventoryOnly(money);
+		market.loadFromDatabase();
+		assertEquals("the existing offers are migrated", 0, write(market));
+
+		assertTrue(market.acceptOffer(sold, alice));
+		final Offer expired = createOffer(market, bob, "club", 30);
+		market.expireOffer(expired);
+		write(market);
+
+		final Market loaded = createMarket("market_round_trip_loaded");
+		loaded.loadFromDatabase();
+		final RPSlot offers = loaded.getSlot(Market.OFFERS_SLOT_NAME);
+		assertEquals(1, offers.size());
+		assertEquals("dagger", ((Offer) offers.iterator().next()).getItemName());
+		assertEquals(1, loaded.getExpiredOffers().size());
+		assertEquals("club", loaded.getExpiredOffers().get(0).getItemName());
+		assertEquals(1, loaded.fetchEarnings(bob).size());
+	}
+
+	/**
+	 * Tests that several changes of the same entry are written once.
+	 */
+	@Test
+	public void testCoalescing() throws Exception {
+		final Market market = createMarket("market_coalescing");
+		market.loadFromDatabase();
+		final Player bob = PlayerTestHelper.createPlayer("bob");
+		final Offer offer = createOffer(market, bob, "axe", 10);
+		market.expireOffer(offer);
+		market.prolongOffer(offer);
+		assertEquals(1, write(market));
+
+		market.removeOffer(offer, bob);
+		createOffer(market, bob, "dagger", 20);
+		assertEquals(2, write(market));
+		assertEquals(0, write(market));
+	}
+
+	/**
+	 * Tests that a market that has not been loaded does not record changes.
+	 */
+	@Test
+	public void testNotLoaded() throws Exception {
+		final Market market = createMarket("market_not_loaded");
+		createOffer(market, PlayerTestHelper.createPlayer("bob"), "axe", 10);
+		assertNull(market.getEntryWriter().createCommand());
+	}
+}